@@ -28,10 +28,39 @@ dependencies {
     implementation("org.apache.logging.log4j:log4j-api:2.23.1")
     implementation("org.apache.logging.log4j:log4j-core:2.23.1")
 
+    /* ===== EMBEDDED SQL (бэкенд хранения SQL) ===== */
+    implementation("com.h2database:h2:2.2.224")
+
+    /* ===== TESTS ===== */
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+}
+
+/* ===== BENCHMARKS ===== */
+/* Замеры и отчёты живут в отдельном наборе исходников: в tsar.jar они не попадают,
+   а классы тех же пакетов видят package-private код хранилища. */
+val benchmark by sourceSets.creating {
+    compileClasspath += sourceSets["main"].output + sourceSets["main"].compileClasspath
+    runtimeClasspath += sourceSets["main"].output + sourceSets["main"].runtimeClasspath
+}
+
+val jmhVersion = "1.37"
+
+dependencies {
+    /* JMH замеряет время в отдельной JVM после прогрева, JOL считает размер графа объектов. */
+    "benchmarkImplementation"("org.openjdk.jmh:jmh-core:$jmhVersion")
+    "benchmarkAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+    "benchmarkImplementation"("org.openjdk.jol:jol-core:0.17")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 application {
-    mainClass.set("com.tsarskiy.Main")
+    mainClass.set("com.tsarskiy.Launcher")
 }
 
 /* ===== RUN (JavaFX) ===== */
@@ -45,12 +74,94 @@ tasks.named<JavaExec>("run") {
 
 
 /* ===== JAR BUILD ===== */
+/* Class-Path перечисляет зависимости по имени файла: installDist кладёт их рядом с tsar.jar,
+   поэтому «java -jar lib/tsar.jar notes …» запускается без -cp. */
 tasks.jar {
     archiveFileName.set("tsar.jar")
+    val runtimeJars = configurations.runtimeClasspath
 
     manifest {
         attributes(
             "Main-Class" to application.mainClass.get()
         )
     }
+    doFirst {
+        manifest.attributes("Class-Path" to runtimeJars.get().joinToString(" ") { it.name })
+    }
+}
+
+/* ===== STORAGE REPORTS ===== */
+
+/* Экономия места на синтетическом архиве с повторяющимися текстами заметок. */
+val dedupReport by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Сравнивает размер архива заметок с полными текстами и с текстами по содержимому."
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("com.tsarskiy.storage.DedupReport")
+    val report = layout.buildDirectory.file("reports/storage/dedup.txt")
+    outputs.file(report)
+    argumentProviders.add(CommandLineArgumentProvider { listOf(report.get().asFile.path) })
+}
+
+/* Память (JOL) и время выборки месяца (JMH): DateIndex против HashMap<LocalDate, List<Note>>. */
+val dateIndexBenchmark by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Сравнивает индекс заметок по дню с картой по LocalDate и пишет отчёт."
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("com.tsarskiy.storage.DateIndexBenchmark")
+    jvmArgs = listOf("-Djdk.attach.allowAttachSelf=true")
+    val report = layout.buildDirectory.file("reports/storage/date-index.txt")
+    outputs.file(report)
+    argumentProviders.add(CommandLineArgumentProvider { listOf(report.get().asFile.path) })
+}
+
+/* Доля попаданий и задержка перехода к месяцу с кэшем снимков месяцев и без него. */
+val monthCacheBenchmark by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Листает синтетический архив с кэшем снимков месяцев и без него и пишет отчёт."
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("com.tsarskiy.service.MonthCacheBenchmark")
+    val report = layout.buildDirectory.file("reports/storage/month-cache.txt")
+    outputs.file(report)
+    argumentProviders.add(CommandLineArgumentProvider { listOf(report.get().asFile.path) })
+}
+
+/* Замер бэкендов хранения: файловый notes.dat, встроенная база H2 и зашифрованные сегменты.
+   Их правильность проверяет StorageBackendConformanceTest в задаче test. */
+val storageBackendBenchmark by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Замеряет запись и чтение файлового, SQL- и зашифрованного бэкенда и пишет отчёт."
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("com.tsarskiy.storage.StorageBackendBenchmark")
+    val report = layout.buildDirectory.file("reports/storage/backends.txt")
+    outputs.file(report)
+    argumentProviders.add(CommandLineArgumentProvider { listOf(report.get().asFile.path) })
+}
+
+/* Нагрузочный замер локального API: запросы в секунду и задержки по видам запросов. */
+val apiServerBenchmark by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Нагружает локальный HTTP API смесью чтений, записей и поиска и пишет отчёт."
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("com.tsarskiy.service.ApiServerBenchmark")
+    val report = layout.buildDirectory.file("reports/storage/api-server.txt")
+    outputs.file(report)
+    argumentProviders.add(CommandLineArgumentProvider { listOf(report.get().asFile.path) })
+}
+
+/* ===== UI REPORTS ===== */
+
+/* Перестроение сетки месяца с векторными иконками SVGPath и с общими растровыми иконками. Нужен дисплей. */
+val iconRenderBenchmark by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Перестраивает сетку месяца с векторными и с растровыми иконками и пишет отчёт о времени."
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("com.tsarskiy.view.IconRenderBenchmark")
+    jvmArgs = listOf(
+        "--module-path", benchmark.runtimeClasspath.asPath,
+        "--add-modules", "javafx.controls,javafx.graphics"
+    )
+    val report = layout.buildDirectory.file("reports/ui/icon-render.txt")
+    outputs.file(report)
+    argumentProviders.add(CommandLineArgumentProvider { listOf(report.get().asFile.path) })
 }
@@ -0,0 +1,213 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.storage.Storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочный замер локального API {@link ApiServer}.
+ * <p>
+ * Во временной папке строится архив, сервер запускается на свободном порту,
+ * и {@link #CLIENTS} клиентов в виртуальных потоках в течение
+ * {@link #DURATION_MS} мс шлют смесь запросов: заметки месяца, создание
+ * заметки, чтение заметки по идентификатору и поиск. Отчёт — запросы
+ * в секунду и задержки (медиана и 99-й процентиль) по видам запросов.
+ * Запускается задачей Gradle {@code apiServerBenchmark}.
+ */
+public final class ApiServerBenchmark {
+
+    /** Число заметок архива. */
+    private static final int NOTES = 20_000;
+
+    /** Число дней, по которым распределены заметки. */
+    private static final int DAYS = 1_460;
+
+    /** Число одновременных клиентов. */
+    private static final int CLIENTS = 32;
+
+    /** Длительность прогрева. */
+    private static final long WARMUP_MS = 3_000;
+
+    /** Длительность замера. */
+    private static final long DURATION_MS = 10_000;
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    /** Виды запросов смеси и их доли в процентах. */
+    private static final String[] KINDS = {"GET месяц", "POST заметка", "GET по id", "GET поиск"};
+    private static final int[] SHARES = {60, 25, 13, 2};
+
+    /** Удерживает размер ответов — чтобы работа не была выброшена. */
+    private static long sink;
+
+    private ApiServerBenchmark() {
+    }
+
+    /**
+     * Строит архив во временной папке, выполняет замер и печатает отчёт.
+     *
+     * @param args необязательный путь файла отчёта
+     * @throws Exception если архив или отчёт не удалось записать
+     */
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("tsar-api");
+        ApiServer server = null;
+        try {
+            System.setProperty(Storage.STORAGE_DIR_PROPERTY, dir.toString());
+            Storage storage = Storage.getInstance();
+            storage.loadIndexAsync().get();
+            Random random = new Random(5);
+            List<Note> notes = new ArrayList<>(NOTES);
+            for (int i = 0; i < NOTES; i++) {
+                notes.add(new Note("id" + i, START.plusDays(random.nextInt(DAYS)),
+                        "Заметка " + i, "Текст " + i, LocalDateTime.of(2024, 1, 1, 9, 0)));
+            }
+            storage.saveNotes(notes);
+
+            server = new ApiServer(storage);
+            server.start(0);
+            String base = "http://127.0.0.1:" + server.getPort();
+
+            run(base, WARMUP_MS);
+            List<List<Long>> latencies = run(base, DURATION_MS);
+
+            List<String> lines = new ArrayList<>();
+            int total = latencies.stream().mapToInt(List::size).sum();
+            lines.add("Заметок: " + NOTES + ", клиентов: " + CLIENTS + ", замер: " + DURATION_MS / 1000 + " с");
+            lines.add(String.format("Запросов в секунду: %.0f", total * 1000.0 / DURATION_MS));
+            for (int k = 0; k < KINDS.length; k++) {
+                long[] sorted = latencies.get(k).stream().mapToLong(Long::longValue).sorted().toArray();
+                if (sorted.length == 0) {
+                    continue;
+                }
+                lines.add(String.format("%-13s %7d запросов, медиана %.2f мс, p99 %.2f мс", KINDS[k], sorted.length,
+                        sorted[sorted.length / 2] / 1e6, sorted[Math.min(sorted.length - 1, sorted.length * 99 / 100)] / 1e6));
+            }
+
+            lines.forEach(System.out::println);
+            if (args.length > 0) {
+                Path report = Path.of(args[0]);
+                Files.createDirectories(report.getParent());
+                Files.write(report, lines);
+            }
+            storage.flush();
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Шлёт смесь запросов заданное время и возвращает задержки по видам в наносекундах.
+     */
+    private static List<List<Long>> run(String base, long durationMs) throws InterruptedException {
+        List<List<Long>> latencies = new ArrayList<>();
+        for (int k = 0; k < KINDS.length; k++) {
+            latencies.add(new ArrayList<>());
+        }
+        AtomicInteger errors = new AtomicInteger();
+        long deadline = System.currentTimeMillis() + durationMs;
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            HttpClient http = HttpClient.newHttpClient();
+            for (int c = 0; c < CLIENTS; c++) {
+                int seed = c;
+                clients.execute(() -> {
+                    Random random = new Random(seed);
+                    long[][] own = new long[KINDS.length][];
+                    int[] counts = new int[KINDS.length];
+                    for (int k = 0; k < KINDS.length; k++) {
+                        own[k] = new long[1024];
+                    }
+                    while (System.currentTimeMillis() < deadline) {
+                        int kind = pick(random.nextInt(100));
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = http.send(request(base, kind, random),
+                                    HttpResponse.BodyHandlers.ofString());
+                            if (response.statusCode() >= 300) {
+                                errors.incrementAndGet();
+                            }
+                            sink += response.body().length();
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        if (counts[kind] == own[kind].length) {
+                            own[kind] = Arrays.copyOf(own[kind], counts[kind] * 2);
+                        }
+                        own[kind][counts[kind]++] = System.nanoTime() - start;
+                    }
+                    synchronized (latencies) {
+                        for (int k = 0; k < KINDS.length; k++) {
+                            for (int i = 0; i < counts[k]; i++) {
+                                latencies.get(k).add(own[k][i]);
+                            }
+                        }
+                    }
+                });
+            }
+        } finally {
+            clients.shutdown();
+            clients.awaitTermination(durationMs + 30_000, TimeUnit.MILLISECONDS);
+        }
+        if (errors.get() > 0) {
+            throw new IllegalStateException("Запросов с ошибкой: " + errors.get());
+        }
+        return latencies;
+    }
+
+    private static int pick(int roll) {
+        int k = 0;
+        while (roll >= SHARES[k]) {
+            roll -= SHARES[k];
+            k++;
+        }
+        return k;
+    }
+
+    private static HttpRequest request(String base, int kind, Random random) {
+        return switch (kind) {
+            case 0 -> HttpRequest.newBuilder(URI.create(base + "/api/notes?month="
+                    + YearMonth.from(START.plusDays(random.nextInt(DAYS))))).build();
+            case 1 -> HttpRequest.newBuilder(URI.create(base + "/api/notes"))
+                    .POST(HttpRequest.BodyPublishers.ofString(Json.write(Map.of(
+                            "date", START.plusDays(random.nextInt(DAYS)).toString(),
+                            "title", "Из скрипта",
+                            "tags", List.of("ci")))))
+                    .build();
+            case 2 -> HttpRequest.newBuilder(URI.create(base + "/api/notes/id" + random.nextInt(NOTES))).build();
+            default -> HttpRequest.newBuilder(URI.create(base + "/api/search?q="
+                    + URLEncoder.encode("заметка " + random.nextInt(NOTES), StandardCharsets.UTF_8) + "&limit=10")).build();
+        };
+    }
+}
@@ -0,0 +1,187 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.storage.Storage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Замер {@link MonthSnapshotCache}: доля попаданий и задержка перехода
+ * к месяцу с кэшем и без него.
+ * <p>
+ * На синтетическом архиве во временной папке воспроизводится листание
+ * календаря: переходы на соседний месяц, чаще в одну сторону, с паузой
+ * на просмотр месяца, и изредка правка заметки текущего месяца, которая
+ * сбрасывает его снимок. Без кэша каждый переход собирает заметки
+ * и праздники месяца из хранилища. Запускается задачей Gradle
+ * {@code monthCacheBenchmark}.
+ */
+public final class MonthCacheBenchmark {
+
+    /** Число заметок. */
+    private static final int NOTES = 100_000;
+
+    /** Число дней, по которым распределены заметки. */
+    private static final int DAYS = 3_650;
+
+    /** Число переходов между месяцами. */
+    private static final int NAVIGATIONS = 600;
+
+    /** Доля переходов, после которых правится заметка. */
+    private static final double EDIT_SHARE = 0.05;
+
+    /** Пауза на просмотр месяца, мс. */
+    private static final long VIEW_MS = 5;
+
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    /** Результат последней выборки — чтобы JIT не выбросил работу. */
+    private static long sink;
+
+    private MonthCacheBenchmark() {
+    }
+
+    /**
+     * Строит архив во временной папке, выполняет замеры и печатает отчёт.
+     *
+     * @param args необязательный путь файла отчёта
+     * @throws Exception если архив или отчёт не удалось записать
+     */
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("tsar-month-cache");
+        try {
+            System.setProperty(Storage.STORAGE_DIR_PROPERTY, dir.toString());
+            Storage storage = Storage.getInstance();
+            storage.loadIndexAsync().get();
+
+            Random random = new Random(11);
+            List<Note> notes = new ArrayList<>(NOTES);
+            for (int i = 0; i < NOTES; i++) {
+                notes.add(new Note("id" + i, START.plusDays(random.nextInt(DAYS)),
+                        "Заметка " + i, "", LocalDateTime.of(2020, 1, 1, 9, 0)));
+            }
+            storage.saveNotes(notes);
+
+            HolidayService holidays = new HolidayService(dir);
+            YearMonth[] walk = walk(random);
+            boolean[] edits = new boolean[walk.length];
+            for (int i = 0; i < edits.length; i++) {
+                edits[i] = random.nextDouble() < EDIT_SHARE;
+            }
+            for (YearMonth month : walk) {
+                sink += storage.getNotesForMonth(month).size() + holidays.getHolidaysForMonth(month).size();
+            }
+
+            double[] direct = replay(walk, edits, storage, month -> {
+                Map<LocalDate, List<Note>> m = storage.getNotesForMonth(month);
+                return m.size() + holidays.getHolidaysForMonth(month).size();
+            }, month -> {
+            });
+
+            MonthSnapshotCache cache = new MonthSnapshotCache(storage, holidays, MonthSnapshotCache.DEFAULT_RADIUS);
+            double[] cached = replay(walk, edits, storage,
+                    month -> cache.get(month).notes().size(), cache::prefetchAround);
+            MonthSnapshotCache.Stats stats = cache.stats();
+
+            List<String> lines = List.of(
+                    "Заметок: " + NOTES + ", переходов: " + NAVIGATIONS
+                            + ", правок: " + count(edits) + ", соседей с каждой стороны: "
+                            + MonthSnapshotCache.DEFAULT_RADIUS,
+                    String.format("Попадания: %.1f%% (готово %d, ждали фон %d, промахи %d)",
+                            100 * stats.hitRate(), stats.hits(), stats.waits(), stats.misses()),
+                    String.format("Переход без кэша, мкс: медиана %.1f, p95 %.1f",
+                            percentile(direct, 0.5), percentile(direct, 0.95)),
+                    String.format("Переход с кэшем, мкс:  медиана %.1f, p95 %.1f",
+                            percentile(cached, 0.5), percentile(cached, 0.95)));
+            lines.forEach(System.out::println);
+            if (args.length > 0) {
+                Path report = Path.of(args[0]);
+                Files.createDirectories(report.getParent());
+                Files.write(report, lines);
+            }
+            storage.flush();
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Строит последовательность месяцев листания: шаг на соседний месяц,
+     * в прежнем направлении с вероятностью 0,8.
+     */
+    private static YearMonth[] walk(Random random) {
+        YearMonth first = YearMonth.from(START);
+        YearMonth last = YearMonth.from(START.plusDays(DAYS - 1));
+        YearMonth[] walk = new YearMonth[NAVIGATIONS];
+        YearMonth month = YearMonth.from(START.plusDays(DAYS / 2));
+        int step = 1;
+        for (int i = 0; i < NAVIGATIONS; i++) {
+            if (random.nextDouble() < 0.2 || month.plusMonths(step).isAfter(last)
+                    || month.plusMonths(step).isBefore(first)) {
+                step = -step;
+            }
+            month = month.plusMonths(step);
+            walk[i] = month;
+        }
+        return walk;
+    }
+
+    /**
+     * Проходит последовательность месяцев и возвращает задержки переходов в микросекундах.
+     */
+    private static double[] replay(YearMonth[] walk, boolean[] edits, Storage storage,
+                                   ToIntFunction<YearMonth> load, Consumer<YearMonth> shown)
+            throws InterruptedException {
+        double[] samples = new double[walk.length];
+        for (int i = 0; i < walk.length; i++) {
+            long start = System.nanoTime();
+            sink += load.applyAsInt(walk[i]);
+            samples[i] = (System.nanoTime() - start) / 1_000.0;
+            shown.accept(walk[i]);
+
+            Thread.sleep(VIEW_MS);
+            if (edits[i]) {
+                storage.getNotesForMonth(walk[i]).values().stream()
+                        .flatMap(List::stream)
+                        .findFirst()
+                        .ifPresent(note -> {
+                            Note edited = note.copy();
+                            edited.setTitle(note.getTitle() + "*");
+                            storage.updateNote(edited);
+                        });
+            }
+        }
+        return samples;
+    }
+
+    private static int count(boolean[] flags) {
+        int n = 0;
+        for (boolean flag : flags) {
+            if (flag) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static double percentile(double[] samples, double p) {
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
@@ -0,0 +1,175 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение индекса {@link DateIndex} с картой {@code HashMap<LocalDate, List<Note>>}:
+ * память индекса на заметку и время выборки заметок месяца.
+ * <p>
+ * Память считает JOL по графу объектов структуры за вычетом самих заметок,
+ * время одной выборки месяца замеряет JMH в отдельной JVM после прогрева.
+ * Запускается задачей Gradle {@code dateIndexBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateIndexBenchmark {
+
+    /** Число заметок. */
+    private static final int NOTES = 200_000;
+
+    /** Число дней, по которым распределены заметки. */
+    private static final int DAYS = 3_650;
+
+    /** Число заранее выбранных месяцев, по которым идут выборки. */
+    private static final int QUERIES = 4_096;
+
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    private Map<LocalDate, List<Note>> map;
+
+    private DateIndex<Note> index;
+
+    private YearMonth[] months;
+
+    /** Номер следующего месяца из {@link #months}. */
+    private int cursor;
+
+    /**
+     * Строит заметки, обе структуры и последовательность месяцев для выборок.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        List<Note> notes = notes(random);
+        map = buildMap(notes);
+        index = buildIndex(notes);
+        months = new YearMonth[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            months[i] = YearMonth.from(START.plusDays(random.nextInt(DAYS)));
+        }
+    }
+
+    @Benchmark
+    public void hashMapMonth(Blackhole blackhole) {
+        YearMonth month = nextMonth();
+        for (LocalDate d = month.atDay(1); !d.isAfter(month.atEndOfMonth()); d = d.plusDays(1)) {
+            List<Note> day = map.get(d);
+            if (day != null) {
+                blackhole.consume(day.size());
+            }
+        }
+    }
+
+    @Benchmark
+    public void dateIndexMonth(Blackhole blackhole) {
+        YearMonth month = nextMonth();
+        index.forEachDay(DateIndex.epochDay(month.atDay(1)), DateIndex.epochDay(month.atEndOfMonth()),
+                (day, items) -> blackhole.consume(items.size()));
+    }
+
+    private YearMonth nextMonth() {
+        YearMonth month = months[cursor];
+        cursor = (cursor + 1) % QUERIES;
+        return month;
+    }
+
+    /**
+     * Замеряет память и выборки и печатает отчёт.
+     *
+     * @param args необязательный путь файла отчёта
+     * @throws IOException     если отчёт не удалось записать
+     * @throws RunnerException если JMH не смог выполнить замер
+     */
+    public static void main(String[] args) throws IOException, RunnerException {
+        List<Note> notes = notes(new Random(7));
+        long mapBytes = footprint(buildMap(notes), notes);
+        long indexBytes = footprint(buildIndex(notes), notes);
+
+        Options options = new OptionsBuilder()
+                .include(DateIndexBenchmark.class.getName() + "\\.")
+                .build();
+        Map<String, Double> scores = new HashMap<>();
+        for (RunResult result : new Runner(options).run()) {
+            scores.put(result.getParams().getBenchmark().replaceAll(".*\\.", ""),
+                    result.getPrimaryResult().getScore());
+        }
+
+        List<String> lines = List.of(
+                "Заметок: " + NOTES + ", дней: " + DAYS,
+                String.format("Память индекса на заметку, байт: HashMap %.1f, DateIndex %.1f",
+                        (double) mapBytes / NOTES, (double) indexBytes / NOTES),
+                String.format("Выборка месяца, нс:               HashMap %.0f, DateIndex %.0f",
+                        scores.get("hashMapMonth"), scores.get("dateIndexMonth")));
+        lines.forEach(System.out::println);
+        if (args.length > 0) {
+            Path report = Path.of(args[0]);
+            Files.createDirectories(report.getParent());
+            Files.write(report, lines);
+        }
+    }
+
+    private static List<Note> notes(Random random) {
+        List<Note> notes = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            notes.add(new Note("id" + i, START.plusDays(random.nextInt(DAYS)),
+                    "Заметка " + i, "", LocalDateTime.of(2020, 1, 1, 9, 0)));
+        }
+        return notes;
+    }
+
+    private static Map<LocalDate, List<Note>> buildMap(List<Note> notes) {
+        Map<LocalDate, List<Note>> map = new HashMap<>();
+        for (Note note : notes) {
+            map.computeIfAbsent(note.getDate(), d -> new ArrayList<>()).add(note);
+        }
+        return map;
+    }
+
+    private static DateIndex<Note> buildIndex(List<Note> notes) {
+        return DateIndex.build(notes, n -> DateIndex.epochDay(n.getDate()));
+    }
+
+    /**
+     * Возвращает размер графа объектов структуры без самих заметок:
+     * общие с заметками объекты (даты, строки) JOL учитывает один раз.
+     */
+    private static long footprint(Object structure, Collection<Note> notes) {
+        return GraphLayout.parseInstance(structure, notes).totalSize()
+                - GraphLayout.parseInstance(notes).totalSize();
+    }
+}
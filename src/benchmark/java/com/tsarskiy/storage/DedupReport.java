@@ -0,0 +1,107 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Отчёт об экономии места при хранении текстов заметок по содержимому.
+ * <p>
+ * Строит синтетический архив, в котором большинство заметок повторяют
+ * несколько шаблонных текстов, и сравнивает размер прежнего формата
+ * ({@code notes.dat} с полными текстами) с размером {@code notes.dat}
+ * и {@code bodies.bin} календаря. Запускается задачей Gradle {@code dedupReport}.
+ */
+public final class DedupReport {
+
+    /** Число заметок в синтетическом архиве. */
+    private static final int NOTES = 20_000;
+
+    /** Число различных шаблонных текстов. */
+    private static final int TEMPLATES = 40;
+
+    /** Доля заметок с уникальным текстом. */
+    private static final double UNIQUE_SHARE = 0.05;
+
+    private DedupReport() {
+    }
+
+    /**
+     * Строит архив во временной папке и печатает отчёт.
+     *
+     * @param args необязательный путь файла отчёта
+     * @throws IOException если архив не удалось записать
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("tsar-dedup");
+        try {
+            List<Note> notes = syntheticArchive(new Random(42));
+
+            Path legacy = dir.resolve("legacy-" + FileStorageBackend.NOTES_FILE_NAME);
+            try (OutputStream file = Files.newOutputStream(legacy);
+                 ObjectOutputStream out = new ObjectOutputStream(file)) {
+                out.writeObject(notes);
+            }
+
+            FileStorageBackend backend = new FileStorageBackend(dir);
+            backend.write(notes, StorageBackend.Changes.all());
+            BodyStore.Stats stats = backend.bodyStats();
+
+            long before = Files.size(legacy);
+            long after = Files.size(dir.resolve(FileStorageBackend.NOTES_FILE_NAME))
+                    + Files.size(dir.resolve(BodyStore.FILE_NAME));
+            List<String> lines = List.of(
+                    "Заметок: " + NOTES + ", различных текстов: " + stats.bodies(),
+                    "Прежний формат, байт:         " + before,
+                    "По содержимому, байт:         " + after,
+                    "Сэкономлено на диске, байт:   " + (before - after)
+                            + String.format(" (%.1f%%)", 100.0 * (before - after) / before),
+                    "Повторы текстов в памяти, байт: " + stats.savedBytes());
+
+            lines.forEach(System.out::println);
+            if (args.length > 0) {
+                Path report = Path.of(args[0]);
+                Files.createDirectories(report.getParent());
+                Files.write(report, lines);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Строит заметки, большая часть которых повторяет шаблонные тексты.
+     * Каждый повтор — отдельный экземпляр строки, как после импорта.
+     */
+    private static List<Note> syntheticArchive(Random random) {
+        List<String> templates = new ArrayList<>();
+        for (int i = 0; i < TEMPLATES; i++) {
+            templates.add(("Шаблон " + i + ": повестка встречи, список дел и контакты. ").repeat(8 + i % 12));
+        }
+
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        List<Note> notes = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            String content = random.nextDouble() < UNIQUE_SHARE
+                    ? "Уникальная заметка " + UUID.randomUUID()
+                    : new String(templates.get(random.nextInt(TEMPLATES)).toCharArray());
+            notes.add(new Note(UUID.randomUUID().toString(), start.plusDays(random.nextInt(2000)),
+                    "Заметка " + i, content, LocalDateTime.of(2020, 1, 1, 9, 0)));
+        }
+        return notes;
+    }
+}
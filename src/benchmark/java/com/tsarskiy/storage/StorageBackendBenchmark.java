@@ -0,0 +1,151 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Замер бэкендов хранения {@link StorageBackend}.
+ * <p>
+ * Для каждого вида бэкенда в отдельной временной папке замеряются полная
+ * запись архива, его полное чтение, открытие календаря с просмотром одного
+ * месяца ({@link StorageBackend#loadPartial()} и {@link StorageBackend#loadMonth(YearMonth)})
+ * и сохранение одной изменённой заметки после такого открытия (медиана).
+ * Открытые бэкенды при открытии читают весь архив, зашифрованный — только
+ * сегменты серий и заметок без даты и затем сегмент месяца.
+ * Бэкенд, который не удалось открыть (например, без драйвера H2 в classpath),
+ * отмечается в отчёте как недоступный. Зашифрованный бэкенд открывается
+ * с ключом из тестового пароля, поэтому строки отчёта позволяют сравнить
+ * цену шифрования с открытыми бэкендами на тех же операциях. Правильность
+ * бэкендов проверяет {@code StorageBackendConformanceTest}.
+ * Запускается задачей Gradle {@code storageBackendBenchmark}.
+ */
+public final class StorageBackendBenchmark {
+
+    /** Число заметок архива для замеров. */
+    private static final int NOTES = 20_000;
+
+    /** Число дней, по которым распределены заметки. */
+    private static final int DAYS = 1_460;
+
+    /** Число замеряемых сохранений одной заметки. */
+    private static final int EDITS = 50;
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    /** Пароль зашифрованного бэкенда. */
+    private static final char[] PASSPHRASE = "benchmark".toCharArray();
+
+    /** Удерживает результат чтений — чтобы работа не была выброшена. */
+    private static long sink;
+
+    private StorageBackendBenchmark() {
+    }
+
+    /**
+     * Замеряет все виды бэкендов и печатает отчёт.
+     *
+     * @param args необязательный путь файла отчёта
+     * @throws IOException если отчёт не удалось записать
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("Заметок: " + NOTES + ", сохранений одной заметки: " + EDITS);
+        for (StorageBackend.Kind kind : StorageBackend.Kind.values()) {
+            Path dir = Files.createTempDirectory("tsar-backend");
+            try {
+                lines.add(measure(kind, dir));
+            } catch (IOException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                lines.add(String.format("%-9s недоступен: %s", kind, cause.getMessage()));
+            } finally {
+                try (Stream<Path> files = Files.walk(dir)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+
+        lines.forEach(System.out::println);
+        if (args.length > 0) {
+            Path report = Path.of(args[0]);
+            Files.createDirectories(report.getParent());
+            Files.write(report, lines);
+        }
+    }
+
+    /* ===== MEASUREMENT ===== */
+
+    /**
+     * Замеряет полную запись, чтение, открытие с одним месяцем и сохранение одной заметки.
+     */
+    private static String measure(StorageBackend.Kind kind, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Random random = new Random(11);
+        List<Note> notes = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            notes.add(new Note("id" + i, START.plusDays(random.nextInt(DAYS)),
+                    "Заметка " + i, "Текст заметки " + i, LocalDateTime.of(2024, 1, 1, 9, 0)));
+        }
+
+        StorageBackend backend = open(kind, dir);
+        try {
+            long start = System.nanoTime();
+            backend.write(notes, StorageBackend.Changes.all());
+            double fullMs = (System.nanoTime() - start) / 1_000_000.0;
+
+            backend.close();
+            start = System.nanoTime();
+            sink += backend.load().size();
+            double loadMs = (System.nanoTime() - start) / 1_000_000.0;
+
+            backend.close();
+            start = System.nanoTime();
+            sink += backend.loadPartial().notes().size();
+            sink += backend.loadMonth(YearMonth.from(START)).size();
+            double monthMs = (System.nanoTime() - start) / 1_000_000.0;
+
+            double[] edits = new double[EDITS];
+            for (int i = 0; i < EDITS; i++) {
+                Note note = notes.get(random.nextInt(NOTES));
+                note.setTitle("Правка " + i);
+                start = System.nanoTime();
+                backend.write(notes, new StorageBackend.Changes(false, Set.of(note.getId()), Set.of()));
+                edits[i] = (System.nanoTime() - start) / 1_000_000.0;
+            }
+            Arrays.sort(edits);
+            String line = String.format("%-9s полная запись %.1f мс, чтение %.1f мс, открытие с одним месяцем %.1f мс,"
+                            + " сохранение одной заметки %.2f мс",
+                    kind, fullMs, loadMs, monthMs, edits[EDITS / 2]);
+
+            return line;
+        } finally {
+            backend.close();
+        }
+    }
+
+    /**
+     * Открывает бэкенд указанного вида; зашифрованный — с ключом
+     * из {@link #PASSPHRASE}, создавая ключ в новой папке.
+     */
+    private static StorageBackend open(StorageBackend.Kind kind, Path dir) throws IOException {
+        if (kind != StorageBackend.Kind.ENCRYPTED) {
+            return StorageBackend.create(kind, dir);
+        }
+        NoteCipher cipher = NoteCipher.isEncrypted(dir)
+                ? NoteCipher.unlock(dir, PASSPHRASE)
+                : NoteCipher.create(dir, PASSPHRASE);
+        return new EncryptedStorageBackend(dir, cipher);
+    }
+}
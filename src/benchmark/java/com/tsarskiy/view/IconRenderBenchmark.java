@@ -0,0 +1,141 @@
+package com.tsarskiy.view;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.shape.SVGPath;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Сравнение перестроения сетки месяца с векторными иконками {@link SVGPath}
+ * и с общими растровыми иконками {@link IconFactory#createHolidayCrownImage()}
+ * и {@link IconFactory#createNoteImage()}.
+ * <p>
+ * Каждая из 42 ячеек сетки получает корону праздника и значок заметки —
+ * худший случай для разбора SVG-путей. Перестроение — создание ячеек
+ * и снимок сетки, при котором выполняются проходы CSS, раскладки
+ * и отрисовки; время — медиана и 95-й процентиль после прогрева.
+ * Ячейки содержат только иконки: подпись числа одинакова в обоих вариантах,
+ * а её раскладка зависит от шрифтовой системы, поэтому в замер она не входит.
+ * Нужен графический дисплей или Monocle. Запускается задачей Gradle {@code iconRenderBenchmark}.
+ */
+public final class IconRenderBenchmark {
+
+    /** Число ячеек сетки месяца. */
+    private static final int CELLS = 42;
+
+    /** Число перестроений для прогрева. */
+    private static final int WARMUP = 200;
+
+    /** Число замеряемых перестроений. */
+    private static final int REBUILDS = 1_000;
+
+    /** Удерживает результат снимков — чтобы работа не была выброшена. */
+    private static long sink;
+
+    private IconRenderBenchmark() {
+    }
+
+    /**
+     * Выполняет замеры в потоке JavaFX и печатает отчёт.
+     *
+     * @param args необязательный путь файла отчёта
+     * @throws Exception если замер или запись отчёта не удались
+     */
+    public static void main(String[] args) throws Exception {
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        Platform.startup(() -> {
+            try {
+                result.complete(measure());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        List<String> lines = result.get();
+        Platform.exit();
+
+        lines.forEach(System.out::println);
+        if (args.length > 0) {
+            Path report = Path.of(args[0]);
+            Files.createDirectories(report.getParent());
+            Files.write(report, lines);
+        }
+    }
+
+    private static List<String> measure() {
+        double[] vector = rebuilds(IconRenderBenchmark::vectorCrown, IconRenderBenchmark::vectorNote);
+        double[] raster = rebuilds(IconFactory::createHolidayCrownImage, IconFactory::createNoteImage);
+        return List.of(
+                "Ячеек: " + CELLS + " (корона и значок в каждой), перестроений: " + REBUILDS,
+                String.format("Перестроение, мс: SVGPath медиана %.3f, p95 %.3f; растр медиана %.3f, p95 %.3f",
+                        percentile(vector, 0.5), percentile(vector, 0.95),
+                        percentile(raster, 0.5), percentile(raster, 0.95)));
+    }
+
+    /**
+     * Перестраивает сетку с иконками из указанных фабрик и возвращает время в миллисекундах.
+     */
+    private static double[] rebuilds(Supplier<Node> crown, Supplier<Node> note) {
+        GridPane grid = new GridPane();
+        Scene scene = new Scene(grid);
+        Styles.apply(scene);
+
+        for (int i = 0; i < WARMUP; i++) {
+            rebuild(grid, crown, note);
+        }
+        double[] samples = new double[REBUILDS];
+        for (int i = 0; i < REBUILDS; i++) {
+            long start = System.nanoTime();
+            rebuild(grid, crown, note);
+            samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        return samples;
+    }
+
+    private static void rebuild(GridPane grid, Supplier<Node> crown, Supplier<Node> note) {
+        grid.getChildren().clear();
+        for (int i = 0; i < CELLS; i++) {
+            HBox top = new HBox(crown.get());
+            HBox bottom = new HBox(note.get());
+            VBox cell = new VBox(top, bottom);
+            cell.getStyleClass().add("calendar-day");
+            grid.add(cell, i % 7, i / 7);
+        }
+        sink += (long) grid.snapshot(null, null).getWidth();
+    }
+
+    /**
+     * Корона праздника так, как её строила ячейка до растровых иконок.
+     */
+    private static Node vectorCrown() {
+        SVGPath crown = IconFactory.createCrown();
+        crown.getStyleClass().add("calendar-holiday-icon");
+        crown.setScaleX(0.65);
+        crown.setScaleY(0.65);
+        return crown;
+    }
+
+    /**
+     * Значок заметки так, как его строила ячейка до растровых иконок.
+     */
+    private static Node vectorNote() {
+        SVGPath icon = IconFactory.createSmallFileText();
+        icon.getStyleClass().add("calendar-note-icon");
+        return icon;
+    }
+
+    private static double percentile(double[] samples, double p) {
+        double[] sorted = Arrays.copyOf(samples, samples.length);
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
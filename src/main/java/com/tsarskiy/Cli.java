@@ -0,0 +1,537 @@
+package com.tsarskiy;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.model.Recurrence;
+import com.tsarskiy.service.ApiServer;
+import com.tsarskiy.service.Json;
+import com.tsarskiy.storage.Storage;
+import com.tsarskiy.storage.Workspace;
+
+import java.io.BufferedWriter;
+import java.io.Console;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Командная строка для скриптов: чтение и изменение архива без окна.
+ * <p>
+ * Команды работают с {@link Storage} напрямую и не трогают JavaFX, поэтому
+ * запуск занимает время загрузки архива, а не запуска интерфейса. Вывод
+ * пишется по мере чтения заметок: длинный список можно сразу передать
+ * в {@code head} или {@code grep}. Коды выхода — как у {@code grep}:
+ * {@value #EXIT_OK} — успех, {@value #EXIT_NO_MATCH} — ничего не найдено,
+ * {@value #EXIT_ERROR} — ошибка аргументов или хранилища.
+ * <p>
+ * Открытое приложение держит блокировку папок календарей и при сохранении
+ * затёрло бы заметку, записанную мимо него. Поэтому {@code notes add}
+ * сначала захватывает папку сам, а если её держит приложение, отправляет
+ * заметку через его локальный API ({@link ApiServer}).
+ */
+final class Cli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_NO_MATCH = 1;
+    static final int EXIT_ERROR = 2;
+
+    /** Первые аргументы, по которым запускается командная строка. */
+    private static final Set<String> COMMANDS = Set.of("notes", "help");
+
+    /** Команды {@code notes}. */
+    private static final Set<String> SUBCOMMANDS = Set.of("list", "add", "grep", "export", "stats");
+
+    /** Параметры без значения. */
+    private static final Set<String> FLAGS = Set.of("--json", "--ignore-case", "-i");
+
+    /** Через сколько строк вывода проверять, что его ещё читают. */
+    private static final int CHECK_EVERY = 1024;
+
+    /** Число тегов в статистике. */
+    private static final int TOP_TAGS = 10;
+
+    /** Таймаут обращения к локальному API приложения. */
+    private static final int API_TIMEOUT_MS = 10_000;
+
+    /** Переменная окружения с паролем зашифрованного календаря. */
+    private static final String PASSPHRASE_ENV = "TSAR_PASSPHRASE";
+
+    private static final String USAGE = """
+            Использование: tsar notes <команда> [параметры] [--dir ПАПКА]
+
+              list   (--month ГГГГ-ММ | --date ГГГГ-ММ-ДД | --from ГГГГ-ММ-ДД --to ГГГГ-ММ-ДД)
+                     [--tag ТЕГ]... [--json]
+                     заметки диапазона с повторениями серий в порядке дат
+              add    --date ГГГГ-ММ-ДД --title ЗАГОЛОВОК [--content ТЕКСТ] [--time ЧЧ:ММ]
+                     [--tag ТЕГ]... [--repeat ПРАВИЛО] [--remind МИНУТ] [--calendar ID]
+                     добавляет заметку и печатает её идентификатор
+              grep   ОБРАЗЕЦ [-i] [диапазон как у list] [--json]
+                     заметки, у которых заголовок, текст или тег совпадает с регулярным выражением
+              export [диапазон как у list] [--format jsonl|json]
+                     заметки в JSON; без диапазона — все заметки, серии одной записью
+              stats  число заметок, период, календари, годы и частые теги
+
+            Строки list и grep: дата, время, заголовок, теги, идентификатор через табуляцию.
+            --dir задаёт папку хранения вместо выбранной в приложении.
+            Пароль зашифрованного календаря берётся из TSAR_PASSPHRASE или спрашивается в терминале.
+            """;
+
+    /**
+     * Ошибка аргументов командной строки.
+     */
+    private static final class UsageException extends RuntimeException {
+
+        /**
+         * Идентификатор версии сериализации.
+         */
+        private static final long serialVersionUID = 1L;
+
+        private UsageException(String message) {
+            super(message);
+        }
+    }
+
+    private Cli() {
+    }
+
+    /**
+     * Проверяет, запускает ли первый аргумент командную строку.
+     *
+     * @param first первый аргумент
+     * @return {@code true} для команд командной строки
+     */
+    static boolean isCommand(String first) {
+        return COMMANDS.contains(first);
+    }
+
+    /**
+     * Переключает log4j на простой логгер из log4j-api: предупреждения и ошибки
+     * идут в stderr, а stdout остаётся для результата команды. Конфигурация
+     * log4j-core с файловым журналом не читается — это заметная часть запуска.
+     * Вызывается до создания первого логгера.
+     */
+    static void configureLogging() {
+        System.setProperty("log4j2.loggerContextFactory",
+                "org.apache.logging.log4j.simple.SimpleLoggerContextFactory");
+        System.setProperty("org.apache.logging.log4j.simplelog.level", "WARN");
+    }
+
+    /**
+     * Выполняет команду.
+     *
+     * @param args аргументы, начиная с {@code notes}
+     * @return код выхода
+     */
+    static int run(String[] args) {
+        PrintWriter out = stdout();
+        try {
+            if (args[0].equals("help") || args.length < 2) {
+                out.print(USAGE);
+                return args[0].equals("help") ? EXIT_OK : EXIT_ERROR;
+            }
+            if (!SUBCOMMANDS.contains(args[1])) {
+                throw new UsageException("Неизвестная команда: " + args[1]);
+            }
+            Options options = Options.parse(args, 2);
+            String dir = options.value("dir");
+            if (dir != null) {
+                System.setProperty(Storage.STORAGE_DIR_PROPERTY, dir);
+            }
+            Storage storage = Storage.getInstance();
+            if (!storage.hasStorageDirectory()) {
+                throw new IllegalStateException("Папка хранения не выбрана: откройте приложение или укажите --dir");
+            }
+            if (storage.isLocked()) {
+                storage.unlock(passphrase());
+            }
+            if (args[1].equals("add")) {
+                storage.claimDirectories();
+            }
+            storage.loadIndexAsync().join();
+
+            return switch (args[1]) {
+                case "list" -> list(storage, options, out);
+                case "add" -> add(storage, options, out);
+                case "grep" -> grep(storage, options, out);
+                case "export" -> export(storage, options, out);
+                default -> stats(storage, out);
+            };
+        } catch (UsageException e) {
+            out.flush();
+            System.err.println("tsar: " + e.getMessage());
+            System.err.print(USAGE);
+            return EXIT_ERROR;
+        } catch (RuntimeException e) {
+            out.flush();
+            System.err.println("tsar: " + e.getMessage());
+            return EXIT_ERROR;
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Возвращает пароль зашифрованного календаря: из {@value #PASSPHRASE_ENV}
+     * или введённый в терминале без эха.
+     *
+     * @return пароль
+     * @throws IllegalStateException если пароль негде взять
+     */
+    private static char[] passphrase() {
+        String env = System.getenv(PASSPHRASE_ENV);
+        if (env != null) {
+            return env.toCharArray();
+        }
+        Console console = System.console();
+        char[] entered = console != null ? console.readPassword("Пароль календаря: ") : null;
+        if (entered == null) {
+            throw new IllegalStateException("Календарь зашифрован: задайте пароль в " + PASSPHRASE_ENV);
+        }
+        return entered;
+    }
+
+    /* ===== COMMANDS ===== */
+
+    private static int list(Storage storage, Options options, PrintWriter out) {
+        LocalDate[] range = range(options, true);
+        Set<String> tags = Set.copyOf(options.values("tag").stream().map(Note::normalizeTag).toList());
+        boolean json = options.flag("--json");
+        try (Stream<Note> notes = storage.streamNotes(range[0], range[1])) {
+            Iterator<Note> it = notes.filter(n -> n.getTags().containsAll(tags)).iterator();
+            for (int i = 1; it.hasNext() && !closed(out, i); i++) {
+                print(it.next(), json, out);
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private static int add(Storage storage, Options options, PrintWriter out) {
+        LocalDate date = LocalDate.parse(options.required("date"));
+        String title = options.required("title");
+        if (title.isBlank()) {
+            throw new UsageException("Заголовок не может быть пустым");
+        }
+        Note note = new Note("note-" + UUID.randomUUID(), date, title, options.value("content"), LocalDateTime.now());
+        String time = options.value("time");
+        if (time != null) {
+            note.setTime(LocalTime.parse(time));
+        }
+        note.setTags(options.values("tag"));
+        String repeat = options.value("repeat");
+        if (repeat != null) {
+            note.setRecurrence(Recurrence.parse(repeat));
+        }
+        String remind = options.value("remind");
+        if (remind != null) {
+            note.setReminderMinutes(Integer.parseInt(remind));
+        }
+        String calendar = options.value("calendar");
+        if (calendar != null) {
+            if (storage.getWorkspaces().stream().noneMatch(w -> w.getId().equals(calendar))) {
+                throw new IllegalArgumentException("Календарь не найден: " + calendar);
+            }
+            note.setCalendarId(calendar);
+        }
+
+        if (!storage.isDirectoryClaimed(note.getCalendarId())) {
+            out.println(addThroughApi(note));
+            return EXIT_OK;
+        }
+        storage.addNote(note);
+        if (!storage.flush()) {
+            throw new IllegalStateException("Заметка не сохранена: ошибка записи в папку календаря");
+        }
+        out.println(note.getId());
+        return EXIT_OK;
+    }
+
+    /**
+     * Добавляет заметку через локальный API открытого приложения.
+     *
+     * @param note новая заметка
+     * @return идентификатор, который дало заметке приложение
+     * @throws IllegalStateException если API не отвечает или отклонил заметку
+     */
+    private static String addThroughApi(Note note) {
+        byte[] body = Json.write(Json.note(note)).getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) URI.create(
+                    "http://127.0.0.1:" + ApiServer.DEFAULT_PORT + "/api/notes").toURL().openConnection();
+            connection.setConnectTimeout(API_TIMEOUT_MS);
+            connection.setReadTimeout(API_TIMEOUT_MS);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setDoOutput(true);
+            try (OutputStream request = connection.getOutputStream()) {
+                request.write(body);
+            }
+            int status = connection.getResponseCode();
+            InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            Object answer = Json.parse(new String(response.readAllBytes(), StandardCharsets.UTF_8));
+            if (status != 201 || !(answer instanceof Map<?, ?> map)) {
+                throw new IllegalStateException("Приложение не добавило заметку: " + answer);
+            }
+            return String.valueOf(map.get("id"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Календарь открыт в приложении, а его локальный API недоступен: "
+                    + "включите API в приложении или закройте его", e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static int grep(Storage storage, Options options, PrintWriter out) {
+        if (options.positional.isEmpty()) {
+            throw new UsageException("Не указан образец");
+        }
+        int flags = options.flag("-i") || options.flag("--ignore-case")
+                ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+                : 0;
+        Pattern pattern = Pattern.compile(options.positional.get(0), flags);
+        boolean json = options.flag("--json");
+
+        int found = 0;
+        try (Stream<Note> notes = notes(storage, options)) {
+            Iterator<Note> it = notes.iterator();
+            for (int i = 1; it.hasNext() && !closed(out, i); i++) {
+                Note note = it.next();
+                if (matches(note, pattern)) {
+                    print(note, json, out);
+                    found++;
+                }
+            }
+        }
+        return found > 0 ? EXIT_OK : EXIT_NO_MATCH;
+    }
+
+    private static boolean matches(Note note, Pattern pattern) {
+        if (note.getTitle() != null && pattern.matcher(note.getTitle()).find()) return true;
+        if (note.getContent() != null && pattern.matcher(note.getContent()).find()) return true;
+        return note.getTags().stream().anyMatch(tag -> pattern.matcher(tag).find());
+    }
+
+    private static int export(Storage storage, Options options, PrintWriter out) {
+        String format = options.value("format");
+        boolean array = "json".equals(format);
+        if (format != null && !array && !format.equals("jsonl")) {
+            throw new UsageException("Неизвестный формат: " + format);
+        }
+
+        if (array) out.print('[');
+        boolean first = true;
+        try (Stream<Note> notes = notes(storage, options)) {
+            Iterator<Note> it = notes.iterator();
+            for (int i = 1; it.hasNext() && !closed(out, i); i++) {
+                if (array && !first) out.print(',');
+                first = false;
+                out.print(Json.write(Json.note(it.next())));
+                if (!array) out.println();
+            }
+        }
+        if (array) out.println(']');
+        return EXIT_OK;
+    }
+
+    private static int stats(Storage storage, PrintWriter out) {
+        List<Note> notes = storage.getNotes();
+        Map<String, Integer> byCalendar = new HashMap<>();
+        Map<Integer, Integer> byYear = new TreeMap<>();
+        Map<String, Integer> byTag = new HashMap<>();
+        int series = 0;
+        LocalDate first = null;
+        LocalDate last = null;
+        for (Note note : notes) {
+            byCalendar.merge(note.getCalendarId(), 1, Integer::sum);
+            if (note.isRecurring()) series++;
+            for (String tag : note.getTags()) {
+                byTag.merge(tag, 1, Integer::sum);
+            }
+            LocalDate date = note.getDate();
+            if (date != null) {
+                byYear.merge(date.getYear(), 1, Integer::sum);
+                if (first == null || date.isBefore(first)) first = date;
+                if (last == null || date.isAfter(last)) last = date;
+            }
+        }
+
+        out.println("Заметок: " + notes.size() + " (серий: " + series + ")");
+        if (first != null) {
+            out.println("Период: " + first + " — " + last);
+        }
+        out.println("Календари:");
+        for (Workspace w : storage.getWorkspaces()) {
+            out.println("  " + w.getName() + " (" + w.getId() + ", " + storage.getBackendKind(w.getId()) + "): "
+                    + byCalendar.getOrDefault(w.getId(), 0));
+        }
+        if (!byYear.isEmpty()) {
+            out.println("По годам:");
+            byYear.forEach((year, count) -> out.println("  " + year + ": " + count));
+        }
+        if (!byTag.isEmpty()) {
+            out.println("Частые теги:");
+            byTag.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(TOP_TAGS)
+                    .forEach(e -> out.println("  " + e.getKey() + ": " + e.getValue()));
+        }
+        return EXIT_OK;
+    }
+
+    /* ===== HELPERS ===== */
+
+    /**
+     * Заметки диапазона с повторениями, а без диапазона — все записи по датам.
+     */
+    private static Stream<Note> notes(Storage storage, Options options) {
+        LocalDate[] range = range(options, false);
+        if (range != null) {
+            return storage.streamNotes(range[0], range[1]);
+        }
+        return storage.getNotes().stream()
+                .sorted(Comparator.comparing(Note::getDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(Note::getId));
+    }
+
+    /**
+     * Читает диапазон дат из {@code --month}, {@code --date} или {@code --from}/{@code --to}.
+     *
+     * @return начало и конец включительно или {@code null}, если диапазон не задан и не обязателен
+     */
+    private static LocalDate[] range(Options options, boolean required) {
+        LocalDate from;
+        LocalDate to;
+        if (options.value("month") != null) {
+            YearMonth month = YearMonth.parse(options.value("month"));
+            from = month.atDay(1);
+            to = month.atEndOfMonth();
+        } else if (options.value("date") != null) {
+            from = to = LocalDate.parse(options.value("date"));
+        } else if (options.value("from") != null || options.value("to") != null) {
+            from = LocalDate.parse(options.required("from"));
+            to = LocalDate.parse(options.required("to"));
+        } else if (required) {
+            throw new UsageException("Нужен --month, --date или --from и --to");
+        } else {
+            return null;
+        }
+        if (to.isBefore(from)) {
+            throw new UsageException("Конец диапазона раньше начала");
+        }
+        return new LocalDate[]{from, to};
+    }
+
+    private static void print(Note note, boolean json, PrintWriter out) {
+        if (json) {
+            out.println(Json.write(Json.note(note)));
+            return;
+        }
+        out.print(note.getDate());
+        out.print('\t');
+        out.print(note.getTime() != null ? note.getTime().toString() : "");
+        out.print('\t');
+        out.print(field(note.getTitle()));
+        out.print('\t');
+        out.print(field(String.join(",", note.getTags())));
+        out.print('\t');
+        out.println(note.getId());
+    }
+
+    /**
+     * Проверяет раз в {@value #CHECK_EVERY} строк, не закрыт ли вывод (например,
+     * {@code head} уже прочитал своё). {@link PrintWriter#checkError()} сбрасывает
+     * буфер, поэтому проверка на каждой строке свела бы буферизацию на нет.
+     */
+    private static boolean closed(PrintWriter out, int line) {
+        return line % CHECK_EVERY == 0 && out.checkError();
+    }
+
+    /** Убирает из поля табуляции и переводы строк, чтобы строка вывода оставалась одной записью. */
+    private static String field(String value) {
+        return value == null ? "" : value.replaceAll("[\\t\\r\\n]+", " ");
+    }
+
+    /**
+     * Буферизованный вывод в stdout в кодировке консоли.
+     */
+    private static PrintWriter stdout() {
+        Charset charset = Charset.forName(System.getProperty("stdout.encoding", Charset.defaultCharset().name()));
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), charset), 1 << 16));
+    }
+
+    /**
+     * Разобранные параметры: {@code --имя значение}, флаги и позиционные аргументы.
+     */
+    private static final class Options {
+
+        private final Map<String, List<String>> values = new LinkedHashMap<>();
+        private final List<String> flags = new ArrayList<>();
+        private final List<String> positional = new ArrayList<>();
+
+        private static Options parse(String[] args, int start) {
+            Options options = new Options();
+            for (int i = start; i < args.length; i++) {
+                String arg = args[i];
+                if (FLAGS.contains(arg)) {
+                    options.flags.add(arg);
+                } else if (arg.startsWith("--")) {
+                    if (i + 1 >= args.length) {
+                        throw new UsageException("Нет значения для " + arg);
+                    }
+                    options.values.computeIfAbsent(arg.substring(2), k -> new ArrayList<>()).add(args[++i]);
+                } else {
+                    options.positional.add(arg);
+                }
+            }
+            return options;
+        }
+
+        private boolean flag(String name) {
+            return flags.contains(name);
+        }
+
+        private String value(String name) {
+            List<String> list = values.get(name);
+            return list != null ? list.get(list.size() - 1) : null;
+        }
+
+        private List<String> values(String name) {
+            return values.getOrDefault(name, List.of());
+        }
+
+        private String required(String name) {
+            String value = value(name);
+            if (value == null) {
+                throw new UsageException("Нужен параметр --" + name);
+            }
+            return value;
+        }
+    }
+}
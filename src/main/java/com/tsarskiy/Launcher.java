@@ -0,0 +1,31 @@
+package com.tsarskiy;
+
+import javafx.application.Application;
+
+/**
+ * Точка входа {@code tsar.jar}.
+ * <p>
+ * Если первый аргумент — команда командной строки ({@code notes …}),
+ * запускается {@link Cli} без JavaFX: класс {@link Application} в этой ветке
+ * даже не загружается. Иначе запускается окно приложения {@link Main}.
+ * Сам класс не наследует {@link Application}, поэтому лаунчер Java
+ * не готовит JavaFX заранее.
+ */
+public final class Launcher {
+
+    private Launcher() {
+    }
+
+    /**
+     * Запускает командную строку или окно приложения.
+     *
+     * @param args аргументы командной строки
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && Cli.isCommand(args[0])) {
+            Cli.configureLogging();
+            System.exit(Cli.run(args));
+        }
+        Application.launch(Main.class, args);
+    }
+}
@@ -1,15 +1,25 @@
 package com.tsarskiy;
 
+import com.tsarskiy.service.ApiServer;
+import com.tsarskiy.service.ReminderService;
+import com.tsarskiy.service.SyncService;
 import com.tsarskiy.storage.Storage;
+import com.tsarskiy.view.AttachmentsView;
 import com.tsarskiy.view.CalendarView;
 import com.tsarskiy.view.OnboardingView;
+import com.tsarskiy.view.ReminderToast;
+import com.tsarskiy.view.Styles;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 
-import java.net.URL;
+import java.time.Clock;
 
 /**
  * Главный класс приложения «Царский заметник».
@@ -44,44 +54,89 @@ public class Main extends Application {
      */
     private double dragOffsetY;
 
+    /**
+     * Планировщик напоминаний, запускается после загрузки заметок.
+     */
+    private ReminderService reminders;
+
+    /** Служба синхронизации с другими установками. */
+    private SyncService sync;
+
+    /** Локальный API для скриптов. */
+    private ApiServer api;
+
+    /**
+     * Замер фаз запуска.
+     */
+    private final StartupTimer startupTimer = new StartupTimer();
+
     /**
      * Точка входа JavaFX-приложения.
      * <p>
      * Выполняет инициализацию окна и определяет,
      * какой экран необходимо показать при запуске.
+     * Заметки загружаются в фоновом потоке параллельно с построением
+     * интерфейса, поэтому окно показывается, не дожидаясь чтения файла.
      *
      * @param primaryStage главное окно JavaFX
      */
     @Override
     public void start(Stage primaryStage) {
+        startupTimer.mark("инициализация JavaFX");
         this.stage = primaryStage;
         this.storage = Storage.getInstance();
+        storage.claimDirectories();
+        AttachmentsView.setHostServices(getHostServices());
+        AttachmentsView.setRepository(storage);
 
         stage.initStyle(StageStyle.TRANSPARENT);
         stage.setTitle("Царский заметник");
         stage.setResizable(false);
 
-        if (storage.isOnboarded() && storage.hasStorageDirectory()) {
+        if (storage.isOnboarded() && storage.hasStorageDirectory() && !storage.isLocked()) {
+            storage.loadIndexAsync();
             showCalendar();
         } else {
             showOnboarding();
         }
+        startupTimer.mark("построение сцены");
 
+        trackFirstFrame(stage.getScene());
         stage.show();
         stage.centerOnScreen();
+        startupTimer.mark("показ окна");
+    }
+
+    /**
+     * Фиксирует время до первого кадра по первому импульсу отрисовки сцены.
+     *
+     * @param scene сцена, показываемая при запуске
+     */
+    private void trackFirstFrame(Scene scene) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            long millis = startupTimer.firstFrame();
+            if (StartupTimer.exitAfterFirstFrame()) {
+                System.out.println("first-frame-ms=" + millis);
+                Platform.runLater(Platform::exit);
+            }
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
     }
 
     /**
      * Отображает экран первоначальной настройки приложения.
      * <p>
-     * Используется при первом запуске или при отсутствии папки хранения.
+     * Используется при первом запуске, при отсутствии папки хранения
+     * и для ввода пароля зашифрованного календаря.
      */
     private void showOnboarding() {
         OnboardingView view = new OnboardingView(storage, this::showCalendar);
 
         Scene scene = new Scene(view.getView());
         scene.setFill(Color.TRANSPARENT);
-        applyStyles(scene);
+        Styles.apply(scene);
 
         stage.setScene(scene);
         stage.sizeToScene();
@@ -92,10 +147,26 @@ public class Main extends Application {
      */
     private void showCalendar() {
         CalendarView view = new CalendarView(storage);
+        startReminders();
+        if (sync == null) {
+            sync = new SyncService(storage);
+        }
+        view.setSyncService(sync);
+        if (api == null) {
+            api = new ApiServer(storage);
+        }
+        view.setApiServer(api);
 
         Scene scene = new Scene(view.getView());
         scene.setFill(Color.TRANSPARENT);
-        applyStyles(scene);
+        Styles.apply(scene);
+
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN), view::undo);
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN), view::redo);
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN), view::redo);
 
         enableWindowDrag(view.getHeader());
 
@@ -104,6 +175,35 @@ public class Main extends Application {
         stage.centerOnScreen();
     }
 
+    /**
+     * Запускает планировщик напоминаний после загрузки индекса заметок.
+     */
+    private void startReminders() {
+        if (reminders != null) {
+            return;
+        }
+        reminders = new ReminderService(storage, Clock.systemDefaultZone(),
+                r -> Platform.runLater(() -> new ReminderToast(r).show()));
+        storage.loadIndexAsync().thenRun(reminders::start);
+    }
+
+    /**
+     * Останавливает фоновые службы при выходе из приложения.
+     */
+    @Override
+    public void stop() {
+        if (reminders != null) {
+            reminders.stop();
+        }
+        if (sync != null) {
+            sync.stopServer();
+        }
+        if (api != null) {
+            api.stop();
+        }
+        storage.flush();
+    }
+
     /**
      * Включает возможность перетаскивания окна мышью
      * за указанный элемент интерфейса.
@@ -122,18 +222,6 @@ public class Main extends Application {
         });
     }
 
-    /**
-     * Применяет CSS-стили к сцене приложения.
-     *
-     * @param scene сцена, к которой применяются стили
-     */
-    private void applyStyles(Scene scene) {
-        URL css = getClass().getResource("/styles.css");
-        if (css != null) {
-            scene.getStylesheets().add(css.toExternalForm());
-        }
-    }
-
     /**
      * Точка входа в приложение.
      *
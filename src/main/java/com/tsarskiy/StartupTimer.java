@@ -0,0 +1,69 @@
+package com.tsarskiy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Замер фаз запуска приложения.
+ * <p>
+ * Фиксирует длительность каждой фазы и время до первого кадра,
+ * отсчитываемое от старта процесса JVM. Если задано системное свойство
+ * {@value #EXIT_PROPERTY}, приложение завершается сразу после первого кадра —
+ * так запуск можно замерять из скриптов.
+ */
+final class StartupTimer {
+
+    /** Целевое время до первого кадра, мс. */
+    static final long TARGET_FIRST_FRAME_MS = 800;
+
+    /** Системное свойство: завершить приложение после первого кадра. */
+    static final String EXIT_PROPERTY = "tsar.startup.exitAfterFirstFrame";
+
+    private static final Logger logger = LogManager.getLogger(StartupTimer.class);
+
+    /** Момент старта процесса. */
+    private final Instant processStart = ProcessHandle.current().info()
+            .startInstant()
+            .orElse(Instant.now());
+
+    /** Время завершения предыдущей фазы. */
+    private long phaseStart = System.nanoTime();
+
+    /**
+     * Отмечает завершение фазы запуска.
+     *
+     * @param phase название фазы
+     */
+    void mark(String phase) {
+        long now = System.nanoTime();
+        logger.info("Запуск: {} — {} мс", phase, (now - phaseStart) / 1_000_000);
+        phaseStart = now;
+    }
+
+    /**
+     * Фиксирует показ первого кадра.
+     *
+     * @return время от старта процесса до первого кадра, мс
+     */
+    long firstFrame() {
+        long millis = Duration.between(processStart, Instant.now()).toMillis();
+        if (millis > TARGET_FIRST_FRAME_MS) {
+            logger.warn("Первый кадр через {} мс (цель {} мс)", millis, TARGET_FIRST_FRAME_MS);
+        } else {
+            logger.info("Первый кадр через {} мс", millis);
+        }
+        return millis;
+    }
+
+    /**
+     * Проверяет, нужно ли завершить приложение после первого кадра.
+     *
+     * @return {@code true}, если задано свойство {@value #EXIT_PROPERTY}
+     */
+    static boolean exitAfterFirstFrame() {
+        return Boolean.getBoolean(EXIT_PROPERTY);
+    }
+}
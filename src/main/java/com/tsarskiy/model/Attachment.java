@@ -0,0 +1,109 @@
+package com.tsarskiy.model;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * Вложение заметки — ссылка на файл в хранилище вложений.
+ * <p>
+ * Сам файл не входит в {@code notes.dat}: он лежит в папке вложений
+ * под ключом SHA-256 своего содержимого, а заметка хранит только ключ,
+ * исходное имя файла, тип и размер. Одинаковые файлы хранятся один раз.
+ * <p>
+ * Объект неизменяем.
+ */
+public final class Attachment implements Serializable {
+
+    /**
+     * Идентификатор версии сериализации.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /** Ключ содержимого (SHA-256 в шестнадцатеричном виде). */
+    private final String hash;
+
+    /** Исходное имя файла. */
+    private final String name;
+
+    /** MIME-тип файла или {@code null}, если он не определён. */
+    private final String mimeType;
+
+    /** Размер файла в байтах. */
+    private final long size;
+
+    /**
+     * Создаёт вложение.
+     *
+     * @param hash     ключ содержимого
+     * @param name     исходное имя файла
+     * @param mimeType MIME-тип или {@code null}
+     * @param size     размер в байтах
+     */
+    public Attachment(String hash, String name, String mimeType, long size) {
+        this.hash = hash;
+        this.name = name;
+        this.mimeType = mimeType;
+        this.size = size;
+    }
+
+    /* ===== GETTERS ===== */
+
+    /**
+     * Возвращает ключ содержимого.
+     *
+     * @return ключ SHA-256
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Возвращает исходное имя файла.
+     *
+     * @return имя файла
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Возвращает MIME-тип файла.
+     *
+     * @return MIME-тип или {@code null}
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Возвращает размер файла.
+     *
+     * @return размер в байтах
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Проверяет, является ли вложение изображением, для которого
+     * можно построить миниатюру.
+     *
+     * @return {@code true} для PNG, JPEG, GIF и BMP
+     */
+    public boolean isImage() {
+        if (mimeType != null) {
+            return switch (mimeType) {
+                case "image/png", "image/jpeg", "image/gif", "image/bmp" -> true;
+                default -> false;
+            };
+        }
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg")
+                || lower.endsWith(".gif") || lower.endsWith(".bmp");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,37 @@
+package com.tsarskiy.model;
+
+/**
+ * Тип дня в производственном календаре.
+ */
+public enum DayType {
+    WORKDAY("Рабочий день", true),
+    SHORTENED("Сокращённый рабочий день", true),
+    WEEKEND("Выходной день", false),
+    HOLIDAY("Нерабочий праздничный день", false);
+
+    private final String title;
+    private final boolean working;
+
+    DayType(String title, boolean working) {
+        this.title = title;
+        this.working = working;
+    }
+
+    /**
+     * Возвращает название типа дня для интерфейса.
+     *
+     * @return название типа дня
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Проверяет, рабочий ли это день (в том числе сокращённый).
+     *
+     * @return {@code true} для рабочих дней
+     */
+    public boolean isWorking() {
+        return working;
+    }
+}
@@ -3,6 +3,14 @@ package com.tsarskiy.model;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * Класс {@code Note} представляет собой модель заметки календаря.
@@ -10,6 +18,10 @@ import java.time.LocalDateTime;
  * Заметка содержит уникальный идентификатор, дату,
  * заголовок, текст заметки и дату создания.
  * Используется для хранения и отображения пользовательских заметок.
+ * <p>
+ * Заметка с правилом {@link Recurrence} — исходная запись серии: в хранилище лежит
+ * только она, а экземпляры на конкретные даты создаются через
+ * {@link #occurrenceOn(LocalDate)} и имеют тот же идентификатор.
  */
 public class Note implements Serializable {
 
@@ -43,6 +55,68 @@ public class Note implements Serializable {
      */
     private LocalDateTime createdAt;
 
+    /**
+     * Время события в течение дня или {@code null}, если время не задано.
+     */
+    private LocalTime time;
+
+    /**
+     * За сколько минут до времени события напомнить,
+     * или {@code null}, если напоминание не нужно.
+     */
+    private Integer reminderMinutes;
+
+    /**
+     * Правило повторения или {@code null} для однократной заметки.
+     */
+    private Recurrence recurrence;
+
+    /**
+     * Вложения заметки или {@code null}, если их нет.
+     * Файлы вложений хранятся отдельно, здесь лежат только ссылки на них.
+     */
+    private List<Attachment> attachments;
+
+    /**
+     * Теги заметки в нижнем регистре или {@code null}, если тегов нет.
+     */
+    private List<String> tags;
+
+    /**
+     * Ключ текста в хранилище текстов календаря, если текст записан
+     * в файл отдельно от заметки, иначе {@code null}.
+     */
+    private String contentRef;
+
+    /**
+     * Версия последнего изменения (гибридные логические часы) для синхронизации.
+     */
+    private long version;
+
+    /**
+     * Установка, на которой сделано последнее изменение.
+     */
+    private String versionReplica;
+
+    /**
+     * Дата начала серии, если заметка — экземпляр повторяющейся заметки.
+     * Не сохраняется: экземпляры вычисляются при каждом запросе.
+     */
+    private transient LocalDate seriesStart;
+
+    /**
+     * Идентификатор календаря, из которого загружена заметка.
+     * Не сохраняется: календарь определяется файлом, в котором лежит заметка.
+     */
+    private transient String calendarId;
+
+    /**
+     * Порядковый номер заметки в календаре для битовых индексов тегов.
+     * Не сохраняется: календарь назначает его идентификатору один раз
+     * и не отдаёт другой заметке.
+     */
+    private transient int ordinal;
+
     /**
      * Конструктор по умолчанию.
      * Используется при создании новой заметки и при десериализации.
@@ -128,6 +202,220 @@ public class Note implements Serializable {
         return content;
     }
 
+    /**
+     * Возвращает время события.
+     *
+     * @return время или {@code null}
+     */
+    public LocalTime getTime() {
+        return time;
+    }
+
+    /**
+     * Возвращает смещение напоминания относительно времени события.
+     *
+     * @return число минут до события или {@code null}, если напоминание не нужно
+     */
+    public Integer getReminderMinutes() {
+        return reminderMinutes;
+    }
+
+    /**
+     * Проверяет, нужно ли напоминание по заметке.
+     *
+     * @return {@code true}, если заданы время и смещение напоминания
+     */
+    public boolean hasReminder() {
+        return time != null && reminderMinutes != null;
+    }
+
+    /**
+     * Возвращает правило повторения заметки.
+     *
+     * @return правило повторения или {@code null}
+     */
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+
+    /**
+     * Проверяет, является ли заметка повторяющейся.
+     *
+     * @return {@code true}, если задано правило повторения
+     */
+    public boolean isRecurring() {
+        return recurrence != null;
+    }
+
+    /**
+     * Проверяет, является ли заметка экземпляром серии на конкретную дату.
+     *
+     * @return {@code true} для экземпляра повторяющейся заметки
+     */
+    public boolean isOccurrence() {
+        return seriesStart != null;
+    }
+
+    /**
+     * Возвращает дату начала серии для экземпляра повторяющейся заметки.
+     *
+     * @return дата начала серии или {@code null}
+     */
+    public LocalDate getSeriesStart() {
+        return seriesStart;
+    }
+
+    /**
+     * Возвращает версию последнего изменения заметки.
+     *
+     * @return версия или {@code 0}, если заметка ещё не изменялась после включения версий
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Возвращает установку, на которой сделано последнее изменение.
+     *
+     * @return идентификатор установки или {@code null}
+     */
+    public String getVersionReplica() {
+        return versionReplica;
+    }
+
+    /**
+     * Возвращает идентификатор календаря заметки.
+     *
+     * @return идентификатор календаря или {@code null} для ещё не сохранённой заметки
+     */
+    public String getCalendarId() {
+        return calendarId;
+    }
+
+    /**
+     * Создаёт экземпляр повторяющейся заметки на указанную дату.
+     *
+     * @param occurrenceDate дата повторения
+     * @return копия заметки с датой повторения
+     */
+    public Note occurrenceOn(LocalDate occurrenceDate) {
+        Note copy = new Note(id, occurrenceDate, title, content, createdAt);
+        copy.time = time;
+        copy.reminderMinutes = reminderMinutes;
+        copy.attachments = attachments;
+        copy.tags = tags;
+        copy.version = version;
+        copy.versionReplica = versionReplica;
+        copy.recurrence = recurrence;
+        copy.seriesStart = date;
+        copy.calendarId = calendarId;
+        copy.ordinal = ordinal;
+        return copy;
+    }
+
+    /**
+     * Создаёт полную копию заметки, включая календарь и дату начала серии.
+     * Список вложений копируется, сами вложения и список тегов неизменяемы.
+     *
+     * @return копия заметки
+     */
+    public Note copy() {
+        Note copy = new Note(id, date, title, content, createdAt);
+        copy.time = time;
+        copy.reminderMinutes = reminderMinutes;
+        copy.recurrence = recurrence;
+        copy.attachments = attachments == null ? null : new ArrayList<>(attachments);
+        copy.tags = tags;
+        copy.contentRef = contentRef;
+        copy.version = version;
+        copy.versionReplica = versionReplica;
+        copy.seriesStart = seriesStart;
+        copy.calendarId = calendarId;
+        copy.ordinal = ordinal;
+        return copy;
+    }
+
+    /**
+     * Возвращает вложения заметки.
+     *
+     * @return неизменяемый список вложений, пустой, если вложений нет
+     */
+    public List<Attachment> getAttachments() {
+        return attachments == null ? List.of() : List.copyOf(attachments);
+    }
+
+    /**
+     * Возвращает теги заметки.
+     *
+     * @return неизменяемый список тегов, пустой, если тегов нет
+     */
+    public List<String> getTags() {
+        return tags == null ? List.of() : Collections.unmodifiableList(tags);
+    }
+
+    /**
+     * Проверяет, отмечена ли заметка тегом.
+     *
+     * @param tag тег в любом регистре
+     * @return {@code true}, если тег есть у заметки
+     */
+    public boolean hasTag(String tag) {
+        return tags != null && tags.contains(normalizeTag(tag));
+    }
+
+    /**
+     * Возвращает порядковый номер заметки в календаре.
+     *
+     * @return порядковый номер для битовых индексов
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Приводит тег к хранимому виду: без пробелов по краям и знака {@code #},
+     * в нижнем регистре.
+     *
+     * @param tag тег
+     * @return тег в хранимом виде, пустая строка для пустого тега
+     */
+    public static String normalizeTag(String tag) {
+        String t = tag == null ? "" : tag.strip();
+        while (t.startsWith("#")) {
+            t = t.substring(1).strip();
+        }
+        return t.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Возвращает ключ текста, если заметка прочитана из файла без текста.
+     *
+     * @return ключ текста в хранилище текстов или {@code null}
+     */
+    public String getContentRef() {
+        return contentRef;
+    }
+
+    /**
+     * Создаёт копию заметки для записи в файл: текст заменён ключом,
+     * по которому он лежит в хранилище текстов календаря.
+     *
+     * @param ref ключ текста
+     * @return копия заметки без текста
+     */
+    public Note toStored(String ref) {
+        Note copy = new Note(id, date, title, null, createdAt);
+        copy.contentRef = ref;
+        copy.attachments = attachments;
+        copy.tags = tags;
+        copy.time = time;
+        copy.reminderMinutes = reminderMinutes;
+        copy.recurrence = recurrence;
+        copy.version = version;
+        copy.versionReplica = versionReplica;
+        return copy;
+    }
+
     /* ===== SETTERS ===== */
 
     /**
@@ -164,6 +452,7 @@ public class Note implements Serializable {
      */
     public void setContent(String content) {
         this.content = content;
+        this.contentRef = null;
     }
 
     /**
@@ -175,6 +464,92 @@ public class Note implements Serializable {
         this.createdAt = createdAt;
     }
 
+    /**
+     * Устанавливает вложения заметки.
+     *
+     * @param attachments вложения; пустой список или {@code null} — без вложений
+     */
+    public void setAttachments(List<Attachment> attachments) {
+        this.attachments = attachments == null || attachments.isEmpty()
+                ? null
+                : new ArrayList<>(attachments);
+    }
+
+    /**
+     * Устанавливает теги заметки. Теги приводятся к хранимому виду,
+     * пустые и повторяющиеся отбрасываются, порядок сохраняется.
+     *
+     * @param tags теги; пустой список или {@code null} — без тегов
+     */
+    public void setTags(Collection<String> tags) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (tags != null) {
+            for (String tag : tags) {
+                String t = normalizeTag(tag);
+                if (!t.isEmpty()) {
+                    normalized.add(t);
+                }
+            }
+        }
+        this.tags = normalized.isEmpty() ? null : new ArrayList<>(normalized);
+    }
+
+    /**
+     * Устанавливает порядковый номер заметки в календаре.
+     *
+     * @param ordinal порядковый номер
+     */
+    public void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Устанавливает время события.
+     *
+     * @param time время или {@code null}
+     */
+    public void setTime(LocalTime time) {
+        this.time = time;
+    }
+
+    /**
+     * Устанавливает смещение напоминания относительно времени события.
+     *
+     * @param reminderMinutes число минут до события или {@code null}
+     */
+    public void setReminderMinutes(Integer reminderMinutes) {
+        this.reminderMinutes = reminderMinutes;
+    }
+
+    /**
+     * Устанавливает версию последнего изменения заметки.
+     *
+     * @param version        версия
+     * @param versionReplica установка, на которой сделано изменение
+     */
+    public void setVersion(long version, String versionReplica) {
+        this.version = version;
+        this.versionReplica = versionReplica;
+    }
+
+    /**
+     * Устанавливает календарь заметки.
+     *
+     * @param calendarId идентификатор календаря
+     */
+    public void setCalendarId(String calendarId) {
+        this.calendarId = calendarId;
+    }
+
+    /**
+     * Устанавливает правило повторения заметки.
+     *
+     * @param recurrence правило повторения или {@code null}
+     */
+    public void setRecurrence(Recurrence recurrence) {
+        this.recurrence = recurrence;
+    }
+
     /**
      * Возвращает строковое представление заметки.
      * Если заголовок отсутствует, возвращается текст заметки.
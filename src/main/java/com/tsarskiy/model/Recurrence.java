@@ -0,0 +1,397 @@
+package com.tsarskiy.model;
+
+import java.io.Serializable;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Правило повторения заметки — подмножество RRULE из RFC 5545.
+ * <p>
+ * Поддерживаются частоты {@code DAILY}, {@code WEEKLY}, {@code MONTHLY} и {@code YEARLY}
+ * с интервалом, ограничением по дате ({@code UNTIL}) или по числу повторений
+ * ({@code COUNT}), а также исключённые даты ({@code EXDATE}).
+ * <p>
+ * Правило хранится только в исходной заметке серии; конкретные даты
+ * вычисляются по запросу для нужного диапазона. Если день месяца отсутствует
+ * в целевом месяце (31-е число, 29 февраля), повторение переносится
+ * на последний день месяца. Исключённые даты не уменьшают {@code COUNT}.
+ * Даты за пределами {@link LocalDate#MAX} считаются концом серии, поэтому
+ * правило с огромными {@code COUNT} или {@code INTERVAL}, пришедшее
+ * из синхронизации, не ломает выборки.
+ * <p>
+ * Объект неизменяем: изменение исключений возвращает новое правило.
+ */
+public final class Recurrence implements Serializable {
+
+    /**
+     * Идентификатор версии сериализации.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /** Наибольшее число повторений, принимаемое при разборе правила. */
+    public static final int MAX_COUNT = 100_000;
+
+    /** Наибольший интервал, принимаемый при разборе правила. */
+    public static final int MAX_INTERVAL = 1_000;
+
+    /**
+     * Частота повторения.
+     */
+    public enum Frequency {
+        DAILY("Ежедневно"),
+        WEEKLY("Еженедельно"),
+        MONTHLY("Ежемесячно"),
+        YEARLY("Ежегодно");
+
+        private final String title;
+
+        Frequency(String title) {
+            this.title = title;
+        }
+
+        /**
+         * Возвращает название частоты для интерфейса.
+         *
+         * @return название частоты
+         */
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    /** Частота повторения. */
+    private final Frequency frequency;
+
+    /** Интервал между повторениями в единицах частоты. */
+    private final int interval;
+
+    /** Последняя допустимая дата повторения или {@code null}. */
+    private final LocalDate until;
+
+    /** Максимальное число повторений или {@code 0}, если число не ограничено. */
+    private final int count;
+
+    /** Даты, на которые повторение отменено. */
+    private final Set<LocalDate> exceptions;
+
+    /**
+     * Создаёт правило повторения.
+     *
+     * @param frequency  частота повторения
+     * @param interval   интервал между повторениями, не меньше 1
+     * @param until      последняя допустимая дата или {@code null}
+     * @param count      максимальное число повторений или {@code 0}
+     * @param exceptions исключённые даты
+     * @throws IllegalArgumentException если частота не задана или интервал либо число
+     *                                  повторений некорректны
+     */
+    public Recurrence(Frequency frequency,
+                      int interval,
+                      LocalDate until,
+                      int count,
+                      Set<LocalDate> exceptions) {
+        if (frequency == null) {
+            throw new IllegalArgumentException("Частота повторения не задана");
+        }
+        if (interval < 1 || count < 0) {
+            throw new IllegalArgumentException("Некорректный интервал или число повторений");
+        }
+        this.frequency = frequency;
+        this.interval = interval;
+        this.until = until;
+        this.count = count;
+        this.exceptions = new HashSet<>(exceptions);
+    }
+
+    /**
+     * Создаёт правило без ограничений и исключений.
+     *
+     * @param frequency частота повторения
+     * @return правило повторения
+     */
+    public static Recurrence of(Frequency frequency) {
+        return new Recurrence(frequency, 1, null, 0, Set.of());
+    }
+
+    /* ===== GETTERS ===== */
+
+    /**
+     * Возвращает частоту повторения.
+     *
+     * @return частота
+     */
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Возвращает интервал между повторениями.
+     *
+     * @return интервал в единицах частоты
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Возвращает последнюю допустимую дату повторения.
+     *
+     * @return дата или {@code null}, если ограничения нет
+     */
+    public LocalDate getUntil() {
+        return until;
+    }
+
+    /**
+     * Возвращает максимальное число повторений.
+     *
+     * @return число повторений или {@code 0}, если оно не ограничено
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Возвращает исключённые даты.
+     *
+     * @return неизменяемое множество дат
+     */
+    public Set<LocalDate> getExceptions() {
+        return Collections.unmodifiableSet(exceptions);
+    }
+
+    /**
+     * Возвращает правило с дополнительной исключённой датой.
+     *
+     * @param date дата, на которую повторение отменяется
+     * @return новое правило
+     */
+    public Recurrence withException(LocalDate date) {
+        Set<LocalDate> updated = new HashSet<>(exceptions);
+        updated.add(date);
+        return new Recurrence(frequency, interval, until, count, updated);
+    }
+
+    /* ===== OCCURRENCES ===== */
+
+    /**
+     * Возвращает дату повторения с указанным номером без учёта ограничений.
+     *
+     * @param start дата начала серии
+     * @param index номер повторения, начиная с 0
+     * @return дата повторения или {@code null}, если она позже {@link LocalDate#MAX}
+     */
+    private LocalDate nth(LocalDate start, long index) {
+        long step = index * interval;
+        try {
+            return switch (frequency) {
+                case DAILY -> start.plusDays(step);
+                case WEEKLY -> start.plusWeeks(step);
+                case MONTHLY -> start.plusMonths(step);
+                case YEARLY -> start.plusYears(step);
+            };
+        } catch (DateTimeException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Оценивает номер первого повторения, не раньше указанной даты.
+     * Оценка может быть меньше точной — лишние даты отбрасываются при обходе.
+     *
+     * @param start дата начала серии
+     * @param from  начало диапазона
+     * @return номер повторения, с которого начинается обход
+     */
+    private long firstIndexFrom(LocalDate start, LocalDate from) {
+        if (!from.isAfter(start)) {
+            return 0;
+        }
+        ChronoUnit unit = switch (frequency) {
+            case DAILY -> ChronoUnit.DAYS;
+            case WEEKLY -> ChronoUnit.WEEKS;
+            case MONTHLY -> ChronoUnit.MONTHS;
+            case YEARLY -> ChronoUnit.YEARS;
+        };
+        return Math.max(0, unit.between(start, from) / interval - 1);
+    }
+
+    /**
+     * Возвращает верхнюю границу дат серии.
+     *
+     * @param start дата начала серии
+     * @return последняя возможная дата повторения или {@link LocalDate#MAX},
+     *         если серия бесконечна
+     */
+    public LocalDate lastPossibleDate(LocalDate start) {
+        LocalDate end = until != null ? until : LocalDate.MAX;
+        if (count > 0) {
+            LocalDate last = nth(start, count - 1L);
+            if (last != null && last.isBefore(end)) {
+                end = last;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Вычисляет даты повторений в диапазоне.
+     *
+     * @param start дата начала серии
+     * @param from  начало диапазона включительно
+     * @param to    конец диапазона включительно
+     * @return даты повторений по возрастанию
+     */
+    public List<LocalDate> occurrencesBetween(LocalDate start, LocalDate from, LocalDate to) {
+        List<LocalDate> result = new ArrayList<>();
+        LocalDate end = lastPossibleDate(start);
+        if (end.isBefore(to)) {
+            to = end;
+        }
+
+        for (long i = firstIndexFrom(start, from); count == 0 || i < count; i++) {
+            LocalDate date = nth(start, i);
+            if (date == null || date.isAfter(to)) {
+                break;
+            }
+            if (!date.isBefore(from) && !exceptions.contains(date)) {
+                result.add(date);
+            }
+        }
+        return result;
+    }
+
+    /* ===== RRULE ===== */
+
+    /**
+     * Разбирает правило в формате RRULE, например
+     * {@code FREQ=WEEKLY;INTERVAL=2;COUNT=10} или {@code FREQ=YEARLY;UNTIL=20301231}.
+     *
+     * @param rule строка правила
+     * @return правило повторения
+     * @throws IllegalArgumentException если правило некорректно или не поддерживается,
+     *                                  в том числе если {@code COUNT} больше {@value #MAX_COUNT}
+     *                                  или {@code INTERVAL} больше {@value #MAX_INTERVAL}
+     */
+    public static Recurrence parse(String rule) {
+        Frequency frequency = null;
+        int interval = 1;
+        LocalDate until = null;
+        int count = 0;
+        Set<LocalDate> exceptions = new HashSet<>();
+
+        String body = rule.trim();
+        if (body.regionMatches(true, 0, "RRULE:", 0, 6)) {
+            body = body.substring(6);
+        }
+
+        try {
+            for (String part : body.split(";")) {
+                if (part.isBlank()) {
+                    continue;
+                }
+                String[] kv = part.split("=", 2);
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("Некорректная часть правила: " + part);
+                }
+                String value = kv[1].trim();
+                switch (kv[0].trim().toUpperCase(Locale.ROOT)) {
+                    case "FREQ" -> frequency = parseFrequency(value);
+                    case "INTERVAL" -> interval = Integer.parseInt(value);
+                    case "COUNT" -> count = Integer.parseInt(value);
+                    case "UNTIL" -> until = parseDate(value);
+                    case "EXDATE" -> {
+                        for (String date : value.split(",")) {
+                            exceptions.add(parseDate(date.trim()));
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Неподдерживаемая часть правила: " + part);
+                }
+            }
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new IllegalArgumentException("Некорректное правило повторения: " + rule, e);
+        }
+        if (count > MAX_COUNT || interval > MAX_INTERVAL) {
+            throw new IllegalArgumentException("Слишком большое число повторений или интервал: " + rule);
+        }
+
+        return new Recurrence(frequency, interval, until, count, exceptions);
+    }
+
+    /**
+     * Разбирает частоту повторения.
+     *
+     * @param value значение {@code FREQ}
+     * @return частота
+     * @throws IllegalArgumentException если частота не поддерживается
+     */
+    private static Frequency parseFrequency(String value) {
+        for (Frequency f : Frequency.values()) {
+            if (f.name().equalsIgnoreCase(value)) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("Неподдерживаемая частота повторения: " + value);
+    }
+
+    /**
+     * Разбирает дату в формате {@code yyyyMMdd} или {@code yyyy-MM-dd}.
+     *
+     * @param value строка даты
+     * @return дата
+     */
+    private static LocalDate parseDate(String value) {
+        String digits = value.length() > 8 && value.charAt(8) == 'T' ? value.substring(0, 8) : value;
+        if (digits.length() == 8 && digits.chars().allMatch(Character::isDigit)) {
+            return LocalDate.of(
+                    Integer.parseInt(digits.substring(0, 4)),
+                    Integer.parseInt(digits.substring(4, 6)),
+                    Integer.parseInt(digits.substring(6, 8)));
+        }
+        return LocalDate.parse(value);
+    }
+
+    /**
+     * Возвращает правило в формате RRULE.
+     *
+     * @return строка правила
+     */
+    public String toRule() {
+        StringBuilder sb = new StringBuilder("FREQ=").append(frequency);
+        if (interval > 1) sb.append(";INTERVAL=").append(interval);
+        if (count > 0) sb.append(";COUNT=").append(count);
+        if (until != null) sb.append(";UNTIL=").append(until.toString().replace("-", ""));
+        if (!exceptions.isEmpty()) {
+            sb.append(";EXDATE=");
+            exceptions.stream().sorted()
+                    .forEach(d -> sb.append(d.toString().replace("-", "")).append(','));
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Возвращает описание правила для интерфейса, например «Еженедельно, 10 раз».
+     *
+     * @return описание правила
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder(frequency.getTitle());
+        if (interval > 1) sb.append(" (каждый ").append(interval).append("-й раз)");
+        if (count > 0) sb.append(", ").append(count).append(" раз");
+        if (until != null) sb.append(", до ").append(until);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toRule();
+    }
+}
@@ -0,0 +1,204 @@
+package com.tsarskiy.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Производственный календарь одного года.
+ * <p>
+ * Хранит тип каждого дня года в массиве {@code byte} (по одному байту на день)
+ * и номер названия дня во втором массиве; различные названия лежат в таблице
+ * один раз. Так год занимает около 750 байт вместо карты дат.
+ * Для расчётов в рабочих днях хранятся префиксные суммы рабочих дней,
+ * поэтому число рабочих дней до даты находится за O(1), а рабочий день
+ * с заданным номером — двоичным поиском.
+ * Дни без записей в календаре — рабочие с понедельника по пятницу
+ * и выходные в субботу и воскресенье.
+ * <p>
+ * Объект неизменяем после построения; строится через {@link Builder}.
+ */
+public final class YearCalendar {
+
+    private static final DayType[] TYPES = DayType.values();
+
+    /** Год календаря. */
+    private final int year;
+
+    /** Тип дня по номеру дня в году (с нуля). */
+    private final byte[] types;
+
+    /** Номер названия дня в {@link #names} плюс один; ноль — без названия. */
+    private final byte[] nameIds;
+
+    /** Различные названия дней. */
+    private final String[] names;
+
+    /** Число рабочих дней среди первых {@code i} дней года; длина — дней в году плюс один. */
+    private final short[] workingPrefix;
+
+    private YearCalendar(int year, byte[] types, byte[] nameIds, String[] names) {
+        this.year = year;
+        this.types = types;
+        this.nameIds = nameIds;
+        this.names = names;
+        this.workingPrefix = new short[types.length + 1];
+        for (int i = 0; i < types.length; i++) {
+            workingPrefix[i + 1] = (short) (workingPrefix[i] + (TYPES[types[i]].isWorking() ? 1 : 0));
+        }
+    }
+
+    /**
+     * Возвращает год календаря.
+     *
+     * @return год
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Возвращает тип дня.
+     *
+     * @param date дата этого года
+     * @return тип дня
+     * @throws IllegalArgumentException если дата относится к другому году
+     */
+    public DayType getType(LocalDate date) {
+        return TYPES[types[index(date)]];
+    }
+
+    /**
+     * Возвращает название дня: праздника, переноса или сокращённого дня.
+     *
+     * @param date дата этого года
+     * @return название или {@code null}, если день обычный
+     * @throws IllegalArgumentException если дата относится к другому году
+     */
+    public String getName(LocalDate date) {
+        int id = nameIds[index(date)];
+        return id == 0 ? null : names[id - 1];
+    }
+
+    /**
+     * Возвращает число рабочих дней в году, включая сокращённые.
+     *
+     * @return рабочих дней в году
+     */
+    public int getWorkingDays() {
+        return workingPrefix[types.length];
+    }
+
+    /**
+     * Возвращает число рабочих дней года, предшествующих дате.
+     *
+     * @param date дата этого года
+     * @return рабочих дней с 1 января до даты, не считая её
+     * @throws IllegalArgumentException если дата относится к другому году
+     */
+    public int getWorkingDaysBefore(LocalDate date) {
+        return workingPrefix[index(date)];
+    }
+
+    /**
+     * Возвращает рабочий день года по его номеру.
+     *
+     * @param number номер рабочего дня с единицы
+     * @return дата рабочего дня
+     * @throws IllegalArgumentException если в году нет рабочего дня с таким номером
+     */
+    public LocalDate getWorkingDay(int number) {
+        if (number < 1 || number > getWorkingDays()) {
+            throw new IllegalArgumentException("В " + year + " году нет рабочего дня №" + number);
+        }
+        int lo = 1;
+        int hi = types.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (workingPrefix[mid] < number) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return LocalDate.ofYearDay(year, lo);
+    }
+
+    private int index(LocalDate date) {
+        if (date.getYear() != year) {
+            throw new IllegalArgumentException("Дата " + date + " не относится к " + year + " году");
+        }
+        return date.getDayOfYear() - 1;
+    }
+
+    /**
+     * Построитель производственного календаря.
+     */
+    public static final class Builder {
+
+        private final int year;
+        private final byte[] types;
+        private final byte[] nameIds;
+        private final List<String> names = new ArrayList<>();
+
+        /**
+         * Создаёт построитель с обычными рабочими и выходными днями.
+         *
+         * @param year год
+         */
+        public Builder(int year) {
+            this.year = year;
+            int length = LocalDate.of(year, 12, 31).getDayOfYear();
+            this.types = new byte[length];
+            this.nameIds = new byte[length];
+            LocalDate day = LocalDate.of(year, 1, 1);
+            for (int i = 0; i < length; i++, day = day.plusDays(1)) {
+                DayOfWeek dow = day.getDayOfWeek();
+                types[i] = (byte) (dow == DayOfWeek.SATURDAY || dow == DayOfWeek.SUNDAY
+                        ? DayType.WEEKEND : DayType.WORKDAY).ordinal();
+            }
+        }
+
+        /**
+         * Задаёт тип и название дня.
+         *
+         * @param date дата этого года
+         * @param type тип дня
+         * @param name название или {@code null}
+         * @return этот построитель
+         * @throws IllegalArgumentException если дата относится к другому году
+         *                                  или различных названий слишком много
+         */
+        public Builder set(LocalDate date, DayType type, String name) {
+            if (date.getYear() != year) {
+                throw new IllegalArgumentException("Дата " + date + " не относится к " + year + " году");
+            }
+            int i = date.getDayOfYear() - 1;
+            types[i] = (byte) type.ordinal();
+            if (name == null || name.isBlank()) {
+                nameIds[i] = 0;
+                return this;
+            }
+            int id = names.indexOf(name);
+            if (id < 0) {
+                if (names.size() == Byte.MAX_VALUE) {
+                    throw new IllegalArgumentException("Слишком много различных названий дней");
+                }
+                names.add(name);
+                id = names.size() - 1;
+            }
+            nameIds[i] = (byte) (id + 1);
+            return this;
+        }
+
+        /**
+         * Возвращает построенный календарь.
+         *
+         * @return календарь года
+         */
+        public YearCalendar build() {
+            return new YearCalendar(year, types.clone(), nameIds.clone(), names.toArray(new String[0]));
+        }
+    }
+}
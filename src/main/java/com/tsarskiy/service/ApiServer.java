@@ -0,0 +1,568 @@
+package com.tsarskiy.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tsarskiy.model.Note;
+import com.tsarskiy.model.Recurrence;
+import com.tsarskiy.storage.CalendarRepository;
+import com.tsarskiy.storage.NoteRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Локальный HTTP/JSON API для скриптов и других программ на этом компьютере.
+ * <p>
+ * Сервер слушает только loopback-адрес, каждый запрос обрабатывается
+ * в виртуальном потоке. Запросы с заголовком {@code Origin} отклоняются,
+ * чтобы страницы в браузере не могли менять заметки, а запросы с заголовком
+ * {@code Host}, отличным от {@code 127.0.0.1:порт} и {@code localhost:порт}, —
+ * чтобы их нельзя было прислать через чужое доменное имя, перенаправленное
+ * на этот компьютер (DNS rebinding). Тело запроса ограничено
+ * {@value #MAX_BODY_BYTES} байтами. Ресурсы:
+ * <ul>
+ *     <li>{@code GET /api/notes?from=…&to=…}, {@code ?month=ГГГГ-ММ} или {@code ?date=…} —
+ *     заметки диапазона не длиннее {@value #MAX_RANGE_DAYS} дн. с повторениями серий,
+ *     потоком в порядке дат;</li>
+ *     <li>{@code GET /api/notes/{id}} — заметка;</li>
+ *     <li>{@code POST /api/notes} — новая заметка или массив заметок;</li>
+ *     <li>{@code PUT /api/notes/{id}} — изменение переданных полей;</li>
+ *     <li>{@code DELETE /api/notes/{id}} — удаление заметки со всей серией;</li>
+ *     <li>{@code GET /api/search?q=…&limit=…} — поиск по заголовку, тексту и тегам.</li>
+ * </ul>
+ * Поле {@code calendarId} должно называть подключённый календарь, иначе
+ * запрос отклоняется с кодом 400; без него заметка попадает в основной
+ * календарь. Перенос заметки в другой календарь через {@code PUT} не поддерживается.
+ * Новые заметки копятся в очереди, и один поток записи добавляет всё
+ * накопленное одним вызовом {@link NoteRepository#addNotes(List)}: индексы
+ * перестраиваются один раз на пачку, а на диск изменения попадают общим
+ * отложенным сохранением хранилища. Подписчики хранилища, в том числе
+ * открытый календарь, узнают об изменениях как о любых других.
+ */
+public class ApiServer {
+
+    private static final Logger logger = LogManager.getLogger(ApiServer.class);
+
+    /** Порт API по умолчанию. */
+    public static final int DEFAULT_PORT = 47322;
+
+    /** Наибольшее число заметок в одной пачке записи. */
+    private static final int MAX_BATCH = 512;
+
+    /** Сколько запрос ждёт записи своей пачки. */
+    private static final long WRITE_TIMEOUT_SECONDS = 30;
+
+    /** Число результатов поиска по умолчанию. */
+    private static final int DEFAULT_LIMIT = 100;
+
+    /** Наибольший размер тела запроса. */
+    private static final int MAX_BODY_BYTES = 16 << 20;
+
+    /**
+     * Наибольшая длина диапазона выборки в днях — сто лет. Выборка идёт
+     * порциями по датам, и диапазон до {@link LocalDate#MAX} обходил бы
+     * пустые порции практически бесконечно.
+     */
+    private static final int MAX_RANGE_DAYS = 36_525;
+
+    /** Настройка встроенного HTTP-сервера JDK, включающая TCP_NODELAY. */
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    /**
+     * Ошибка запроса с HTTP-кодом ответа.
+     */
+    private static final class ApiException extends RuntimeException {
+
+        /**
+         * Идентификатор версии сериализации.
+         */
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Заметка, ожидающая записи, и результат для запроса.
+     */
+    private record PendingWrite(Note note, CompletableFuture<Note> done) {
+    }
+
+    /** Метка конца очереди: поток записи дописывает накопленное и завершается. */
+    private static final PendingWrite STOP = new PendingWrite(null, null);
+
+    private final CalendarRepository storage;
+
+    /** Сервер или {@code null}, если он не запущен. */
+    private HttpServer server;
+
+    /** Исполнитель запросов: виртуальный поток на запрос. */
+    private ExecutorService executor;
+
+    /** Очередь новых заметок для пачечной записи. */
+    private final LinkedBlockingQueue<PendingWrite> writes = new LinkedBlockingQueue<>();
+
+    /** Поток пачечной записи или {@code null}. */
+    private Thread writer;
+
+    /**
+     * Создаёт API-сервер.
+     *
+     * @param storage хранилище заметок
+     */
+    public ApiServer(CalendarRepository storage) {
+        this.storage = storage;
+    }
+
+    /* ===== LIFECYCLE ===== */
+
+    /**
+     * Запускает сервер на loopback-адресе.
+     *
+     * @param port порт; {@code 0} — любой свободный
+     * @throws UncheckedIOException если порт занят
+     */
+    public synchronized void start(int port) {
+        if (server != null) {
+            return;
+        }
+        // Без TCP_NODELAY ответ из заголовков и тела ждёт отложенного ACK клиента (~40 мс на запрос).
+        // Настройка читается встроенным сервером один раз — при первом создании.
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть порт " + port, e);
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/notes", this::notes);
+        server.createContext("/api/search", this::search);
+        writer = Thread.ofVirtual().name("api-writer").start(this::drainWrites);
+        server.start();
+        logger.info("Локальный API запущен на порту {}", getPort());
+    }
+
+    /**
+     * Останавливает сервер. Уже принятые заметки записываются: после
+     * завершения запросов в очередь ставится метка конца, и поток записи
+     * выходит, дописав всё до неё.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.close();
+        writes.add(STOP);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(WRITE_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+        executor = null;
+        writer = null;
+        logger.info("Локальный API остановлен");
+    }
+
+    /**
+     * Проверяет, запущен ли сервер.
+     *
+     * @return {@code true}, если сервер принимает запросы
+     */
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * Возвращает порт запущенного сервера.
+     *
+     * @return порт или {@code -1}, если сервер не запущен
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    /* ===== HANDLERS ===== */
+
+    /**
+     * Обрабатывает {@code /api/notes} и {@code /api/notes/{id}}.
+     */
+    private void notes(HttpExchange exchange) {
+        handle(exchange, () -> {
+            String path = exchange.getRequestURI().getPath();
+            String id = path.length() > "/api/notes/".length()
+                    ? URLDecoder.decode(path.substring("/api/notes/".length()), StandardCharsets.UTF_8)
+                    : null;
+            String method = exchange.getRequestMethod();
+            if (id == null) {
+                switch (method) {
+                    case "GET" -> list(exchange);
+                    case "POST" -> create(exchange);
+                    default -> throw new ApiException(405, "Метод не поддерживается: " + method);
+                }
+            } else {
+                switch (method) {
+                    case "GET" -> respond(exchange, 200, Json.note(find(id)));
+                    case "PUT" -> respond(exchange, 200, Json.note(update(find(id), body(exchange))));
+                    case "DELETE" -> {
+                        storage.deleteSeries(find(id));
+                        respond(exchange, 200, Map.of("deleted", id));
+                    }
+                    default -> throw new ApiException(405, "Метод не поддерживается: " + method);
+                }
+            }
+        });
+    }
+
+    /**
+     * Отдаёт заметки диапазона потоком: ответ пишется по мере чтения порций индекса.
+     */
+    private void list(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        LocalDate from;
+        LocalDate to;
+        if (query.containsKey("month")) {
+            YearMonth month = YearMonth.parse(query.get("month"));
+            from = month.atDay(1);
+            to = month.atEndOfMonth();
+        } else if (query.containsKey("date")) {
+            from = to = LocalDate.parse(query.get("date"));
+        } else if (query.containsKey("from") && query.containsKey("to")) {
+            from = LocalDate.parse(query.get("from"));
+            to = LocalDate.parse(query.get("to"));
+        } else {
+            throw new ApiException(400, "Нужен параметр month, date или from и to");
+        }
+        if (to.isBefore(from)) {
+            throw new ApiException(400, "Конец диапазона раньше начала");
+        }
+        if (to.toEpochDay() - from.toEpochDay() >= MAX_RANGE_DAYS) {
+            throw new ApiException(400, "Диапазон длиннее " + MAX_RANGE_DAYS + " дн.");
+        }
+
+        Iterator<Note> notes = storage.streamNotes(from, to).iterator();
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            out.write('[');
+            boolean first = true;
+            while (notes.hasNext()) {
+                if (!first) out.write(',');
+                first = false;
+                out.write(Json.write(Json.note(notes.next())));
+            }
+            out.write(']');
+        }
+    }
+
+    /**
+     * Добавляет заметку или массив заметок через очередь пачечной записи.
+     */
+    private void create(HttpExchange exchange) throws IOException {
+        Object body = Json.parse(readBody(exchange));
+        List<Map<String, Object>> items = new ArrayList<>();
+        if (body instanceof List<?> list) {
+            for (Object item : list) {
+                items.add(asObject(item));
+            }
+        } else {
+            items.add(asObject(body));
+        }
+
+        List<PendingWrite> pending = new ArrayList<>(items.size());
+        for (Map<String, Object> item : items) {
+            Note note = new Note();
+            note.setId("note-" + UUID.randomUUID());
+            note.setCreatedAt(LocalDateTime.now());
+            note.setCalendarId(calendarId(item));
+            apply(note, item);
+            if (note.getDate() == null || note.getTitle() == null || note.getTitle().isBlank()) {
+                throw new ApiException(400, "Нужны поля date и title");
+            }
+            pending.add(new PendingWrite(note, new CompletableFuture<>()));
+        }
+        writes.addAll(pending);
+
+        List<Object> created = new ArrayList<>(pending.size());
+        for (PendingWrite write : pending) {
+            created.add(Json.note(await(write.done())));
+        }
+        respond(exchange, 201, body instanceof List<?> ? created : created.get(0));
+    }
+
+    /**
+     * Ищет заметки по подстроке в заголовке, тексте и тегах.
+     */
+    private void search(HttpExchange exchange) {
+        handle(exchange, () -> {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                throw new ApiException(405, "Метод не поддерживается: " + exchange.getRequestMethod());
+            }
+            Map<String, String> query = query(exchange);
+            String q = query.getOrDefault("q", "").strip().toLowerCase(Locale.ROOT);
+            if (q.isEmpty()) {
+                throw new ApiException(400, "Нужен параметр q");
+            }
+            int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_LIMIT;
+
+            List<Object> found = storage.getNotes().stream()
+                    .filter(n -> matches(n, q))
+                    .sorted(Comparator.comparing(Note::getDate, Comparator.nullsLast(Comparator.naturalOrder())))
+                    .limit(limit)
+                    .map(n -> (Object) Json.note(n))
+                    .toList();
+            respond(exchange, 200, found);
+        });
+    }
+
+    private static boolean matches(Note note, String q) {
+        if (note.getTitle() != null && note.getTitle().toLowerCase(Locale.ROOT).contains(q)) return true;
+        if (note.getContent() != null && note.getContent().toLowerCase(Locale.ROOT).contains(q)) return true;
+        return note.getTags().stream().anyMatch(tag -> tag.contains(q));
+    }
+
+    /* ===== WRITES ===== */
+
+    /**
+     * Поток записи: ждёт первую заметку и добавляет её вместе со всем,
+     * что накопилось в очереди к этому моменту. Завершается на {@link #STOP}.
+     */
+    private void drainWrites() {
+        List<PendingWrite> batch = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(writes.take());
+            } catch (InterruptedException e) {
+                logger.warn("Поток записи API прерван, в очереди {} заметок", writes.size());
+                return;
+            }
+            writes.drainTo(batch, MAX_BATCH - batch.size());
+            stopping = batch.removeIf(w -> w == STOP);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                storage.addNotes(batch.stream().map(PendingWrite::note).toList());
+                batch.forEach(w -> w.done().complete(w.note()));
+            } catch (RuntimeException e) {
+                logger.error("Ошибка записи пачки из {} заметок", batch.size(), e);
+                batch.forEach(w -> w.done().completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    private static Note await(CompletableFuture<Note> done) {
+        try {
+            return done.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new ApiException(500, "Заметка не записана: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new ApiException(503, "Заметка не записана за " + WRITE_TIMEOUT_SECONDS + " с");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(503, "Запрос прерван");
+        }
+    }
+
+    /**
+     * Изменяет переданные поля заметки. Для заметки-серии дата начала
+     * серии меняется вместе с датой.
+     */
+    private Note update(Note master, Map<String, Object> fields) {
+        String calendarId = calendarId(fields);
+        if (calendarId != null && !calendarId.equals(master.getCalendarId())) {
+            throw new ApiException(400, "Перенос заметки в другой календарь не поддерживается");
+        }
+        Note updated = master.copy();
+        apply(updated, fields);
+        if (updated.getTitle() == null || updated.getTitle().isBlank()) {
+            throw new ApiException(400, "Заголовок не может быть пустым");
+        }
+        storage.updateNote(updated);
+        return updated;
+    }
+
+    /**
+     * Возвращает календарь из поля {@code calendarId}.
+     *
+     * @throws ApiException 400, если такой календарь не подключён
+     */
+    private String calendarId(Map<String, Object> item) {
+        String id = string(item, "calendarId");
+        if (id != null && storage.getWorkspaces().stream().noneMatch(w -> w.getId().equals(id))) {
+            throw new ApiException(400, "Календарь не найден: " + id);
+        }
+        return id;
+    }
+
+    /**
+     * Переносит в заметку поля объекта JSON, которые в нём есть.
+     */
+    private static void apply(Note note, Map<String, Object> item) {
+        if (item.containsKey("date")) note.setDate(LocalDate.parse(string(item, "date")));
+        if (item.containsKey("title")) note.setTitle(string(item, "title"));
+        if (item.containsKey("content")) note.setContent(string(item, "content"));
+        if (item.containsKey("time")) {
+            String time = string(item, "time");
+            note.setTime(time != null ? LocalTime.parse(time) : null);
+        }
+        if (item.containsKey("tags")) {
+            List<String> tags = new ArrayList<>();
+            if (item.get("tags") instanceof List<?> list) {
+                list.forEach(tag -> tags.add(String.valueOf(tag)));
+            }
+            note.setTags(tags);
+        }
+        if (item.containsKey("recurrence")) {
+            String rule = string(item, "recurrence");
+            note.setRecurrence(rule != null ? Recurrence.parse(rule) : null);
+        }
+        if (item.containsKey("reminderMinutes")) {
+            Object minutes = item.get("reminderMinutes");
+            note.setReminderMinutes(minutes instanceof Number n ? n.intValue() : null);
+        }
+    }
+
+    /* ===== HTTP ===== */
+
+    /**
+     * Действие обработчика, которое может бросить {@link IOException}.
+     */
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    /**
+     * Выполняет обработчик и переводит ошибки в ответы с кодом и JSON-сообщением.
+     */
+    private static void handle(HttpExchange exchange, Action action) {
+        try (exchange) {
+            try {
+                if (exchange.getRequestHeaders().containsKey("Origin")) {
+                    throw new ApiException(403, "Запросы из браузера не принимаются");
+                }
+                checkHost(exchange);
+                action.run();
+            } catch (ApiException e) {
+                respond(exchange, e.status, Map.of("error", e.getMessage()));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                respond(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+            } catch (RuntimeException e) {
+                logger.error("Ошибка обработки {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+                respond(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+            }
+        } catch (IOException e) {
+            logger.debug("Клиент API закрыл соединение", e);
+        }
+    }
+
+    /**
+     * Принимает только запросы, адресованные loopback-адресу этого сервера.
+     */
+    private static void checkHost(HttpExchange exchange) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        int port = exchange.getLocalAddress().getPort();
+        if (host == null
+                || !(host.equalsIgnoreCase("127.0.0.1:" + port) || host.equalsIgnoreCase("localhost:" + port))) {
+            throw new ApiException(403, "Недопустимый заголовок Host: " + host);
+        }
+    }
+
+    private Note find(String id) {
+        return storage.findNote(id)
+                .orElseThrow(() -> new ApiException(404, "Заметка не найдена: " + id));
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Читает тело запроса не больше {@link #MAX_BODY_BYTES} байт.
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        byte[] bytes = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "Тело запроса больше " + MAX_BODY_BYTES + " байт");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> body(HttpExchange exchange) throws IOException {
+        return asObject(Json.parse(readBody(exchange)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return (Map<String, Object>) map;
+        }
+        throw new ApiException(400, "Ожидался объект JSON");
+    }
+
+    private static String string(Map<String, Object> item, String key) {
+        Object value = item.get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> result = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return result;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                result.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+}
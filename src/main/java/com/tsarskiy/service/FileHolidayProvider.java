@@ -0,0 +1,168 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.DayType;
+import com.tsarskiy.model.YearCalendar;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Производственный календарь из текстовых файлов по годам.
+ * <p>
+ * Файл {@code <год>.txt} лежит в папке страны: в ресурсах приложения
+ * ({@code /holidays/RU/2026.txt}) или в папке хранения
+ * ({@code <папка хранения>/holidays/<код страны>/<год>.txt}).
+ * Каждая строка описывает один день, отличающийся от обычной недели:
+ * <pre>
+ * # комментарий
+ * 01-01 holiday Новогодние каникулы
+ * 01-09 dayoff  Выходной (перенос с 3 января)
+ * 11-01 work    Рабочий день (перенос на 3 ноября)
+ * 04-30 short   Предпраздничный день
+ * </pre>
+ * {@code holiday} — нерабочий праздничный день, {@code dayoff} — выходной
+ * по переносу, {@code work} — рабочий день по переносу, {@code short} —
+ * сокращённый рабочий день. Название необязательно.
+ */
+public class FileHolidayProvider implements HolidayProvider {
+
+    private static final Logger logger = LogManager.getLogger(FileHolidayProvider.class);
+
+    /** Имя папки календарей в папке хранения и в ресурсах. */
+    public static final String DIRECTORY_NAME = "holidays";
+
+    /** Страны, календари которых входят в приложение. */
+    public static final List<String> BUNDLED_COUNTRIES = List.of("RU");
+
+    private final String country;
+
+    /** Папка страны на диске или {@code null} для ресурсов приложения. */
+    private final Path directory;
+
+    private FileHolidayProvider(String country, Path directory) {
+        this.country = country.toUpperCase(Locale.ROOT);
+        this.directory = directory;
+    }
+
+    /**
+     * Создаёт источник календарей страны из ресурсов приложения.
+     *
+     * @param country код страны
+     * @return источник календарей
+     */
+    public static FileHolidayProvider bundled(String country) {
+        return new FileHolidayProvider(country, null);
+    }
+
+    /**
+     * Находит календари стран в папке хранения: каждая подпапка
+     * {@value #DIRECTORY_NAME} — отдельная страна.
+     *
+     * @param storageDir папка хранения
+     * @return источники календарей; пустой список, если папки календарей нет
+     */
+    public static List<FileHolidayProvider> scan(Path storageDir) {
+        Path root = storageDir.resolve(DIRECTORY_NAME);
+        List<FileHolidayProvider> result = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return result;
+        }
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(Files::isDirectory)
+                    .sorted()
+                    .forEach(dir -> result.add(new FileHolidayProvider(dir.getFileName().toString(), dir)));
+        } catch (IOException e) {
+            logger.error("Ошибка чтения папки календарей {}", root, e);
+        }
+        return result;
+    }
+
+    @Override
+    public String getCountry() {
+        return country;
+    }
+
+    @Override
+    public YearCalendar loadYear(int year) {
+        String file = year + ".txt";
+        try (InputStream in = open(file)) {
+            if (in == null) {
+                return null;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            YearCalendar calendar = parse(year, reader);
+            logger.info("Загружен производственный календарь {} за {} год", country, year);
+            return calendar;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Ошибка чтения производственного календаря {} за {} год", country, year, e);
+            return null;
+        }
+    }
+
+    /**
+     * Открывает файл года или возвращает {@code null}, если его нет.
+     */
+    private InputStream open(String file) throws IOException {
+        if (directory == null) {
+            return FileHolidayProvider.class.getResourceAsStream(
+                    "/" + DIRECTORY_NAME + "/" + country + "/" + file);
+        }
+        Path path = directory.resolve(file);
+        return Files.isRegularFile(path) ? Files.newInputStream(path) : null;
+    }
+
+    /**
+     * Разбирает файл производственного календаря года.
+     *
+     * @param year   год
+     * @param reader строки файла
+     * @return календарь года
+     * @throws IOException              если файл не удалось прочитать
+     * @throws IllegalArgumentException если строка файла некорректна
+     */
+    static YearCalendar parse(int year, BufferedReader reader) throws IOException {
+        YearCalendar.Builder builder = new YearCalendar.Builder(year);
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 3);
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("Строка " + number + ": ожидается «ММ-ДД тип [название]»");
+            }
+            LocalDate date;
+            try {
+                date = LocalDate.parse(year + "-" + parts[0]);
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Строка " + number + ": некорректная дата " + parts[0], e);
+            }
+            DayType type = switch (parts[1].toLowerCase(Locale.ROOT)) {
+                case "holiday" -> DayType.HOLIDAY;
+                case "dayoff" -> DayType.WEEKEND;
+                case "work" -> DayType.WORKDAY;
+                case "short" -> DayType.SHORTENED;
+                default -> throw new IllegalArgumentException(
+                        "Строка " + number + ": неизвестный тип дня " + parts[1]);
+            };
+            builder.set(date, type, parts.length > 2 ? parts[2] : null);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,30 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.YearCalendar;
+
+/**
+ * Источник производственного календаря страны.
+ * <p>
+ * Реализации подключаются к {@link HolidayService}: файлы из ресурсов
+ * приложения и из папки хранения ({@link FileHolidayProvider}), а также
+ * классы, объявленные через {@link java.util.ServiceLoader}
+ * в {@code META-INF/services/com.tsarskiy.service.HolidayProvider}.
+ * Календарь года запрашивается один раз и кэшируется сервисом.
+ */
+public interface HolidayProvider {
+
+    /**
+     * Возвращает код страны календаря (например, {@code RU}).
+     *
+     * @return код страны в верхнем регистре
+     */
+    String getCountry();
+
+    /**
+     * Загружает производственный календарь года.
+     *
+     * @param year год
+     * @return календарь или {@code null}, если данных за год нет
+     */
+    YearCalendar loadYear(int year);
+}
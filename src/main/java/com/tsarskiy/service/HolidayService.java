@@ -1,45 +1,222 @@
 package com.tsarskiy.service;
 
+import com.tsarskiy.model.DayType;
+import com.tsarskiy.model.YearCalendar;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.prefs.Preferences;
 
+/**
+ * Праздники и производственный календарь.
+ * <p>
+ * Календарь года берётся у первого источника выбранной страны, у которого есть
+ * данные за этот год: сначала файлы из папки хранения, затем источники,
+ * подключённые через {@link ServiceLoader}, затем календари, входящие в приложение.
+ * Годы загружаются лениво — только те, которые пользователь открывает, —
+ * и кэшируются. Если данных за год нет, для России используются праздники
+ * из статьи 112 ТК РФ без переносов, для других стран — обычная неделя.
+ */
 public class HolidayService {
 
-    public Map<LocalDate, String> getHolidaysForMonth(YearMonth month) {
-        Map<LocalDate, String> holidays = new HashMap<>();
-        int year = month.getYear();
-        addIfInMonth(holidays, LocalDate.of(year, 1, 1), "Новый год", month);
+    private static final Logger logger = LogManager.getLogger(HolidayService.class);
+
+    /** Страна по умолчанию. */
+    public static final String DEFAULT_COUNTRY = "RU";
+
+    /** Ключ настройки выбранной страны. */
+    private static final String COUNTRY_KEY = "holidayCountry";
+
+    /** Источники календарей по стране в порядке приоритета. */
+    private final Map<String, List<HolidayProvider>> providers = new LinkedHashMap<>();
+
+    private final Preferences preferences = Preferences.userNodeForPackage(HolidayService.class);
+
+    /**
+     * Выбранная страна и загруженные для неё календари по году.
+     * При смене страны заменяется целиком: загрузка, начатая для прежней
+     * страны, дописывает результат в прежнюю карту и в новую не попадает.
+     *
+     * @param country код страны
+     * @param years   календари по году
+     */
+    private record Selection(String country, Map<Integer, YearCalendar> years) {
+    }
+
+    /** Выбранная страна с её календарями. */
+    private volatile Selection selection;
+
+    /**
+     * Создаёт сервис только со встроенными календарями.
+     */
+    public HolidayService() {
+        this(null);
+    }
+
+    /**
+     * Создаёт сервис с календарями из папки хранения.
+     *
+     * @param storageDir папка хранения или {@code null}
+     */
+    public HolidayService(Path storageDir) {
+        if (storageDir != null) {
+            FileHolidayProvider.scan(storageDir).forEach(this::register);
+        }
+        for (HolidayProvider provider : ServiceLoader.load(HolidayProvider.class)) {
+            register(provider);
+        }
+        FileHolidayProvider.BUNDLED_COUNTRIES.forEach(c -> register(FileHolidayProvider.bundled(c)));
+
+        String saved = preferences.get(COUNTRY_KEY, DEFAULT_COUNTRY);
+        this.selection = new Selection(providers.containsKey(saved) ? saved : DEFAULT_COUNTRY,
+                new ConcurrentHashMap<>());
+    }
+
+    private void register(HolidayProvider provider) {
+        providers.computeIfAbsent(provider.getCountry().toUpperCase(Locale.ROOT), c -> new ArrayList<>())
+                .add(provider);
+    }
+
+    /**
+     * Возвращает страны, для которых есть источники календарей.
+     *
+     * @return коды стран по алфавиту
+     */
+    public Set<String> getCountries() {
+        return new TreeSet<>(providers.keySet());
+    }
+
+    /**
+     * Возвращает выбранную страну.
+     *
+     * @return код страны
+     */
+    public String getCountry() {
+        return selection.country();
+    }
 
-        addIfInMonth(holidays, LocalDate.of(year, 1, 2), "Новогодние каникулы", month);
-        addIfInMonth(holidays, LocalDate.of(year, 1, 3), "Новогодние каникулы", month);
-        addIfInMonth(holidays, LocalDate.of(year, 1, 4), "Новогодние каникулы", month);
-        addIfInMonth(holidays, LocalDate.of(year, 1, 5), "Новогодние каникулы", month);
-        addIfInMonth(holidays, LocalDate.of(year, 1, 6), "Новогодние каникулы", month);
+    /**
+     * Выбирает страну и сохраняет выбор в настройках.
+     *
+     * @param country код страны
+     */
+    public void setCountry(String country) {
+        String code = country.toUpperCase(Locale.ROOT);
+        if (code.equals(selection.country())) {
+            return;
+        }
+        selection = new Selection(code, new ConcurrentHashMap<>());
+        preferences.put(COUNTRY_KEY, code);
+        logger.info("Выбран производственный календарь {}", code);
+    }
+
+    /**
+     * Возвращает производственный календарь года, загружая его при первом обращении.
+     *
+     * @param year год
+     * @return календарь года
+     */
+    public YearCalendar getYear(int year) {
+        Selection current = selection;
+        return current.years().computeIfAbsent(year, y -> load(current.country(), y));
+    }
 
-        addIfInMonth(holidays, LocalDate.of(year, 1, 7), "Рождество Христово", month);
+    /**
+     * Возвращает тип дня.
+     *
+     * @param date дата
+     * @return тип дня по производственному календарю
+     */
+    public DayType getDayType(LocalDate date) {
+        return getYear(date.getYear()).getType(date);
+    }
 
-        addIfInMonth(holidays, LocalDate.of(year, 1, 8), "Новогодние каникулы", month);
+    /**
+     * Возвращает название дня: праздника, переноса или сокращённого дня.
+     *
+     * @param date дата
+     * @return название или {@code null}, если день обычный
+     */
+    public String getDayName(LocalDate date) {
+        return getYear(date.getYear()).getName(date);
+    }
 
-        addIfInMonth(holidays, LocalDate.of(year, 2, 23), "День защитника Отечества", month);
-        addIfInMonth(holidays, LocalDate.of(year, 3, 8), "Международный женский день", month);
-        addIfInMonth(holidays, LocalDate.of(year, 5, 1), "Праздник Весны и Труда", month);
-        addIfInMonth(holidays, LocalDate.of(year, 5, 9), "День Победы", month);
-        addIfInMonth(holidays, LocalDate.of(year, 6, 12), "День России", month);
-        addIfInMonth(holidays, LocalDate.of(year, 11, 4), "День народного единства", month);
+    /**
+     * Возвращает нерабочие праздничные дни месяца с названиями.
+     *
+     * @param month месяц
+     * @return праздники месяца по датам
+     */
+    public Map<LocalDate, String> getHolidaysForMonth(YearMonth month) {
+        return getHolidaysBetween(month.atDay(1), month.atEndOfMonth());
+    }
 
+    /**
+     * Возвращает нерабочие праздничные дни диапазона с названиями.
+     *
+     * @param from начало диапазона включительно
+     * @param to   конец диапазона включительно
+     * @return праздники диапазона по датам
+     */
+    public Map<LocalDate, String> getHolidaysBetween(LocalDate from, LocalDate to) {
+        Map<LocalDate, String> holidays = new HashMap<>();
+        YearCalendar calendar = null;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            if (calendar == null || calendar.getYear() != date.getYear()) {
+                calendar = getYear(date.getYear());
+            }
+            if (calendar.getType(date) == DayType.HOLIDAY) {
+                String name = calendar.getName(date);
+                holidays.put(date, name != null ? name : DayType.HOLIDAY.getTitle());
+            }
+        }
         return holidays;
     }
 
-    private void addIfInMonth(
-            Map<LocalDate, String> map,
-            LocalDate date,
-            String name,
-            YearMonth month
-    ) {
-        if (YearMonth.from(date).equals(month)) {
-            map.put(date, name);
+    /**
+     * Загружает календарь года указанной страны.
+     */
+    private YearCalendar load(String code, int year) {
+        for (HolidayProvider provider : providers.getOrDefault(code, List.of())) {
+            YearCalendar calendar = provider.loadYear(year);
+            if (calendar != null) {
+                return calendar;
+            }
+        }
+        logger.info("Нет производственного календаря {} за {} год", code, year);
+        return DEFAULT_COUNTRY.equals(code)
+                ? statutoryHolidays(year)
+                : new YearCalendar.Builder(year).build();
+    }
+
+    /**
+     * Строит календарь из нерабочих праздничных дней статьи 112 ТК РФ без переносов.
+     */
+    private static YearCalendar statutoryHolidays(int year) {
+        YearCalendar.Builder builder = new YearCalendar.Builder(year);
+        for (int day = 1; day <= 8; day++) {
+            builder.set(LocalDate.of(year, 1, day), DayType.HOLIDAY,
+                    day == 1 ? "Новый год" : day == 7 ? "Рождество Христово" : "Новогодние каникулы");
         }
+        builder.set(LocalDate.of(year, 2, 23), DayType.HOLIDAY, "День защитника Отечества");
+        builder.set(LocalDate.of(year, 3, 8), DayType.HOLIDAY, "Международный женский день");
+        builder.set(LocalDate.of(year, 5, 1), DayType.HOLIDAY, "Праздник Весны и Труда");
+        builder.set(LocalDate.of(year, 5, 9), DayType.HOLIDAY, "День Победы");
+        builder.set(LocalDate.of(year, 6, 12), DayType.HOLIDAY, "День России");
+        builder.set(LocalDate.of(year, 11, 4), DayType.HOLIDAY, "День народного единства");
+        return builder.build();
     }
 }
@@ -0,0 +1,288 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.Note;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Минимальный JSON для локального API и экспорта: запись и разбор
+ * объектов, массивов, строк, чисел, логических значений и {@code null}.
+ * <p>
+ * Разобранные объекты — {@link Map} с порядком полей, массивы — {@link List},
+ * числа — {@link Long} или {@link Double}. Внешних библиотек приложение
+ * не подключает, а этого подмножества хватает для заметок.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /* ===== WRITING ===== */
+
+    /**
+     * Записывает значение в JSON.
+     *
+     * @param value {@link Map}, {@link Collection}, строка, число, логическое значение или {@code null}
+     * @return JSON-текст
+     * @throws IllegalArgumentException если тип значения не поддерживается
+     */
+    public static String write(Object value) {
+        StringBuilder sb = new StringBuilder();
+        write(value, sb);
+        return sb.toString();
+    }
+
+    private static void write(Object value, StringBuilder sb) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String s) {
+            quote(s, sb);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Map<?, ?> map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                quote(String.valueOf(e.getKey()), sb);
+                sb.append(':');
+                write(e.getValue(), sb);
+            }
+            sb.append('}');
+        } else if (value instanceof Collection<?> list) {
+            sb.append('[');
+            boolean first = true;
+            for (Object item : list) {
+                if (!first) sb.append(',');
+                first = false;
+                write(item, sb);
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Тип не поддерживается в JSON: " + value.getClass().getName());
+        }
+    }
+
+    private static void quote(String s, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Представляет заметку объектом JSON. Пустые поля не записываются.
+     *
+     * @param note заметка или экземпляр серии
+     * @return поля заметки в постоянном порядке
+     */
+    public static Map<String, Object> note(Note note) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", note.getId());
+        map.put("calendarId", note.getCalendarId());
+        map.put("date", note.getDate() != null ? note.getDate().toString() : null);
+        if (note.getTime() != null) map.put("time", note.getTime().toString());
+        map.put("title", note.getTitle());
+        if (note.getContent() != null) map.put("content", note.getContent());
+        if (!note.getTags().isEmpty()) map.put("tags", note.getTags());
+        if (note.getRecurrence() != null) map.put("recurrence", note.getRecurrence().toRule());
+        if (note.getReminderMinutes() != null) map.put("reminderMinutes", note.getReminderMinutes());
+        if (note.isOccurrence()) map.put("seriesStart", note.getSeriesStart().toString());
+        return map;
+    }
+
+    /* ===== PARSING ===== */
+
+    /**
+     * Разбирает JSON-текст.
+     *
+     * @param text JSON-текст
+     * @return разобранное значение
+     * @throws IllegalArgumentException если текст не является корректным JSON
+     */
+    public static Object parse(String text) {
+        Parser parser = new Parser(text);
+        Object value = parser.value();
+        parser.skipSpace();
+        if (parser.pos != text.length()) {
+            throw parser.error("лишние символы");
+        }
+        return value;
+    }
+
+    /**
+     * Разбор рекурсивным спуском.
+     */
+    private static final class Parser {
+
+        private final String s;
+        private int pos;
+
+        private Parser(String s) {
+            this.s = s;
+        }
+
+        private Object value() {
+            skipSpace();
+            if (pos >= s.length()) {
+                throw error("неожиданный конец");
+            }
+            char c = s.charAt(pos);
+            return switch (c) {
+                case '{' -> object();
+                case '[' -> array();
+                case '"' -> string();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> number();
+            };
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (peek('}')) {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipSpace();
+                if (!peek('"')) {
+                    throw error("ожидалось имя поля");
+                }
+                String key = string();
+                skipSpace();
+                expect(':');
+                map.put(key, value());
+                skipSpace();
+                if (peek(',')) {
+                    pos++;
+                } else {
+                    expect('}');
+                    return map;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (peek(']')) {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(value());
+                skipSpace();
+                if (peek(',')) {
+                    pos++;
+                } else {
+                    expect(']');
+                    return list;
+                }
+            }
+        }
+
+        private String string() {
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= s.length()) {
+                    break;
+                }
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > s.length()) {
+                            throw error("неполная escape-последовательность");
+                        }
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(e);
+                }
+            }
+            throw error("незакрытая строка");
+        }
+
+        private Object number() {
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) {
+                pos++;
+            }
+            String n = s.substring(start, pos);
+            try {
+                return n.contains(".") || n.contains("e") || n.contains("E")
+                        ? (Object) Double.parseDouble(n)
+                        : (Object) Long.parseLong(n);
+            } catch (NumberFormatException e) {
+                throw error("некорректное значение");
+            }
+        }
+
+        private Object literal(String word, Object value) {
+            if (!s.startsWith(word, pos)) {
+                throw error("некорректное значение");
+            }
+            pos += word.length();
+            return value;
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean peek(char c) {
+            return pos < s.length() && s.charAt(pos) == c;
+        }
+
+        private void expect(char c) {
+            if (!peek(c)) {
+                throw error("ожидалось '" + c + "'");
+            }
+            pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Некорректный JSON в позиции " + pos + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.storage.NoteRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш снимков месяцев: заметки по датам и праздники для текущего месяца ±{@code radius}.
+ * <p>
+ * Как только месяц показан, соседние месяцы строятся в фоновом потоке,
+ * поэтому листание календаря берёт готовый снимок без обращения к хранилищу.
+ * Снимок удаляется точно при изменении заметки в его месяце: кэш помнит,
+ * в каких снимках встречается заметка (это покрывает и перенос заметки на другую
+ * дату), и дополнительно удаляет месяцы новой даты заметки или всего срока серии.
+ * Запись в кэш выполняется до построения снимка, поэтому удаление во время
+ * фонового построения не оставляет в кэше устаревших данных.
+ * Месяцы дальше {@code 2 × radius} от показанного вытесняются.
+ */
+public class MonthSnapshotCache {
+
+    private static final Logger logger = LogManager.getLogger(MonthSnapshotCache.class);
+
+    /** Число соседних месяцев по умолчанию с каждой стороны. */
+    public static final int DEFAULT_RADIUS = 2;
+
+    /**
+     * Снимок месяца.
+     *
+     * @param month    месяц
+     * @param notes    заметки месяца по датам (только для чтения)
+     * @param holidays праздники месяца по датам
+     */
+    public record MonthSnapshot(YearMonth month,
+                                Map<LocalDate, List<Note>> notes,
+                                Map<LocalDate, String> holidays) {
+    }
+
+    /**
+     * Счётчики обращений к кэшу.
+     *
+     * @param hits    снимок был готов
+     * @param waits   снимок строился в фоне, пришлось дождаться
+     * @param misses  снимка не было, построен при обращении
+     */
+    public record Stats(long hits, long waits, long misses) {
+
+        /**
+         * Возвращает долю обращений, не требовавших построения снимка.
+         *
+         * @return доля от 0 до 1
+         */
+        public double hitRate() {
+            long total = hits + waits + misses;
+            return total == 0 ? 0 : (double) (hits + waits) / total;
+        }
+    }
+
+    private final NoteRepository storage;
+    private final HolidayService holidays;
+    private final int radius;
+
+    /** Снимки по месяцу; незавершённые строятся в фоне. */
+    private final Map<YearMonth, CompletableFuture<MonthSnapshot>> snapshots = new ConcurrentHashMap<>();
+
+    /** Месяцы кэша, в снимках которых встречается заметка. */
+    private final Map<String, Set<YearMonth>> monthsByNote = new ConcurrentHashMap<>();
+
+    /** Поток фонового построения снимков. */
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "month-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Создаёт кэш и подписывает его на изменения заметок.
+     *
+     * @param storage  хранилище заметок
+     * @param holidays сервис праздников
+     * @param radius   число соседних месяцев с каждой стороны
+     */
+    public MonthSnapshotCache(NoteRepository storage, HolidayService holidays, int radius) {
+        this.storage = storage;
+        this.holidays = holidays;
+        this.radius = radius;
+        storage.addChangeListener(change -> invalidate(change.note()));
+    }
+
+    /**
+     * Возвращает снимок месяца: из кэша или построенный сейчас.
+     * Пока индекс заметок не загружен, снимок без заметок не кэшируется.
+     *
+     * @param month месяц
+     * @return снимок месяца
+     */
+    public MonthSnapshot get(YearMonth month) {
+        if (!storage.isIndexLoaded()) {
+            return build(month);
+        }
+        CompletableFuture<MonthSnapshot> cached = snapshots.get(month);
+        if (cached != null) {
+            (cached.isDone() ? hits : waits).incrementAndGet();
+            return cached.join();
+        }
+        misses.incrementAndGet();
+        return refresh(month);
+    }
+
+    /**
+     * Строит снимок месяца заново и кладёт его в кэш.
+     *
+     * @param month месяц
+     * @return свежий снимок
+     */
+    public MonthSnapshot refresh(YearMonth month) {
+        if (!storage.isIndexLoaded()) {
+            return build(month);
+        }
+        CompletableFuture<MonthSnapshot> entry = new CompletableFuture<>();
+        snapshots.put(month, entry);
+        MonthSnapshot snapshot = build(month);
+        entry.complete(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Запускает фоновое построение соседних месяцев и вытесняет дальние.
+     *
+     * @param center показанный месяц
+     */
+    public void prefetchAround(YearMonth center) {
+        snapshots.keySet().removeIf(m -> Math.abs(distance(center, m)) > 2L * radius);
+        if (!storage.isIndexLoaded()) {
+            return;
+        }
+        for (int d = 1; d <= radius; d++) {
+            for (YearMonth month : List.of(center.plusMonths(d), center.minusMonths(d))) {
+                CompletableFuture<MonthSnapshot> entry = new CompletableFuture<>();
+                if (snapshots.putIfAbsent(month, entry) == null) {
+                    prefetcher.execute(() -> {
+                        try {
+                            entry.complete(build(month));
+                        } catch (RuntimeException e) {
+                            snapshots.remove(month, entry);
+                            entry.completeExceptionally(e);
+                            logger.error("Ошибка построения снимка {}", month, e);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Удаляет все снимки, например после смены видимых календарей.
+     */
+    public void clear() {
+        snapshots.clear();
+        monthsByNote.clear();
+    }
+
+    /**
+     * Возвращает счётчики обращений.
+     *
+     * @return счётчики
+     */
+    public Stats stats() {
+        return new Stats(hits.get(), waits.get(), misses.get());
+    }
+
+    /**
+     * Удаляет снимки месяцев, на которые повлияло изменение заметки.
+     *
+     * @param note добавленная, изменённая или удалённая заметка
+     */
+    private void invalidate(Note note) {
+        Set<YearMonth> affected = new HashSet<>();
+        Set<YearMonth> seen = monthsByNote.remove(note.getId());
+        if (seen != null) {
+            affected.addAll(seen);
+        }
+        LocalDate start = note.isOccurrence() ? null : note.getDate();
+        if (start != null) {
+            if (note.isRecurring()) {
+                LocalDate last = note.getRecurrence().lastPossibleDate(start);
+                snapshots.keySet().stream()
+                        .filter(m -> !m.atEndOfMonth().isBefore(start) && !m.atDay(1).isAfter(last))
+                        .forEach(affected::add);
+            } else {
+                affected.add(YearMonth.from(start));
+            }
+        } else if (note.isOccurrence()) {
+            affected.add(YearMonth.from(note.getDate()));
+        }
+        for (YearMonth month : affected) {
+            snapshots.remove(month);
+        }
+        logger.debug("Снимки месяцев сброшены после изменения заметки {}: {}", note.getId(), affected);
+    }
+
+    /**
+     * Строит снимок месяца и запоминает, какие заметки в него вошли.
+     */
+    private MonthSnapshot build(YearMonth month) {
+        Map<LocalDate, List<Note>> notes = storage.isIndexLoaded()
+                ? storage.getNotesForMonth(month)
+                : Map.of();
+        for (List<Note> day : notes.values()) {
+            for (Note note : day) {
+                monthsByNote.computeIfAbsent(note.getId(), id -> ConcurrentHashMap.newKeySet()).add(month);
+            }
+        }
+        return new MonthSnapshot(month, notes, holidays.getHolidaysForMonth(month));
+    }
+
+    private static long distance(YearMonth from, YearMonth to) {
+        return (to.getYear() - from.getYear()) * 12L + to.getMonthValue() - from.getMonthValue();
+    }
+}
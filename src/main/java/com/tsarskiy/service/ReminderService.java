@@ -0,0 +1,312 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.storage.NoteRepository;
+import com.tsarskiy.storage.Storage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Планировщик напоминаний по заметкам.
+ * <p>
+ * Все напоминания лежат в одной {@link DelayQueue}, которую разбирает
+ * единственный поток планировщика. В очередь загружается только окно
+ * ближайших {@link #HORIZON}: последним элементом окна стоит служебная отметка,
+ * по срабатыванию которой из индекса дат {@link Storage} подгружается следующее окно.
+ * При изменении заметки её напоминания в очереди отменяются и планируются заново.
+ * <p>
+ * Время берётся из переданного {@link Clock}, поэтому планировщик можно проверять
+ * с подставными часами: {@link #fireDue()} синхронно срабатывает все наступившие
+ * напоминания без фонового потока.
+ */
+public class ReminderService {
+
+    private static final Logger logger = LogManager.getLogger(ReminderService.class);
+
+    /** Длина окна напоминаний, загружаемого в очередь за один раз. */
+    public static final Duration HORIZON = Duration.ofDays(2);
+
+    /** Максимальное смещение напоминания до события. */
+    public static final int MAX_REMINDER_MINUTES = 7 * 24 * 60;
+
+    /**
+     * Напоминание о заметке.
+     *
+     * @param noteId идентификатор заметки
+     * @param date   дата события (для серии — дата повторения)
+     * @param title  заголовок заметки
+     * @param dueAt  момент срабатывания напоминания
+     */
+    public record Reminder(String noteId, LocalDate date, String title, Instant dueAt) {
+    }
+
+    /**
+     * Элемент очереди: напоминание или отметка конца окна ({@code reminder == null}).
+     */
+    private final class Entry implements Delayed {
+
+        private final Reminder reminder;
+        private final Instant dueAt;
+        private volatile boolean cancelled;
+
+        private Entry(Reminder reminder, Instant dueAt) {
+            this.reminder = reminder;
+            this.dueAt = dueAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Duration.between(clock.instant(), dueAt));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return dueAt.compareTo(((Entry) other).dueAt);
+        }
+    }
+
+    private final NoteRepository storage;
+    private final Clock clock;
+    private final Consumer<Reminder> notifier;
+
+    /** Очередь напоминаний текущего окна. */
+    private final DelayQueue<Entry> queue = new DelayQueue<>();
+
+    /** Запланированные напоминания по идентификатору заметки — для отмены. */
+    private final Map<String, List<Entry>> byNote = new HashMap<>();
+
+    /** Конец загруженного окна (не включительно). */
+    private Instant loadedUntil;
+
+    /** Поток планировщика. */
+    private Thread worker;
+
+    /**
+     * Создаёт планировщик напоминаний.
+     *
+     * @param storage  хранилище заметок
+     * @param clock    источник времени
+     * @param notifier обработчик сработавших напоминаний
+     */
+    public ReminderService(NoteRepository storage, Clock clock, Consumer<Reminder> notifier) {
+        this.storage = storage;
+        this.clock = clock;
+        this.notifier = notifier;
+    }
+
+    /**
+     * Загружает первое окно напоминаний и подписывается на изменения заметок,
+     * не запуская поток планировщика.
+     */
+    public synchronized void load() {
+        if (loadedUntil != null) {
+            return;
+        }
+        Instant now = clock.instant();
+        loadedUntil = now;
+        loadWindow(now, now.plus(HORIZON));
+        storage.addChangeListener(change -> reschedule(change.note().getId()));
+    }
+
+    /**
+     * Загружает напоминания и запускает поток планировщика.
+     */
+    public synchronized void start() {
+        load();
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(this::run, "reminder-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+        logger.info("Планировщик напоминаний запущен, в очереди: {}", queue.size());
+    }
+
+    /**
+     * Останавливает поток планировщика.
+     */
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * Цикл потока планировщика.
+     */
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                handle(queue.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Срабатывает все наступившие напоминания в текущем потоке.
+     *
+     * @return число сработавших напоминаний
+     */
+    public int fireDue() {
+        int fired = 0;
+        for (Entry e = queue.poll(); e != null; e = queue.poll()) {
+            if (handle(e)) {
+                fired++;
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * Обрабатывает элемент очереди.
+     *
+     * @param entry элемент очереди
+     * @return {@code true}, если сработало напоминание
+     */
+    private boolean handle(Entry entry) {
+        if (entry.reminder == null) {
+            synchronized (this) {
+                loadWindow(loadedUntil, loadedUntil.plus(HORIZON));
+            }
+            return false;
+        }
+
+        synchronized (this) {
+            List<Entry> entries = byNote.get(entry.reminder.noteId());
+            if (entries != null) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    byNote.remove(entry.reminder.noteId());
+                }
+            }
+        }
+        if (entry.cancelled) {
+            return false;
+        }
+
+        logger.info("Напоминание: {} ({})", entry.reminder.title(), entry.reminder.date());
+        try {
+            notifier.accept(entry.reminder);
+        } catch (RuntimeException e) {
+            logger.error("Ошибка показа напоминания", e);
+        }
+        return true;
+    }
+
+    /**
+     * Загружает напоминания, срабатывающие в {@code [from, to)}, и ставит
+     * отметку конца окна.
+     */
+    private void loadWindow(Instant from, Instant to) {
+        Map<LocalDate, List<Note>> notes = storage.getNotesBetween(
+                dateOf(from), dateOf(to).plusDays(daysOf(MAX_REMINDER_MINUTES)));
+
+        int added = 0;
+        for (List<Note> day : notes.values()) {
+            for (Note note : day) {
+                if (schedule(note, from, to)) {
+                    added++;
+                }
+            }
+        }
+
+        loadedUntil = to;
+        queue.add(new Entry(null, to));
+        logger.debug("Окно напоминаний до {}: добавлено {}", to, added);
+    }
+
+    /**
+     * Отменяет напоминания заметки и планирует их заново по её текущему состоянию.
+     *
+     * @param noteId идентификатор изменённой заметки
+     */
+    public synchronized void reschedule(String noteId) {
+        if (loadedUntil == null) {
+            return;
+        }
+        List<Entry> old = byNote.remove(noteId);
+        if (old != null) {
+            old.forEach(e -> e.cancelled = true);
+        }
+
+        Instant now = clock.instant();
+        storage.findNote(noteId).ifPresent(master -> {
+            LocalDate from = dateOf(now);
+            LocalDate to = dateOf(loadedUntil).plusDays(daysOf(MAX_REMINDER_MINUTES));
+            if (master.isRecurring()) {
+                for (LocalDate d : master.getRecurrence().occurrencesBetween(master.getDate(), from, to)) {
+                    schedule(master.occurrenceOn(d), now, loadedUntil);
+                }
+            } else {
+                schedule(master, now, loadedUntil);
+            }
+        });
+    }
+
+    /**
+     * Ставит напоминание заметки в очередь, если оно срабатывает в {@code [from, to)}.
+     *
+     * @return {@code true}, если напоминание поставлено
+     */
+    private boolean schedule(Note note, Instant from, Instant to) {
+        Instant due = dueAt(note);
+        if (due == null || due.isBefore(from) || !due.isBefore(to)) {
+            return false;
+        }
+        Entry entry = new Entry(new Reminder(note.getId(), note.getDate(), note.toString(), due), due);
+        byNote.computeIfAbsent(note.getId(), k -> new ArrayList<>()).add(entry);
+        queue.add(entry);
+        return true;
+    }
+
+    /**
+     * Вычисляет момент срабатывания напоминания заметки.
+     *
+     * @param note заметка
+     * @return момент напоминания или {@code null}, если напоминание не задано
+     */
+    public Instant dueAt(Note note) {
+        if (!note.hasReminder() || note.getDate() == null) {
+            return null;
+        }
+        int minutes = Math.min(Objects.requireNonNullElse(note.getReminderMinutes(), 0), MAX_REMINDER_MINUTES);
+        return ZonedDateTime.of(note.getDate(), note.getTime(), clock.getZone())
+                .minusMinutes(minutes)
+                .toInstant();
+    }
+
+    /**
+     * Возвращает число напоминаний в очереди без служебных отметок.
+     *
+     * @return число запланированных напоминаний
+     */
+    public synchronized int pendingCount() {
+        return byNote.values().stream().mapToInt(List::size).sum();
+    }
+
+    private LocalDate dateOf(Instant instant) {
+        return instant.atZone(clock.getZone()).toLocalDate();
+    }
+
+    private static long daysOf(int minutes) {
+        return (minutes + 24 * 60 - 1) / (24 * 60);
+    }
+}
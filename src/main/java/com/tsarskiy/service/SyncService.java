@@ -0,0 +1,600 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.storage.Operation;
+import com.tsarskiy.storage.OperationBatch;
+import com.tsarskiy.storage.OperationCodec;
+import com.tsarskiy.storage.Storage;
+import com.tsarskiy.storage.StorageBackend;
+import com.tsarskiy.storage.Workspace;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Синхронизация основного календаря между двумя установками по TCP.
+ * <p>
+ * Каждая установка ведёт журнал операций; обмен передаёт только операции,
+ * записанные после прошлой успешной синхронизации с этим же собеседником,
+ * поэтому объём обмена пропорционален числу изменений, а не размеру архива.
+ * Смещения в журнале хранятся по идентификатору собеседника в файле
+ * {@code sync.properties} в папке календаря. Конфликты разрешаются в
+ * {@link Storage} по версии изменения: побеждает последнее.
+ * <p>
+ * Сервер по умолчанию слушает только петлевой адрес; приём из локальной сети
+ * включается явно. Прежде чем читать данные, стороны доказывают друг другу
+ * знание кода сопряжения: каждая отправляет случайное число и отвечает
+ * HMAC-SHA256 от обоих чисел на ключе из кода. Код создаётся при первом
+ * обращении и лежит в {@code sync.key} в папке календаря; на другой установке
+ * его вводят вручную. После проверки сообщения идут кадрами AES-GCM с ключами,
+ * выведенными из кода и чисел сеанса, а операции кодируются
+ * {@link OperationCodec} без стандартной сериализации Java.
+ * <p>
+ * Сеанс: клиент и сервер обмениваются идентификаторами установок, клиент
+ * отправляет свои операции, сервер применяет их и отвечает своими,
+ * клиент применяет ответ и подтверждает приём. Зашифрованный календарь
+ * не синхронизируется: его заметки не должны покидать папку открытыми.
+ */
+public class SyncService {
+
+    private static final Logger logger = LogManager.getLogger(SyncService.class);
+
+    /** Порт синхронизации по умолчанию. */
+    public static final int DEFAULT_PORT = 47321;
+
+    /** Имя файла со смещениями по собеседникам. */
+    private static final String CURSORS_FILE_NAME = "sync.properties";
+
+    /** Имя файла с кодом сопряжения. */
+    private static final String KEY_FILE_NAME = "sync.key";
+
+    /** Таймаут чтения сеанса. */
+    private static final int TIMEOUT_MS = 30_000;
+
+    /** Признак протокола в начале сеанса. */
+    private static final int MAGIC = 0x54535953;
+
+    /** Версия протокола. */
+    private static final int PROTOCOL_VERSION = 2;
+
+    /** Длина случайного числа сеанса и кода сопряжения. */
+    private static final int NONCE_LENGTH = 32;
+    private static final int KEY_LENGTH = 16;
+
+    /** Наибольший размер зашифрованного кадра. */
+    private static final int MAX_FRAME = 64 << 20;
+
+    /** Допустимый идентификатор установки. */
+    private static final Pattern REPLICA_ID = Pattern.compile("[0-9A-Za-z-]{1,64}");
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Результат сеанса синхронизации.
+     *
+     * @param sent     число отправленных операций
+     * @param received число полученных операций
+     * @param applied  число применённых полученных операций
+     */
+    public record Result(int sent, int received, int applied) {
+    }
+
+    private final Storage storage;
+
+    /** Сокет сервера или {@code null}, если сервер не запущен. */
+    private ServerSocket server;
+
+    /** Принимает ли сервер соединения из локальной сети. */
+    private boolean lan;
+
+    /**
+     * Создаёт службу синхронизации.
+     *
+     * @param storage хранилище заметок
+     */
+    public SyncService(Storage storage) {
+        this.storage = storage;
+    }
+
+    /* ===== SERVER ===== */
+
+    /**
+     * Начинает принимать синхронизацию на петлевом адресе.
+     *
+     * @param port порт
+     * @throws UncheckedIOException  если порт занят
+     * @throws IllegalStateException если основной календарь зашифрован
+     */
+    public void startServer(int port) {
+        startServer(port, false);
+    }
+
+    /**
+     * Начинает принимать синхронизацию на указанном порту.
+     *
+     * @param port порт
+     * @param lan  {@code true} — принимать соединения из локальной сети,
+     *             {@code false} — только с этого компьютера
+     * @throws UncheckedIOException  если порт занят
+     * @throws IllegalStateException если основной календарь зашифрован
+     */
+    public synchronized void startServer(int port, boolean lan) {
+        if (server != null) {
+            return;
+        }
+        checkPlain();
+        pairingKey();
+        try {
+            server = new ServerSocket();
+            server.bind(lan
+                    ? new InetSocketAddress(port)
+                    : new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e) {
+            server = null;
+            throw new UncheckedIOException("Не удалось открыть порт " + port, e);
+        }
+        this.lan = lan;
+        ServerSocket socket = server;
+        Thread thread = new Thread(() -> accept(socket), "sync-server");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Сервер синхронизации запущен на порту {} ({})",
+                port, lan ? "локальная сеть" : "только этот компьютер");
+    }
+
+    /**
+     * Прекращает принимать синхронизацию.
+     */
+    public synchronized void stopServer() {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            logger.warn("Ошибка остановки сервера синхронизации", e);
+        }
+        server = null;
+        logger.info("Сервер синхронизации остановлен");
+    }
+
+    /**
+     * Проверяет, принимает ли служба синхронизацию.
+     *
+     * @return {@code true}, если сервер запущен
+     */
+    public synchronized boolean isServerRunning() {
+        return server != null;
+    }
+
+    /**
+     * Проверяет, принимает ли запущенный сервер соединения из локальной сети.
+     *
+     * @return {@code true}, если сервер слушает все адреса
+     */
+    public synchronized boolean isLanEnabled() {
+        return server != null && lan;
+    }
+
+    /**
+     * Возвращает код сопряжения этой установки, создавая его при первом обращении.
+     * Код нужно ввести на установке, которая будет синхронизироваться с этой.
+     *
+     * @return код из групп по четыре шестнадцатеричных символа
+     */
+    public String getPairingCode() {
+        String hex = HexFormat.of().formatHex(pairingKey());
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < hex.length(); i += 4) {
+            if (i > 0) {
+                sb.append('-');
+            }
+            sb.append(hex, i, i + 4);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Цикл приёма соединений. Сеансы обрабатываются по одному.
+     */
+    private void accept(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try (Socket client = socket.accept()) {
+                client.setSoTimeout(TIMEOUT_MS);
+                serve(client);
+            } catch (SocketException e) {
+                if (!socket.isClosed()) {
+                    logger.warn("Сеанс синхронизации прерван", e);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Ошибка сеанса синхронизации", e);
+            }
+        }
+    }
+
+    /**
+     * Обслуживает сеанс на стороне сервера.
+     */
+    private void serve(Socket socket) throws IOException {
+        checkPlain();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        byte[] key = pairingKey();
+
+        readHeader(in);
+        byte[] clientNonce = readNonce(in);
+        byte[] serverNonce = nonce();
+        writeHeader(out);
+        out.write(serverNonce);
+        out.write(hmac(key, "server", clientNonce, serverNonce));
+        out.flush();
+        byte[] proof = new byte[NONCE_LENGTH];
+        in.readFully(proof);
+        if (!MessageDigest.isEqual(proof, hmac(key, "client", clientNonce, serverNonce))) {
+            throw new IOException("Неверный код сопряжения от " + socket.getRemoteSocketAddress());
+        }
+        Channel channel = new Channel(in, out, key, clientNonce, serverNonce, false);
+
+        String peer = readReplica(channel.receive());
+        String replica = storage.getReplicaId(Storage.DEFAULT_CALENDAR_ID);
+        channel.send(replicaMessage(replica));
+
+        List<Operation> received = OperationCodec.read(channel.receive());
+        int applied = storage.applyRemoteOperations(Storage.DEFAULT_CALENDAR_ID, received);
+
+        long offset = loadCursor(peer);
+        OperationBatch batch = storage.readOperations(Storage.DEFAULT_CALENDAR_ID, offset);
+        List<Operation> outgoing = ownOperations(batch, peer);
+        channel.send(operationsMessage(outgoing));
+
+        if (channel.receive().readBoolean()) {
+            saveCursor(peer, batch.endOffset());
+        }
+        logger.info("Синхронизация с {}: получено {}, применено {}, отправлено {}",
+                socket.getRemoteSocketAddress(), received.size(), applied, outgoing.size());
+    }
+
+    /* ===== CLIENT ===== */
+
+    /**
+     * Синхронизирует основной календарь с другой установкой.
+     *
+     * @param host        адрес собеседника
+     * @param port        порт собеседника
+     * @param pairingCode код сопряжения собеседника
+     * @return итог сеанса
+     * @throws IOException              если сеанс не удался или код не подошёл
+     * @throws IllegalArgumentException если код сопряжения некорректен
+     * @throws IllegalStateException    если основной календарь зашифрован
+     */
+    public Result syncWith(String host, int port, String pairingCode) throws IOException {
+        checkPlain();
+        byte[] key = parsePairingCode(pairingCode);
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), TIMEOUT_MS);
+            socket.setSoTimeout(TIMEOUT_MS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            byte[] clientNonce = nonce();
+            writeHeader(out);
+            out.write(clientNonce);
+            out.flush();
+            readHeader(in);
+            byte[] serverNonce = readNonce(in);
+            byte[] proof = new byte[NONCE_LENGTH];
+            in.readFully(proof);
+            if (!MessageDigest.isEqual(proof, hmac(key, "server", clientNonce, serverNonce))) {
+                throw new IOException("Код сопряжения не подошёл");
+            }
+            out.write(hmac(key, "client", clientNonce, serverNonce));
+            out.flush();
+            Channel channel = new Channel(in, out, key, clientNonce, serverNonce, true);
+
+            channel.send(replicaMessage(storage.getReplicaId(Storage.DEFAULT_CALENDAR_ID)));
+            String peer = readReplica(channel.receive());
+
+            OperationBatch batch = storage.readOperations(Storage.DEFAULT_CALENDAR_ID, loadCursor(peer));
+            List<Operation> outgoing = ownOperations(batch, peer);
+            channel.send(operationsMessage(outgoing));
+
+            List<Operation> received = OperationCodec.read(channel.receive());
+            saveCursor(peer, batch.endOffset());
+            int applied = storage.applyRemoteOperations(Storage.DEFAULT_CALENDAR_ID, received);
+            ByteArrayOutputStream ack = new ByteArrayOutputStream(1);
+            new DataOutputStream(ack).writeBoolean(true);
+            channel.send(ack.toByteArray());
+
+            logger.info("Синхронизация с {}:{}: отправлено {}, получено {}, применено {}",
+                    host, port, outgoing.size(), received.size(), applied);
+            return new Result(outgoing.size(), received.size(), applied);
+        }
+    }
+
+    /* ===== PROTOCOL ===== */
+
+    /**
+     * Проверяет, что основной календарь не зашифрован.
+     *
+     * @throws IllegalStateException если календарь зашифрован
+     */
+    private void checkPlain() {
+        if (storage.getBackendKind(Storage.DEFAULT_CALENDAR_ID) == StorageBackend.Kind.ENCRYPTED) {
+            throw new IllegalStateException("Зашифрованный календарь не синхронизируется");
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(PROTOCOL_VERSION);
+    }
+
+    private static void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Собеседник не является установкой Царского Заметника");
+        }
+        int version = in.readInt();
+        if (version != PROTOCOL_VERSION) {
+            throw new IOException("Неподдерживаемая версия протокола: " + version);
+        }
+    }
+
+    private static byte[] nonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        return nonce;
+    }
+
+    private static byte[] readNonce(DataInputStream in) throws IOException {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        in.readFully(nonce);
+        return nonce;
+    }
+
+    /**
+     * Вычисляет HMAC-SHA256 метки и чисел сеанса на ключе сопряжения.
+     */
+    private static byte[] hmac(byte[] key, String label, byte[] clientNonce, byte[] serverNonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            mac.update(label.getBytes(StandardCharsets.US_ASCII));
+            mac.update(clientNonce);
+            mac.update(serverNonce);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 недоступен", e);
+        }
+    }
+
+    private static byte[] replicaMessage(String replica) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(replica);
+        return bytes.toByteArray();
+    }
+
+    private static String readReplica(DataInputStream in) throws IOException {
+        String replica = in.readUTF();
+        if (!REPLICA_ID.matcher(replica).matches()) {
+            throw new IOException("Некорректный идентификатор установки");
+        }
+        return replica;
+    }
+
+    private static byte[] operationsMessage(List<Operation> operations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OperationCodec.write(new DataOutputStream(bytes), operations);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Отбирает операции журнала, кроме полученных от самого собеседника.
+     *
+     * @param batch операции журнала с прошлого сеанса
+     * @param peer  идентификатор собеседника
+     * @return операции для отправки
+     */
+    private static List<Operation> ownOperations(OperationBatch batch, String peer) {
+        List<Operation> result = new ArrayList<>();
+        for (Operation op : batch.operations()) {
+            if (!peer.equals(op.getReplicaId())) {
+                result.add(op);
+            }
+        }
+        return result;
+    }
+
+    /* ===== PAIRING ===== */
+
+    /**
+     * Возвращает ключ сопряжения основного календаря, создавая его при первом обращении.
+     */
+    private synchronized byte[] pairingKey() {
+        Path file = calendarDirectory().resolve(KEY_FILE_NAME);
+        try {
+            if (Files.exists(file)) {
+                return parsePairingCode(Files.readString(file, StandardCharsets.US_ASCII));
+            }
+            byte[] key = new byte[KEY_LENGTH];
+            RANDOM.nextBytes(key);
+            Files.writeString(file, HexFormat.of().formatHex(key), StandardCharsets.US_ASCII);
+            try {
+                Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                logger.debug("Права доступа к {} не заданы", file);
+            }
+            return key;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения кода сопряжения", e);
+        }
+    }
+
+    /**
+     * Разбирает код сопряжения, пропуская разделители и регистр.
+     *
+     * @param code код сопряжения
+     * @return ключ
+     * @throws IllegalArgumentException если код некорректен
+     */
+    private static byte[] parsePairingCode(String code) {
+        String hex = code.replaceAll("[^0-9A-Fa-f]", "");
+        if (hex.length() != KEY_LENGTH * 2) {
+            throw new IllegalArgumentException("Код сопряжения должен содержать "
+                    + KEY_LENGTH * 2 + " шестнадцатеричных символа");
+        }
+        return HexFormat.of().parseHex(hex);
+    }
+
+    /**
+     * Зашифрованный канал сеанса: кадры AES-GCM с отдельным ключом
+     * на каждое направление и номером кадра в качестве nonce.
+     */
+    private static final class Channel {
+
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final SecretKeySpec sendKey;
+        private final SecretKeySpec receiveKey;
+        private long sent;
+        private long received;
+
+        Channel(DataInputStream in, DataOutputStream out, byte[] key,
+                byte[] clientNonce, byte[] serverNonce, boolean client) {
+            this.in = in;
+            this.out = out;
+            SecretKeySpec toServer = new SecretKeySpec(hmac(key, "c2s", clientNonce, serverNonce), "AES");
+            SecretKeySpec toClient = new SecretKeySpec(hmac(key, "s2c", clientNonce, serverNonce), "AES");
+            this.sendKey = client ? toServer : toClient;
+            this.receiveKey = client ? toClient : toServer;
+        }
+
+        void send(byte[] message) throws IOException {
+            byte[] frame = crypt(Cipher.ENCRYPT_MODE, sendKey, sent++, message);
+            if (frame.length > MAX_FRAME) {
+                throw new IOException("Слишком большое сообщение: " + frame.length + " байт");
+            }
+            out.writeInt(frame.length);
+            out.write(frame);
+            out.flush();
+        }
+
+        DataInputStream receive() throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_FRAME) {
+                throw new IOException("Некорректный размер кадра: " + length);
+            }
+            byte[] frame = new byte[length];
+            in.readFully(frame);
+            byte[] message = crypt(Cipher.DECRYPT_MODE, receiveKey, received++, frame);
+            return new DataInputStream(new ByteArrayInputStream(message));
+        }
+
+        private static byte[] crypt(int mode, SecretKeySpec key, long counter, byte[] data)
+                throws IOException {
+            try {
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                byte[] iv = ByteBuffer.allocate(12).putLong(4, counter).array();
+                cipher.init(mode, key, new GCMParameterSpec(128, iv));
+                return cipher.doFinal(data);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Кадр синхронизации повреждён", e);
+            }
+        }
+    }
+
+    /* ===== CURSORS ===== */
+
+    /**
+     * Возвращает папку основного календаря.
+     */
+    private Path calendarDirectory() {
+        for (Workspace workspace : storage.getWorkspaces()) {
+            if (Storage.DEFAULT_CALENDAR_ID.equals(workspace.getId())) {
+                return workspace.getDirectory();
+            }
+        }
+        throw new IllegalStateException("Основной календарь не подключён");
+    }
+
+    /**
+     * Возвращает путь к файлу смещений основного календаря.
+     */
+    private Path cursorsFile() {
+        return calendarDirectory().resolve(CURSORS_FILE_NAME);
+    }
+
+    private synchronized Properties readCursors() {
+        Properties cursors = new Properties();
+        Path file = cursorsFile();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                cursors.load(in);
+            } catch (IOException e) {
+                logger.warn("Ошибка чтения смещений синхронизации", e);
+            }
+        }
+        return cursors;
+    }
+
+    /**
+     * Возвращает смещение журнала, с которого нужно отправлять операции собеседнику.
+     *
+     * @param peer идентификатор собеседника
+     * @return смещение в журнале
+     */
+    private synchronized long loadCursor(String peer) {
+        String value = readCursors().getProperty(peer);
+        try {
+            return value == null ? 0 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Запоминает смещение журнала, до которого собеседник получил операции.
+     *
+     * @param peer   идентификатор собеседника
+     * @param offset смещение в журнале
+     */
+    private synchronized void saveCursor(String peer, long offset) {
+        Properties cursors = readCursors();
+        cursors.setProperty(peer, Long.toString(offset));
+        try (OutputStream out = Files.newOutputStream(cursorsFile())) {
+            cursors.store(out, "Tsar sync cursors");
+        } catch (IOException e) {
+            logger.error("Ошибка сохранения смещений синхронизации", e);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.storage.NoteRepository;
+import com.tsarskiy.storage.NoteRevision;
+import com.tsarskiy.storage.Storage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Стек отмены и повтора операций над заметками.
+ * <p>
+ * Каждая операция (создание, изменение, удаление, перенос на другую дату)
+ * выполняется как команда: до и после выполнения запоминаются снимки исходных
+ * записей затронутых заметок. Отмена возвращает записи к снимкам «до», повтор —
+ * к снимкам «после», поэтому все виды команд отменяются одинаково.
+ * <p>
+ * Изменения сразу видны в {@link Storage}, а на диск попадают одной записью
+ * по окончании окна {@link Storage#FLUSH_DELAY_MS}, поэтому серия правок
+ * и отмен не перезаписывает файл после каждого действия.
+ * Используется из потока JavaFX.
+ */
+public class UndoManager {
+
+    private static final Logger logger = LogManager.getLogger(UndoManager.class);
+
+    /** Максимальное число команд в стеке отмены. */
+    public static final int LIMIT = 100;
+
+    /**
+     * Состояние исходной записи заметки до и после команды.
+     *
+     * @param noteId идентификатор заметки
+     * @param before снимок до команды или {@code null}, если заметки не было
+     * @param after  снимок после команды или {@code null}, если заметка удалена
+     */
+    private record Change(String noteId, Note before, Note after) {
+    }
+
+    /**
+     * Выполненная команда.
+     *
+     * @param title   название операции для интерфейса
+     * @param changes изменения затронутых заметок
+     */
+    private record Command(String title, List<Change> changes) {
+    }
+
+    private final NoteRepository storage;
+    private final Deque<Command> undoStack = new ArrayDeque<>();
+    private final Deque<Command> redoStack = new ArrayDeque<>();
+
+    /** Подписчики на изменение стеков. */
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Создаёт стек отмены.
+     *
+     * @param storage хранилище заметок
+     */
+    public UndoManager(NoteRepository storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Подписывает обработчик на выполнение, отмену и повтор команд.
+     *
+     * @param listener обработчик
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /* ===== COMMANDS ===== */
+
+    /**
+     * Создаёт заметку.
+     *
+     * @param note новая заметка
+     */
+    public void addNote(Note note) {
+        execute("Создание заметки", List.of(note.getId()), () -> storage.addNote(note));
+    }
+
+    /**
+     * Сохраняет изменённую заметку.
+     *
+     * @param edited изменённая копия заметки или её экземпляра
+     */
+    public void updateNote(Note edited) {
+        execute("Изменение заметки", List.of(edited.getId()), () -> storage.updateNote(edited));
+    }
+
+    /**
+     * Восстанавливает версию заметки из истории.
+     *
+     * @param note     заметка или экземпляр серии
+     * @param revision восстанавливаемая версия
+     */
+    public void restoreRevision(Note note, NoteRevision revision) {
+        execute("Восстановление версии", List.of(note.getId()), () -> storage.restoreRevision(note, revision));
+    }
+
+    /**
+     * Удаляет заметку; для экземпляра серии — только это повторение.
+     *
+     * @param note заметка или экземпляр серии
+     */
+    public void deleteNote(Note note) {
+        execute(note.isOccurrence() ? "Удаление повторения" : "Удаление заметки",
+                List.of(note.getId()), () -> storage.deleteNote(note));
+    }
+
+    /**
+     * Удаляет всю серию повторяющейся заметки.
+     *
+     * @param note исходная запись или экземпляр серии
+     */
+    public void deleteSeries(Note note) {
+        execute("Удаление серии", List.of(note.getId()), () -> storage.deleteSeries(note));
+    }
+
+    /**
+     * Переносит заметку на другую дату. Экземпляр серии переносится
+     * отдельно от серии: повторение исключается, на новую дату
+     * ставится однократная заметка.
+     *
+     * @param note   заметка или экземпляр серии
+     * @param target новая дата
+     * @return перенесённая заметка
+     */
+    public Note moveNote(Note note, LocalDate target) {
+        if (!note.isOccurrence()) {
+            execute("Перенос заметки", List.of(note.getId()), () -> storage.moveNote(note, target));
+            return storage.findNote(note.getId()).orElse(note);
+        }
+
+        Note single = note.copy();
+        single.setId("note-" + UUID.randomUUID());
+        single.setRecurrence(null);
+        single.setDate(target);
+        single.setCreatedAt(LocalDateTime.now());
+        Note detached = single.copy();
+        execute("Перенос повторения", List.of(note.getId(), single.getId()), () -> {
+            storage.deleteNote(note);
+            storage.addNote(detached);
+        });
+        return detached;
+    }
+
+    /**
+     * Выполняет действие и кладёт его в стек отмены.
+     *
+     * @param title   название операции
+     * @param noteIds идентификаторы затронутых заметок
+     * @param action  действие над хранилищем
+     */
+    private void execute(String title, List<String> noteIds, Runnable action) {
+        List<Note> before = snapshot(noteIds);
+        action.run();
+        List<Note> after = snapshot(noteIds);
+
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < noteIds.size(); i++) {
+            changes.add(new Change(noteIds.get(i), before.get(i), after.get(i)));
+        }
+        undoStack.push(new Command(title, changes));
+        if (undoStack.size() > LIMIT) {
+            undoStack.removeLast();
+        }
+        redoStack.clear();
+        logger.debug("Выполнено: {}", title);
+        notifyListeners();
+    }
+
+    /* ===== UNDO / REDO ===== */
+
+    /**
+     * Проверяет, есть ли команда для отмены.
+     *
+     * @return {@code true}, если стек отмены не пуст
+     */
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    /**
+     * Проверяет, есть ли команда для повтора.
+     *
+     * @return {@code true}, если стек повтора не пуст
+     */
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    /**
+     * Возвращает название последней команды, которую можно отменить.
+     *
+     * @return название или пустое значение
+     */
+    public Optional<String> peekUndo() {
+        return Optional.ofNullable(undoStack.peek()).map(Command::title);
+    }
+
+    /**
+     * Отменяет последнюю команду.
+     *
+     * @return название отменённой команды или пустое значение
+     */
+    public Optional<String> undo() {
+        Command command = undoStack.poll();
+        if (command == null) {
+            return Optional.empty();
+        }
+        for (Change change : command.changes()) {
+            restore(change.noteId(), change.before());
+        }
+        redoStack.push(command);
+        logger.info("Отменено: {}", command.title());
+        notifyListeners();
+        return Optional.of(command.title());
+    }
+
+    /**
+     * Повторяет последнюю отменённую команду.
+     *
+     * @return название повторённой команды или пустое значение
+     */
+    public Optional<String> redo() {
+        Command command = redoStack.poll();
+        if (command == null) {
+            return Optional.empty();
+        }
+        for (Change change : command.changes()) {
+            restore(change.noteId(), change.after());
+        }
+        undoStack.push(command);
+        logger.info("Повторено: {}", command.title());
+        notifyListeners();
+        return Optional.of(command.title());
+    }
+
+    /**
+     * Приводит исходную запись заметки к снимку.
+     *
+     * @param noteId идентификатор заметки
+     * @param state  снимок или {@code null}, если заметки быть не должно
+     */
+    private void restore(String noteId, Note state) {
+        Optional<Note> current = storage.findNote(noteId);
+        if (state == null) {
+            current.ifPresent(storage::deleteSeries);
+        } else if (current.isPresent()) {
+            storage.updateNote(state.copy());
+        } else {
+            storage.addNote(state.copy());
+        }
+    }
+
+    /**
+     * Снимает копии исходных записей заметок.
+     *
+     * @param noteIds идентификаторы заметок
+     * @return снимки; {@code null} для отсутствующих заметок
+     */
+    private List<Note> snapshot(List<String> noteIds) {
+        List<Note> result = new ArrayList<>();
+        for (String id : noteIds) {
+            result.add(storage.findNote(id).map(Note::copy).orElse(null));
+        }
+        return result;
+    }
+
+    private void notifyListeners() {
+        listeners.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,108 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.YearCalendar;
+
+import java.time.LocalDate;
+
+/**
+ * Расчёты в рабочих днях по производственному календарю {@link HolidayService}.
+ * <p>
+ * Рабочими считаются дни, у которых {@link com.tsarskiy.model.DayType#isWorking()}:
+ * обычные и сокращённые, в том числе выходные, перенесённые на будни.
+ * Ответы берутся из префиксных сумм {@link YearCalendar}: число рабочих
+ * дней между датами одного года — за O(1), сдвиг на рабочие дни — двоичным
+ * поиском внутри года. По дням ничего не перебирается; между годами
+ * складываются их итоги, то есть работа растёт лишь с числом лет.
+ * Календарь берётся у сервиса при каждом вызове, поэтому смена страны
+ * учитывается сразу.
+ */
+public class WorkingDayCalculator {
+
+    /** Сколько лет подряд без рабочих дней допускается при сдвиге. */
+    private static final int MAX_EMPTY_YEARS = 10;
+
+    private final HolidayService holidayService;
+
+    /**
+     * Создаёт калькулятор.
+     *
+     * @param holidayService сервис праздников
+     */
+    public WorkingDayCalculator(HolidayService holidayService) {
+        this.holidayService = holidayService;
+    }
+
+    /**
+     * Проверяет, рабочий ли день.
+     *
+     * @param date дата
+     * @return {@code true} для рабочего или сокращённого дня
+     */
+    public boolean isWorkingDay(LocalDate date) {
+        return holidayService.getDayType(date).isWorking();
+    }
+
+    /**
+     * Возвращает число рабочих дней от {@code from} включительно
+     * до {@code to} не включительно.
+     *
+     * @param from начало
+     * @param to   конец
+     * @return число рабочих дней; отрицательное, если {@code to} раньше {@code from}
+     */
+    public int workingDaysBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return -workingDaysBetween(to, from);
+        }
+        int count = holidayService.getYear(to.getYear()).getWorkingDaysBefore(to)
+                - holidayService.getYear(from.getYear()).getWorkingDaysBefore(from);
+        for (int year = from.getYear(); year < to.getYear(); year++) {
+            count += holidayService.getYear(year).getWorkingDays();
+        }
+        return count;
+    }
+
+    /**
+     * Сдвигает дату на рабочие дни.
+     * <p>
+     * При положительном {@code days} возвращается {@code days}-й рабочий день
+     * после даты, при отрицательном — такой же день до неё; сама дата
+     * не считается. При нуле дата возвращается как есть.
+     *
+     * @param date дата
+     * @param days число рабочих дней
+     * @return сдвинутая дата
+     * @throws IllegalStateException если в календаре подряд много лет без рабочих дней
+     */
+    public LocalDate addWorkingDays(LocalDate date, int days) {
+        if (days == 0) {
+            return date;
+        }
+        int year = date.getYear();
+        YearCalendar calendar = holidayService.getYear(year);
+        int before = calendar.getWorkingDaysBefore(date);
+        // Номер искомого рабочего дня, считая от начала года даты.
+        long number = days > 0
+                ? before + (isWorkingDay(date) ? 1 : 0) + days
+                : before + days + 1;
+        int empty = 0;
+        while (number > calendar.getWorkingDays()) {
+            number -= calendar.getWorkingDays();
+            empty = calendar.getWorkingDays() == 0 ? empty + 1 : 0;
+            calendar = next(++year, empty);
+        }
+        while (number < 1) {
+            calendar = next(--year, empty);
+            number += calendar.getWorkingDays();
+            empty = calendar.getWorkingDays() == 0 ? empty + 1 : 0;
+        }
+        return calendar.getWorkingDay((int) number);
+    }
+
+    private YearCalendar next(int year, int empty) {
+        if (empty >= MAX_EMPTY_YEARS) {
+            throw new IllegalStateException("В календаре нет рабочих дней " + MAX_EMPTY_YEARS + " лет подряд");
+        }
+        return holidayService.getYear(year);
+    }
+}
@@ -0,0 +1,231 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Attachment;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище файлов вложений с адресацией по содержимому —
+ * папка {@code blobs} в директории календаря.
+ * <p>
+ * Файл лежит под ключом SHA-256 своего содержимого
+ * ({@code blobs/ab/abcdef…}), поэтому одинаковые вложения хранятся один раз.
+ * Импорт копирует файл через {@link FileChannel#transferTo}, без промежуточного
+ * буфера в куче; хэш считается по отображённому в память файлу частями.
+ * Чтение вложения отдаётся потоком.
+ * <p>
+ * Файлы, на которые не ссылается ни одна заметка календаря, удаляет
+ * {@link #sweep(Set, boolean)}. Файл, оставшийся без ссылок во время работы
+ * приложения, живёт ещё {@link #ORPHAN_GRACE}: отмена удаления заметки
+ * или ещё не сохранённая заметка с только что прикреплённым файлом
+ * не теряют вложение.
+ */
+final class AttachmentStore {
+
+    private static final Logger logger = LogManager.getLogger(AttachmentStore.class);
+
+    /** Имя папки вложений. */
+    static final String DIRECTORY_NAME = "blobs";
+
+    /** Размер части файла, отображаемой в память при подсчёте хэша. */
+    private static final long HASH_CHUNK = 64L * 1024 * 1024;
+
+    /** Допустимый ключ: ссылки из синхронизированных заметок не должны выводить из папки. */
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    /** Сколько хранится файл, на который перестали ссылаться во время работы. */
+    static final Duration ORPHAN_GRACE = Duration.ofHours(24);
+
+    /** Папка вложений. */
+    private final Path root;
+
+    /** Ключи файлов без ссылок, замеченных в этом запуске. */
+    private final Set<String> orphans = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Создаёт хранилище вложений в директории календаря.
+     *
+     * @param directory директория календаря
+     */
+    AttachmentStore(Path directory) {
+        this.root = directory.resolve(DIRECTORY_NAME);
+    }
+
+    /**
+     * Копирует файл в хранилище и возвращает ссылку на него.
+     * Если такой файл уже есть, копия удаляется, а файл считается новым
+     * для {@link #sweep(Set, boolean)}.
+     *
+     * @param source исходный файл
+     * @return вложение
+     * @throws IOException если файл не удалось прочитать или записать
+     */
+    Attachment importFile(Path source) throws IOException {
+        Files.createDirectories(root);
+        Path tmp = Files.createTempFile(root, "import-", ".tmp");
+        try {
+            long size;
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                size = in.size();
+                for (long position = 0; position < size; ) {
+                    position += in.transferTo(position, size - position, out);
+                }
+            }
+
+            String hash = hash(tmp, size);
+            Path target = file(hash);
+            if (Files.exists(target)) {
+                Files.delete(tmp);
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                orphans.remove(hash);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            String name = source.getFileName().toString();
+            logger.info("Вложение {} импортировано ({} байт)", name, size);
+            return new Attachment(hash, name, mimeType(source), size);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Возвращает путь к файлу вложения.
+     *
+     * @param attachment вложение
+     * @return путь к файлу
+     * @throws IllegalArgumentException если ключ вложения некорректен
+     */
+    Path file(Attachment attachment) {
+        return file(attachment.getHash());
+    }
+
+    /**
+     * Открывает вложение для чтения потоком.
+     *
+     * @param attachment вложение
+     * @return поток содержимого
+     * @throws IOException если файл не найден
+     */
+    InputStream open(Attachment attachment) throws IOException {
+        return Files.newInputStream(file(attachment));
+    }
+
+    /**
+     * Удаляет файлы, на которые не ссылается ни одна заметка календаря.
+     * <p>
+     * При первой проверке после открытия календаря ({@code baseline}) отмены
+     * ещё нет, поэтому удаляются все файлы без ссылок старше {@link #ORPHAN_GRACE}.
+     * При следующих файл, впервые замеченный без ссылок, получает текущее
+     * время изменения и удаляется, только если остаётся без ссылок
+     * дольше {@link #ORPHAN_GRACE}.
+     *
+     * @param referenced ключи вложений заметок календаря
+     * @param baseline   первая проверка после открытия календаря
+     * @return число удалённых файлов
+     * @throws IOException если папку вложений не удалось прочитать
+     */
+    int sweep(Set<String> referenced, boolean baseline) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        FileTime cutoff = FileTime.from(Instant.now().minus(ORPHAN_GRACE));
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root, 2)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        int deleted = 0;
+        for (Path file : files) {
+            String hash = file.getFileName().toString();
+            if (!HASH.matcher(hash).matches() || referenced.contains(hash)) {
+                orphans.remove(hash);
+                continue;
+            }
+            if (!baseline && orphans.add(hash)) {
+                Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            } else if (Files.getLastModifiedTime(file).compareTo(cutoff) < 0) {
+                Files.deleteIfExists(file);
+                orphans.remove(hash);
+                deleted++;
+            } else {
+                orphans.add(hash);
+            }
+        }
+        if (deleted > 0) {
+            logger.info("Удалено вложений без ссылок: {}", deleted);
+        }
+        return deleted;
+    }
+
+    private Path file(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Некорректный ключ вложения: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * Считает SHA-256 файла, отображая его в память частями.
+     */
+    private static String hash(Path file, long size) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (long position = 0; position < size; position += HASH_CHUNK) {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, Math.min(HASH_CHUNK, size - position));
+                digest.update(chunk);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Определяет MIME-тип файла, при неудаче — по расширению.
+     */
+    private static String mimeType(Path source) {
+        try {
+            String type = Files.probeContentType(source);
+            if (type != null) {
+                return type;
+            }
+        } catch (IOException e) {
+            logger.debug("Тип файла {} не определён", source, e);
+        }
+        String name = source.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".png")) return "image/png";
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return "image/jpeg";
+        if (name.endsWith(".gif")) return "image/gif";
+        if (name.endsWith(".bmp")) return "image/bmp";
+        if (name.endsWith(".pdf")) return "application/pdf";
+        return null;
+    }
+}
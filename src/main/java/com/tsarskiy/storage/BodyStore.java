@@ -0,0 +1,256 @@
+package com.tsarskiy.storage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище текстов заметок с адресацией по содержимому — файл {@code bodies.bin}.
+ * <p>
+ * Каждый различный текст лежит на диске и в памяти один раз под ключом SHA-256,
+ * а заметки ссылаются на него по ключу. Новые тексты дописываются в конец файла;
+ * тексты, на которые не осталось ссылок, удаляются при уплотнении —
+ * перезаписи файла без мусора, когда мусор занимает больше половины файла.
+ * <p>
+ * Счётчики ссылок пересчитываются при каждом сохранении календаря
+ * ({@link #beginCount()} и {@link #acquire(String)}). Класс не потокобезопасен.
+ */
+final class BodyStore {
+
+    private static final Logger logger = LogManager.getLogger(BodyStore.class);
+
+    /** Имя файла текстов. */
+    static final String FILE_NAME = "bodies.bin";
+
+    /**
+     * Сводка по хранилищу текстов.
+     *
+     * @param bodies      число различных текстов
+     * @param references  число ссылок на тексты
+     * @param storedBytes размер различных текстов в байтах
+     * @param savedBytes  байты, сэкономленные на повторах
+     */
+    record Stats(int bodies, int references, long storedBytes, long savedBytes) {
+    }
+
+    /** Текст и число ссылок на него. */
+    private static final class Body {
+        private final String hash;
+        private final String text;
+        private final int bytes;
+        private int refs;
+
+        private Body(String hash, String text, int bytes) {
+            this.hash = hash;
+            this.text = text;
+            this.bytes = bytes;
+        }
+    }
+
+    /** Файл текстов. */
+    private final Path file;
+
+    /** Тексты по ключу. */
+    private final Map<String, Body> byHash = new HashMap<>();
+
+    /** Тексты по содержимому — чтобы не считать хэш уже известных текстов. */
+    private final Map<String, Body> byText = new HashMap<>();
+
+    /** Новые тексты, ещё не записанные в файл. */
+    private final List<Body> pending = new ArrayList<>();
+
+    /**
+     * Создаёт хранилище текстов в директории календаря.
+     *
+     * @param directory директория календаря
+     */
+    BodyStore(Path directory) {
+        this.file = directory.resolve(FILE_NAME);
+    }
+
+    /**
+     * Читает тексты из файла. Оборванная последняя запись пропускается.
+     */
+    void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                String hash;
+                byte[] bytes;
+                try {
+                    hash = in.readUTF();
+                    bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                } catch (EOFException e) {
+                    break;
+                }
+                register(hash, new String(bytes, StandardCharsets.UTF_8), bytes.length);
+            }
+        } catch (IOException e) {
+            logger.error("Ошибка чтения текстов заметок", e);
+        }
+    }
+
+    private Body register(String hash, String text, int bytes) {
+        Body body = new Body(hash, text, bytes);
+        byHash.put(hash, body);
+        byText.put(text, body);
+        return body;
+    }
+
+    /**
+     * Возвращает текст по ключу.
+     *
+     * @param hash ключ текста
+     * @return текст или {@code null}, если ключ неизвестен
+     */
+    String text(String hash) {
+        Body body = byHash.get(hash);
+        return body == null ? null : body.text;
+    }
+
+    /**
+     * Обнуляет счётчики ссылок перед пересчётом.
+     */
+    void beginCount() {
+        for (Body body : byHash.values()) {
+            body.refs = 0;
+        }
+    }
+
+    /**
+     * Учитывает ссылку на текст, добавляя его, если такого текста ещё нет.
+     *
+     * @param text текст заметки
+     * @return ключ текста
+     */
+    String acquire(String text) {
+        Body body = byText.get(text);
+        if (body == null) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            body = register(hash(bytes), text, bytes.length);
+            pending.add(body);
+        }
+        body.refs++;
+        return body.hash;
+    }
+
+    /**
+     * Дописывает в файл новые тексты.
+     *
+     * @throws IOException если запись не удалась
+     */
+    void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            for (Body body : pending) {
+                write(out, body);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * Удаляет тексты без ссылок и перезаписывает файл,
+     * если мусор занимает больше половины файла.
+     * Вызывается после записи заметок, чтобы файл заметок не ссылался на удалённые тексты.
+     *
+     * @return {@code true}, если файл был уплотнён
+     */
+    boolean compactIfNeeded() {
+        long live = 0;
+        long garbage = 0;
+        for (Body body : byHash.values()) {
+            if (body.refs > 0) {
+                live += body.bytes;
+            } else {
+                garbage += body.bytes;
+            }
+        }
+        if (garbage == 0 || garbage < live) {
+            return false;
+        }
+
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            for (Body body : byHash.values()) {
+                if (body.refs > 0) {
+                    write(out, body);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Ошибка уплотнения текстов заметок", e);
+            return false;
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Ошибка замены файла текстов", e);
+            return false;
+        }
+
+        byHash.values().removeIf(body -> body.refs == 0);
+        byText.values().removeIf(body -> body.refs == 0);
+        logger.info("Тексты заметок уплотнены: удалено {} байт", garbage);
+        return true;
+    }
+
+    /**
+     * Возвращает сводку по текстам, на которые есть ссылки.
+     *
+     * @return сводка
+     */
+    Stats stats() {
+        int bodies = 0;
+        int references = 0;
+        long stored = 0;
+        long saved = 0;
+        for (Body body : byHash.values()) {
+            if (body.refs > 0) {
+                bodies++;
+                references += body.refs;
+                stored += body.bytes;
+                saved += (long) (body.refs - 1) * body.bytes;
+            }
+        }
+        return new Stats(bodies, references, stored, saved);
+    }
+
+    private static void write(DataOutputStream out, Body body) throws IOException {
+        byte[] bytes = body.text.getBytes(StandardCharsets.UTF_8);
+        out.writeUTF(body.hash);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
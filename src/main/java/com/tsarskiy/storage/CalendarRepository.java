@@ -0,0 +1,105 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Attachment;
+import com.tsarskiy.model.Note;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Доступ к заметкам вместе с календарями, вложениями и настройками
+ * отображения — всё, что нужно окнам приложения.
+ * <p>
+ * Сервисам, которым хватает заметок, передаётся {@link NoteRepository};
+ * окна календаря и заметки получают этот интерфейс, поэтому не зависят
+ * от {@link Storage} и его единственного экземпляра.
+ */
+public interface CalendarRepository extends NoteRepository {
+
+    /* ===== CALENDARS ===== */
+
+    /**
+     * Возвращает директорию хранения основного календаря.
+     *
+     * @return директория или пустое значение, если она не выбрана
+     */
+    Optional<Path> getStorageDirectory();
+
+    /**
+     * Возвращает подключённые календари в порядке подключения.
+     *
+     * @return список календарей
+     */
+    List<Workspace> getWorkspaces();
+
+    /**
+     * Подключает дополнительный календарь с собственной директорией хранения.
+     * Заметки календаря загружаются в фоне через {@link #loadIndexAsync()}.
+     *
+     * @param name название календаря
+     * @param dir  директория хранения календаря
+     * @return подключённый календарь
+     * @throws RuntimeException если не удалось создать директорию
+     */
+    Workspace addWorkspace(String name, Path dir);
+
+    /**
+     * Проверяет, отображается ли календарь.
+     *
+     * @param id идентификатор календаря
+     * @return {@code true}, если календарь виден
+     */
+    boolean isWorkspaceVisible(String id);
+
+    /**
+     * Показывает или скрывает календарь. Данные календаря остаются в памяти.
+     *
+     * @param id      идентификатор календаря
+     * @param visible {@code true}, чтобы показать календарь
+     */
+    void setWorkspaceVisible(String id, boolean visible);
+
+    /* ===== ATTACHMENTS ===== */
+
+    /**
+     * Проверяет, можно ли прикреплять файлы к заметкам календаря.
+     *
+     * @param calendarId календарь или {@code null} для основного
+     * @return {@code true}, если вложения поддерживаются
+     */
+    boolean supportsAttachments(String calendarId);
+
+    /**
+     * Копирует файл в хранилище вложений календаря. Метод можно вызывать
+     * из фонового потока.
+     *
+     * @param calendarId календарь заметки или {@code null} для основного
+     * @param source     исходный файл
+     * @return вложение для {@link Note#setAttachments(List)}
+     * @throws IOException           если файл не удалось скопировать
+     * @throws IllegalStateException если календарь не поддерживает вложения
+     */
+    Attachment importAttachment(String calendarId, Path source) throws IOException;
+
+    /**
+     * Возвращает путь к файлу вложения в календаре заметки.
+     *
+     * @param note       заметка или её экземпляр
+     * @param attachment вложение
+     * @return путь к файлу
+     */
+    Path getAttachmentFile(Note note, Attachment attachment);
+
+    /**
+     * Открывает вложение из календаря заметки для чтения потоком.
+     *
+     * @param note       заметка или её экземпляр
+     * @param attachment вложение
+     * @return поток содержимого
+     * @throws IOException если файл вложения не найден
+     */
+    InputStream openAttachment(Note note, Attachment attachment) throws IOException;
+}
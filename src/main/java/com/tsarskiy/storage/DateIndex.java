@@ -0,0 +1,330 @@
+package com.tsarskiy.storage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Индекс элементов по дню без упакованных ключей.
+ * <p>
+ * Элементы лежат в одном массиве, сгруппированные по дню (номер дня от эпохи,
+ * {@code LocalDate.toEpochDay()}). Массив {@code days} хранит различные дни
+ * по возрастанию, массив {@code offsets} — начало группы каждого дня в массиве
+ * элементов. Элементы дня или диапазона дней находятся двумя двоичными поисками
+ * и лежат подряд, поэтому на элемент приходится одна ссылка в массиве,
+ * а на день — два {@code int}, без {@code LocalDate}, узлов хэш-таблицы и списков.
+ * <p>
+ * Массивы индекса неизменяемы. Добавление ({@link #add}), удаление
+ * ({@link #remove}) и перенос элемента на другой день ({@link #move})
+ * записываются в небольшой слой поверх массивов за O(1) и учитываются
+ * при выборках; владелец индекса перестраивает его целиком, когда слой
+ * разрастается ({@link #pendingChanges()}). Индекс не потокобезопасен.
+ *
+ * @param <T> тип элементов
+ */
+final class DateIndex<T> {
+
+    /**
+     * Обработчик элементов одного дня.
+     *
+     * @param <T> тип элементов
+     */
+    @FunctionalInterface
+    interface DayConsumer<T> {
+
+        /**
+         * Обрабатывает элементы дня.
+         *
+         * @param epochDay номер дня от эпохи
+         * @param items    элементы дня (неизменяемое представление)
+         */
+        void accept(int epochDay, List<T> items);
+    }
+
+    /** Массивы пустого индекса: не изменяются, поэтому общие. */
+    private static final int[] NO_DAYS = new int[0];
+    private static final int[] NO_OFFSETS = {0};
+    private static final Object[] NO_ITEMS = new Object[0];
+
+    /** Различные дни по возрастанию. */
+    private final int[] days;
+
+    /** Начало группы дня {@code days[i]} в {@link #items}; последний элемент — размер. */
+    private final int[] offsets;
+
+    /** Элементы, сгруппированные по дню. */
+    private final Object[] items;
+
+    /** Добавленные и перенесённые элементы по новому дню. */
+    private final Map<Integer, List<T>> movedIn = new HashMap<>();
+
+    /** Элементы массивов, удалённые или перенесённые на другой день, с исходным днём. */
+    private final Map<T, Integer> movedOut = new IdentityHashMap<>();
+
+    /** Число изменений с момента построения. */
+    private int changes;
+
+    private DateIndex(int[] days, int[] offsets, Object[] items) {
+        this.days = days;
+        this.offsets = offsets;
+        this.items = items;
+    }
+
+    /**
+     * Возвращает пустой индекс.
+     *
+     * @param <T> тип элементов
+     * @return пустой индекс
+     */
+    static <T> DateIndex<T> empty() {
+        return new DateIndex<>(NO_DAYS, NO_OFFSETS, NO_ITEMS);
+    }
+
+    /**
+     * Строит индекс по списку элементов. Порядок элементов одного дня сохраняется.
+     *
+     * @param source элементы
+     * @param day    номер дня элемента от эпохи
+     * @param <T>    тип элементов
+     * @return индекс
+     */
+    static <T> DateIndex<T> build(List<T> source, ToIntFunction<T> day) {
+        if (source.isEmpty()) {
+            return empty();
+        }
+        int n = source.size();
+        /* День в старших 32 битах, исходная позиция в младших: сортировка long[]
+           упорядочивает по дню и сохраняет порядок элементов одного дня. */
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = ((long) day.applyAsInt(source.get(i)) << 32) | i;
+        }
+        Arrays.sort(order);
+
+        Object[] sorted = new Object[n];
+        int[] days = new int[n];
+        int[] offsets = new int[n + 1];
+        int groups = 0;
+        for (int i = 0; i < n; i++) {
+            int k = (int) (order[i] >> 32);
+            sorted[i] = source.get((int) order[i]);
+            if (groups == 0 || days[groups - 1] != k) {
+                days[groups] = k;
+                offsets[groups] = i;
+                groups++;
+            }
+        }
+        offsets[groups] = n;
+        return new DateIndex<>(Arrays.copyOf(days, groups), Arrays.copyOf(offsets, groups + 1), sorted);
+    }
+
+    /**
+     * Добавляет элемент в день, не перестраивая массивы.
+     *
+     * @param item элемент
+     * @param day  день элемента от эпохи
+     */
+    void add(T item, int day) {
+        movedIn.computeIfAbsent(day, d -> new ArrayList<>(2)).add(item);
+        changes++;
+    }
+
+    /**
+     * Удаляет элемент из дня, не перестраивая массивы.
+     *
+     * @param item элемент индекса (сравнивается по ссылке)
+     * @param day  день элемента от эпохи
+     */
+    void remove(T item, int day) {
+        List<T> added = movedIn.get(day);
+        if (added != null && removeSame(added, item)) {
+            if (added.isEmpty()) {
+                movedIn.remove(day);
+            }
+        } else {
+            movedOut.put(item, day);
+        }
+        changes++;
+    }
+
+    /**
+     * Переносит элемент на другой день, не перестраивая массивы.
+     * Исходный элемент может быть заменён новым (например, копией с новой датой).
+     *
+     * @param item        элемент индекса
+     * @param replacement элемент, который окажется в новом дне
+     * @param from        прежний день элемента от эпохи
+     * @param to          новый день от эпохи
+     */
+    void move(T item, T replacement, int from, int to) {
+        remove(item, from);
+        add(replacement, to);
+    }
+
+    /**
+     * Возвращает число изменений, выполненных с момента построения индекса.
+     *
+     * @return число добавлений, удалений и переносов
+     */
+    int pendingChanges() {
+        return changes;
+    }
+
+    /**
+     * Передаёт обработчику непустые дни из диапазона {@code [from, to]}
+     * по возрастанию вместе с их элементами.
+     *
+     * @param from   первый день диапазона от эпохи
+     * @param to     последний день диапазона от эпохи
+     * @param action обработчик дней
+     */
+    @SuppressWarnings("unchecked")
+    void forEachDay(int from, int to, DayConsumer<T> action) {
+        List<T> all = (List<T>) Collections.unmodifiableList(Arrays.asList(items));
+        int lo = lowerBound(from);
+        int hi = to == Integer.MAX_VALUE ? days.length : lowerBound(to + 1);
+        if (changes == 0) {
+            for (int g = lo; g < hi; g++) {
+                action.accept(days[g], all.subList(offsets[g], offsets[g + 1]));
+            }
+            return;
+        }
+
+        /* Слияние дней массивов с днями, в которые переносились элементы. */
+        int[] extra = new int[movedIn.size()];
+        int count = 0;
+        for (int day : movedIn.keySet()) {
+            if (day >= from && day <= to) {
+                extra[count++] = day;
+            }
+        }
+        Arrays.sort(extra, 0, count);
+
+        int g = lo;
+        int e = 0;
+        while (g < hi || e < count) {
+            int day = e == count || (g < hi && days[g] <= extra[e]) ? days[g] : extra[e];
+            List<T> group = g < hi && days[g] == day
+                    ? withoutMoved(all.subList(offsets[g], offsets[g + 1]))
+                    : List.of();
+            List<T> moved = e < count && extra[e] == day ? movedIn.get(day) : null;
+            if (moved != null) {
+                group = new ArrayList<>(group);
+                group.addAll(moved);
+                group = Collections.unmodifiableList(group);
+            }
+            if (!group.isEmpty()) {
+                action.accept(day, group);
+            }
+            if (g < hi && days[g] == day) {
+                g++;
+            }
+            if (e < count && extra[e] == day) {
+                e++;
+            }
+        }
+    }
+
+    /**
+     * Возвращает число элементов в днях из диапазона {@code [from, to]}.
+     *
+     * @param from первый день диапазона от эпохи
+     * @param to   последний день диапазона от эпохи
+     * @return число элементов
+     */
+    int count(int from, int to) {
+        int hi = to == Integer.MAX_VALUE ? days.length : lowerBound(to + 1);
+        int result = offsets[hi] - offsets[lowerBound(from)];
+        if (changes == 0) {
+            return result;
+        }
+        for (int day : movedOut.values()) {
+            if (day >= from && day <= to) {
+                result--;
+            }
+        }
+        for (Map.Entry<Integer, List<T>> entry : movedIn.entrySet()) {
+            if (entry.getKey() >= from && entry.getKey() <= to) {
+                result += entry.getValue().size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает группу дня без элементов, перенесённых на другие дни.
+     */
+    private List<T> withoutMoved(List<T> group) {
+        if (movedOut.isEmpty()) {
+            return group;
+        }
+        List<T> result = null;
+        for (int i = 0; i < group.size(); i++) {
+            T item = group.get(i);
+            if (movedOut.containsKey(item)) {
+                if (result == null) {
+                    result = new ArrayList<>(group.subList(0, i));
+                }
+            } else if (result != null) {
+                result.add(item);
+            }
+        }
+        return result == null ? group : Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Удаляет из списка сам элемент (по ссылке, а не по равенству).
+     */
+    private static <T> boolean removeSame(List<T> list, T item) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == item) {
+                list.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает номер дня от эпохи, ограниченный диапазоном {@code int}.
+     *
+     * @param date дата
+     * @return номер дня
+     */
+    static int epochDay(LocalDate date) {
+        long day = date.toEpochDay();
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, day));
+    }
+
+    /**
+     * Возвращает позицию первого дня, не меньшего указанного.
+     */
+    private int lowerBound(int day) {
+        int lo = 0;
+        int hi = days.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < day) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Возвращает число элементов индекса.
+     *
+     * @return размер индекса
+     */
+    int size() {
+        return items.length;
+    }
+}
@@ -0,0 +1,544 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Зашифрованный бэкенд: заметки лежат в директории {@value #DIRECTORY_NAME}
+ * сегментами по месяцам, каждый сегмент зашифрован {@link NoteCipher}
+ * целиком.
+ * <p>
+ * Сегмент {@code YYYY-MM.seg} содержит однократные заметки месяца вместе
+ * с текстами; повторяющиеся серии лежат в {@value #SERIES}, заметки без
+ * даты — в {@value #UNDATED}. При открытии календаря ({@link #loadPartial()})
+ * расшифровываются только манифест и эти два сегмента, а сегмент месяца —
+ * когда календарь впервые обращается к его датам ({@link #loadMonth(YearMonth)}),
+ * поэтому просмотр одного месяца расшифровывает один сегмент. Полное чтение
+ * {@link #load()} расшифровывает все сегменты. Имя сегмента входит
+ * в проверяемые данные шифра, поэтому переставить сегменты местами незаметно нельзя.
+ * <p>
+ * Сохранение перешифровывает только сегменты месяцев, в которых заметки
+ * добавлены, изменены, удалены или откуда перенесены. Перед этим сегмент
+ * расшифровывается с диска: заметки, которых нет среди переданных и которые
+ * не удалены, остаются в сегменте — так правка не теряет заметки месяца,
+ * ещё не прочитанного календарём.
+ * <p>
+ * Зашифрованный манифест {@value #MANIFEST} перечисляет сегменты с хешами
+ * SHA-256 их содержимого и тегами их заметок и хранит наибольшую версию
+ * записанных заметок: теги и часы синхронизации известны без расшифровки
+ * месяцев. Удалённый, подброшенный или заменённый старой копией сегмент
+ * обнаруживается при чтении. Манифест пишется в два шага — до записи
+ * сегментов он допускает и старый, и новый хеш, после — только новый, —
+ * поэтому сбой посреди сохранения не делает календарь нечитаемым.
+ * Откат всей папки вместе с манифестом на прежнюю копию так не обнаружить.
+ * <p>
+ * Если сегмент не удалось расшифровать или он не сходится с манифестом,
+ * запись отклоняется: иначе неполный список заметок затёр бы непрочитанные
+ * сегменты.
+ * <p>
+ * Месяц читается под блокировкой {@link Storage}, а запись идёт вне её,
+ * поэтому методы бэкенда синхронизированы.
+ */
+final class EncryptedStorageBackend implements StorageBackend {
+
+    private static final Logger logger = LogManager.getLogger(EncryptedStorageBackend.class);
+
+    /** Имя директории сегментов. */
+    static final String DIRECTORY_NAME = "segments";
+
+    /** Расширение файла сегмента. */
+    private static final String EXTENSION = ".seg";
+
+    /** Сегмент заметок без даты. */
+    static final String UNDATED = "undated" + EXTENSION;
+
+    /** Сегмент повторяющихся серий. */
+    static final String SERIES = "series" + EXTENSION;
+
+    /** Имя манифеста сегментов. */
+    static final String MANIFEST = "manifest.bin";
+
+    /** Хеш, обозначающий в манифесте допустимое отсутствие сегмента. */
+    private static final byte[] ABSENT = new byte[32];
+
+    private final Path segments;
+    private final NoteCipher cipher;
+
+    /** Сегмент каждой прочитанной или записанной заметки или {@code null}, пока манифест не прочитан. */
+    private Map<String, String> segmentOf;
+
+    /** Допустимые хеши сегментов по имени, как в манифесте, или {@code null}, пока он не прочитан. */
+    private Map<String, List<byte[]>> digests;
+
+    /** Теги заметок сегментов по имени. */
+    private Map<String, Set<String>> tags;
+
+    /** Наибольшая версия записанных заметок. */
+    private long highestVersion;
+
+    /** Были ли при последнем чтении прочитаны все сегменты. */
+    private boolean complete;
+
+    /** Был ли сегмент, который не удалось расшифровать или который не сходится с манифестом. */
+    private boolean unreadable;
+
+    /**
+     * Создаёт зашифрованный бэкенд.
+     *
+     * @param directory директория хранения
+     * @param cipher    шифр календаря
+     */
+    EncryptedStorageBackend(Path directory, NoteCipher cipher) {
+        this.segments = directory.resolve(DIRECTORY_NAME);
+        this.cipher = cipher;
+    }
+
+    @Override
+    public Kind getKind() {
+        return Kind.ENCRYPTED;
+    }
+
+    @Override
+    public synchronized List<Note> load() throws IOException {
+        openManifest();
+        List<Note> notes = new ArrayList<>();
+        Set<String> names = new TreeSet<>(segmentNames());
+        names.addAll(digests.keySet());
+        for (String name : names) {
+            try {
+                notes.addAll(deliver(name));
+            } catch (IOException e) {
+                unreadable = true;
+                logger.error("Сегмент {} не прочитан", name, e);
+            }
+        }
+        if (unreadable) {
+            throw new IOException("Часть заметок не удалось расшифровать, запись отключена");
+        }
+        complete = true;
+        return notes;
+    }
+
+    @Override
+    public synchronized Partial loadPartial() throws IOException {
+        openManifest();
+        Set<String> files = new TreeSet<>(segmentNames());
+        Map<YearMonth, Set<String>> months = new TreeMap<>();
+        List<Note> notes = new ArrayList<>();
+        try {
+            for (String name : digests.keySet()) {
+                if (!files.contains(name) && !allowed(digests.get(name), ABSENT)) {
+                    throw new IOException("Сегмент " + name + " удалён в обход программы");
+                }
+            }
+            for (String name : files) {
+                if (!digests.containsKey(name)) {
+                    throw new IOException("Сегмент " + name + " не совпадает с манифестом");
+                }
+                if (name.equals(UNDATED) || name.equals(SERIES)) {
+                    notes.addAll(deliver(name));
+                } else {
+                    months.put(monthOf(name), Set.copyOf(tags.getOrDefault(name, Set.of())));
+                }
+            }
+        } catch (IOException e) {
+            unreadable = true;
+            throw e;
+        }
+        return new Partial(notes, months, highestVersion);
+    }
+
+    @Override
+    public synchronized List<Note> loadMonth(YearMonth month) throws IOException {
+        if (digests == null) {
+            openManifest();
+        }
+        try {
+            return deliver(month + EXTENSION);
+        } catch (IOException e) {
+            unreadable = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void write(List<Note> notes, Changes changes) throws IOException {
+        if (unreadable) {
+            throw new IOException("Заметки прочитаны не полностью, запись отменена");
+        }
+        Files.createDirectories(segments);
+        if (changes.full() || segmentOf == null || digests == null) {
+            writeAll(notes);
+            return;
+        }
+
+        Set<String> affected = new HashSet<>();
+        for (String id : changes.removed()) {
+            String previous = segmentOf.remove(id);
+            if (previous != null) {
+                affected.add(previous);
+            }
+        }
+        Set<String> ids = new HashSet<>();
+        for (Note note : notes) {
+            ids.add(note.getId());
+            if (changes.upserted().contains(note.getId())) {
+                String name = segmentName(note);
+                String previous = segmentOf.put(note.getId(), name);
+                affected.add(name);
+                if (previous != null) {
+                    affected.add(previous);
+                }
+            }
+        }
+
+        Map<String, List<Note>> bySegment = new HashMap<>();
+        for (String name : affected) {
+            List<Note> bucket = new ArrayList<>();
+            if (!complete) {
+                try {
+                    for (Note kept : readSegment(name)) {
+                        if (!ids.contains(kept.getId()) && !changes.removed().contains(kept.getId())) {
+                            bucket.add(kept);
+                            segmentOf.put(kept.getId(), name);
+                        }
+                    }
+                } catch (IOException e) {
+                    unreadable = true;
+                    throw e;
+                }
+            }
+            bySegment.put(name, bucket);
+        }
+        for (Note note : notes) {
+            List<Note> bucket = bySegment.get(segmentOf.get(note.getId()));
+            if (bucket != null) {
+                bucket.add(note);
+            }
+        }
+        commit(bySegment, Set.of());
+        logger.debug("Перешифровано сегментов: {}", affected.size());
+    }
+
+    @Override
+    public synchronized void close() {
+        segmentOf = null;
+        digests = null;
+        tags = null;
+        highestVersion = 0;
+        complete = false;
+        unreadable = false;
+    }
+
+    /**
+     * Читает манифест и начинает новое чтение сегментов.
+     *
+     * @throws IOException если манифест не читается
+     */
+    private void openManifest() throws IOException {
+        segmentOf = new HashMap<>();
+        digests = new HashMap<>();
+        tags = new HashMap<>();
+        highestVersion = 0;
+        complete = false;
+        unreadable = false;
+        try {
+            readManifest();
+        } catch (IOException e) {
+            unreadable = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет сегмент по манифесту и расшифровывает его.
+     *
+     * @param name имя сегмента
+     * @return заметки сегмента; пустой список, если сегмента нет и манифест это допускает
+     * @throws IOException если сегмент не сходится с манифестом или не расшифровывается
+     */
+    private List<Note> readSegment(String name) throws IOException {
+        Path file = segments.resolve(name);
+        byte[] sealed = Files.exists(file) ? Files.readAllBytes(file) : null;
+        if (sealed == null && !digests.containsKey(name)) {
+            return List.of();
+        }
+        byte[] digest = sealed == null ? ABSENT : sha256(sealed);
+        if (!allowed(digests.get(name), digest)) {
+            throw new IOException(sealed == null
+                    ? "Сегмент " + name + " удалён в обход программы"
+                    : "Сегмент " + name + " не совпадает с манифестом");
+        }
+        if (sealed == null) {
+            digests.remove(name);
+            tags.remove(name);
+            return List.of();
+        }
+        digests.put(name, List.of(digest));
+        return read(name, sealed);
+    }
+
+    /**
+     * Расшифровывает сегмент, отдаваемый календарю, и запоминает сегмент каждой его заметки.
+     */
+    private List<Note> deliver(String name) throws IOException {
+        List<Note> notes = readSegment(name);
+        for (Note note : notes) {
+            segmentOf.put(note.getId(), name);
+        }
+        return notes;
+    }
+
+    /**
+     * Перезаписывает все сегменты и удаляет сегменты, в которых заметок не осталось.
+     */
+    private void writeAll(List<Note> notes) throws IOException {
+        Map<String, List<Note>> bySegment = new HashMap<>();
+        Map<String, String> index = new HashMap<>();
+        for (Note note : notes) {
+            String name = segmentName(note);
+            bySegment.computeIfAbsent(name, k -> new ArrayList<>()).add(note);
+            index.put(note.getId(), name);
+        }
+        Set<String> stale = new HashSet<>(segmentNames());
+        stale.removeAll(bySegment.keySet());
+        if (digests == null) {
+            digests = new HashMap<>();
+            tags = new HashMap<>();
+        }
+        commit(bySegment, stale);
+        segmentOf = index;
+        complete = true;
+    }
+
+    /**
+     * Шифрует сегменты и записывает их вместе с манифестом: сначала манифест,
+     * допускающий старые и новые хеши, затем сегменты, затем манифест только
+     * с новыми хешами.
+     *
+     * @param bySegment новые заметки перезаписываемых сегментов; пустой список — удалить сегмент
+     * @param stale     сегменты, которые нужно удалить
+     */
+    private void commit(Map<String, List<Note>> bySegment, Set<String> stale) throws IOException {
+        Map<String, byte[]> sealed = new HashMap<>();
+        Map<String, Set<String>> sealedTags = new HashMap<>();
+        long highest = highestVersion;
+        for (Map.Entry<String, List<Note>> segment : bySegment.entrySet()) {
+            if (!segment.getValue().isEmpty()) {
+                sealed.put(segment.getKey(), seal(segment.getKey(), segment.getValue()));
+                Set<String> segmentTags = new TreeSet<>();
+                for (Note note : segment.getValue()) {
+                    segmentTags.addAll(note.getTags());
+                    highest = Math.max(highest, note.getVersion());
+                }
+                sealedTags.put(segment.getKey(), segmentTags);
+            }
+        }
+        Set<String> touched = new HashSet<>(bySegment.keySet());
+        touched.addAll(stale);
+
+        Map<String, List<byte[]>> updated = new HashMap<>(digests);
+        Map<String, List<byte[]>> transition = new HashMap<>(digests);
+        Map<String, Set<String>> updatedTags = new HashMap<>(tags);
+        for (String name : touched) {
+            byte[] next = sealed.containsKey(name) ? sha256(sealed.get(name)) : ABSENT;
+            List<byte[]> variants = new ArrayList<>(digests.getOrDefault(name, List.of(ABSENT)));
+            variants.add(next);
+            transition.put(name, variants);
+            if (next == ABSENT) {
+                updated.remove(name);
+                updatedTags.remove(name);
+            } else {
+                updated.put(name, List.of(next));
+                updatedTags.put(name, sealedTags.get(name));
+            }
+        }
+        writeManifest(transition, updatedTags, highest);
+
+        for (String name : touched) {
+            Path file = segments.resolve(name);
+            byte[] data = sealed.get(name);
+            if (data == null) {
+                Files.deleteIfExists(file);
+            } else {
+                Path tmp = segments.resolve(name + ".tmp");
+                Files.write(tmp, data);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        writeManifest(updated, updatedTags, highest);
+        digests = updated;
+        tags = updatedTags;
+        highestVersion = highest;
+    }
+
+    /**
+     * Шифрует заметки сегмента.
+     */
+    private byte[] seal(String name, List<Note> notes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(notes.size() * 256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new ArrayList<>(notes));
+        }
+        return cipher.seal(bytes.toByteArray(), name);
+    }
+
+    /**
+     * Расшифровывает сегмент.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Note> read(String name, byte[] sealed) throws IOException {
+        byte[] plain = cipher.open(sealed, name);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(plain))) {
+            return (List<Note>) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Сегмент " + name + " не читается", e);
+        }
+    }
+
+    /* ===== MANIFEST ===== */
+
+    /**
+     * Читает манифест: допустимые хеши и теги каждого сегмента и наибольшую версию.
+     * Если манифеста нет, в директории не должно быть и сегментов.
+     *
+     * @throws IOException если манифест повреждён или пропал при наличии сегментов
+     */
+    private void readManifest() throws IOException {
+        Path file = segments.resolve(MANIFEST);
+        if (!Files.exists(file)) {
+            if (!segmentNames().isEmpty()) {
+                throw new IOException("Манифест сегментов отсутствует, запись отключена");
+            }
+            return;
+        }
+        byte[] plain = cipher.open(Files.readAllBytes(file), MANIFEST);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int variants = in.readUnsignedByte();
+                List<byte[]> allowed = new ArrayList<>(variants);
+                for (int j = 0; j < variants; j++) {
+                    byte[] digest = new byte[ABSENT.length];
+                    in.readFully(digest);
+                    allowed.add(digest);
+                }
+                int tagCount = in.readInt();
+                Set<String> segmentTags = new TreeSet<>();
+                for (int j = 0; j < tagCount; j++) {
+                    segmentTags.add(in.readUTF());
+                }
+                digests.put(name, allowed);
+                tags.put(name, segmentTags);
+            }
+            highestVersion = in.readLong();
+        }
+    }
+
+    /**
+     * Шифрует и записывает манифест через временный файл.
+     */
+    private void writeManifest(Map<String, List<byte[]>> manifest, Map<String, Set<String>> segmentTags,
+                               long highest) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(manifest.size());
+            for (Map.Entry<String, List<byte[]>> entry : new TreeMap<>(manifest).entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeByte(entry.getValue().size());
+                for (byte[] digest : entry.getValue()) {
+                    out.write(digest);
+                }
+                Set<String> names = segmentTags.getOrDefault(entry.getKey(), Set.of());
+                out.writeInt(names.size());
+                for (String tag : names) {
+                    out.writeUTF(tag);
+                }
+            }
+            out.writeLong(highest);
+        }
+        Path tmp = segments.resolve(MANIFEST + ".tmp");
+        Files.write(tmp, cipher.seal(bytes.toByteArray(), MANIFEST));
+        Files.move(tmp, segments.resolve(MANIFEST),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean allowed(List<byte[]> variants, byte[] digest) {
+        if (variants == null) {
+            return false;
+        }
+        for (byte[] variant : variants) {
+            if (MessageDigest.isEqual(variant, digest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    private List<String> segmentNames() throws IOException {
+        if (!Files.isDirectory(segments)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(segments)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.endsWith(EXTENSION))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String segmentName(Note note) {
+        if (note.getDate() == null) {
+            return UNDATED;
+        }
+        return note.isRecurring() ? SERIES : YearMonth.from(note.getDate()) + EXTENSION;
+    }
+
+    /**
+     * Возвращает месяц сегмента по имени файла.
+     *
+     * @throws IOException если имя не похоже на сегмент месяца
+     */
+    private static YearMonth monthOf(String name) throws IOException {
+        try {
+            return YearMonth.parse(name.substring(0, name.length() - EXTENSION.length()));
+        } catch (DateTimeParseException e) {
+            throw new IOException("Неизвестный сегмент " + name, e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Файловый бэкенд: Java-сериализованный список заметок в {@code notes.dat}
+ * и тексты заметок в {@link BodyStore}.
+ * <p>
+ * Формат не поддерживает частичную запись, поэтому каждое сохранение
+ * перезаписывает {@code notes.dat} целиком: сначала новые тексты дописываются
+ * в {@code bodies.bin}, затем список пишется во временный файл и атомарно
+ * заменяет прежний. Сбой записи оставляет предыдущую версию {@code notes.dat}.
+ */
+final class FileStorageBackend implements StorageBackend {
+
+    private static final Logger logger = LogManager.getLogger(FileStorageBackend.class);
+
+    /** Имя файла, в который сохраняются заметки. */
+    static final String NOTES_FILE_NAME = "notes.dat";
+
+    private final Path directory;
+
+    /** Тексты заметок с адресацией по содержимому. */
+    private BodyStore bodies;
+
+    /**
+     * Создаёт файловый бэкенд.
+     *
+     * @param directory директория хранения
+     */
+    FileStorageBackend(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Kind getKind() {
+        return Kind.FILE;
+    }
+
+    /**
+     * Читает заметки из {@code notes.dat} и подставляет тексты из {@link BodyStore}.
+     * Нечитаемый файл считается пустым, как и отсутствующий.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Note> load() {
+        List<Note> notes = new ArrayList<>();
+        Path file = directory.resolve(NOTES_FILE_NAME);
+        if (!Files.exists(file)) {
+            logger.warn("Файл заметок не найден, возвращён пустой список");
+        } else {
+            try (ObjectInputStream in =
+                         new ObjectInputStream(new BufferedInputStream(new FileInputStream(file.toFile())))) {
+                Object obj = in.readObject();
+                if (obj instanceof List<?>) {
+                    logger.debug("Заметки загружены из файла");
+                    notes.addAll((List<Note>) obj);
+                }
+            } catch (Exception e) {
+                logger.error("Ошибка чтения заметок", e);
+            }
+        }
+
+        BodyStore store = bodies();
+        for (Note note : notes) {
+            if (note.getContentRef() != null) {
+                String text = store.text(note.getContentRef());
+                if (text == null) {
+                    logger.error("Текст заметки {} не найден в {}", note.getId(), BodyStore.FILE_NAME);
+                    text = "";
+                }
+                note.setContent(text);
+            }
+        }
+        return notes;
+    }
+
+    @Override
+    public void write(List<Note> notes, Changes changes) throws IOException {
+        BodyStore store = bodies();
+        List<Note> stored = new ArrayList<>(notes.size());
+        store.beginCount();
+        for (Note note : notes) {
+            if (note.getContent() == null) {
+                stored.add(note);
+                continue;
+            }
+            stored.add(note.toStored(store.acquire(note.getContent())));
+        }
+
+        store.flush();
+        Path file = directory.resolve(NOTES_FILE_NAME);
+        Path tmp = file.resolveSibling(NOTES_FILE_NAME + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeObject(stored);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        store.compactIfNeeded();
+        BodyStore.Stats stats = store.stats();
+        logger.debug("Тексты в {}: различных {}, ссылок {}, сэкономлено {} байт",
+                directory, stats.bodies(), stats.references(), stats.savedBytes());
+    }
+
+    @Override
+    public void close() {
+        bodies = null;
+    }
+
+    /**
+     * Возвращает сводку по текстам заметок.
+     *
+     * @return сводка по хранилищу текстов
+     */
+    BodyStore.Stats bodyStats() {
+        return bodies().stats();
+    }
+
+    private BodyStore bodies() {
+        if (bodies == null) {
+            bodies = new BodyStore(directory);
+            bodies.load();
+        }
+        return bodies;
+    }
+}
@@ -0,0 +1,78 @@
+package com.tsarskiy.storage;
+
+/**
+ * Гибридные логические часы (HLC) для версий заметок.
+ * <p>
+ * Версия — 64-битное число: старшие биты — физическое время в миллисекундах,
+ * младшие {@value #LOGICAL_BITS} бит — логический счётчик. Версии монотонно растут
+ * на одной установке и при получении чужой версии продвигаются за неё, поэтому
+ * сравнение версий даёт согласованный порядок «последний записавший выигрывает»
+ * даже при расхождении системных часов.
+ * <p>
+ * Состояние часов не хранится отдельно: при загрузке календаря {@link Storage}
+ * передаёт в {@link #observe(long)} наибольшую записанную версию заметок
+ * и отметок удаления, поэтому после перезапуска с отстающими системными
+ * часами новые версии всё равно больше записанных. Чужие версии, ушедшие
+ * вперёд больше чем на {@link #MAX_DRIFT_MS}, отбрасываются
+ * ({@link #isPlausible(long)}): иначе одна такая операция навсегда
+ * сделала бы все локальные правки «старыми».
+ */
+final class HybridClock {
+
+    /** Число бит логического счётчика. */
+    static final int LOGICAL_BITS = 16;
+
+    /** Наибольшее допустимое опережение чужой версии относительно своих часов. */
+    static final long MAX_DRIFT_MS = 24L * 60 * 60 * 1000;
+
+    /** Последняя выданная или полученная версия. */
+    private long last;
+
+    /**
+     * Выдаёт новую версию для локального изменения.
+     *
+     * @return версия, большая всех ранее выданных и полученных
+     */
+    synchronized long now() {
+        long physical = System.currentTimeMillis() << LOGICAL_BITS;
+        last = Math.max(last + 1, physical);
+        return last;
+    }
+
+    /**
+     * Учитывает версию, полученную от другой установки.
+     *
+     * @param remote чужая версия
+     */
+    synchronized void observe(long remote) {
+        last = Math.max(last, remote);
+    }
+
+    /**
+     * Проверяет, что чужая версия не опережает системные часы больше
+     * чем на {@link #MAX_DRIFT_MS}.
+     *
+     * @param remote чужая версия
+     * @return {@code true}, если версию можно принять
+     */
+    static boolean isPlausible(long remote) {
+        return remote >= 0
+                && (remote >>> LOGICAL_BITS) <= System.currentTimeMillis() + MAX_DRIFT_MS;
+    }
+
+    /**
+     * Сравнивает версии с разрешением равенства по идентификатору установки.
+     *
+     * @param version        проверяемая версия
+     * @param replica        установка проверяемой версии
+     * @param currentVersion текущая версия
+     * @param currentReplica установка текущей версии
+     * @return {@code true}, если проверяемая версия новее текущей
+     */
+    static boolean isNewer(long version, String replica, long currentVersion, String currentReplica) {
+        if (version != currentVersion) {
+            return version > currentVersion;
+        }
+        return currentReplica == null || (replica != null && replica.compareTo(currentReplica) > 0);
+    }
+}
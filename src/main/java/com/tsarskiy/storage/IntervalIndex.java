@@ -0,0 +1,147 @@
+package com.tsarskiy.storage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Статическое дерево интервалов над отсортированным массивом.
+ * <p>
+ * Элементы упорядочены по началу интервала; неявное сбалансированное дерево
+ * (середина отрезка — корень поддерева) хранит для каждого поддерева
+ * максимальный конец интервала. Поиск пересечений с диапазоном
+ * отсекает поддеревья, которые заканчиваются раньше диапазона или начинаются
+ * позже него, и работает за {@code O(log n + k)}.
+ * <p>
+ * Индекс неизменяем и перестраивается целиком при изменении данных.
+ *
+ * @param <T> тип элементов
+ */
+final class IntervalIndex<T> {
+
+    /** Пустой индекс. */
+    private static final IntervalIndex<?> EMPTY =
+            new IntervalIndex<>(new Object[0], new long[0], new long[0]);
+
+    /** Элементы, отсортированные по началу интервала. */
+    private final Object[] items;
+
+    /** Начала интервалов. */
+    private final long[] starts;
+
+    /** Концы интервалов. */
+    private final long[] ends;
+
+    /** Максимальный конец интервала в поддереве с корнем в данном индексе. */
+    private final long[] maxEnds;
+
+    private IntervalIndex(Object[] items, long[] starts, long[] ends) {
+        this.items = items;
+        this.starts = starts;
+        this.ends = ends;
+        this.maxEnds = new long[ends.length];
+        augment(0, items.length);
+    }
+
+    /**
+     * Возвращает пустой индекс.
+     *
+     * @param <T> тип элементов
+     * @return пустой индекс
+     */
+    @SuppressWarnings("unchecked")
+    static <T> IntervalIndex<T> empty() {
+        return (IntervalIndex<T>) EMPTY;
+    }
+
+    /**
+     * Строит индекс по списку элементов.
+     *
+     * @param source элементы
+     * @param start  начало интервала элемента включительно
+     * @param end    конец интервала элемента включительно
+     * @param <T>    тип элементов
+     * @return индекс
+     */
+    static <T> IntervalIndex<T> build(List<T> source,
+                                      ToLongFunction<T> start,
+                                      ToLongFunction<T> end) {
+        if (source.isEmpty()) {
+            return empty();
+        }
+        List<T> sorted = new ArrayList<>(source);
+        sorted.sort(Comparator.comparingLong(start));
+
+        int n = sorted.size();
+        Object[] items = new Object[n];
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        for (int i = 0; i < n; i++) {
+            T item = sorted.get(i);
+            items[i] = item;
+            starts[i] = start.applyAsLong(item);
+            ends[i] = end.applyAsLong(item);
+        }
+        return new IntervalIndex<>(items, starts, ends);
+    }
+
+    /**
+     * Заполняет максимумы концов для поддерева {@code [lo, hi)}.
+     *
+     * @return максимальный конец в поддереве
+     */
+    private long augment(int lo, int hi) {
+        if (lo >= hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(ends[mid], Math.max(augment(lo, mid), augment(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    /**
+     * Передаёт обработчику все элементы, интервалы которых пересекаются
+     * с диапазоном {@code [from, to]}.
+     *
+     * @param from   начало диапазона включительно
+     * @param to     конец диапазона включительно
+     * @param action обработчик элементов
+     */
+    void forEachOverlapping(long from, long to, Consumer<T> action) {
+        visit(0, items.length, from, to, action);
+    }
+
+    /**
+     * Обходит поддерево {@code [lo, hi)}.
+     */
+    @SuppressWarnings("unchecked")
+    private void visit(int lo, int hi, long from, long to, Consumer<T> action) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] < from) {
+            return;
+        }
+        visit(lo, mid, from, to, action);
+        if (starts[mid] > to) {
+            return;
+        }
+        if (ends[mid] >= from) {
+            action.accept((T) items[mid]);
+        }
+        visit(mid + 1, hi, from, to, action);
+    }
+
+    /**
+     * Возвращает число элементов индекса.
+     *
+     * @return размер индекса
+     */
+    int size() {
+        return items.length;
+    }
+}
@@ -0,0 +1,83 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Изменение заметки, о котором хранилище оповещает подписчиков.
+ * <p>
+ * Прежняя и новая даты позволяют обновить только затронутые дни.
+ * Для серии повторяющейся заметки это даты начала серии, а изменение
+ * может затронуть любые дни её повторений — см. {@link #series()}.
+ *
+ * @param kind    вид изменения
+ * @param note    заметка после изменения; для удаления — удалённая заметка
+ *                (после синхронизации — только идентификатор и календарь)
+ * @param oldDate дата до изменения или {@code null} для новой заметки
+ * @param newDate дата после изменения или {@code null} для удалённой заметки
+ * @param series  {@code true}, если до или после изменения заметка была серией
+ */
+public record NoteChange(Kind kind, Note note, LocalDate oldDate, LocalDate newDate, boolean series) {
+
+    /**
+     * Вид изменения заметки.
+     */
+    public enum Kind {
+        ADDED,
+        UPDATED,
+        DELETED,
+        MOVED
+    }
+
+    static NoteChange added(Note note) {
+        return new NoteChange(Kind.ADDED, note, null, note.getDate(), note.isRecurring());
+    }
+
+    static NoteChange updated(Note before, Note after) {
+        LocalDate oldDate = before != null ? before.getDate() : null;
+        boolean series = after.isRecurring() || before != null && before.isRecurring();
+        Kind kind = before == null ? Kind.ADDED : Kind.UPDATED;
+        return new NoteChange(kind, after, oldDate, after.getDate(), series);
+    }
+
+    static NoteChange moved(LocalDate from, Note moved) {
+        return new NoteChange(Kind.MOVED, moved, from, moved.getDate(), moved.isRecurring());
+    }
+
+    static NoteChange deleted(Note note) {
+        return new NoteChange(Kind.DELETED, note, note.getDate(), null, note.isRecurring());
+    }
+
+    static NoteChange occurrenceDeleted(Note occurrence) {
+        return new NoteChange(Kind.DELETED, occurrence, occurrence.getDate(), null, false);
+    }
+
+    /**
+     * Возвращает известные даты изменения: прежнюю и новую.
+     *
+     * @return даты без {@code null}, прежняя первой
+     */
+    public Set<LocalDate> dates() {
+        Set<LocalDate> dates = new LinkedHashSet<>(2);
+        if (oldDate != null) {
+            dates.add(oldDate);
+        }
+        if (newDate != null) {
+            dates.add(newDate);
+        }
+        return dates;
+    }
+
+    /**
+     * Проверяет, нужно ли перечитать диапазон целиком: изменение затронуло
+     * серию или заметку, дата которой неизвестна (удаление после синхронизации).
+     *
+     * @return {@code true}, если обновить только {@link #dates()} нельзя
+     */
+    public boolean affectsRange() {
+        return series || oldDate == null && newDate == null;
+    }
+}
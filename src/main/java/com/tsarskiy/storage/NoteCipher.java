@@ -0,0 +1,185 @@
+package com.tsarskiy.storage;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Шифрование данных календаря ключом из пароля.
+ * <p>
+ * Ключ AES-256 выводится из пароля по PBKDF2 (HMAC-SHA256) с солью
+ * и числом итераций из файла {@value #FILE_NAME} директории календаря.
+ * Каждый блок — сегмент месяца, запись журнала, версия истории —
+ * шифруется отдельно в режиме AES-GCM со случайным 96-битным nonce;
+ * имя блока входит в проверяемые данные, поэтому блоки нельзя незаметно
+ * подменить друг другом. Используются только стандартные провайдеры JDK.
+ * <p>
+ * Файл {@value #FILE_NAME} хранит, кроме соли, зашифрованную контрольную
+ * строку: по ней неверный пароль определяется сразу при открытии.
+ */
+final class NoteCipher {
+
+    /** Имя файла с параметрами ключа. */
+    static final String FILE_NAME = "vault.bin";
+
+    /** Число итераций PBKDF2 для новых календарей. */
+    static final int ITERATIONS = 310_000;
+
+    /** Метка формата файла параметров. */
+    private static final int MAGIC = 0x54535631;
+
+    private static final int SALT_BYTES = 16;
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int KEY_BITS = 256;
+
+    /** Контрольная строка для проверки пароля. */
+    private static final byte[] CHECK = "tsar".getBytes(StandardCharsets.UTF_8);
+
+    private final SecretKey key;
+    private final SecureRandom random = new SecureRandom();
+
+    private NoteCipher(SecretKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Проверяет, зашифрован ли календарь в директории.
+     *
+     * @param directory директория календаря
+     * @return {@code true}, если в директории есть файл параметров ключа
+     */
+    static boolean isEncrypted(Path directory) {
+        return Files.exists(directory.resolve(FILE_NAME));
+    }
+
+    /**
+     * Создаёт ключ для нового зашифрованного календаря и записывает его параметры.
+     *
+     * @param directory  директория календаря
+     * @param passphrase пароль
+     * @return шифр календаря
+     * @throws IOException если файл параметров не удалось записать
+     */
+    static NoteCipher create(Path directory, char[] passphrase) throws IOException {
+        byte[] salt = new byte[SALT_BYTES];
+        new SecureRandom().nextBytes(salt);
+        NoteCipher cipher = new NoteCipher(derive(passphrase, salt, ITERATIONS));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(ITERATIONS);
+            out.write(salt);
+            byte[] check = cipher.seal(CHECK, FILE_NAME);
+            out.writeInt(check.length);
+            out.write(check);
+        }
+        Files.write(directory.resolve(FILE_NAME), bytes.toByteArray());
+        return cipher;
+    }
+
+    /**
+     * Открывает ключ зашифрованного календаря.
+     *
+     * @param directory  директория календаря
+     * @param passphrase пароль
+     * @return шифр календаря
+     * @throws IOException              если файл параметров не удалось прочитать
+     * @throws IllegalArgumentException если пароль неверный
+     */
+    static NoteCipher unlock(Path directory, char[] passphrase) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(directory.resolve(FILE_NAME)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Неизвестный формат " + FILE_NAME);
+            }
+            int iterations = in.readInt();
+            byte[] salt = in.readNBytes(SALT_BYTES);
+            byte[] check = in.readNBytes(in.readInt());
+
+            NoteCipher cipher = new NoteCipher(derive(passphrase, salt, iterations));
+            try {
+                if (!Arrays.equals(cipher.open(check, FILE_NAME), CHECK)) {
+                    throw new IllegalArgumentException("Неверный пароль");
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Неверный пароль", e);
+            }
+            return cipher;
+        }
+    }
+
+    /**
+     * Шифрует блок.
+     *
+     * @param plain   данные блока
+     * @param context имя блока, проверяемое при расшифровке
+     * @return nonce и шифротекст с тегом
+     */
+    byte[] seal(byte[] plain, String context) {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce));
+            cipher.updateAAD(context.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer sealed = ByteBuffer.allocate(NONCE_BYTES + cipher.getOutputSize(plain.length));
+            sealed.put(nonce);
+            cipher.doFinal(ByteBuffer.wrap(plain), sealed);
+            return sealed.array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM недоступен", e);
+        }
+    }
+
+    /**
+     * Расшифровывает блок и проверяет его целостность.
+     *
+     * @param sealed  nonce и шифротекст с тегом
+     * @param context имя блока, с которым он был зашифрован
+     * @return данные блока
+     * @throws IOException если блок повреждён, подменён или зашифрован другим ключом
+     */
+    byte[] open(byte[] sealed, String context) throws IOException {
+        if (sealed.length < NONCE_BYTES + TAG_BITS / 8) {
+            throw new IOException("Блок «" + context + "» повреждён");
+        }
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, NONCE_BYTES));
+            cipher.updateAAD(context.getBytes(StandardCharsets.UTF_8));
+            return cipher.doFinal(sealed, NONCE_BYTES, sealed.length - NONCE_BYTES);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Блок «" + context + "» повреждён или зашифрован другим ключом", e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM недоступен", e);
+        }
+    }
+
+    private static SecretKey derive(char[] passphrase, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(passphrase, salt, iterations, KEY_BITS);
+        try {
+            byte[] raw = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(raw, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 недоступен", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Доступ к заметкам, от которого зависят представления и сервисы.
+ * <p>
+ * Интерфейс описывает только работу с заметками: выборки по датам,
+ * изменения, теги, историю и оповещения. Как заметки лежат на диске,
+ * решает {@link StorageBackend} календаря; подключение календарей,
+ * вложения и настройки отображения добавляет {@link CalendarRepository}.
+ * Оба интерфейса реализует {@link Storage}.
+ */
+public interface NoteRepository {
+
+    /**
+     * Запускает загрузку заметок в фоновом потоке.
+     *
+     * @return задача, завершающаяся после построения индексов
+     */
+    CompletableFuture<Void> loadIndexAsync();
+
+    /**
+     * Проверяет, загружены ли заметки.
+     *
+     * @return {@code true}, если индексы построены
+     */
+    boolean isIndexLoaded();
+
+    /**
+     * Возвращает все заметки.
+     *
+     * @return копия списка заметок
+     */
+    List<Note> getNotes();
+
+    /**
+     * Возвращает заметки за дату, включая экземпляры повторяющихся заметок.
+     *
+     * @param date дата
+     * @return заметки даты
+     */
+    List<Note> getNotesForDate(LocalDate date);
+
+    /**
+     * Возвращает заметки месяца, сгруппированные по дате.
+     *
+     * @param month месяц
+     * @return заметки по датам месяца
+     */
+    Map<LocalDate, List<Note>> getNotesForMonth(YearMonth month);
+
+    /**
+     * Возвращает заметки за диапазон дат, сгруппированные по дате.
+     *
+     * @param from начало диапазона включительно
+     * @param to   конец диапазона включительно
+     * @return заметки по датам в порядке возрастания дат
+     */
+    Map<LocalDate, List<Note>> getNotesBetween(LocalDate from, LocalDate to);
+
+    /**
+     * Возвращает заметки за диапазон дат ленивым потоком в порядке дат.
+     *
+     * @param from начало диапазона включительно
+     * @param to   конец диапазона включительно
+     * @return заметки диапазона по возрастанию дат
+     */
+    Stream<Note> streamNotes(LocalDate from, LocalDate to);
+
+    /**
+     * Находит заметку по идентификатору.
+     *
+     * @param id идентификатор заметки
+     * @return заметка (для серии — исходная запись) или пустое значение
+     */
+    Optional<Note> findNote(String id);
+
+    /**
+     * Добавляет заметку.
+     *
+     * @param note заметка
+     */
+    void addNote(Note note);
+
+    /**
+     * Добавляет несколько заметок за один вызов.
+     *
+     * @param notes заметки
+     */
+    void addNotes(List<Note> notes);
+
+    /**
+     * Обновляет заметку по идентификатору.
+     *
+     * @param updated обновлённая заметка
+     */
+    void updateNote(Note updated);
+
+    /**
+     * Переносит однократную заметку на другую дату.
+     *
+     * @param note   заметка
+     * @param target новая дата
+     * @return перенесённая заметка или пустое значение, если заметка не найдена
+     */
+    Optional<Note> moveNote(Note note, LocalDate target);
+
+    /**
+     * Удаляет заметку; для экземпляра серии — только это повторение.
+     *
+     * @param note заметка
+     */
+    void deleteNote(Note note);
+
+    /**
+     * Удаляет заметку целиком, включая все повторения серии.
+     *
+     * @param note заметка или любой экземпляр её серии
+     */
+    void deleteSeries(Note note);
+
+    /**
+     * Возвращает теги заметок.
+     *
+     * @return теги по алфавиту
+     */
+    SortedSet<String> getTags();
+
+    /**
+     * Оставляет из заметок по датам только отмеченные тегами.
+     *
+     * @param notes    заметки по датам
+     * @param tags     выбранные теги
+     * @param matchAll {@code true} — нужны все теги, {@code false} — хотя бы один
+     * @return заметки по датам
+     */
+    Map<LocalDate, List<Note>> filterByTags(Map<LocalDate, List<Note>> notes, Set<String> tags, boolean matchAll);
+
+    /**
+     * Читает историю изменений заметки.
+     *
+     * @param note заметка или её экземпляр
+     * @return версии по возрастанию номера
+     */
+    List<NoteRevision> getHistory(Note note);
+
+    /**
+     * Восстанавливает версию заметки.
+     *
+     * @param note     заметка или её экземпляр
+     * @param revision восстанавливаемая версия
+     */
+    void restoreRevision(Note note, NoteRevision revision);
+
+    /**
+     * Подписывает обработчик на изменения заметок: добавление, изменение,
+     * удаление и перенос с прежней и новой датами.
+     *
+     * @param listener обработчик изменений
+     */
+    void addChangeListener(Consumer<NoteChange> listener);
+
+    /**
+     * Немедленно записывает все изменения.
+     *
+     * @return {@code true}, если всё записано; {@code false}, если часть
+     *         изменений записать не удалось и они ждут следующей записи
+     */
+    boolean flush();
+}
@@ -0,0 +1,23 @@
+package com.tsarskiy.storage;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Сохранённая версия заметки из истории изменений.
+ *
+ * @param number  номер версии, начиная с 1
+ * @param savedAt момент сохранения версии
+ * @param date    дата заметки
+ * @param time    время события или {@code null}
+ * @param title   заголовок
+ * @param content текст
+ */
+public record NoteRevision(int number,
+                           LocalDateTime savedAt,
+                           LocalDate date,
+                           LocalTime time,
+                           String title,
+                           String content) {
+}
@@ -0,0 +1,112 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+
+import java.io.Serializable;
+
+/**
+ * Запись журнала операций календаря — единица синхронизации.
+ * <p>
+ * Операция {@link Kind#UPSERT} несёт полный снимок исходной записи заметки,
+ * {@link Kind#DELETE} — только идентификатор. Каждая операция помечена версией
+ * {@link HybridClock} и установкой, на которой она выполнена: при слиянии
+ * побеждает более новая версия.
+ */
+public final class Operation implements Serializable {
+
+    /**
+     * Идентификатор версии сериализации.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Вид операции.
+     */
+    public enum Kind {
+        /** Создание или изменение заметки. */
+        UPSERT,
+        /** Удаление заметки со всеми повторениями. */
+        DELETE
+    }
+
+    private final Kind kind;
+    private final String noteId;
+    private final long version;
+    private final String replicaId;
+    private final Note note;
+
+    private Operation(Kind kind, String noteId, long version, String replicaId, Note note) {
+        this.kind = kind;
+        this.noteId = noteId;
+        this.version = version;
+        this.replicaId = replicaId;
+        this.note = note;
+    }
+
+    /**
+     * Создаёт операцию изменения по текущему состоянию заметки.
+     *
+     * @param note исходная запись заметки с проставленной версией
+     * @return операция
+     */
+    static Operation upsert(Note note) {
+        return new Operation(Kind.UPSERT, note.getId(), note.getVersion(), note.getVersionReplica(), note);
+    }
+
+    /**
+     * Создаёт операцию удаления.
+     *
+     * @param noteId    идентификатор заметки
+     * @param version   версия удаления
+     * @param replicaId установка, выполнившая удаление
+     * @return операция
+     */
+    static Operation delete(String noteId, long version, String replicaId) {
+        return new Operation(Kind.DELETE, noteId, version, replicaId, null);
+    }
+
+    /**
+     * Возвращает вид операции.
+     *
+     * @return вид операции
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Возвращает идентификатор заметки.
+     *
+     * @return идентификатор заметки
+     */
+    public String getNoteId() {
+        return noteId;
+    }
+
+    /**
+     * Возвращает версию операции.
+     *
+     * @return версия {@link HybridClock}
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Возвращает установку, выполнившую операцию.
+     *
+     * @return идентификатор установки
+     */
+    public String getReplicaId() {
+        return replicaId;
+    }
+
+    /**
+     * Возвращает снимок заметки.
+     *
+     * @return заметка для {@link Kind#UPSERT} или {@code null}
+     */
+    public Note getNote() {
+        return note;
+    }
+}
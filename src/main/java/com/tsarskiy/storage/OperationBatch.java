@@ -0,0 +1,13 @@
+package com.tsarskiy.storage;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Пачка операций журнала, прочитанная с некоторого смещения.
+ *
+ * @param operations операции в порядке записи
+ * @param endOffset  смещение в журнале сразу после последней операции пачки
+ */
+public record OperationBatch(List<Operation> operations, long endOffset) implements Serializable {
+}
@@ -0,0 +1,237 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Attachment;
+import com.tsarskiy.model.Note;
+import com.tsarskiy.model.Recurrence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Двоичный формат операций журнала для передачи по сети.
+ * <p>
+ * В отличие от стандартной сериализации Java, формат описывает каждое поле
+ * явно: при чтении создаются только {@link Operation}, {@link Note},
+ * {@link Attachment} и {@link Recurrence}, а длины строк и списков
+ * проверяются до выделения памяти. Ключ вложения обязан быть SHA-256,
+ * чтобы чужая заметка не указала на файл вне хранилища вложений. Некорректные данные дают {@link IOException}.
+ */
+public final class OperationCodec {
+
+    /** Наибольшее число операций в одном пакете. */
+    public static final int MAX_OPERATIONS = 100_000;
+
+    /** Наибольшая длина строки в байтах UTF-8. */
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    /** Наибольшее число тегов или вложений одной заметки. */
+    private static final int MAX_ITEMS = 256;
+
+    private OperationCodec() {
+    }
+
+    /* ===== WRITE ===== */
+
+    /**
+     * Записывает пакет операций.
+     *
+     * @param out        поток
+     * @param operations операции
+     * @throws IOException если запись не удалась или пакет слишком велик
+     */
+    public static void write(DataOutput out, List<Operation> operations) throws IOException {
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new IOException("Слишком много операций: " + operations.size());
+        }
+        out.writeInt(operations.size());
+        for (Operation op : operations) {
+            out.writeByte(op.getKind().ordinal());
+            writeString(out, op.getNoteId());
+            out.writeLong(op.getVersion());
+            writeString(out, op.getReplicaId());
+            if (op.getKind() == Operation.Kind.UPSERT) {
+                writeNote(out, op.getNote());
+            }
+        }
+    }
+
+    private static void writeNote(DataOutput out, Note note) throws IOException {
+        writeDate(out, note.getDate());
+        writeNullable(out, note.getTitle());
+        writeNullable(out, note.getContent());
+        LocalDateTime createdAt = note.getCreatedAt();
+        out.writeBoolean(createdAt != null);
+        if (createdAt != null) {
+            out.writeLong(createdAt.toLocalDate().toEpochDay());
+            out.writeLong(createdAt.toLocalTime().toNanoOfDay());
+        }
+        out.writeBoolean(note.getTime() != null);
+        if (note.getTime() != null) {
+            out.writeLong(note.getTime().toNanoOfDay());
+        }
+        out.writeBoolean(note.getReminderMinutes() != null);
+        if (note.getReminderMinutes() != null) {
+            out.writeInt(note.getReminderMinutes());
+        }
+        writeNullable(out, note.getRecurrence() == null ? null : note.getRecurrence().toRule());
+
+        List<Attachment> attachments = note.getAttachments();
+        writeCount(out, attachments.size());
+        for (Attachment attachment : attachments) {
+            writeString(out, attachment.getHash());
+            writeString(out, attachment.getName());
+            writeNullable(out, attachment.getMimeType());
+            out.writeLong(attachment.getSize());
+        }
+        List<String> tags = note.getTags();
+        writeCount(out, tags.size());
+        for (String tag : tags) {
+            writeString(out, tag);
+        }
+    }
+
+    private static void writeCount(DataOutput out, int count) throws IOException {
+        if (count > MAX_ITEMS) {
+            throw new IOException("Слишком много элементов: " + count);
+        }
+        out.writeShort(count);
+    }
+
+    private static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.toEpochDay());
+        }
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IOException("Слишком длинная строка: " + bytes.length + " байт");
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /* ===== READ ===== */
+
+    /**
+     * Читает пакет операций.
+     *
+     * @param in поток
+     * @return операции
+     * @throws IOException если данные некорректны или превышают ограничения
+     */
+    public static List<Operation> read(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_OPERATIONS) {
+            throw new IOException("Некорректное число операций: " + count);
+        }
+        List<Operation> result = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            int kind = in.readUnsignedByte();
+            if (kind >= Operation.Kind.values().length) {
+                throw new IOException("Неизвестный вид операции: " + kind);
+            }
+            String noteId = readString(in);
+            long version = in.readLong();
+            String replicaId = readString(in);
+            if (Operation.Kind.values()[kind] == Operation.Kind.DELETE) {
+                result.add(Operation.delete(noteId, version, replicaId));
+            } else {
+                Note note = readNote(in);
+                note.setId(noteId);
+                note.setVersion(version, replicaId);
+                result.add(Operation.upsert(note));
+            }
+        }
+        return result;
+    }
+
+    private static Note readNote(DataInput in) throws IOException {
+        Note note = new Note();
+        try {
+            note.setDate(readDate(in));
+            note.setTitle(readNullable(in));
+            note.setContent(readNullable(in));
+            if (in.readBoolean()) {
+                LocalDate day = LocalDate.ofEpochDay(in.readLong());
+                note.setCreatedAt(LocalDateTime.of(day, LocalTime.ofNanoOfDay(in.readLong())));
+            }
+            if (in.readBoolean()) {
+                note.setTime(LocalTime.ofNanoOfDay(in.readLong()));
+            }
+            if (in.readBoolean()) {
+                note.setReminderMinutes(in.readInt());
+            }
+            String rule = readNullable(in);
+            if (rule != null) {
+                note.setRecurrence(Recurrence.parse(rule));
+            }
+        } catch (DateTimeException | IllegalArgumentException e) {
+            throw new IOException("Некорректная заметка", e);
+        }
+
+        int attachments = readCount(in);
+        List<Attachment> list = new ArrayList<>(attachments);
+        for (int i = 0; i < attachments; i++) {
+            String hash = readString(in);
+            if (!hash.matches("[0-9a-f]{64}")) {
+                throw new IOException("Некорректный ключ вложения");
+            }
+            String name = readString(in);
+            String mime = readNullable(in);
+            list.add(new Attachment(hash, name, mime, in.readLong()));
+        }
+        note.setAttachments(list);
+
+        int tags = readCount(in);
+        List<String> tagList = new ArrayList<>(tags);
+        for (int i = 0; i < tags; i++) {
+            tagList.add(readString(in));
+        }
+        note.setTags(tagList);
+        return note;
+    }
+
+    private static LocalDate readDate(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readUnsignedShort();
+        if (count > MAX_ITEMS) {
+            throw new IOException("Слишком много элементов: " + count);
+        }
+        return count;
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Некорректная длина строки: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
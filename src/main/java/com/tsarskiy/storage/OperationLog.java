@@ -0,0 +1,140 @@
+package com.tsarskiy.storage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Журнал операций календаря — файл {@code oplog.bin} рядом с {@code notes.dat}.
+ * <p>
+ * Журнал только дописывается: каждая запись — длина и сериализованная
+ * {@link Operation}. Чтение начинается с заданного смещения, поэтому выборка
+ * изменений с прошлой синхронизации стоит пропорционально числу этих изменений,
+ * а не размеру архива. Оборванная при сбое последняя запись при чтении пропускается.
+ * <p>
+ * В зашифрованном календаре каждая запись шифруется отдельно {@link NoteCipher}.
+ */
+final class OperationLog {
+
+    private static final Logger logger = LogManager.getLogger(OperationLog.class);
+
+    /** Имя файла журнала. */
+    static final String FILE_NAME = "oplog.bin";
+
+    /** Файл журнала. */
+    private final Path file;
+
+    /** Шифр календаря или {@code null} для открытого текста. */
+    private final NoteCipher cipher;
+
+    /**
+     * Создаёт журнал в директории календаря.
+     *
+     * @param directory директория календаря
+     * @param cipher    шифр календаря или {@code null}
+     */
+    OperationLog(Path directory, NoteCipher cipher) {
+        this.file = directory.resolve(FILE_NAME);
+        this.cipher = cipher;
+    }
+
+    /**
+     * Дописывает операцию в конец журнала.
+     *
+     * @param operation операция
+     * @throws IOException если запись не удалась
+     */
+    synchronized void append(Operation operation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(operation);
+        }
+        byte[] record = cipher == null ? bytes.toByteArray() : cipher.seal(bytes.toByteArray(), FILE_NAME);
+        try (OutputStream os = Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+             DataOutputStream out = new DataOutputStream(os)) {
+            out.writeInt(record.length);
+            out.write(record);
+        }
+    }
+
+    /**
+     * Читает операции начиная со смещения.
+     *
+     * @param offset смещение, с которого читать
+     * @return прочитанные операции и смещение конца прочитанного
+     */
+    synchronized OperationBatch readFrom(long offset) {
+        List<Operation> operations = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return new OperationBatch(operations, 0);
+        }
+
+        long position = offset;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(offset);
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                try {
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    logger.warn("Оборванная запись в конце журнала операций");
+                    break;
+                }
+                operations.add(decode(record));
+                position += Integer.BYTES + length;
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            logger.error("Ошибка чтения журнала операций", e);
+        }
+        return new OperationBatch(operations, position);
+    }
+
+    /**
+     * Возвращает текущий размер журнала.
+     *
+     * @return размер в байтах
+     */
+    synchronized long size() {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            logger.error("Ошибка чтения размера журнала операций", e);
+            return 0;
+        }
+    }
+
+    private Operation decode(byte[] record) throws IOException, ClassNotFoundException {
+        if (cipher != null) {
+            record = cipher.open(record, FILE_NAME);
+        }
+        try (InputStream bytes = new ByteArrayInputStream(record);
+             ObjectInputStream in = new ObjectInputStream(bytes)) {
+            return (Operation) in.readObject();
+        }
+    }
+}
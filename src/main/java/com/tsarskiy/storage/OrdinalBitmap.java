@@ -0,0 +1,357 @@
+package com.tsarskiy.storage;
+
+import java.util.Arrays;
+
+/**
+ * Сжатое множество неотрицательных целых (порядковых номеров заметок)
+ * по схеме Roaring.
+ * <p>
+ * Числа делятся на блоки по старшим 16 битам. Блок с небольшим числом
+ * элементов хранится отсортированным массивом младших 16 бит ({@code char[]},
+ * два байта на элемент), плотный блок — битовой картой из 1024 {@code long}
+ * (8 КБ на 65536 значений). Пересечение небольшого множества с большим
+ * проверяет элементы меньшего по блокам большего, поэтому его стоимость
+ * определяется меньшим множеством, а не размером архива.
+ * <p>
+ * Множество неизменяемо; строится через {@link Builder} или {@link #of(int[], int)}.
+ */
+final class OrdinalBitmap {
+
+    /** Наибольшее число элементов блока-массива; больше — битовая карта. */
+    private static final int ARRAY_MAX = 4096;
+
+    /** Число {@code long} в битовой карте блока. */
+    private static final int WORDS = 1024;
+
+    /** Пустое множество. */
+    static final OrdinalBitmap EMPTY = new OrdinalBitmap(new char[0], new Object[0], new int[0]);
+
+    /** Старшие 16 бит блоков по возрастанию. */
+    private final char[] keys;
+
+    /** Блоки: {@code char[]} (массив) или {@code long[]} (битовая карта). */
+    private final Object[] containers;
+
+    /** Число элементов каждого блока. */
+    private final int[] cardinalities;
+
+    private OrdinalBitmap(char[] keys, Object[] containers, int[] cardinalities) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinalities = cardinalities;
+    }
+
+    /**
+     * Построитель множества из чисел, добавляемых по возрастанию.
+     */
+    static final class Builder {
+
+        private char[] keys = new char[4];
+        private Object[] containers = new Object[4];
+        private int[] cardinalities = new int[4];
+        private int size;
+
+        /** Текущий блок-массив, пока он не стал битовой картой. */
+        private char[] array;
+
+        private int last = -1;
+
+        /**
+         * Добавляет число.
+         *
+         * @param value число, не меньшее ранее добавленных
+         * @throws IllegalArgumentException если число отрицательно или меньше предыдущего
+         */
+        void add(int value) {
+            if (value < last || value < 0) {
+                throw new IllegalArgumentException("Числа добавляются по возрастанию: " + value);
+            }
+            if (value == last) {
+                return;
+            }
+            last = value;
+            char key = (char) (value >>> 16);
+            char low = (char) value;
+            if (size == 0 || keys[size - 1] != key) {
+                finishBlock();
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    containers = Arrays.copyOf(containers, size * 2);
+                    cardinalities = Arrays.copyOf(cardinalities, size * 2);
+                }
+                keys[size] = key;
+                array = new char[16];
+                containers[size] = array;
+                size++;
+            }
+
+            int i = size - 1;
+            int card = cardinalities[i];
+            if (containers[i] instanceof long[] bits) {
+                bits[low >>> 6] |= 1L << low;
+            } else if (card < ARRAY_MAX) {
+                if (card == array.length) {
+                    array = Arrays.copyOf(array, Math.min(ARRAY_MAX, card * 2));
+                    containers[i] = array;
+                }
+                array[card] = low;
+            } else {
+                long[] bits = new long[WORDS];
+                for (int k = 0; k < card; k++) {
+                    bits[array[k] >>> 6] |= 1L << array[k];
+                }
+                bits[low >>> 6] |= 1L << low;
+                containers[i] = bits;
+                array = null;
+            }
+            cardinalities[i] = card + 1;
+        }
+
+        /** Обрезает массив последнего блока до числа элементов. */
+        private void finishBlock() {
+            if (size > 0 && containers[size - 1] instanceof char[] a && a.length > cardinalities[size - 1]) {
+                containers[size - 1] = Arrays.copyOf(a, cardinalities[size - 1]);
+            }
+        }
+
+        /**
+         * Возвращает построенное множество.
+         *
+         * @return множество
+         */
+        OrdinalBitmap build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            finishBlock();
+            return new OrdinalBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size),
+                    Arrays.copyOf(cardinalities, size));
+        }
+    }
+
+    /**
+     * Строит множество из первых {@code count} чисел массива в любом порядке.
+     * Массив сортируется на месте.
+     *
+     * @param values числа
+     * @param count  сколько чисел взять
+     * @return множество
+     */
+    static OrdinalBitmap of(int[] values, int count) {
+        Arrays.sort(values, 0, count);
+        Builder builder = new Builder();
+        for (int i = 0; i < count; i++) {
+            builder.add(values[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Проверяет, входит ли число в множество.
+     *
+     * @param value число
+     * @return {@code true}, если число входит в множество
+     */
+    boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int i = Arrays.binarySearch(keys, (char) (value >>> 16));
+        return i >= 0 && containerContains(containers[i], cardinalities[i], (char) value);
+    }
+
+    /**
+     * Возвращает число элементов.
+     *
+     * @return мощность множества
+     */
+    int cardinality() {
+        int total = 0;
+        for (int c : cardinalities) {
+            total += c;
+        }
+        return total;
+    }
+
+    /**
+     * Проверяет, пусто ли множество.
+     *
+     * @return {@code true}, если элементов нет
+     */
+    boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Возвращает пересечение множеств.
+     *
+     * @param other другое множество
+     * @return элементы, входящие в оба множества
+     */
+    OrdinalBitmap and(OrdinalBitmap other) {
+        Builder result = new Builder();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                int base = keys[i] << 16;
+                Object a = containers[i];
+                Object b = other.containers[j];
+                if (a instanceof long[] x && b instanceof long[] y) {
+                    for (int w = 0; w < WORDS; w++) {
+                        long word = x[w] & y[w];
+                        while (word != 0) {
+                            result.add(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                            word &= word - 1;
+                        }
+                    }
+                } else if (a instanceof char[] x
+                        && (b instanceof long[] || cardinalities[i] <= other.cardinalities[j])) {
+                    probe(x, cardinalities[i], b, other.cardinalities[j], base, result);
+                } else {
+                    probe((char[]) b, other.cardinalities[j], a, cardinalities[i], base, result);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Возвращает объединение множеств.
+     *
+     * @param other другое множество
+     * @return элементы, входящие хотя бы в одно множество
+     */
+    OrdinalBitmap or(OrdinalBitmap other) {
+        Builder result = new Builder();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                copyBlock(containers[i], cardinalities[i], keys[i] << 16, result);
+                i++;
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                copyBlock(other.containers[j], other.cardinalities[j], other.keys[j] << 16, result);
+                j++;
+            } else {
+                long[] merged = new long[WORDS];
+                setBits(containers[i], cardinalities[i], merged);
+                setBits(other.containers[j], other.cardinalities[j], merged);
+                copyBlock(merged, -1, keys[i] << 16, result);
+                i++;
+                j++;
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Возвращает разность множеств.
+     *
+     * @param other вычитаемое множество
+     * @return элементы этого множества, не входящие в другое
+     */
+    OrdinalBitmap andNot(OrdinalBitmap other) {
+        Builder result = new Builder();
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            int base = keys[i] << 16;
+            if (j == other.keys.length || other.keys[j] != keys[i]) {
+                copyBlock(containers[i], cardinalities[i], base, result);
+            } else {
+                long[] remaining = new long[WORDS];
+                setBits(containers[i], cardinalities[i], remaining);
+                clearBits(other.containers[j], other.cardinalities[j], remaining);
+                copyBlock(remaining, -1, base, result);
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Возвращает приблизительный объём данных множества.
+     *
+     * @return байт в массивах блоков
+     */
+    long sizeInBytes() {
+        long bytes = keys.length * (2L + 4L + 8L);
+        for (Object c : containers) {
+            bytes += c instanceof long[] ? WORDS * 8L : ((char[]) c).length * 2L;
+        }
+        return bytes;
+    }
+
+    /**
+     * Добавляет в результат элементы блока-массива, входящие в другой блок.
+     */
+    private static void probe(char[] values, int card, Object other, int otherCard,
+                              int base, Builder result) {
+        for (int k = 0; k < card; k++) {
+            if (containerContains(other, otherCard, values[k])) {
+                result.add(base | values[k]);
+            }
+        }
+    }
+
+    private static boolean containerContains(Object container, int card, char low) {
+        if (container instanceof long[] bits) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, card, low) >= 0;
+    }
+
+    private static void setBits(Object container, int card, long[] target) {
+        if (container instanceof long[] bits) {
+            for (int w = 0; w < WORDS; w++) {
+                target[w] |= bits[w];
+            }
+        } else {
+            char[] values = (char[]) container;
+            for (int k = 0; k < card; k++) {
+                target[values[k] >>> 6] |= 1L << values[k];
+            }
+        }
+    }
+
+    private static void clearBits(Object container, int card, long[] target) {
+        if (container instanceof long[] bits) {
+            for (int w = 0; w < WORDS; w++) {
+                target[w] &= ~bits[w];
+            }
+        } else {
+            char[] values = (char[]) container;
+            for (int k = 0; k < card; k++) {
+                target[values[k] >>> 6] &= ~(1L << values[k]);
+            }
+        }
+    }
+
+    /**
+     * Передаёт построителю элементы блока по возрастанию.
+     */
+    private static void copyBlock(Object container, int card, int base, Builder result) {
+        if (container instanceof long[] bits) {
+            for (int w = 0; w < WORDS; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    result.add(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        } else {
+            char[] values = (char[]) container;
+            for (int k = 0; k < card; k++) {
+                result.add(base | values[k]);
+            }
+        }
+    }
+}
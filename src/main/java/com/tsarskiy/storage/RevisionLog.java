@@ -0,0 +1,246 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * История изменений заметок календаря — папка {@code history}.
+ * <p>
+ * У каждой заметки свой файл, в который только дописываются версии. Первая
+ * версия записывается целиком, каждая следующая — разницей с предыдущей:
+ * длина общего начала, длина общего конца и вставленная между ними часть
+ * заголовка и текста. Правка нескольких слов в длинной заметке занимает
+ * несколько десятков байт, поэтому история остаётся маленькой и после
+ * сотен правок.
+ * <p>
+ * Текущая версия заметки по-прежнему лежит в {@code notes.dat}; история
+ * читается только по запросу. Для записи новой версии нужна последняя,
+ * поэтому последние версии недавно изменённых заметок кэшируются.
+ * <p>
+ * В зашифрованном календаре каждая версия шифруется отдельно
+ * {@link NoteCipher}, поэтому дописывание не перешифровывает файл.
+ * <p>
+ * Версии дописывает поток отложенной записи {@link Storage}, а читает окно
+ * истории, поэтому методы синхронизированы.
+ */
+final class RevisionLog {
+
+    private static final Logger logger = LogManager.getLogger(RevisionLog.class);
+
+    /** Имя папки истории. */
+    static final String DIRECTORY_NAME = "history";
+
+    /** Число последних версий в кэше. */
+    private static final int CACHE_SIZE = 64;
+
+    /** Папка истории. */
+    private final Path root;
+
+    /** Шифр календаря или {@code null} для открытого текста. */
+    private final NoteCipher cipher;
+
+    /** Последние версии недавно изменённых заметок. */
+    private final Map<String, NoteRevision> latest = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NoteRevision> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Создаёт историю в директории календаря.
+     *
+     * @param directory директория календаря
+     * @param cipher    шифр календаря или {@code null}
+     */
+    RevisionLog(Path directory, NoteCipher cipher) {
+        this.root = directory.resolve(DIRECTORY_NAME);
+        this.cipher = cipher;
+    }
+
+    /**
+     * Записывает состояние заметки новой версией,
+     * если оно отличается от последней сохранённой.
+     *
+     * @param note    исходная запись заметки
+     * @param savedAt время изменения
+     * @throws IOException если запись не удалась
+     */
+    synchronized void record(Note note, LocalDateTime savedAt) throws IOException {
+        String noteId = note.getId();
+        NoteRevision last = latest.get(noteId);
+        if (last == null) {
+            List<NoteRevision> history = read(noteId);
+            last = history.isEmpty() ? null : history.get(history.size() - 1);
+        }
+
+        NoteRevision next = new NoteRevision(
+                last == null ? 1 : last.number() + 1,
+                savedAt,
+                note.getDate(),
+                note.getTime(),
+                Objects.requireNonNullElse(note.getTitle(), ""),
+                Objects.requireNonNullElse(note.getContent(), ""));
+        if (last != null && sameState(last, next)) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(next.savedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            out.writeLong(next.date() == null ? Long.MIN_VALUE : next.date().toEpochDay());
+            out.writeInt(next.time() == null ? -1 : next.time().toSecondOfDay());
+            writeDelta(out, last == null ? "" : last.title(), next.title());
+            writeDelta(out, last == null ? "" : last.content(), next.content());
+        }
+
+        byte[] record = cipher == null ? bytes.toByteArray() : cipher.seal(bytes.toByteArray(), noteId);
+        Path file = file(noteId);
+        Files.createDirectories(root);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            out.writeInt(record.length);
+            out.write(record);
+        }
+        latest.put(noteId, next);
+    }
+
+    /**
+     * Читает все версии заметки, восстанавливая их по цепочке разниц.
+     * Оборванная последняя запись пропускается.
+     *
+     * @param noteId идентификатор заметки
+     * @return версии по возрастанию номера
+     */
+    synchronized List<NoteRevision> read(String noteId) {
+        List<NoteRevision> result = new ArrayList<>();
+        Path file = file(noteId);
+        if (!Files.exists(file)) {
+            return result;
+        }
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            String title = "";
+            String content = "";
+            while (true) {
+                byte[] record;
+                try {
+                    record = new byte[in.readInt()];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (cipher != null) {
+                    record = cipher.open(record, noteId);
+                }
+                DataInputStream r = new DataInputStream(new ByteArrayInputStream(record));
+                LocalDateTime savedAt = LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(r.readLong()), ZoneId.systemDefault());
+                long day = r.readLong();
+                int second = r.readInt();
+                title = applyDelta(r, title);
+                content = applyDelta(r, content);
+                result.add(new NoteRevision(result.size() + 1, savedAt,
+                        day == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(day),
+                        second < 0 ? null : LocalTime.ofSecondOfDay(second),
+                        title, content));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Ошибка чтения истории заметки {}", noteId, e);
+        }
+
+        if (!result.isEmpty()) {
+            latest.put(noteId, result.get(result.size() - 1));
+        }
+        return result;
+    }
+
+    private static boolean sameState(NoteRevision a, NoteRevision b) {
+        return Objects.equals(a.date(), b.date())
+                && Objects.equals(a.time(), b.time())
+                && a.title().equals(b.title())
+                && a.content().equals(b.content());
+    }
+
+    /**
+     * Записывает разницу строк: длину общего начала, длину общего конца
+     * и новую середину в UTF-8.
+     */
+    private static void writeDelta(DataOutputStream out, String previous, String current) throws IOException {
+        int max = Math.min(previous.length(), current.length());
+        int prefix = 0;
+        while (prefix < max && previous.charAt(prefix) == current.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && previous.charAt(previous.length() - 1 - suffix) == current.charAt(current.length() - 1 - suffix)) {
+            suffix++;
+        }
+        /* Суррогатные пары не разрезаются: середина должна кодироваться в UTF-8 без потерь. */
+        if (prefix > 0 && Character.isHighSurrogate(current.charAt(prefix - 1))) {
+            prefix--;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(current.charAt(current.length() - suffix))) {
+            suffix--;
+        }
+
+        byte[] middle = current.substring(prefix, current.length() - suffix).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(prefix);
+        out.writeInt(suffix);
+        out.writeInt(middle.length);
+        out.write(middle);
+    }
+
+    /**
+     * Применяет разницу к предыдущей версии строки.
+     */
+    private static String applyDelta(DataInputStream in, String previous) throws IOException {
+        int prefix = in.readInt();
+        int suffix = in.readInt();
+        byte[] middle = new byte[in.readInt()];
+        in.readFully(middle);
+        return previous.substring(0, prefix)
+                + new String(middle, StandardCharsets.UTF_8)
+                + previous.substring(previous.length() - suffix);
+    }
+
+    /**
+     * Возвращает файл истории заметки. Имя файла — хэш идентификатора,
+     * чтобы идентификаторы из синхронизации не задавали произвольный путь.
+     */
+    private Path file(String noteId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(noteId.getBytes(StandardCharsets.UTF_8));
+            return root.resolve(HexFormat.of().formatHex(digest, 0, 16) + ".bin");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
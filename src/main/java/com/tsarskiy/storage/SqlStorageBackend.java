@@ -0,0 +1,192 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Бэкенд на встроенной базе H2 в файле {@code notes.mv.db} директории хранения.
+ * <p>
+ * Каждая заметка — строка таблицы {@code notes}: идентификатор (первичный ключ),
+ * дата (отдельный индекс), текст и остальные поля сериализованным блоком.
+ * В отличие от {@link FileStorageBackend} сохранение записывает только
+ * изменённые и удалённые заметки одной транзакцией, поэтому правка одной
+ * заметки в большом архиве не перезаписывает весь архив.
+ * База открывается в процессе приложения и не требует сервера.
+ */
+final class SqlStorageBackend implements StorageBackend {
+
+    private static final Logger logger = LogManager.getLogger(SqlStorageBackend.class);
+
+    /** Имя базы в директории хранения (H2 добавляет расширение {@code .mv.db}). */
+    static final String DATABASE_NAME = "notes";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS notes ("
+                    + "id VARCHAR(255) PRIMARY KEY, "
+                    + "note_date DATE, "
+                    + "content CLOB, "
+                    + "data BLOB NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS notes_by_date ON notes(note_date)"
+    };
+
+    private static final String UPSERT =
+            "MERGE INTO notes (id, note_date, content, data) KEY (id) VALUES (?, ?, ?, ?)";
+
+    private final Path directory;
+
+    /** Открытое соединение или {@code null}. */
+    private Connection connection;
+
+    /**
+     * Создаёт бэкенд на встроенной базе.
+     *
+     * @param directory директория хранения
+     */
+    SqlStorageBackend(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Kind getKind() {
+        return Kind.SQL;
+    }
+
+    @Override
+    public List<Note> load() throws IOException {
+        List<Note> notes = new ArrayList<>();
+        try (Statement st = connection().createStatement();
+             ResultSet rs = st.executeQuery("SELECT content, data FROM notes")) {
+            while (rs.next()) {
+                Note note = fromBytes(rs.getBytes(2));
+                String content = rs.getString(1);
+                if (content != null) {
+                    note.setContent(content);
+                }
+                notes.add(note);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Не удалось прочитать заметки из базы " + directory, e);
+        }
+        logger.debug("Заметки загружены из базы: {}", notes.size());
+        return notes;
+    }
+
+    @Override
+    public void write(List<Note> notes, Changes changes) throws IOException {
+        int written = 0;
+        try {
+            Connection c = connection();
+            c.setAutoCommit(false);
+            try {
+                if (changes.full()) {
+                    try (Statement st = c.createStatement()) {
+                        st.executeUpdate("DELETE FROM notes");
+                    }
+                } else if (!changes.removed().isEmpty()) {
+                    try (PreparedStatement delete = c.prepareStatement("DELETE FROM notes WHERE id = ?")) {
+                        for (String id : changes.removed()) {
+                            delete.setString(1, id);
+                            delete.addBatch();
+                        }
+                        delete.executeBatch();
+                    }
+                }
+                try (PreparedStatement upsert = c.prepareStatement(UPSERT)) {
+                    for (Note note : notes) {
+                        if (changes.full() || changes.upserted().contains(note.getId())) {
+                            bind(upsert, note);
+                            upsert.addBatch();
+                            written++;
+                        }
+                    }
+                    upsert.executeBatch();
+                }
+                c.commit();
+            } catch (SQLException | IOException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Не удалось сохранить заметки в базу " + directory, e);
+        }
+        logger.debug("В базу записано заметок: {}, удалено: {}", written, changes.removed().size());
+    }
+
+    @Override
+    public void close() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("Ошибка закрытия базы заметок", e);
+        }
+        connection = null;
+    }
+
+    /**
+     * Возвращает соединение с базой, открывая его и создавая схему при первом обращении.
+     *
+     * @throws SQLException если база недоступна или драйвер H2 не подключён
+     */
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            String url = "jdbc:h2:file:" + directory.resolve(DATABASE_NAME).toAbsolutePath();
+            connection = DriverManager.getConnection(url);
+            try (Statement st = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    st.execute(ddl);
+                }
+            }
+            logger.info("Открыта база заметок: {}", url);
+        }
+        return connection;
+    }
+
+    private static void bind(PreparedStatement upsert, Note note) throws SQLException, IOException {
+        upsert.setString(1, note.getId());
+        if (note.getDate() != null) {
+            upsert.setObject(2, note.getDate());
+        } else {
+            upsert.setNull(2, Types.DATE);
+        }
+        upsert.setString(3, note.getContent());
+        upsert.setBytes(4, toBytes(note.toStored(null)));
+    }
+
+    private static byte[] toBytes(Note note) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(note);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Note fromBytes(byte[] data) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (Note) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Неизвестный формат заметки в базе", e);
+        }
+    }
+}
@@ -1,21 +1,46 @@
 package com.tsarskiy.storage;
 
+import com.tsarskiy.model.Attachment;
 import com.tsarskiy.model.Note;
+import com.tsarskiy.model.Recurrence;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Локальное хранилище заметок приложения.
@@ -23,10 +48,33 @@ import java.util.stream.Collectors;
  * Хранение реализовано через сериализацию списка {@link Note} в файл {@code notes.dat}
  * в выбранной пользователем директории. Путь к директории сохраняется в {@link Preferences}.
  * <p>
+ * Помимо основной директории можно подключить дополнительные календари
+ * ({@link Workspace}) — например, рабочий и личный. Каждый календарь читает свой
+ * файл один раз и держит в памяти собственные индексы; запросы объединяют
+ * видимые календари в момент обращения, а изменения записываются только
+ * в файл календаря заметки.
+ * Загрузку можно запустить в фоновом потоке через {@link #loadIndexAsync()},
+ * чтобы не задерживать показ первого кадра: файлы читаются и индексы строятся
+ * вне блокировки хранилища, под ней готовые заметки только передаются календарю.
+ * Список календарей и признак загрузки читаются без блокировки.
+ * <p>
+ * Повторяющиеся заметки хранятся одной записью с правилом {@link Recurrence}.
+ * Для них строится индекс интервалов «начало серии — последняя возможная дата»,
+ * поэтому запрос месяца разворачивает только серии, пересекающие этот месяц.
+ * <p>
+ * Изменения сразу видны в памяти, а на диск попадают отложенной записью:
+ * она ждёт паузы в правках ({@value #FLUSH_DELAY_MS} мс, но не дольше
+ * {@value #FLUSH_MAX_DELAY_MS} мс с первой правки) и пишет заметки, журнал
+ * операций, историю и отметки удаления вне блокировки хранилища — под ней
+ * только снимаются накопленные изменения.
+ * <p>
+ * Сервисы обращаются к заметкам через {@link NoteRepository}, окна —
+ * через {@link CalendarRepository}; способ хранения на диске каждого календаря задаёт его {@link StorageBackend}.
+ * <p>
  * Класс реализован как Singleton — для использования единого экземпляра хранилища
  * во всём приложении.
  */
-public class Storage {
+public class Storage implements CalendarRepository {
 
     /** Логгер для фиксации действий и ошибок работы хранилища. */
     private static final Logger logger = LogManager.getLogger(Storage.class);
@@ -40,18 +88,107 @@ public class Storage {
     /** Ключ пути к директории, выбранной пользователем для хранения данных. */
     private static final String STORAGE_DIR_KEY = "storage_dir";
 
-    /** Имя файла, в который сохраняются заметки. */
-    private static final String NOTES_FILE_NAME = "notes.dat";
+    /**
+     * Системное свойство с директорией хранения. Если задано, используется вместо
+     * директории из {@link Preferences} и не сохраняется в настройках
+     * (нужно для командной строки и замерочных запусков).
+     */
+    public static final String STORAGE_DIR_PROPERTY = "tsar.storage.dir";
+
+    /** Число дней в одной порции потока {@link #streamNotes(LocalDate, LocalDate)}. */
+    public static final int STREAM_CHUNK_DAYS = 31;
+
+    /** Порядок заметок внутри дня: сначала без времени, затем по времени. */
+    private static final Comparator<Note> DAY_ORDER =
+            Comparator.comparing(Note::getTime, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /** Ключ списка дополнительных календарей. */
+    private static final String CALENDARS_KEY = "calendars";
+
+    /** Ключ списка скрытых календарей. */
+    private static final String HIDDEN_CALENDARS_KEY = "calendars_hidden";
+
+    /** Идентификатор основного календаря. */
+    public static final String DEFAULT_CALENDAR_ID = "default";
+
+    /** Цвета календарей по порядку подключения. */
+    private static final String[] CALENDAR_COLORS = {
+            "#EAB308", "#38BDF8", "#F472B6", "#4ADE80", "#A78BFA", "#FB923C"
+    };
 
     /** Хранилище пользовательских настроек. */
     private final Preferences preferences;
 
+    /** Поток фоновой загрузки индекса заметок. */
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "storage-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Пауза в изменениях, после которой они записываются на диск одной записью. */
+    public static final long FLUSH_DELAY_MS = 1500;
+
+    /** Наибольшая задержка записи при непрерывных изменениях, от первого из них. */
+    public static final long FLUSH_MAX_DELAY_MS = 10_000;
+
+    /** Поток отложенной записи календарей. */
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "storage-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Запланированная запись или {@code null}. */
+    private ScheduledFuture<?> pendingFlush;
+
+    /** Время первого изменения, ожидающего записи ({@link System#nanoTime()}). */
+    private long firstPendingChange;
+
+    /**
+     * Блокировка записи на диск: записи идут по одной. Берётся раньше
+     * блокировки хранилища и никогда под ней.
+     */
+    private final Object flushLock = new Object();
+
+    /** Подключённые календари по идентификатору в порядке подключения. */
+    private final Map<String, Workspace> workspaces = new LinkedHashMap<>();
+
+    /** Неизменяемая копия списка календарей для чтения без блокировки. */
+    private volatile List<Workspace> workspaceList = List.of();
+
+    /** Идентификаторы скрытых календарей. */
+    private final Set<String> hiddenWorkspaces = new HashSet<>();
+
+    /** Захватывает ли процесс папки календарей ({@link #claimDirectories()}). */
+    private boolean exclusive;
+
+    /** Часы версий заметок для синхронизации. */
+    private final HybridClock clock = new HybridClock();
+
+    /** Текущая фоновая загрузка индекса. */
+    private CompletableFuture<Void> indexLoad;
+
+    /** Подписчики на изменения заметок. */
+    private final List<Consumer<NoteChange>> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Поток оповещения подписчиков. Оповещения идут вне блокировки хранилища,
+     * поэтому подписчики могут сами обращаться к хранилищу.
+     */
+    private final ExecutorService events = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "storage-events");
+        t.setDaemon(true);
+        return t;
+    });
+
     /**
      * Приватный конструктор для реализации Singleton.
      * Инициализирует {@link Preferences}.
      */
     private Storage() {
         this.preferences = Preferences.userNodeForPackage(Storage.class);
+        restoreWorkspaces();
         logger.info("Storage инициализирован");
     }
 
@@ -73,7 +210,8 @@ public class Storage {
      * @return {@code true}, если onboarding пройден, иначе {@code false}
      */
     public boolean isOnboarded() {
-        boolean onboarded = preferences.getBoolean(ONBOARDED_KEY, false);
+        boolean onboarded = System.getProperty(STORAGE_DIR_PROPERTY) != null
+                || preferences.getBoolean(ONBOARDED_KEY, false);
         logger.debug("Проверка onboarding: {}", onboarded);
         return onboarded;
     }
@@ -92,7 +230,7 @@ public class Storage {
      * @return {@code true}, если директория хранения существует, иначе {@code false}
      */
     public boolean hasStorageDirectory() {
-        String dir = preferences.get(STORAGE_DIR_KEY, null);
+        String dir = getStorageDirectoryPath();
         boolean exists = dir != null && Files.exists(Path.of(dir));
         logger.info("Проверка папки хранения: {}", exists);
         return exists;
@@ -107,157 +245,1073 @@ public class Storage {
      * @throws RuntimeException если не удалось создать директорию
      */
     public void setStorageDirectory(Path dir) {
-        preferences.put(STORAGE_DIR_KEY, dir.toAbsolutePath().toString());
+        synchronized (flushLock) {
+            flush();
+            synchronized (this) {
+                preferences.put(STORAGE_DIR_KEY, dir.toAbsolutePath().toString());
+                try {
+                    Files.createDirectories(dir);
+                    logger.info("Установлена папка хранения: {}", dir);
+                } catch (IOException e) {
+                    logger.error("Ошибка создания папки хранения", e);
+                    throw new RuntimeException("Не удалось создать директорию хранения", e);
+                }
+                restoreWorkspaces();
+                indexLoad = null;
+            }
+        }
+    }
+
+    /**
+     * Устанавливает директорию хранения с шифрованием заметок паролем.
+     * <p>
+     * Для пустой директории создаётся ключ и выбирается зашифрованный бэкенд;
+     * уже зашифрованная директория открывается этим паролем.
+     *
+     * @param dir        путь к директории хранения
+     * @param passphrase пароль
+     * @throws IllegalStateException    если в директории уже есть незашифрованные заметки
+     * @throws IllegalArgumentException если пароль не подходит к зашифрованной директории
+     * @throws RuntimeException         если не удалось создать директорию или ключ
+     */
+    public void setStorageDirectory(Path dir, char[] passphrase) {
+        synchronized (flushLock) {
+            setStorageDirectory(dir);
+            synchronized (this) {
+                try {
+                    workspaceFor(DEFAULT_CALENDAR_ID).encrypt(passphrase);
+                } catch (IOException e) {
+                    logger.error("Ошибка включения шифрования", e);
+                    throw new RuntimeException("Не удалось создать ключ шифрования", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверяет, ждёт ли какой-либо календарь пароля.
+     * Пока календарь заблокирован, заметки загружать нельзя.
+     *
+     * @return {@code true}, если есть зашифрованный календарь без открытого ключа
+     */
+    public boolean isLocked() {
+        return workspaceList.stream().anyMatch(Workspace::isLocked);
+    }
+
+    /**
+     * Открывает паролем все заблокированные календари.
+     *
+     * @param passphrase пароль
+     * @throws IllegalArgumentException если пароль не подходит хотя бы к одному календарю
+     * @throws RuntimeException         если параметры ключа не удалось прочитать
+     */
+    public synchronized void unlock(char[] passphrase) {
+        for (Workspace workspace : workspaces.values()) {
+            if (!workspace.isLocked()) {
+                continue;
+            }
+            try {
+                workspace.unlock(passphrase);
+            } catch (IOException e) {
+                logger.error("Ошибка открытия календаря «{}»", workspace.getName(), e);
+                throw new RuntimeException("Не удалось открыть календарь «" + workspace.getName() + "»", e);
+            }
+        }
+        indexLoad = null;
+    }
+
+    /**
+     * Возвращает директорию хранения.
+     *
+     * @return директория или пустое значение, если она не выбрана
+     */
+    @Override
+    public Optional<Path> getStorageDirectory() {
+        return Optional.ofNullable(getStorageDirectoryPath()).map(Path::of);
+    }
+
+    /**
+     * Возвращает путь к директории хранения: из системного свойства
+     * {@value #STORAGE_DIR_PROPERTY}, если оно задано, иначе из настроек.
+     *
+     * @return путь к директории или {@code null}, если она не выбрана
+     */
+    private String getStorageDirectoryPath() {
+        return System.getProperty(STORAGE_DIR_PROPERTY, preferences.get(STORAGE_DIR_KEY, null));
+    }
+
+    /* ===== CALENDARS ===== */
+
+    /**
+     * Восстанавливает список календарей из настроек: основной календарь
+     * из директории хранения и дополнительные из {@value #CALENDARS_KEY}.
+     */
+    private void restoreWorkspaces() {
+        workspaces.values().forEach(Workspace::close);
+        workspaces.clear();
+        hiddenWorkspaces.clear();
+
+        String dir = getStorageDirectoryPath();
+        if (dir != null) {
+            workspaces.put(DEFAULT_CALENDAR_ID, new Workspace(
+                    DEFAULT_CALENDAR_ID, "Основной", Path.of(dir), CALENDAR_COLORS[0]));
+        }
+
+        for (String line : preferences.get(CALENDARS_KEY, "").split("\n")) {
+            String[] f = line.split("\t");
+            if (f.length == 4) {
+                workspaces.put(f[0], new Workspace(f[0], f[1], Path.of(f[3]), f[2]));
+            }
+        }
+
+        String hidden = preferences.get(HIDDEN_CALENDARS_KEY, "");
+        if (!hidden.isEmpty()) {
+            hiddenWorkspaces.addAll(Arrays.asList(hidden.split(",")));
+        }
+        workspaceList = List.copyOf(workspaces.values());
+        if (exclusive) {
+            workspaces.values().forEach(this::claim);
+        }
+    }
+
+    /**
+     * Захватывает папки всех календарей для записи этим процессом,
+     * в том числе подключаемых позже. Приложение вызывает метод при запуске,
+     * чтобы командная строка не писала в папки, которые оно затрёт.
+     *
+     * @return {@code true}, если захвачены все папки
+     */
+    public synchronized boolean claimDirectories() {
+        exclusive = true;
+        boolean all = true;
+        for (Workspace workspace : workspaces.values()) {
+            all &= claim(workspace);
+        }
+        return all;
+    }
+
+    /**
+     * Проверяет, захвачена ли папка календаря этим процессом.
+     *
+     * @param calendarId календарь или {@code null} для основного
+     * @return {@code false}, если папку держит другой процесс или она не захватывалась
+     */
+    public synchronized boolean isDirectoryClaimed(String calendarId) {
+        return workspaceFor(calendarId).isClaimed();
+    }
+
+    private boolean claim(Workspace workspace) {
+        boolean claimed = workspace.claim();
+        if (!claimed) {
+            logger.warn("Папка календаря «{}» открыта другим процессом: его изменения могут быть затёрты",
+                    workspace.getName());
+        }
+        return claimed;
+    }
+
+    /**
+     * Сохраняет список дополнительных календарей и скрытых календарей в настройках.
+     */
+    private void persistWorkspaces() {
+        StringBuilder sb = new StringBuilder();
+        for (Workspace w : workspaces.values()) {
+            if (!w.getId().equals(DEFAULT_CALENDAR_ID)) {
+                sb.append(w.getId()).append('\t')
+                        .append(w.getName().replace('\t', ' ').replace('\n', ' ')).append('\t')
+                        .append(w.getColor()).append('\t')
+                        .append(w.getDirectory()).append('\n');
+            }
+        }
+        preferences.put(CALENDARS_KEY, sb.toString());
+        preferences.put(HIDDEN_CALENDARS_KEY, String.join(",", hiddenWorkspaces));
+    }
+
+    /**
+     * Возвращает подключённые календари в порядке подключения.
+     *
+     * @return список календарей
+     */
+    @Override
+    public List<Workspace> getWorkspaces() {
+        return new ArrayList<>(workspaceList);
+    }
+
+    /**
+     * Подключает дополнительный календарь с собственной директорией хранения.
+     * Заметки календаря загружаются в фоне через {@link #loadIndexAsync()}.
+     *
+     * @param name название календаря
+     * @param dir  директория хранения календаря
+     * @return подключённый календарь
+     * @throws RuntimeException если не удалось создать директорию
+     */
+    @Override
+    public synchronized Workspace addWorkspace(String name, Path dir) {
         try {
             Files.createDirectories(dir);
-            logger.info("Установлена папка хранения: {}", dir);
         } catch (IOException e) {
-            logger.error("Ошибка создания папки хранения", e);
-            throw new RuntimeException("Не удалось создать директорию хранения", e);
+            logger.error("Ошибка создания папки календаря", e);
+            throw new RuntimeException("Не удалось создать директорию календаря", e);
         }
+
+        String color = CALENDAR_COLORS[workspaces.size() % CALENDAR_COLORS.length];
+        Workspace workspace = new Workspace(
+                "cal-" + UUID.randomUUID(), name, dir.toAbsolutePath(), color);
+        workspaces.put(workspace.getId(), workspace);
+        workspaceList = List.copyOf(workspaces.values());
+        if (exclusive) {
+            claim(workspace);
+        }
+        persistWorkspaces();
+        logger.info("Подключён календарь «{}»: {}", name, dir);
+        return workspace;
     }
 
     /**
-     * Возвращает путь к файлу заметок {@code notes.dat} в выбранной директории хранения.
+     * Отключает дополнительный календарь. Файлы календаря не удаляются.
      *
-     * @return путь к файлу заметок
-     * @throws IllegalStateException если директория хранения не выбрана или была удалена
+     * @param id идентификатор календаря
      */
-    private Path getNotesFile() {
-        String dir = preferences.get(STORAGE_DIR_KEY, null);
+    public void removeWorkspace(String id) {
+        if (DEFAULT_CALENDAR_ID.equals(id)) {
+            return;
+        }
+        synchronized (flushLock) {
+            synchronized (this) {
+                Workspace workspace = workspaces.get(id);
+                if (workspace != null) {
+                    workspace.close();
+                    workspaces.remove(id);
+                    workspaceList = List.copyOf(workspaces.values());
+                    hiddenWorkspaces.remove(id);
+                    persistWorkspaces();
+                    logger.info("Календарь отключён: {}", id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверяет, отображается ли календарь.
+     *
+     * @param id идентификатор календаря
+     * @return {@code true}, если календарь виден
+     */
+    @Override
+    public synchronized boolean isWorkspaceVisible(String id) {
+        return !hiddenWorkspaces.contains(id);
+    }
+
+    /**
+     * Показывает или скрывает календарь. Данные календаря остаются в памяти.
+     *
+     * @param id      идентификатор календаря
+     * @param visible {@code true}, чтобы показать календарь
+     */
+    @Override
+    public synchronized void setWorkspaceVisible(String id, boolean visible) {
+        boolean changed = visible ? hiddenWorkspaces.remove(id) : hiddenWorkspaces.add(id);
+        if (changed) {
+            persistWorkspaces();
+        }
+    }
 
-        if (dir == null) {
+    /**
+     * Возвращает календарь по идентификатору или основной календарь.
+     *
+     * @param id идентификатор календаря или {@code null}
+     * @return календарь
+     * @throws IllegalStateException если директория хранения не выбрана
+     */
+    private Workspace workspaceFor(String id) {
+        Workspace workspace = id != null ? workspaces.get(id) : null;
+        if (workspace == null) {
+            workspace = workspaces.get(DEFAULT_CALENDAR_ID);
+        }
+        if (workspace == null) {
             logger.error("Папка хранения не выбрана");
             throw new IllegalStateException("Папка хранения не выбрана");
         }
+        return workspace;
+    }
 
-        Path storageDir = Path.of(dir);
-        if (!Files.exists(storageDir)) {
-            logger.error("Папка хранения была удалена: {}", storageDir);
-            throw new IllegalStateException("Папка хранения была удалена");
-        }
+    /**
+     * Возвращает вид бэкенда хранения календаря.
+     *
+     * @param id идентификатор календаря
+     * @return вид бэкенда
+     */
+    public synchronized StorageBackend.Kind getBackendKind(String id) {
+        return workspaceFor(id).backendKind();
+    }
 
-        return storageDir.resolve(NOTES_FILE_NAME);
+    /**
+     * Переводит календарь на другой бэкенд хранения. Заметки переписываются
+     * в новый бэкенд, выбор запоминается в директории календаря.
+     *
+     * @param id   идентификатор календаря
+     * @param kind вид бэкенда
+     * @throws RuntimeException если заметки не удалось перенести
+     */
+    public void setBackendKind(String id, StorageBackend.Kind kind) {
+        synchronized (flushLock) {
+            flush();
+            synchronized (this) {
+                try {
+                    workspaceFor(id).switchBackend(kind);
+                } catch (IOException e) {
+                    logger.error("Ошибка перевода календаря на бэкенд {}", kind, e);
+                    throw new RuntimeException("Не удалось перенести заметки в бэкенд " + kind, e);
+                }
+            }
+        }
     }
 
     /**
-     * Загружает все заметки из файла хранения.
+     * Подписывает обработчик на изменения заметок.
      * <p>
-     * Если файл не существует — возвращается пустой список.
+     * Обработчик вызывается в отдельном потоке оповещений после изменения
+     * в памяти (запись на диск отложена), в порядке изменений, и получает вид изменения, заметку и её прежнюю
+     * и новую даты.
      *
-     * @return список заметок
+     * @param listener обработчик изменений
      */
-    public List<Note> getNotes() {
-        Path file = getNotesFile();
+    @Override
+    public void addChangeListener(Consumer<NoteChange> listener) {
+        changeListeners.add(listener);
+    }
 
-        if (!Files.exists(file)) {
-            logger.warn("Файл заметок не найден, возвращён пустой список");
-            return new ArrayList<>();
+    /**
+     * Оповещает подписчиков об изменении заметки.
+     *
+     * @param change изменение
+     */
+    private void fireChanged(NoteChange change) {
+        if (changeListeners.isEmpty()) {
+            return;
         }
+        events.execute(() -> {
+            for (Consumer<NoteChange> listener : changeListeners) {
+                try {
+                    listener.accept(change);
+                } catch (RuntimeException e) {
+                    logger.error("Ошибка обработчика изменений заметок", e);
+                }
+            }
+        });
+    }
 
-        try (ObjectInputStream in =
-                     new ObjectInputStream(new FileInputStream(file.toFile()))) {
+    /**
+     * Запускает загрузку заметок всех календарей в фоновом потоке.
+     * <p>
+     * Повторные вызовы возвращают ту же задачу, пока все календари загружены;
+     * после подключения нового календаря запускается загрузка только его заметок.
+     *
+     * @return задача, завершающаяся после построения индексов
+     */
+    @Override
+    public synchronized CompletableFuture<Void> loadIndexAsync() {
+        if (indexLoad == null || (indexLoad.isDone() && !isIndexLoaded())) {
+            indexLoad = CompletableFuture.runAsync(this::ensureLoaded, loader);
+        }
+        return indexLoad;
+    }
 
-            Object obj = in.readObject();
-            if (obj instanceof List<?>) {
-                logger.debug("Заметки загружены из файла");
-                return (List<Note>) obj;
-            }
+    /**
+     * Проверяет, загружены ли заметки всех календарей.
+     *
+     * @return {@code true}, если индексы всех календарей построены
+     */
+    @Override
+    public boolean isIndexLoaded() {
+        return workspaceList.stream().allMatch(Workspace::isLoaded);
+    }
 
-        } catch (Exception e) {
-            logger.error("Ошибка чтения заметок", e);
+    /**
+     * Загружает заметки календарей, которые ещё не загружены.
+     * Файлы читаются без блокировки хранилища; она берётся только на передачу
+     * прочитанного календарю, если он за это время не был отключён.
+     */
+    private void ensureLoaded() {
+        for (Workspace workspace : workspaceList) {
+            if (workspace.isLoaded()) {
+                continue;
+            }
+            Workspace.Loaded loaded;
+            try {
+                loaded = workspace.read();
+            } catch (IllegalStateException e) {
+                logger.error("Календарь «{}» недоступен", workspace.getName(), e);
+                continue;
+            }
+            synchronized (this) {
+                if (workspaces.get(workspace.getId()) == workspace) {
+                    workspace.install(loaded);
+                }
+            }
         }
+    }
 
-        return new ArrayList<>();
+    /**
+     * Возвращает все заметки всех календарей.
+     * <p>
+     * При первом обращении заметки загружаются из файлов.
+     *
+     * @return копия списка заметок
+     */
+    @Override
+    public synchronized List<Note> getNotes() {
+        List<Note> result = new ArrayList<>();
+        for (Workspace workspace : workspaces.values()) {
+            result.addAll(workspace.notes());
+        }
+        return result;
     }
 
     /**
-     * Сохраняет список заметок в файл хранения.
+     * Сохраняет список заметок в файл основного календаря.
      *
      * @param notes список заметок для сохранения
      */
-    public void saveNotes(List<Note> notes) {
-        Path file = getNotesFile();
-
-        try (ObjectOutputStream out =
-                     new ObjectOutputStream(new FileOutputStream(file.toFile()))) {
-            out.writeObject(notes);
-            logger.info("Заметки сохранены, количество: {}", notes.size());
-        } catch (IOException e) {
-            logger.error("Ошибка сохранения заметок", e);
-        }
+    public synchronized void saveNotes(List<Note> notes) {
+        workspaceFor(DEFAULT_CALENDAR_ID).replaceAll(notes);
+        scheduleFlush();
     }
 
     /**
-     * Добавляет заметку в хранилище.
+     * Добавляет заметку в хранилище — в календарь заметки
+     * или в основной календарь, если календарь не указан.
      *
      * @param note заметка для добавления
      */
-    public void addNote(Note note) {
-        List<Note> notes = getNotes();
-        notes.add(note);
-        saveNotes(notes);
+    @Override
+    public synchronized void addNote(Note note) {
+        Workspace workspace = workspaceFor(note.getCalendarId());
+        stamp(note, workspace);
+        workspace.add(note);
+        workspace.record(Operation.upsert(note));
+        scheduleFlush();
         logger.info("Добавлена заметка id={}", note.getId());
+        fireChanged(NoteChange.added(note));
+    }
+
+    /**
+     * Добавляет несколько заметок за один вызов: большая пачка перестраивает
+     * индексы календаря один раз, а запись на диск попадает в то же отложенное
+     * сохранение, что и у {@link #addNote(Note)}.
+     *
+     * @param notes заметки для добавления
+     */
+    @Override
+    public synchronized void addNotes(List<Note> notes) {
+        Map<Workspace, List<Note>> byWorkspace = new LinkedHashMap<>();
+        for (Note note : notes) {
+            Workspace workspace = workspaceFor(note.getCalendarId());
+            stamp(note, workspace);
+            byWorkspace.computeIfAbsent(workspace, w -> new ArrayList<>()).add(note);
+        }
+        byWorkspace.forEach((workspace, added) -> {
+            workspace.addAll(added);
+            for (Note note : added) {
+                workspace.record(Operation.upsert(note));
+            }
+        });
+        scheduleFlush();
+        logger.info("Добавлено заметок: {}", notes.size());
+        notes.forEach(note -> fireChanged(NoteChange.added(note)));
     }
 
     /**
      * Обновляет заметку в хранилище по её идентификатору.
      * Если заметка не найдена — данные не изменяются.
+     * <p>
+     * Для экземпляра повторяющейся заметки изменения переносятся в исходную
+     * запись серии, дата начала серии сохраняется.
      *
      * @param updated обновлённая заметка
      */
-    public void updateNote(Note updated) {
-        List<Note> notes = getNotes();
-
-        for (int i = 0; i < notes.size(); i++) {
-            if (notes.get(i).getId().equals(updated.getId())) {
-                notes.set(i, updated);
-                saveNotes(notes);
-                logger.info("Обновлена заметка id={}", updated.getId());
-                return;
-            }
+    @Override
+    public synchronized void updateNote(Note updated) {
+        Workspace workspace = workspaceFor(updated.getCalendarId());
+        stamp(updated, workspace);
+        Note before = workspace.find(updated.getId()).map(Note::copy).orElse(null);
+        if (workspace.update(updated)) {
+            recordUpsert(workspace, updated.getId());
+            scheduleFlush();
+            logger.info("Обновлена заметка id={}", updated.getId());
+            fireChanged(NoteChange.updated(before, workspace.find(updated.getId()).orElse(updated)));
+        } else {
+            logger.warn("Заметка для обновления не найдена id={}", updated.getId());
         }
+    }
 
-        logger.warn("Заметка для обновления не найдена id={}", updated.getId());
+    /**
+     * Переносит однократную заметку на другую дату.
+     * <p>
+     * Индекс дат обновляется без перестройки, а операция журнала, версия
+     * истории и файл заметок попадают в общее отложенное сохранение.
+     *
+     * @param note   заметка
+     * @param target новая дата
+     * @return перенесённая заметка или пустое значение, если заметка не найдена
+     * @throws IllegalArgumentException если передан экземпляр повторяющейся заметки
+     */
+    @Override
+    public synchronized Optional<Note> moveNote(Note note, LocalDate target) {
+        if (note.isOccurrence()) {
+            throw new IllegalArgumentException("Повторение серии нельзя перенести как заметку");
+        }
+        Workspace workspace = workspaceFor(note.getCalendarId());
+        LocalDate from = workspace.find(note.getId()).map(Note::getDate).orElse(null);
+        Optional<Note> moved = workspace.move(note.getId(), target, nextVersion(workspace));
+        if (moved.isPresent()) {
+            workspace.record(Operation.upsert(moved.get()));
+            scheduleFlush();
+            logger.info("Заметка id={} перенесена на {}", note.getId(), target);
+            fireChanged(NoteChange.moved(from, moved.get()));
+        } else {
+            logger.warn("Заметка для переноса не найдена id={}", note.getId());
+        }
+        return moved;
     }
 
     /**
      * Удаляет заметку из хранилища по её идентификатору.
+     * <p>
+     * Для экземпляра повторяющейся заметки удаляется только это повторение:
+     * его дата добавляется в исключения серии. Всю серию удаляет
+     * {@link #deleteSeries(Note)}.
      *
      * @param note заметка для удаления
      */
-    public void deleteNote(Note note) {
+    @Override
+    public synchronized void deleteNote(Note note) {
         if (note == null || note.getId() == null) {
             logger.warn("Попытка удалить некорректную заметку");
             return;
         }
 
-        List<Note> notes = getNotes();
-        boolean removed = notes.removeIf(n ->
-                n.getId() != null && n.getId().equals(note.getId())
-        );
+        if (note.isOccurrence()) {
+            Workspace workspace = workspaceFor(note.getCalendarId());
+            stamp(note, workspace);
+            if (workspace.excludeOccurrence(note)) {
+                recordUpsert(workspace, note.getId());
+                scheduleFlush();
+                logger.info("Удалено повторение {} заметки id={}", note.getDate(), note.getId());
+                fireChanged(NoteChange.occurrenceDeleted(note));
+            } else {
+                logger.warn("Серия для удаления повторения не найдена id={}", note.getId());
+            }
+            return;
+        }
 
-        if (removed) {
-            saveNotes(notes);
+        deleteSeries(note);
+    }
+
+    /**
+     * Удаляет заметку целиком, включая все повторения серии.
+     *
+     * @param note заметка или любой экземпляр её серии
+     */
+    @Override
+    public synchronized void deleteSeries(Note note) {
+        if (note == null || note.getId() == null) {
+            logger.warn("Попытка удалить некорректную заметку");
+            return;
+        }
+
+        Workspace workspace = workspaceFor(note.getCalendarId());
+        Note removed = workspace.find(note.getId()).orElse(note);
+        if (workspace.remove(note.getId())) {
+            workspace.record(Operation.delete(note.getId(), nextVersion(workspace), workspace.replicaId()));
+            scheduleFlush();
             logger.info("Удалена заметка id={}", note.getId());
+            fireChanged(NoteChange.deleted(removed));
         } else {
             logger.warn("Заметка для удаления не найдена id={}", note.getId());
         }
     }
 
+    /* ===== PERSISTENCE ===== */
+
+    /**
+     * Откладывает запись изменённых календарей: каждое изменение переносит её
+     * на {@link #FLUSH_DELAY_MS} вперёд, но не дальше {@link #FLUSH_MAX_DELAY_MS}
+     * от первого незаписанного изменения. Вызывается под блокировкой хранилища.
+     */
+    private void scheduleFlush() {
+        long now = System.nanoTime();
+        if (pendingFlush == null) {
+            firstPendingChange = now;
+        } else {
+            pendingFlush.cancel(false);
+        }
+        long waited = TimeUnit.NANOSECONDS.toMillis(now - firstPendingChange);
+        long delay = Math.max(0, Math.min(FLUSH_DELAY_MS, FLUSH_MAX_DELAY_MS - waited));
+        pendingFlush = flusher.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Немедленно записывает на диск изменения всех календарей.
+     * Вызывается по окончании отложенной записи и при выходе из приложения.
+     * <p>
+     * Под блокировкой хранилища у календарей только забираются накопленные
+     * изменения; сама запись идёт вне неё, поэтому интерфейс не ждёт диска.
+     * Изменения календаря, который записать не удалось, возвращаются ему
+     * и попадут в следующую запись. Метод нельзя вызывать под блокировкой хранилища.
+     *
+     * @return {@code true}, если записаны изменения всех календарей
+     */
+    @Override
+    public boolean flush() {
+        synchronized (flushLock) {
+            Map<Workspace, Workspace.Pending> batch = new LinkedHashMap<>();
+            synchronized (this) {
+                if (pendingFlush != null) {
+                    pendingFlush.cancel(false);
+                    pendingFlush = null;
+                }
+                for (Workspace workspace : workspaces.values()) {
+                    Workspace.Pending pending = workspace.drain();
+                    if (pending != null) {
+                        batch.put(workspace, pending);
+                    }
+                }
+            }
+            boolean written = true;
+            for (Map.Entry<Workspace, Workspace.Pending> entry : batch.entrySet()) {
+                Workspace workspace = entry.getKey();
+                try {
+                    workspace.write(entry.getValue());
+                } catch (IOException | IllegalStateException e) {
+                    logger.error("Ошибка сохранения календаря «{}»", workspace.getName(), e);
+                    synchronized (this) {
+                        workspace.restore(entry.getValue());
+                    }
+                    written = false;
+                }
+            }
+            return written;
+        }
+    }
+
+    /* ===== HISTORY ===== */
+
+    /**
+     * Читает историю изменений заметки. История хранится отдельно
+     * от заметок и читается только по этому запросу; отложенные версии
+     * сначала записываются.
+     *
+     * @param note заметка или её экземпляр
+     * @return версии по возрастанию номера
+     */
+    @Override
+    public List<NoteRevision> getHistory(Note note) {
+        flush();
+        synchronized (this) {
+            return workspaceFor(note.getCalendarId()).history(note.getId());
+        }
+    }
+
+    /**
+     * Восстанавливает версию заметки. Восстановление сохраняется
+     * как новая версия, поэтому более поздние версии не теряются.
+     * Дата серии повторяющейся заметки не меняется.
+     * <p>
+     * Версия применяется к копии исходной записи, а не к заметке в памяти:
+     * иначе {@link #updateNote(Note)} не узнал бы прежнюю дату, и подписчики
+     * не обновили бы день, с которого заметка ушла.
+     *
+     * @param note     заметка или её экземпляр
+     * @param revision восстанавливаемая версия
+     */
+    @Override
+    public synchronized void restoreRevision(Note note, NoteRevision revision) {
+        Workspace workspace = workspaceFor(note.getCalendarId());
+        workspace.find(note.getId()).map(Note::copy).ifPresent(restored -> {
+            restored.setTitle(revision.title());
+            restored.setContent(revision.content());
+            restored.setTime(revision.time());
+            if (!restored.isRecurring() && revision.date() != null) {
+                restored.setDate(revision.date());
+            }
+            updateNote(restored);
+            logger.info("Заметка {} восстановлена до версии {}", note.getId(), revision.number());
+        });
+    }
+
+    /* ===== ATTACHMENTS ===== */
+
+    /**
+     * Возвращает хранилище вложений календаря.
+     *
+     * @param calendarId идентификатор календаря или {@code null} для основного
+     * @return хранилище вложений в директории календаря
+     * @throws IllegalStateException если директория хранения не выбрана
+     */
+    private synchronized AttachmentStore attachmentStore(String calendarId) {
+        return workspaceFor(calendarId).attachments();
+    }
+
+    /**
+     * Проверяет, можно ли прикреплять файлы к заметкам календаря.
+     * В зашифрованном календаре вложения отключены: файлы лежали бы открытыми.
+     *
+     * @param calendarId календарь или {@code null} для основного
+     * @return {@code true}, если вложения поддерживаются
+     */
+    @Override
+    public synchronized boolean supportsAttachments(String calendarId) {
+        return workspaceFor(calendarId).backendKind() != StorageBackend.Kind.ENCRYPTED;
+    }
+
+    /**
+     * Копирует файл в хранилище вложений календаря. Блокировка хранилища
+     * на время копирования не берётся, поэтому метод можно вызывать
+     * из фонового потока.
+     *
+     * @param calendarId календарь заметки или {@code null} для основного
+     * @param source     исходный файл
+     * @return вложение для {@link Note#setAttachments(List)}
+     * @throws IOException           если файл не удалось скопировать
+     * @throws IllegalStateException если календарь зашифрован
+     */
+    @Override
+    public Attachment importAttachment(String calendarId, Path source) throws IOException {
+        if (!supportsAttachments(calendarId)) {
+            throw new IllegalStateException("В зашифрованном календаре вложения не хранятся");
+        }
+        return attachmentStore(calendarId).importFile(source);
+    }
+
+    /**
+     * Возвращает путь к файлу вложения в календаре заметки — например,
+     * чтобы открыть его во внешней программе.
+     *
+     * @param note       заметка или её экземпляр
+     * @param attachment вложение
+     * @return путь к файлу
+     */
+    @Override
+    public Path getAttachmentFile(Note note, Attachment attachment) {
+        return attachmentStore(note.getCalendarId()).file(attachment);
+    }
+
+    /**
+     * Открывает вложение из календаря заметки для чтения потоком,
+     * не загружая его в память целиком.
+     *
+     * @param note       заметка или её экземпляр
+     * @param attachment вложение
+     * @return поток содержимого
+     * @throws IOException если файл вложения не найден
+     */
+    @Override
+    public InputStream openAttachment(Note note, Attachment attachment) throws IOException {
+        return attachmentStore(note.getCalendarId()).open(attachment);
+    }
+
+    /* ===== SYNC ===== */
+
+    /**
+     * Проставляет заметке новую версию локального изменения.
+     *
+     * @param note      изменяемая заметка
+     * @param workspace календарь заметки
+     */
+    private void stamp(Note note, Workspace workspace) {
+        note.setVersion(nextVersion(workspace), workspace.replicaId());
+    }
+
+    /**
+     * Выдаёт версию локального изменения, большую всех версий, записанных
+     * в календаре до запуска: часы не хранятся отдельно и восстанавливаются
+     * по загруженным заметкам и отметкам удаления.
+     *
+     * @param workspace календарь изменения
+     * @return новая версия
+     */
+    private long nextVersion(Workspace workspace) {
+        clock.observe(workspace.highestVersion());
+        return clock.now();
+    }
+
+    /**
+     * Записывает в журнал снимок исходной записи заметки после изменения.
+     *
+     * @param workspace календарь заметки
+     * @param noteId    идентификатор заметки
+     */
+    private void recordUpsert(Workspace workspace, String noteId) {
+        workspace.find(noteId).ifPresent(master -> workspace.record(Operation.upsert(master)));
+    }
+
+    /**
+     * Возвращает идентификатор установки для календаря.
+     *
+     * @param calendarId идентификатор календаря
+     * @return идентификатор установки
+     */
+    public synchronized String getReplicaId(String calendarId) {
+        return workspaceFor(calendarId).replicaId();
+    }
+
+    /**
+     * Читает операции журнала календаря начиная со смещения.
+     * Отложенные операции сначала записываются.
+     *
+     * @param calendarId идентификатор календаря
+     * @param offset     смещение в журнале
+     * @return операции и смещение конца прочитанного
+     */
+    public OperationBatch readOperations(String calendarId, long offset) {
+        flush();
+        synchronized (this) {
+            return workspaceFor(calendarId).readOperations(offset);
+        }
+    }
+
+    /**
+     * Применяет операции другой установки к календарю.
+     * Конфликты разрешаются по версии: побеждает последнее изменение.
+     * Операции с версией, опережающей системные часы больше чем на сутки,
+     * отбрасываются.
+     *
+     * @param calendarId идентификатор календаря
+     * @param operations чужие операции
+     * @return число применённых операций
+     */
+    public synchronized int applyRemoteOperations(String calendarId, List<Operation> operations) {
+        List<Operation> accepted = new ArrayList<>(operations.size());
+        for (Operation op : operations) {
+            if (HybridClock.isPlausible(op.getVersion())) {
+                clock.observe(op.getVersion());
+                accepted.add(op);
+            } else {
+                logger.warn("Отброшена операция id={} с версией из будущего от {}",
+                        op.getNoteId(), op.getReplicaId());
+            }
+        }
+        operations = accepted;
+        Workspace workspace = workspaceFor(calendarId);
+        Map<String, Note> before = new HashMap<>();
+        for (Operation op : operations) {
+            workspace.find(op.getNoteId()).ifPresent(note -> before.putIfAbsent(op.getNoteId(), note));
+        }
+        List<Operation> applied = workspace.applyRemote(operations);
+        if (!applied.isEmpty()) {
+            scheduleFlush();
+        }
+        for (Operation op : applied) {
+            Note previous = before.remove(op.getNoteId());
+            if (op.getNote() != null) {
+                fireChanged(NoteChange.updated(previous, op.getNote()));
+                before.put(op.getNoteId(), op.getNote());
+            } else if (previous != null) {
+                fireChanged(NoteChange.deleted(previous));
+            } else {
+                Note stub = new Note();
+                stub.setId(op.getNoteId());
+                stub.setCalendarId(calendarId);
+                fireChanged(NoteChange.deleted(stub));
+            }
+        }
+        logger.info("Применено чужих операций: {} из {}", applied.size(), operations.size());
+        return applied.size();
+    }
+
+    /* ===== TAGS ===== */
+
+    /**
+     * Возвращает теги заметок видимых календарей.
+     *
+     * @return теги по алфавиту
+     */
+    @Override
+    public synchronized SortedSet<String> getTags() {
+        SortedSet<String> result = new TreeSet<>();
+        for (Workspace workspace : workspaces.values()) {
+            if (!hiddenWorkspaces.contains(workspace.getId())) {
+                result.addAll(workspace.tags());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Оставляет из заметок по датам только отмеченные тегами.
+     * <p>
+     * Порядковые номера заметок каждого календаря собираются в сжатое множество
+     * и пересекаются с множествами заметок тегов, поэтому стоимость зависит
+     * от числа переданных заметок, а не от размера архива. Номер берётся
+     * у календаря по идентификатору заметки, поэтому экземпляры серий
+     * из снимков, сделанных до удаления других заметок, фильтруются верно.
+     *
+     * @param notes    заметки по датам, полученные из хранилища
+     * @param tags     выбранные теги
+     * @param matchAll {@code true} — нужны все теги, {@code false} — хотя бы один
+     * @return заметки по датам; без выбранных тегов — исходная карта
+     */
+    @Override
+    public synchronized Map<LocalDate, List<Note>> filterByTags(Map<LocalDate, List<Note>> notes,
+                                                               Set<String> tags, boolean matchAll) {
+        if (tags.isEmpty()) {
+            return notes;
+        }
+        Map<String, List<Note>> byCalendar = new HashMap<>();
+        for (List<Note> day : notes.values()) {
+            for (Note note : day) {
+                byCalendar.computeIfAbsent(note.getCalendarId(), k -> new ArrayList<>()).add(note);
+            }
+        }
+
+        Map<String, OrdinalBitmap> visible = new HashMap<>();
+        byCalendar.forEach((calendarId, calendarNotes) -> {
+            Workspace workspace = workspaces.get(calendarId);
+            if (workspace == null) {
+                return;
+            }
+            int[] ordinals = new int[calendarNotes.size()];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = workspace.ordinal(calendarNotes.get(i).getId());
+            }
+            OrdinalBitmap shown = OrdinalBitmap.of(ordinals, ordinals.length);
+            OrdinalBitmap result = matchAll ? shown : OrdinalBitmap.EMPTY;
+            for (String tag : tags) {
+                OrdinalBitmap tagged = shown.and(workspace.tagged(Note.normalizeTag(tag)));
+                result = matchAll ? result.and(tagged) : result.or(tagged);
+            }
+            visible.put(calendarId, result);
+        });
+
+        Map<LocalDate, List<Note>> result = new TreeMap<>();
+        notes.forEach((date, day) -> {
+            List<Note> kept = new ArrayList<>();
+            for (Note note : day) {
+                OrdinalBitmap shown = visible.get(note.getCalendarId());
+                if (shown != null && shown.contains(workspaces.get(note.getCalendarId()).ordinal(note.getId()))) {
+                    kept.add(note);
+                }
+            }
+            if (!kept.isEmpty()) {
+                result.put(date, kept);
+            }
+        });
+        return result;
+    }
+
     /**
-     * Возвращает список заметок за указанную дату.
+     * Возвращает список заметок за указанную дату,
+     * включая экземпляры повторяющихся заметок.
      *
      * @param date дата, по которой выполняется поиск
      * @return список заметок за выбранную дату
      */
-    public List<Note> getNotesForDate(LocalDate date) {
-        List<Note> result = getNotes()
-                .stream()
-                .filter(n -> date.equals(n.getDate()))
-                .collect(Collectors.toList());
+    @Override
+    public synchronized List<Note> getNotesForDate(LocalDate date) {
+        List<Note> result = new ArrayList<>(
+                getNotesBetween(date, date).getOrDefault(date, List.of()));
 
         logger.debug("Запрошены заметки за {}: {}", date, result.size());
         return result;
     }
+
+    /**
+     * Возвращает заметки месяца, сгруппированные по дате.
+     * Повторяющиеся заметки разворачиваются только для этого месяца.
+     *
+     * @param month месяц
+     * @return заметки по датам месяца
+     */
+    @Override
+    public synchronized Map<LocalDate, List<Note>> getNotesForMonth(YearMonth month) {
+        Map<LocalDate, List<Note>> result = getNotesBetween(month.atDay(1), month.atEndOfMonth());
+        logger.debug("Запрошены заметки за {}: {} дн.", month, result.size());
+        return result;
+    }
+
+    /**
+     * Находит заметку по идентификатору во всех календарях.
+     *
+     * @param id идентификатор заметки
+     * @return заметка (для серии — исходная запись) или пустое значение
+     */
+    @Override
+    public synchronized Optional<Note> findNote(String id) {
+        for (Workspace workspace : workspaces.values()) {
+            Optional<Note> note = workspace.find(id);
+            if (note.isPresent()) {
+                return note;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Возвращает заметки видимых календарей за диапазон дат, сгруппированные по дате,
+     * включая экземпляры повторяющихся заметок. Календари объединяются в момент запроса.
+     *
+     * @param from начало диапазона включительно
+     * @param to   конец диапазона включительно
+     * @return заметки по датам в порядке возрастания дат
+     */
+    @Override
+    public synchronized Map<LocalDate, List<Note>> getNotesBetween(LocalDate from, LocalDate to) {
+        Map<LocalDate, List<Note>> result = new TreeMap<>();
+        for (Workspace workspace : workspaces.values()) {
+            if (!hiddenWorkspaces.contains(workspace.getId())) {
+                workspace.collectBetween(from, to, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает заметки видимых календарей за диапазон дат потоком в порядке дат,
+     * внутри дня — сначала без времени, затем по времени, включая экземпляры
+     * повторяющихся заметок.
+     * <p>
+     * Поток ленивый: заметки читаются из индексов порциями по
+     * {@value #STREAM_CHUNK_DAYS} дн. по мере потребления, поэтому первые
+     * элементы доступны сразу, сколько бы заметок ни было дальше в диапазоне.
+     * Каждая порция согласована сама по себе; изменения, сделанные во время
+     * чтения, видны в ещё не прочитанных порциях.
+     *
+     * @param from начало диапазона включительно
+     * @param to   конец диапазона включительно
+     * @return заметки диапазона по возрастанию дат
+     */
+    @Override
+    public Stream<Note> streamNotes(LocalDate from, LocalDate to) {
+        Spliterator<Note> chunks = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            /** Первый день следующей порции или {@code null}, если диапазон пройден. */
+            private LocalDate next = from;
+
+            private Iterator<Note> chunk = Collections.emptyIterator();
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Note> action) {
+                while (!chunk.hasNext()) {
+                    if (next == null || next.isAfter(to)) {
+                        return false;
+                    }
+                    LocalDate end = to.toEpochDay() - next.toEpochDay() < STREAM_CHUNK_DAYS
+                            ? to
+                            : next.plusDays(STREAM_CHUNK_DAYS - 1);
+                    List<Note> notes = new ArrayList<>();
+                    for (List<Note> day : getNotesBetween(next, end).values()) {
+                        day.sort(DAY_ORDER);
+                        notes.addAll(day);
+                    }
+                    chunk = notes.iterator();
+                    next = end.equals(to) ? null : end.plusDays(1);
+                }
+                action.accept(chunk.next());
+                return true;
+            }
+        };
+        return StreamSupport.stream(chunks, false);
+    }
 }
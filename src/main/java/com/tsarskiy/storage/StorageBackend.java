@@ -0,0 +1,198 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Способ хранения заметок одного календаря на диске.
+ * <p>
+ * {@link Workspace} держит заметки и индексы в памяти, а бэкенд только
+ * читает их при загрузке и записывает изменения при сохранении. Бэкенд
+ * выбирается для каждой директории хранения отдельно: его вид записан
+ * в файле {@value #BACKEND_FILE_NAME}, без файла используется
+ * {@link Kind#FILE}. Журнал операций, история и отметки удаления
+ * остаются отдельными файлами директории при любом бэкенде.
+ * <p>
+ * Бэкенд может отдать при открытии не все заметки ({@link #loadPartial()}):
+ * тогда заметки остальных месяцев читаются по одному месяцу через
+ * {@link #loadMonth(YearMonth)}, когда календарь к ним обращается.
+ * <p>
+ * Реализации не потокобезопасны: {@link Workspace} обращается к ним
+ * под блокировкой {@link Storage}. Исключение — бэкенд с чтением
+ * по месяцам: месяц читается под блокировкой хранилища, а запись идёт
+ * вне её, поэтому такой бэкенд синхронизирует методы сам.
+ */
+public interface StorageBackend {
+
+    /** Имя файла с видом бэкенда директории. */
+    String BACKEND_FILE_NAME = "backend";
+
+    /**
+     * Вид бэкенда.
+     */
+    enum Kind {
+        /** Сериализованный список {@code notes.dat} и тексты в {@code bodies.bin}. */
+        FILE,
+        /** Встроенная SQL-база {@code notes.mv.db} с индексами по дате и идентификатору. */
+        SQL,
+        /** Сегменты месяцев в {@code segments/}, зашифрованные ключом из пароля. */
+        ENCRYPTED
+    }
+
+    /**
+     * Изменения календаря с прошлого сохранения.
+     *
+     * @param full     {@code true}, если заметки заменены целиком
+     * @param upserted идентификаторы добавленных и изменённых заметок
+     * @param removed  идентификаторы удалённых заметок
+     */
+    record Changes(boolean full, Set<String> upserted, Set<String> removed) {
+
+        /**
+         * Возвращает изменения «заменены все заметки».
+         *
+         * @return полные изменения
+         */
+        public static Changes all() {
+            return new Changes(true, Set.of(), Set.of());
+        }
+    }
+
+    /**
+     * Заметки, прочитанные при открытии календаря.
+     *
+     * @param notes          прочитанные заметки
+     * @param months         непрочитанные месяцы с тегами их заметок
+     * @param highestVersion наибольшая версия записанных заметок, включая непрочитанные
+     */
+    record Partial(List<Note> notes, Map<YearMonth, Set<String>> months, long highestVersion) {
+    }
+
+    /**
+     * Возвращает вид бэкенда.
+     *
+     * @return вид
+     */
+    Kind getKind();
+
+    /**
+     * Читает все заметки календаря вместе с текстами.
+     *
+     * @return заметки; пустой список, если календарь ещё не сохранялся
+     * @throws IOException если данные не удалось прочитать
+     */
+    List<Note> load() throws IOException;
+
+    /**
+     * Читает заметки, нужные при открытии календаря. По умолчанию читает
+     * все заметки через {@link #load()}.
+     *
+     * @return прочитанные заметки и месяцы, отложенные до обращения
+     * @throws IOException если данные не удалось прочитать
+     */
+    default Partial loadPartial() throws IOException {
+        return new Partial(load(), Map.of(), 0);
+    }
+
+    /**
+     * Читает однократные заметки месяца, отложенного {@link #loadPartial()}.
+     *
+     * @param month месяц
+     * @return заметки месяца
+     * @throws IOException если данные не удалось прочитать
+     */
+    default List<Note> loadMonth(YearMonth month) throws IOException {
+        return List.of();
+    }
+
+    /**
+     * Сохраняет изменения календаря.
+     * <p>
+     * Бэкенд может записать только изменённые заметки из {@code changes}
+     * или перезаписать все заметки {@code notes} целиком. Заметки месяцев,
+     * которые календарь ещё не прочитал, в {@code notes} не входят, и бэкенд
+     * с чтением по месяцам сохраняет их сам.
+     *
+     * @param notes   заметки календаря в памяти
+     * @param changes изменения с прошлого сохранения
+     * @throws IOException если данные не удалось записать
+     */
+    void write(List<Note> notes, Changes changes) throws IOException;
+
+    /**
+     * Освобождает ресурсы бэкенда. После закрытия бэкенд можно открыть
+     * повторно следующим вызовом {@link #load()} или {@link #write(List, Changes)}.
+     */
+    void close();
+
+    /**
+     * Возвращает вид бэкенда директории из файла {@value #BACKEND_FILE_NAME}.
+     *
+     * @param directory директория хранения
+     * @return вид бэкенда; {@link Kind#FILE}, если файла нет или он не читается
+     */
+    static Kind kindOf(Path directory) {
+        Path file = directory.resolve(BACKEND_FILE_NAME);
+        if (!Files.exists(file)) {
+            return Kind.FILE;
+        }
+        try {
+            return Kind.valueOf(Files.readString(file, StandardCharsets.UTF_8).trim().toUpperCase(Locale.ROOT));
+        } catch (IOException | IllegalArgumentException e) {
+            Logger logger = LogManager.getLogger(StorageBackend.class);
+            logger.error("Неизвестный бэкенд в {}, используется файловый", file, e);
+            return Kind.FILE;
+        }
+    }
+
+    /**
+     * Открывает бэкенд, выбранный для директории.
+     *
+     * @param directory директория хранения
+     * @return бэкенд директории
+     */
+    static StorageBackend open(Path directory) {
+        return create(kindOf(directory), directory);
+    }
+
+    /**
+     * Создаёт бэкенд указанного вида.
+     * Зашифрованный бэкенд открывает календарь, которому известен ключ,
+     * поэтому здесь он не создаётся.
+     *
+     * @param kind      вид бэкенда
+     * @param directory директория хранения
+     * @return бэкенд
+     * @throws IllegalArgumentException для {@link Kind#ENCRYPTED}
+     */
+    static StorageBackend create(Kind kind, Path directory) {
+        return switch (kind) {
+            case FILE -> new FileStorageBackend(directory);
+            case SQL -> new SqlStorageBackend(directory);
+            case ENCRYPTED -> throw new IllegalArgumentException("Зашифрованный бэкенд открывается только с ключом");
+        };
+    }
+
+    /**
+     * Записывает выбор бэкенда для директории.
+     *
+     * @param directory директория хранения
+     * @param kind      вид бэкенда
+     * @throws IOException если файл выбора не удалось записать
+     */
+    static void select(Path directory, Kind kind) throws IOException {
+        Files.writeString(directory.resolve(BACKEND_FILE_NAME),
+                kind.name().toLowerCase(Locale.ROOT), StandardCharsets.UTF_8);
+    }
+}
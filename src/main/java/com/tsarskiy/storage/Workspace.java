@@ -0,0 +1,1493 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Attachment;
+import com.tsarskiy.model.Note;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отдельный календарь (рабочее пространство) со своей директорией хранения.
+ * <p>
+ * Каждый календарь держит в памяти собственные заметки, индекс по дате
+ * и индекс интервалов повторяющихся серий и сам записывает их через
+ * {@link StorageBackend}, выбранный для его директории. Календари загружаются один раз и остаются в памяти,
+ * поэтому переключение и совмещение календарей не читает файлы повторно —
+ * {@link Storage} объединяет результаты в момент запроса.
+ * <p>
+ * Для синхронизации календарь ведёт журнал операций {@link OperationLog},
+ * хранит отметки удалённых заметок ({@code tombstones.dat}) и постоянный
+ * идентификатор установки ({@code replica.id}). Чужие операции применяются
+ * по правилу «последний записавший выигрывает».
+ * <p>
+ * Каждое сохранение заметки добавляет версию в историю {@link RevisionLog}.
+ * Вложения заметок лежат в собственном {@link AttachmentStore} календаря;
+ * файлы без ссылок удаляются при открытии календаря и не чаще раза
+ * в {@value #SWEEP_INTERVAL_MINUTES} мин при записи.
+ * <p>
+ * Зашифрованный календарь ({@link StorageBackend.Kind#ENCRYPTED}) открывается
+ * паролем через {@link #unlock(char[])}; тем же ключом {@link NoteCipher}
+ * шифруются журнал операций, история и отметки удаления.
+ * <p>
+ * Если бэкенд откладывает месяцы ({@link StorageBackend#loadPartial()}),
+ * календарь открывается без их заметок: месяц дочитывается в индекс дат,
+ * когда {@link #collectBetween(LocalDate, LocalDate, Map)} впервые заходит
+ * в его даты, а все оставшиеся — когда нужен полный список заметок
+ * или заметка не нашлась среди прочитанных. Теги непрочитанных месяцев
+ * бэкенд сообщает сразу.
+ * <p>
+ * Изменения сразу видны в памяти: индексы обновляются точечно, без перестройки.
+ * Всё, что нужно записать на диск, — изменённые заметки, операции журнала,
+ * версии истории и отметки удаления — копится в календаре и забирается
+ * {@link #drain()} одним снимком; {@link Storage} откладывает запись, чтобы
+ * серия правок стоила одной записи на диск.
+ * <p>
+ * Класс не потокобезопасен: {@link Storage} обращается к нему под своей блокировкой.
+ * Исключения — чтение заметок при загрузке ({@link #read()}) и запись снимка
+ * изменений ({@link #write(Pending)}): они идут вне блокировки хранилища,
+ * а под ней выполняются только короткие {@link #install(Loaded)} и {@link #drain()}.
+ */
+public final class Workspace {
+
+    private static final Logger logger = LogManager.getLogger(Workspace.class);
+
+    /** Имя файла отметок удалённых заметок. */
+    private static final String TOMBSTONES_FILE_NAME = "tombstones.dat";
+
+    /** Имя файла с идентификатором установки. */
+    private static final String REPLICA_FILE_NAME = "replica.id";
+
+    /** Имя файла блокировки папки процессом, который в неё пишет. */
+    private static final String LOCK_FILE_NAME = "tsar.lock";
+
+    /**
+     * Наименьшее число изменений индекса дат, после которого он перестраивается
+     * целиком. Для большого архива порог растёт с числом заметок
+     * ({@link #REBUILD_RATIO}), чтобы перестройка оставалась редкой.
+     */
+    private static final int MAX_PENDING_CHANGES = 512;
+
+    /** Во сколько раз число заметок больше допустимого числа изменений индекса дат. */
+    private static final int REBUILD_RATIO = 64;
+
+    /** Как часто запись проверяет вложения без ссылок, в минутах. */
+    private static final long SWEEP_INTERVAL_MINUTES = 10;
+
+    /** Постоянный идентификатор календаря. */
+    private final String id;
+
+    /** Название календаря. */
+    private final String name;
+
+    /** Директория хранения календаря. */
+    private final Path directory;
+
+    /** Цвет календаря в формате {@code #RRGGBB}. */
+    private final String color;
+
+    /** Загруженные заметки или {@code null}, если файл ещё не прочитан. */
+    private volatile List<Note> notes;
+
+    /** Месяцы, заметки которых бэкенд ещё не прочитал, с тегами этих заметок. */
+    private NavigableMap<YearMonth, Set<String>> unreadMonths = new TreeMap<>();
+
+    /** Позиции заметок в списке {@link #notes} по идентификатору. */
+    private Map<String, Integer> positions = new HashMap<>();
+
+    /** Индекс однократных заметок по дню. */
+    private DateIndex<Note> notesByDate = DateIndex.empty();
+
+    /** Индекс интервалов повторяющихся заметок. */
+    private IntervalIndex<Note> recurringIndex = IntervalIndex.empty();
+
+    /** Исходные записи повторяющихся серий по идентификатору. */
+    private Map<String, Note> series = new HashMap<>();
+
+    /** Заметки по тегу: множества порядковых номеров заметок. */
+    private Map<String, OrdinalBitmap> notesByTag = new HashMap<>();
+
+    /**
+     * Порядковые номера заметок по идентификатору. Номер назначается один раз
+     * и не переиспользуется после удаления, поэтому экземпляры серий и снимки
+     * месяцев, сделанные до перестройки индексов, остаются верными.
+     */
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+
+    /** Следующий свободный порядковый номер. */
+    private final AtomicInteger nextOrdinal = new AtomicInteger();
+
+    /** Операции удаления по идентификатору заметки — для слияния чужих изменений. */
+    private Map<String, Operation> tombstones;
+
+    /** Бэкенд хранения заметок или {@code null}, если он ещё не открыт. */
+    private StorageBackend backend;
+
+    /** Идентификаторы заметок, изменённых после последней записи. */
+    private final Set<String> upserted = new HashSet<>();
+
+    /** Идентификаторы заметок, удалённых после последней записи. */
+    private final Set<String> removed = new HashSet<>();
+
+    /** Заменены ли заметки целиком после последней записи. */
+    private boolean replaced;
+
+    /** Журнал операций календаря. */
+    private OperationLog log;
+
+    /** История изменений заметок. */
+    private RevisionLog revisions;
+
+    /** Хранилище вложений календаря. */
+    private AttachmentStore attachments;
+
+    /** Время последней проверки вложений ({@link System#nanoTime()}). */
+    private volatile long lastSweep;
+
+    /** Есть ли изменения, ещё не записанные бэкендом. */
+    private boolean dirty;
+
+    /** Операции, ещё не дописанные в журнал. */
+    private final List<Operation> pendingOperations = new ArrayList<>();
+
+    /** Версии заметок, ещё не дописанные в историю. */
+    private final List<Revision> pendingRevisions = new ArrayList<>();
+
+    /** Изменены ли отметки удаления после последней записи. */
+    private boolean tombstonesChanged;
+
+    /** Идентификатор установки для этой директории. */
+    private String replicaId;
+
+    /** Ключ зашифрованного календаря или {@code null}. */
+    private volatile NoteCipher cipher;
+
+    /** Блокировка папки этим процессом или {@code null}. */
+    private FileLock lock;
+
+    /** Заметки, прочитанные в фоне и ещё не переданные календарю. */
+    private Loaded prepared;
+
+    /** Наибольшая версия заметок, включая непрочитанные месяцы, и отметок удаления на момент загрузки. */
+    private long highestVersion;
+
+    /** Номер открытия файлов: растёт при сбросе, чтобы не принять устаревшее чтение. */
+    private int generation;
+
+    /**
+     * Прочитанные с диска заметки с готовыми индексами.
+     *
+     * @param generation     номер открытия файлов, при котором они прочитаны
+     * @param notes          заметки
+     * @param unreadMonths   месяцы, отложенные бэкендом, с тегами их заметок
+     * @param highestVersion наибольшая версия записанных заметок по сведениям бэкенда
+     * @param tombstones     отметки удаления
+     * @param index          индексы заметок
+     */
+    record Loaded(int generation, List<Note> notes, Map<YearMonth, Set<String>> unreadMonths, long highestVersion,
+                  Map<String, Operation> tombstones, Index index) {
+    }
+
+    /**
+     * Индексы заметок календаря.
+     *
+     * @param byDate    однократные заметки по дню
+     * @param recurring интервалы повторяющихся серий
+     * @param series    исходные записи серий по идентификатору
+     * @param byTag     порядковые номера заметок по тегу
+     * @param positions позиции заметок в списке по идентификатору
+     */
+    record Index(DateIndex<Note> byDate, IntervalIndex<Note> recurring, Map<String, Note> series,
+                 Map<String, OrdinalBitmap> byTag, Map<String, Integer> positions) {
+    }
+
+    /**
+     * Версия заметки для истории.
+     *
+     * @param note    состояние заметки
+     * @param savedAt время изменения
+     */
+    record Revision(Note note, LocalDateTime savedAt) {
+    }
+
+    /**
+     * Изменения календаря, снятые {@link #drain()} для записи вне блокировки хранилища.
+     *
+     * @param notes      снимок заметок или {@code null}, если заметки не менялись
+     * @param changes    изменённые и удалённые заметки или {@code null}
+     * @param operations операции для журнала; записанные убираются из списка
+     * @param revisions  версии для истории; записанные убираются из списка
+     * @param tombstones снимок отметок удаления или {@code null}, если они не менялись
+     * @param complete   прочитаны ли все месяцы, то есть есть ли в снимке все заметки
+     */
+    record Pending(List<Note> notes, StorageBackend.Changes changes, List<Operation> operations,
+                   List<Revision> revisions, Map<String, Operation> tombstones, boolean complete) {
+    }
+
+    /**
+     * Создаёт календарь.
+     *
+     * @param id        постоянный идентификатор
+     * @param name      название
+     * @param directory директория хранения
+     * @param color     цвет в формате {@code #RRGGBB}
+     */
+    Workspace(String id, String name, Path directory, String color) {
+        this.id = id;
+        this.name = name;
+        this.directory = directory;
+        this.color = color;
+    }
+
+    /* ===== GETTERS ===== */
+
+    /**
+     * Возвращает постоянный идентификатор календаря.
+     *
+     * @return идентификатор
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Возвращает название календаря.
+     *
+     * @return название
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Возвращает директорию хранения календаря.
+     *
+     * @return директория
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Возвращает цвет календаря.
+     *
+     * @return цвет в формате {@code #RRGGBB}
+     */
+    public String getColor() {
+        return color;
+    }
+
+    /* ===== LOADING ===== */
+
+    /**
+     * Проверяет, загружены ли заметки календаря.
+     *
+     * @return {@code true}, если индекс построен
+     */
+    boolean isLoaded() {
+        return notes != null;
+    }
+
+    /**
+     * Загружает заметки из файла, если они ещё не загружены, и строит индексы.
+     * Если заметки уже читаются в фоне, дожидается этого чтения.
+     */
+    void ensureLoaded() {
+        if (notes == null) {
+            install(read());
+        }
+    }
+
+    /**
+     * Читает заметки и отметки удаления и строит по ним индексы, не изменяя
+     * календарь. Вызывается вне блокировки {@link Storage}; повторный вызов
+     * до {@link #install(Loaded)} возвращает то же чтение.
+     *
+     * @return прочитанные заметки или {@code null}, если календарь уже загружен
+     * @throws IllegalStateException если директория удалена или календарь ждёт пароля
+     */
+    synchronized Loaded read() {
+        if (notes != null || prepared != null) {
+            return prepared;
+        }
+        long start = System.nanoTime();
+        checkDirectory();
+        StorageBackend.Partial partial;
+        try {
+            partial = backend().loadPartial();
+        } catch (IOException e) {
+            logger.error("Ошибка чтения заметок", e);
+            partial = new StorageBackend.Partial(List.of(), Map.of(), 0);
+        }
+        List<Note> loaded = new ArrayList<>(partial.notes());
+        for (Note note : loaded) {
+            note.setCalendarId(id);
+        }
+        if (partial.months().isEmpty()) {
+            sweepAttachments(loaded, true);
+        }
+        prepared = new Loaded(generation, loaded, partial.months(), partial.highestVersion(),
+                readTombstones(), buildIndex(loaded));
+        logger.info("Календарь «{}» прочитан ({}): {} шт., отложено месяцев: {}, за {} мс",
+                name, backend.getKind(), loaded.size(), partial.months().size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return prepared;
+    }
+
+    /**
+     * Передаёт календарю заметки, прочитанные {@link #read()}.
+     * Чтение, сделанное до сброса файлов, или повторное отбрасывается.
+     *
+     * @param loaded прочитанные заметки или {@code null}
+     */
+    synchronized void install(Loaded loaded) {
+        if (loaded == prepared) {
+            prepared = null;
+        }
+        if (notes != null || loaded == null || loaded.generation() != generation) {
+            return;
+        }
+        if (tombstones == null) {
+            tombstones = loaded.tombstones();
+        }
+        apply(loaded.index());
+        notes = loaded.notes();
+        unreadMonths = new TreeMap<>(loaded.unreadMonths());
+        highestVersion = loaded.highestVersion();
+        for (Note note : notes) {
+            highestVersion = Math.max(highestVersion, note.getVersion());
+        }
+        for (Operation tombstone : tombstones.values()) {
+            highestVersion = Math.max(highestVersion, tombstone.getVersion());
+        }
+    }
+
+    /**
+     * Возвращает наибольшую версию среди прочитанных с диска заметок
+     * и отметок удаления, загружая календарь при необходимости.
+     * По ней {@link Storage} восстанавливает часы после перезапуска.
+     *
+     * @return наибольшая записанная версия или {@code 0}
+     */
+    synchronized long highestVersion() {
+        ensureLoaded();
+        return highestVersion;
+    }
+
+    /**
+     * Дочитывает в индексы заметки непрочитанных месяцев диапазона.
+     * Заметка, которая уже есть в памяти, новее записанной и не заменяется.
+     * Если месяц не удалось прочитать, календарь остаётся без его заметок,
+     * а бэкенд отклоняет запись.
+     *
+     * @param from первый месяц включительно
+     * @param to   последний месяц включительно
+     */
+    private void readMonths(YearMonth from, YearMonth to) {
+        if (unreadMonths.isEmpty() || from.isAfter(to)) {
+            return;
+        }
+        NavigableMap<YearMonth, Set<String>> range = unreadMonths.subMap(from, true, to, true);
+        if (range.isEmpty()) {
+            return;
+        }
+        List<YearMonth> months = new ArrayList<>(range.keySet());
+        range.clear();
+        List<Note> added = new ArrayList<>();
+        for (YearMonth month : months) {
+            try {
+                for (Note note : backend().loadMonth(month)) {
+                    if (!positions.containsKey(note.getId())) {
+                        added.add(note);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Месяц {} календаря «{}» не прочитан", month, name, e);
+            }
+        }
+        boolean rebuild = added.size() > MAX_PENDING_CHANGES;
+        for (Note note : added) {
+            note.setCalendarId(id);
+            append(note);
+            if (!rebuild) {
+                reindex(null, note);
+            }
+        }
+        if (rebuild) {
+            rebuildIndex();
+        }
+        logger.debug("Календарь «{}»: прочитано месяцев {}, заметок {}", name, months.size(), added.size());
+    }
+
+    /**
+     * Загружает календарь и дочитывает все непрочитанные месяцы.
+     */
+    private void ensureComplete() {
+        ensureLoaded();
+        if (!unreadMonths.isEmpty()) {
+            readMonths(unreadMonths.firstKey(), unreadMonths.lastKey());
+        }
+    }
+
+    /**
+     * Читает отметки удаления, если они ещё не прочитаны.
+     */
+    private void loadTombstones() {
+        if (tombstones == null) {
+            tombstones = readTombstones();
+        }
+    }
+
+    /**
+     * Возвращает бэкенд хранения, открывая выбранный для директории.
+     *
+     * @return бэкенд календаря
+     */
+    private synchronized StorageBackend backend() {
+        if (backend == null) {
+            StorageBackend.Kind kind = StorageBackend.kindOf(directory);
+            if (kind != StorageBackend.Kind.ENCRYPTED) {
+                backend = StorageBackend.create(kind, directory);
+            } else if (cipher != null) {
+                backend = new EncryptedStorageBackend(directory, cipher);
+            } else {
+                throw new IllegalStateException("Календарь «" + name + "» зашифрован, нужен пароль");
+            }
+        }
+        return backend;
+    }
+
+    /* ===== ENCRYPTION ===== */
+
+    /**
+     * Проверяет, ждёт ли календарь пароля: он зашифрован, а ключ ещё не открыт.
+     *
+     * @return {@code true}, если заметки нельзя прочитать без пароля
+     */
+    boolean isLocked() {
+        return cipher == null && NoteCipher.isEncrypted(directory);
+    }
+
+    /**
+     * Проверяет, зашифрован ли календарь.
+     *
+     * @return {@code true} для календаря с ключом из пароля
+     */
+    boolean isEncrypted() {
+        return cipher != null || NoteCipher.isEncrypted(directory);
+    }
+
+    /**
+     * Открывает ключ зашифрованного календаря.
+     *
+     * @param passphrase пароль
+     * @throws IOException              если параметры ключа не удалось прочитать
+     * @throws IllegalArgumentException если пароль неверный
+     */
+    void unlock(char[] passphrase) throws IOException {
+        if (cipher == null) {
+            cipher = NoteCipher.unlock(directory, passphrase);
+            resetFiles();
+            logger.info("Календарь «{}» открыт", name);
+        }
+    }
+
+    /**
+     * Включает шифрование для календаря без заметок: создаёт ключ из пароля
+     * и выбирает зашифрованный бэкенд. Уже записанные открытым текстом данные
+     * не переносятся — шифрование включается только для пустой директории.
+     *
+     * @param passphrase пароль
+     * @throws IOException           если параметры ключа не удалось записать
+     * @throws IllegalStateException если в директории уже есть заметки, журнал или история
+     */
+    void encrypt(char[] passphrase) throws IOException {
+        if (isEncrypted()) {
+            unlock(passphrase);
+            return;
+        }
+        for (String file : new String[]{FileStorageBackend.NOTES_FILE_NAME, BodyStore.FILE_NAME,
+                SqlStorageBackend.DATABASE_NAME + ".mv.db", OperationLog.FILE_NAME, RevisionLog.DIRECTORY_NAME,
+                TOMBSTONES_FILE_NAME}) {
+            if (Files.exists(directory.resolve(file))) {
+                throw new IllegalStateException("В папке уже есть незашифрованные заметки");
+            }
+        }
+        cipher = NoteCipher.create(directory, passphrase);
+        StorageBackend.select(directory, StorageBackend.Kind.ENCRYPTED);
+        resetFiles();
+        logger.info("Календарь «{}» зашифрован", name);
+    }
+
+    /**
+     * Сбрасывает открытые бэкенд, журнал и историю, чтобы они открылись
+     * заново с текущим ключом.
+     */
+    private synchronized void resetFiles() {
+        generation++;
+        prepared = null;
+        if (backend != null) {
+            backend.close();
+            backend = null;
+        }
+        log = null;
+        revisions = null;
+        tombstones = null;
+        notes = null;
+        unreadMonths = new TreeMap<>();
+    }
+
+    /**
+     * Возвращает вид бэкенда хранения календаря.
+     *
+     * @return вид бэкенда
+     */
+    StorageBackend.Kind backendKind() {
+        return backend().getKind();
+    }
+
+    /**
+     * Переводит календарь на другой бэкенд: все заметки записываются
+     * в новый бэкенд, и он становится выбранным для директории.
+     * Данные прежнего бэкенда не удаляются.
+     *
+     * @param kind вид нового бэкенда
+     * @throws IOException если заметки или выбор бэкенда не удалось записать
+     */
+    synchronized void switchBackend(StorageBackend.Kind kind) throws IOException {
+        ensureComplete();
+        if (backend().getKind() == kind) {
+            return;
+        }
+        if (isEncrypted() || kind == StorageBackend.Kind.ENCRYPTED) {
+            throw new IllegalStateException("Шифрование включается только для новой папки и не отключается");
+        }
+        StorageBackend target = StorageBackend.create(kind, directory);
+        target.write(notes, StorageBackend.Changes.all());
+        StorageBackend.select(directory, kind);
+        backend.close();
+        backend = target;
+        clearChanges();
+        logger.info("Календарь «{}» переведён на бэкенд {}", name, kind);
+    }
+
+    /**
+     * Перестраивает индексы календаря.
+     */
+    private void rebuildIndex() {
+        apply(buildIndex(notes));
+    }
+
+    /**
+     * Строит индексы по списку заметок, назначая заметкам порядковые номера.
+     *
+     * @param source заметки календаря
+     * @return индексы
+     */
+    private Index buildIndex(List<Note> source) {
+        List<Note> single = new ArrayList<>(source.size());
+        Map<String, Note> recurring = new LinkedHashMap<>();
+        Map<String, int[]> tags = new HashMap<>();
+        Map<String, Integer> tagCounts = new HashMap<>();
+        Map<String, Integer> positions = new HashMap<>(source.size() * 2);
+        for (int i = 0; i < source.size(); i++) {
+            Note note = source.get(i);
+            positions.put(note.getId(), i);
+            int ordinal = ordinal(note.getId());
+            note.setOrdinal(ordinal);
+            for (String tag : note.getTags()) {
+                int count = tagCounts.merge(tag, 1, Integer::sum);
+                int[] values = tags.computeIfAbsent(tag, t -> new int[8]);
+                if (count > values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                    tags.put(tag, values);
+                }
+                values[count - 1] = ordinal;
+            }
+            if (note.getDate() == null) {
+                continue;
+            }
+            if (note.isRecurring()) {
+                recurring.put(note.getId(), note);
+            } else {
+                single.add(note);
+            }
+        }
+        Map<String, OrdinalBitmap> byTag = new HashMap<>();
+        tags.forEach((tag, values) -> byTag.put(tag, OrdinalBitmap.of(values, tagCounts.get(tag))));
+        return new Index(
+                DateIndex.build(single, n -> DateIndex.epochDay(n.getDate())),
+                buildRecurring(recurring.values()),
+                recurring,
+                byTag,
+                positions);
+    }
+
+    /**
+     * Строит индекс интервалов серий.
+     *
+     * @param masters исходные записи серий
+     * @return индекс интервалов
+     */
+    private static IntervalIndex<Note> buildRecurring(Collection<Note> masters) {
+        return IntervalIndex.build(new ArrayList<>(masters),
+                n -> n.getDate().toEpochDay(),
+                n -> n.getRecurrence().lastPossibleDate(n.getDate()).toEpochDay());
+    }
+
+    private void apply(Index index) {
+        notesByTag = index.byTag();
+        notesByDate = index.byDate();
+        recurringIndex = index.recurring();
+        series = index.series();
+        positions = index.positions();
+    }
+
+    /**
+     * Переносит заметку в индексах из прежнего состояния в новое:
+     * меняет только множества затронутых тегов и день заметки,
+     * а индекс интервалов перестраивает лишь при изменении серии.
+     *
+     * @param before прежнее состояние или {@code null} для новой заметки
+     * @param after  новое состояние или {@code null} для удалённой заметки
+     */
+    private void reindex(Note before, Note after) {
+        int ordinal = ordinal((after != null ? after : before).getId());
+        List<String> oldTags = before != null ? before.getTags() : List.of();
+        List<String> newTags = after != null ? after.getTags() : List.of();
+        OrdinalBitmap self = OrdinalBitmap.of(new int[]{ordinal}, 1);
+        for (String tag : oldTags) {
+            if (!newTags.contains(tag)) {
+                OrdinalBitmap rest = notesByTag.getOrDefault(tag, OrdinalBitmap.EMPTY).andNot(self);
+                if (rest.isEmpty()) {
+                    notesByTag.remove(tag);
+                } else {
+                    notesByTag.put(tag, rest);
+                }
+            }
+        }
+        for (String tag : newTags) {
+            if (!oldTags.contains(tag)) {
+                notesByTag.put(tag, notesByTag.getOrDefault(tag, OrdinalBitmap.EMPTY).or(self));
+            }
+        }
+
+        boolean seriesChanged = false;
+        if (before != null && before.getDate() != null) {
+            if (before.isRecurring()) {
+                seriesChanged = series.remove(before.getId()) != null;
+            } else {
+                notesByDate.remove(before, DateIndex.epochDay(before.getDate()));
+            }
+        }
+        if (after != null) {
+            after.setOrdinal(ordinal);
+            if (after.getDate() != null) {
+                if (after.isRecurring()) {
+                    series.put(after.getId(), after);
+                    seriesChanged = true;
+                } else {
+                    notesByDate.add(after, DateIndex.epochDay(after.getDate()));
+                }
+            }
+        }
+        if (seriesChanged) {
+            recurringIndex = buildRecurring(series.values());
+        }
+        if (notesByDate.pendingChanges() > Math.max(MAX_PENDING_CHANGES, notes.size() / REBUILD_RATIO)) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Проверяет, что директория хранения календаря существует.
+     *
+     * @throws IllegalStateException если директория хранения была удалена
+     */
+    private void checkDirectory() {
+        if (!Files.exists(directory)) {
+            logger.error("Папка хранения была удалена: {}", directory);
+            throw new IllegalStateException("Папка хранения была удалена");
+        }
+    }
+
+    /**
+     * Помечает календарь как изменённый и ставит версию заметки в очередь истории.
+     * Изменения записываются позже одним снимком {@link #drain()}.
+     *
+     * @param note сохранённое состояние заметки или {@code null}
+     */
+    private void commit(Note note) {
+        dirty = true;
+        if (note != null) {
+            pendingRevisions.add(new Revision(note, LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * Отмечает заметку как добавленную или изменённую.
+     *
+     * @param noteId идентификатор заметки
+     */
+    private void touched(String noteId) {
+        upserted.add(noteId);
+        removed.remove(noteId);
+    }
+
+    /**
+     * Отмечает заметку как удалённую.
+     *
+     * @param noteId идентификатор заметки
+     */
+    private void dropped(String noteId) {
+        removed.add(noteId);
+        upserted.remove(noteId);
+    }
+
+    private void clearChanges() {
+        upserted.clear();
+        removed.clear();
+        replaced = false;
+        dirty = false;
+    }
+
+    /**
+     * Забирает накопленные изменения для записи: снимок заметок, операции
+     * журнала, версии истории и отметки удаления. Календарь после этого
+     * считается записанным; если запись не удалась, изменения возвращаются
+     * через {@link #restore(Pending)}.
+     *
+     * @return изменения или {@code null}, если записывать нечего
+     */
+    Pending drain() {
+        if (!dirty && pendingOperations.isEmpty() && pendingRevisions.isEmpty() && !tombstonesChanged) {
+            return null;
+        }
+        Pending pending = new Pending(
+                dirty ? new ArrayList<>(notes) : null,
+                !dirty ? null : replaced
+                        ? StorageBackend.Changes.all()
+                        : new StorageBackend.Changes(false, Set.copyOf(upserted), Set.copyOf(removed)),
+                new ArrayList<>(pendingOperations),
+                new ArrayList<>(pendingRevisions),
+                tombstonesChanged ? new HashMap<>(tombstones) : null,
+                unreadMonths.isEmpty());
+        clearChanges();
+        pendingOperations.clear();
+        pendingRevisions.clear();
+        tombstonesChanged = false;
+        return pending;
+    }
+
+    /**
+     * Записывает снятые изменения. Вызывается вне блокировки {@link Storage},
+     * по одной записи за раз. Заметки записываются первыми: если это
+     * не удалось, журнал и история не трогаются и снимок можно вернуть целиком.
+     * Записанные операции и версии сразу убираются из {@code pending}, поэтому
+     * после сбоя посередине {@link #restore(Pending)} вернёт только незаписанные.
+     *
+     * @param pending изменения из {@link #drain()}
+     * @throws IOException           если заметки, журнал или история не записаны
+     * @throws IllegalStateException если директория хранения удалена
+     */
+    void write(Pending pending) throws IOException {
+        if (pending.notes() != null) {
+            checkDirectory();
+            backend().write(pending.notes(), pending.changes());
+            logger.info("Заметки календаря «{}» сохранены, количество: {}", name, pending.notes().size());
+        }
+        List<Operation> operations = pending.operations();
+        int written = 0;
+        try {
+            for (Operation operation : operations) {
+                log().append(operation);
+                written++;
+            }
+        } finally {
+            operations.subList(0, written).clear();
+        }
+        List<Revision> revisions = pending.revisions();
+        written = 0;
+        try {
+            for (Revision revision : revisions) {
+                revisions().record(revision.note(), revision.savedAt());
+                written++;
+            }
+        } finally {
+            revisions.subList(0, written).clear();
+        }
+        if (pending.tombstones() != null) {
+            writeTombstones(pending.tombstones());
+        }
+        if (pending.notes() != null && pending.complete()
+                && System.nanoTime() - lastSweep > TimeUnit.MINUTES.toNanos(SWEEP_INTERVAL_MINUTES)) {
+            sweepAttachments(pending.notes(), false);
+        }
+    }
+
+    /**
+     * Возвращает изменения, которые не удалось записать, перед изменениями,
+     * сделанными после {@link #drain()}. Более поздние изменения заметок
+     * важнее возвращаемых.
+     *
+     * @param pending изменения из {@link #drain()}
+     */
+    void restore(Pending pending) {
+        if (pending.notes() != null) {
+            dirty = true;
+            if (pending.changes().full()) {
+                replaced = true;
+            } else {
+                for (String noteId : pending.changes().upserted()) {
+                    if (!removed.contains(noteId)) {
+                        upserted.add(noteId);
+                    }
+                }
+                for (String noteId : pending.changes().removed()) {
+                    if (!upserted.contains(noteId)) {
+                        removed.add(noteId);
+                    }
+                }
+            }
+        }
+        pendingOperations.addAll(0, pending.operations());
+        pendingRevisions.addAll(0, pending.revisions());
+        tombstonesChanged |= pending.tombstones() != null;
+    }
+
+    /**
+     * Записывает изменения и закрывает бэкенд календаря.
+     * Вызывается при отключении календаря и смене директории хранения.
+     */
+    void close() {
+        Pending pending = drain();
+        if (pending != null) {
+            try {
+                write(pending);
+            } catch (IOException | IllegalStateException e) {
+                logger.error("Ошибка сохранения заметок", e);
+            }
+        }
+        synchronized (this) {
+            if (backend != null) {
+                backend.close();
+                backend = null;
+            }
+            release();
+        }
+    }
+
+    /* ===== LOCK ===== */
+
+    /**
+     * Захватывает папку календаря для записи этим процессом: блокировка
+     * файла {@value #LOCK_FILE_NAME} держится до {@link #close()}, и другой
+     * процесс по ней видит, что его записи будут затёрты.
+     *
+     * @return {@code true}, если папка захвачена этим процессом
+     */
+    synchronized boolean claim() {
+        if (lock != null) {
+            return true;
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(directory.resolve(LOCK_FILE_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = channel.tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            logger.warn("Не удалось заблокировать папку календаря «{}»", name, e);
+        }
+        if (lock == null && channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Ошибка закрытия файла блокировки", e);
+            }
+        }
+        return lock != null;
+    }
+
+    /**
+     * Проверяет, захвачена ли папка календаря этим процессом.
+     *
+     * @return {@code true}, если блокировка у этого процесса
+     */
+    synchronized boolean isClaimed() {
+        return lock != null;
+    }
+
+    /**
+     * Снимает блокировку папки, если она у этого процесса.
+     */
+    private void release() {
+        if (lock == null) {
+            return;
+        }
+        try {
+            lock.channel().close();
+        } catch (IOException e) {
+            logger.debug("Ошибка снятия блокировки папки", e);
+        }
+        lock = null;
+    }
+
+    /* ===== NOTES ===== */
+
+    /**
+     * Возвращает заметки календаря.
+     *
+     * @return список заметок (не копия)
+     */
+    List<Note> notes() {
+        ensureComplete();
+        return notes;
+    }
+
+    /**
+     * Заменяет все заметки календаря и сохраняет их.
+     *
+     * @param replacement новые заметки
+     */
+    void replaceAll(List<Note> replacement) {
+        notes = new ArrayList<>(replacement);
+        unreadMonths.clear();
+        loadTombstones();
+        for (Note note : notes) {
+            note.setCalendarId(id);
+        }
+        replaced = true;
+        rebuildIndex();
+        commit(null);
+    }
+
+    /**
+     * Находит позицию заметки в списке по идентификатору за O(1).
+     * Если заметки нет среди прочитанных и она не удалена (у удалённой есть
+     * отметка удаления), дочитывает непрочитанные месяцы.
+     *
+     * @param noteId идентификатор заметки
+     * @return позиция или {@code -1}, если заметка не найдена
+     */
+    private int indexOf(String noteId) {
+        ensureLoaded();
+        Integer i = positions.get(noteId);
+        if (i == null && !unreadMonths.isEmpty() && !tombstones.containsKey(noteId)) {
+            ensureComplete();
+            i = positions.get(noteId);
+        }
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Добавляет заметку в конец списка.
+     *
+     * @param note заметка
+     */
+    private void append(Note note) {
+        notes.add(note);
+        positions.put(note.getId(), notes.size() - 1);
+    }
+
+    /**
+     * Убирает заметку из списка за O(1): на её место встаёт последняя заметка,
+     * поэтому порядок списка не сохраняется.
+     *
+     * @param i позиция заметки
+     * @return убранная заметка
+     */
+    private Note removeAt(int i) {
+        Note removed = notes.get(i);
+        Note last = notes.remove(notes.size() - 1);
+        positions.remove(removed.getId());
+        if (i < notes.size()) {
+            notes.set(i, last);
+            positions.put(last.getId(), i);
+        }
+        return removed;
+    }
+
+    /**
+     * Находит заметку по идентификатору.
+     *
+     * @param noteId идентификатор заметки
+     * @return заметка или пустое значение
+     */
+    Optional<Note> find(String noteId) {
+        int i = indexOf(noteId);
+        return i < 0 ? Optional.empty() : Optional.of(notes.get(i));
+    }
+
+    /**
+     * Добавляет заметку и сохраняет календарь. Отметка удаления заметки
+     * с тем же идентификатором (возвращённой отменой) снимается.
+     *
+     * @param note заметка
+     */
+    void add(Note note) {
+        ensureLoaded();
+        note.setCalendarId(id);
+        tombstonesChanged |= tombstones.remove(note.getId()) != null;
+        append(note);
+        reindex(null, note);
+        touched(note.getId());
+        commit(note);
+    }
+
+    /**
+     * Добавляет несколько заметок. Большая пачка перестраивает индексы один раз.
+     *
+     * @param added заметки
+     */
+    void addAll(List<Note> added) {
+        ensureLoaded();
+        boolean rebuild = added.size() > MAX_PENDING_CHANGES;
+        for (Note note : added) {
+            note.setCalendarId(id);
+            tombstonesChanged |= tombstones.remove(note.getId()) != null;
+            append(note);
+            if (!rebuild) {
+                reindex(null, note);
+            }
+            touched(note.getId());
+            commit(note);
+        }
+        if (rebuild) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Обновляет заметку по идентификатору и сохраняет календарь.
+     * Для экземпляра серии изменения переносятся в копию исходной записи,
+     * поэтому ранее выданные заметки не меняются.
+     *
+     * @param updated обновлённая заметка
+     * @return {@code true}, если заметка найдена
+     */
+    boolean update(Note updated) {
+        int i = indexOf(updated.getId());
+        if (i < 0) {
+            return false;
+        }
+
+        Note current = notes.get(i);
+        Note stored;
+        if (updated.isOccurrence()) {
+            stored = current.copy();
+            stored.setTitle(updated.getTitle());
+            stored.setContent(updated.getContent());
+            stored.setTime(updated.getTime());
+            stored.setReminderMinutes(updated.getReminderMinutes());
+            stored.setRecurrence(updated.getRecurrence());
+            stored.setAttachments(updated.getAttachments());
+            stored.setTags(updated.getTags());
+            stored.setVersion(updated.getVersion(), updated.getVersionReplica());
+        } else {
+            updated.setCalendarId(id);
+            stored = updated;
+        }
+        notes.set(i, stored);
+        if (stored == current) {
+            /* Заметку изменили на месте: прежние теги и дата уже потеряны. */
+            rebuildIndex();
+        } else {
+            reindex(current, stored);
+        }
+        touched(updated.getId());
+        commit(stored);
+        return true;
+    }
+
+    /**
+     * Переносит однократную заметку на другую дату. Заметка находится по позиции
+     * за O(1) и переносится в индексе дат без перестройки; файл, журнал и история
+     * записываются общим отложенным сохранением.
+     * Повторяющаяся заметка переносится вместе с началом серии.
+     *
+     * @param noteId  идентификатор заметки
+     * @param target  новая дата
+     * @param version версия изменения
+     * @return перенесённая заметка или пустое значение, если заметка не найдена
+     */
+    Optional<Note> move(String noteId, LocalDate target, long version) {
+        int i = indexOf(noteId);
+        if (i < 0) {
+            return Optional.empty();
+        }
+        Note current = notes.get(i);
+        Note moved = current.copy();
+        moved.setDate(target);
+        moved.setVersion(version, replicaId());
+        notes.set(i, moved);
+        reindex(current, moved);
+        touched(noteId);
+        commit(moved);
+        return Optional.of(moved);
+    }
+
+    /**
+     * Исключает одно повторение серии и сохраняет календарь.
+     *
+     * @param occurrence экземпляр серии
+     * @return {@code true}, если серия найдена
+     */
+    boolean excludeOccurrence(Note occurrence) {
+        int i = indexOf(occurrence.getId());
+        if (i < 0) {
+            return false;
+        }
+        Note current = notes.get(i);
+        Note master = current.copy();
+        master.setRecurrence(current.getRecurrence().withException(occurrence.getDate()));
+        master.setVersion(occurrence.getVersion(), occurrence.getVersionReplica());
+        notes.set(i, master);
+        reindex(current, master);
+        touched(master.getId());
+        commit(null);
+        return true;
+    }
+
+    /**
+     * Удаляет заметку (всю серию) по идентификатору и сохраняет календарь.
+     *
+     * @param noteId идентификатор заметки
+     * @return {@code true}, если заметка была удалена
+     */
+    boolean remove(String noteId) {
+        int i = indexOf(noteId);
+        if (i < 0) {
+            return false;
+        }
+        reindex(removeAt(i), null);
+        dropped(noteId);
+        commit(null);
+        return true;
+    }
+
+    /**
+     * Добавляет в результат заметки диапазона дат, включая экземпляры серий.
+     *
+     * @param from   начало диапазона включительно
+     * @param to     конец диапазона включительно
+     * @param result заметки по датам
+     */
+    void collectBetween(LocalDate from, LocalDate to, Map<LocalDate, List<Note>> result) {
+        ensureLoaded();
+        readMonths(YearMonth.from(from), YearMonth.from(to));
+        notesByDate.forEachDay(DateIndex.epochDay(from), DateIndex.epochDay(to), (day, single) -> {
+            if (day == Integer.MIN_VALUE || day == Integer.MAX_VALUE) {
+                // крайний день индекса собирает все даты за пределами int — раскладываем по настоящей дате
+                for (Note note : single) {
+                    if (!note.getDate().isBefore(from) && !note.getDate().isAfter(to)) {
+                        result.computeIfAbsent(note.getDate(), k -> new ArrayList<>()).add(note);
+                    }
+                }
+            } else {
+                result.computeIfAbsent(LocalDate.ofEpochDay(day), k -> new ArrayList<>()).addAll(single);
+            }
+        });
+
+        recurringIndex.forEachOverlapping(from.toEpochDay(), to.toEpochDay(), master -> {
+            for (LocalDate d : master.getRecurrence().occurrencesBetween(master.getDate(), from, to)) {
+                result.computeIfAbsent(d, k -> new ArrayList<>()).add(master.occurrenceOn(d));
+            }
+        });
+    }
+
+    /* ===== TAGS ===== */
+
+    /**
+     * Возвращает теги заметок календаря, включая теги непрочитанных месяцев.
+     *
+     * @return теги (неизменяемое представление или копия)
+     */
+    Set<String> tags() {
+        ensureLoaded();
+        if (unreadMonths.isEmpty()) {
+            return Collections.unmodifiableSet(notesByTag.keySet());
+        }
+        Set<String> all = new HashSet<>(notesByTag.keySet());
+        unreadMonths.values().forEach(all::addAll);
+        return all;
+    }
+
+    /**
+     * Возвращает порядковый номер заметки, назначая его при первом обращении.
+     * Номер не меняется при перестройке индексов и не достаётся другой заметке.
+     *
+     * @param noteId идентификатор заметки
+     * @return порядковый номер
+     */
+    int ordinal(String noteId) {
+        return ordinals.computeIfAbsent(noteId, k -> nextOrdinal.getAndIncrement());
+    }
+
+    /**
+     * Возвращает порядковые номера заметок с тегом.
+     *
+     * @param tag тег в хранимом виде
+     * @return множество номеров, пустое, если тега нет
+     */
+    OrdinalBitmap tagged(String tag) {
+        ensureLoaded();
+        return notesByTag.getOrDefault(tag, OrdinalBitmap.EMPTY);
+    }
+
+    /* ===== ATTACHMENTS ===== */
+
+    /**
+     * Возвращает хранилище вложений календаря.
+     *
+     * @return хранилище вложений в директории календаря
+     */
+    synchronized AttachmentStore attachments() {
+        if (attachments == null) {
+            attachments = new AttachmentStore(directory);
+        }
+        return attachments;
+    }
+
+    /**
+     * Удаляет вложения, на которые не ссылается ни одна из заметок.
+     *
+     * @param source   заметки календаря
+     * @param baseline первая проверка после открытия календаря
+     */
+    private void sweepAttachments(List<Note> source, boolean baseline) {
+        Set<String> referenced = new HashSet<>();
+        for (Note note : source) {
+            for (Attachment attachment : note.getAttachments()) {
+                referenced.add(attachment.getHash());
+            }
+        }
+        try {
+            attachments().sweep(referenced, baseline);
+        } catch (IOException e) {
+            logger.warn("Не удалось проверить вложения календаря «{}»", name, e);
+        }
+        lastSweep = System.nanoTime();
+    }
+
+    /* ===== HISTORY ===== */
+
+    /**
+     * Возвращает историю изменений календаря.
+     *
+     * @return история изменений
+     */
+    private synchronized RevisionLog revisions() {
+        if (revisions == null) {
+            revisions = new RevisionLog(directory, cipher);
+        }
+        return revisions;
+    }
+
+    /**
+     * Читает историю изменений заметки.
+     *
+     * @param noteId идентификатор заметки
+     * @return версии по возрастанию номера
+     */
+    List<NoteRevision> history(String noteId) {
+        return revisions().read(noteId);
+    }
+
+    /* ===== SYNC ===== */
+
+    /**
+     * Возвращает идентификатор установки для директории календаря,
+     * создавая его при первом обращении.
+     *
+     * @return идентификатор установки
+     */
+    String replicaId() {
+        if (replicaId == null) {
+            Path file = directory.resolve(REPLICA_FILE_NAME);
+            try {
+                if (Files.exists(file)) {
+                    replicaId = Files.readString(file, StandardCharsets.UTF_8).trim();
+                } else {
+                    replicaId = UUID.randomUUID().toString();
+                    Files.writeString(file, replicaId, StandardCharsets.UTF_8);
+                }
+            } catch (IOException e) {
+                logger.error("Ошибка чтения идентификатора установки", e);
+                replicaId = UUID.randomUUID().toString();
+            }
+        }
+        return replicaId;
+    }
+
+    /**
+     * Возвращает журнал операций календаря.
+     *
+     * @return журнал операций
+     */
+    private synchronized OperationLog log() {
+        if (log == null) {
+            log = new OperationLog(directory, cipher);
+        }
+        return log;
+    }
+
+    /**
+     * Ставит локальную операцию в очередь журнала и учитывает удаление в отметках.
+     * Журнал и отметки записываются вместе с заметками.
+     *
+     * @param operation операция
+     */
+    void record(Operation operation) {
+        if (operation.getKind() == Operation.Kind.DELETE) {
+            ensureLoaded();
+            tombstones.put(operation.getNoteId(), operation);
+            tombstonesChanged = true;
+        }
+        pendingOperations.add(operation);
+    }
+
+    /**
+     * Читает операции журнала начиная со смещения. Операции, ещё не записанные
+     * {@link #write(Pending)}, не видны.
+     *
+     * @param offset смещение в журнале
+     * @return операции и смещение конца прочитанного
+     */
+    OperationBatch readOperations(long offset) {
+        return log().readFrom(offset);
+    }
+
+    /**
+     * Применяет операции другой установки по правилу «последний записавший
+     * выигрывает». Применённые операции попадают в журнал с исходной версией
+     * при следующей записи календаря.
+     *
+     * @param operations чужие операции
+     * @return применённые операции
+     */
+    List<Operation> applyRemote(List<Operation> operations) {
+        ensureComplete();
+        List<Operation> applied = new ArrayList<>();
+
+        for (Operation op : operations) {
+            long currentVersion = 0;
+            String currentReplica = null;
+            int i = indexOf(op.getNoteId());
+            if (i >= 0) {
+                currentVersion = notes.get(i).getVersion();
+                currentReplica = notes.get(i).getVersionReplica();
+            } else {
+                Operation tombstone = tombstones.get(op.getNoteId());
+                if (tombstone != null) {
+                    currentVersion = tombstone.getVersion();
+                    currentReplica = tombstone.getReplicaId();
+                }
+            }
+            if (!HybridClock.isNewer(op.getVersion(), op.getReplicaId(), currentVersion, currentReplica)) {
+                continue;
+            }
+
+            if (op.getKind() == Operation.Kind.UPSERT) {
+                Note note = op.getNote();
+                note.setCalendarId(id);
+                if (i >= 0) {
+                    reindex(notes.set(i, note), note);
+                } else {
+                    append(note);
+                    reindex(null, note);
+                }
+                touched(op.getNoteId());
+                tombstonesChanged |= tombstones.remove(op.getNoteId()) != null;
+                commit(note);
+            } else {
+                if (i >= 0) {
+                    reindex(removeAt(i), null);
+                }
+                dropped(op.getNoteId());
+                tombstones.put(op.getNoteId(), op);
+                tombstonesChanged = true;
+                commit(null);
+            }
+            pendingOperations.add(op);
+            applied.add(op);
+        }
+        return applied;
+    }
+
+    /**
+     * Читает отметки удалённых заметок.
+     *
+     * @return отметки по идентификатору заметки
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Operation> readTombstones() {
+        Path file = directory.resolve(TOMBSTONES_FILE_NAME);
+        if (Files.exists(file)) {
+            try (ObjectInputStream in = new ObjectInputStream(cipher == null
+                    ? new FileInputStream(file.toFile())
+                    : new ByteArrayInputStream(cipher.open(Files.readAllBytes(file), TOMBSTONES_FILE_NAME)))) {
+                return new HashMap<>((Map<String, Operation>) in.readObject());
+            } catch (Exception e) {
+                logger.error("Ошибка чтения отметок удаления", e);
+            }
+        }
+        return new HashMap<>();
+    }
+
+    /**
+     * Записывает отметки удалённых заметок.
+     *
+     * @param tombstones снимок отметок
+     */
+    private void writeTombstones(Map<String, Operation> tombstones) {
+        Path file = directory.resolve(TOMBSTONES_FILE_NAME);
+        try {
+            if (cipher == null) {
+                try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file.toFile()))) {
+                    out.writeObject(new HashMap<>(tombstones));
+                }
+            } else {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(new HashMap<>(tombstones));
+                }
+                Files.write(file, cipher.seal(bytes.toByteArray(), TOMBSTONES_FILE_NAME));
+            }
+        } catch (IOException e) {
+            logger.error("Ошибка сохранения отметок удаления", e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.tsarskiy.view;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.service.HolidayService;
+import com.tsarskiy.storage.NoteRepository;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Повестка: заметки ближайших {@link #DAYS} дней, сгруппированные по датам,
+ * вместе с праздниками из {@link HolidayService}.
+ * <p>
+ * Заметки читаются из {@link NoteRepository#streamNotes(LocalDate, LocalDate)}
+ * страницами по {@link #PAGE}: при открытии берётся только первая страница,
+ * следующая — когда прокрутка подходит к концу списка. Поэтому повестка
+ * открывается сразу, сколько бы заметок ни было впереди.
+ * Используется из потока JavaFX.
+ */
+final class AgendaView {
+
+    private static final Logger logger = LogManager.getLogger(AgendaView.class);
+
+    /** Число дней повестки начиная с сегодняшнего. */
+    static final int DAYS = 90;
+
+    /** Число заметок на странице. */
+    private static final int PAGE = 40;
+
+    /** За сколько строк до конца списка подгружается следующая страница. */
+    private static final int PREFETCH_ROWS = 8;
+
+    private static final Locale RU = new Locale("ru");
+    private static final DateTimeFormatter DATE_DF = DateTimeFormatter.ofPattern("EEEE, d MMMM", RU);
+    private static final DateTimeFormatter TIME_DF = DateTimeFormatter.ofPattern("HH:mm");
+
+    /**
+     * Строка повестки: заголовок дня ({@code note == null}) или заметка.
+     *
+     * @param date    дата
+     * @param holiday праздник дня для заголовка или {@code null}
+     * @param note    заметка или {@code null} для заголовка
+     */
+    private record Item(LocalDate date, String holiday, Note note) {
+    }
+
+    private final NoteRepository storage;
+    private final HolidayService holidayService;
+    private final UnaryOperator<Map<LocalDate, List<Note>>> filter;
+
+    private final ObservableList<Item> items = FXCollections.observableArrayList();
+    private final ListView<Item> list = new ListView<>(items);
+
+    /** Непрочитанные заметки повестки. */
+    private Iterator<Note> source;
+
+    /** Праздники повестки, ещё не попавшие в список. */
+    private NavigableMap<LocalDate, String> pendingHolidays = new TreeMap<>();
+
+    /** Дата последнего заголовка в списке. */
+    private LocalDate lastHeader;
+
+    /** Прочитаны ли все заметки повестки. */
+    private boolean exhausted;
+
+    /** Запланирована ли подгрузка страницы. */
+    private boolean pageScheduled;
+
+    private Consumer<Note> onOpen = note -> { };
+    private Consumer<LocalDate> onSelect = date -> { };
+
+    /**
+     * Создаёт повестку.
+     *
+     * @param storage        хранилище заметок
+     * @param holidayService сервис праздников
+     * @param filter         фильтр заметок по тегам
+     */
+    AgendaView(NoteRepository storage, HolidayService holidayService,
+               UnaryOperator<Map<LocalDate, List<Note>>> filter) {
+        this.storage = storage;
+        this.holidayService = holidayService;
+        this.filter = filter;
+
+        list.getStyleClass().add("agenda");
+        list.setPrefSize(7 * CalendarView.CELL + 6 * CalendarView.GAP, 6 * CalendarView.CELL);
+        list.setPlaceholder(new Label("На ближайшие " + DAYS + " дней заметок нет"));
+        list.setCellFactory(v -> new AgendaCell());
+    }
+
+    /**
+     * Возвращает узел повестки.
+     *
+     * @return список повестки
+     */
+    ListView<?> getView() {
+        return list;
+    }
+
+    /** Задаёт действие при двойном щелчке по заметке. */
+    void setOnOpen(Consumer<Note> onOpen) {
+        this.onOpen = onOpen;
+    }
+
+    /** Задаёт действие при выборе дня. */
+    void setOnSelect(Consumer<LocalDate> onSelect) {
+        this.onSelect = onSelect;
+    }
+
+    /**
+     * Строит повестку заново с первой страницы.
+     */
+    void reload() {
+        LocalDate from = LocalDate.now();
+        LocalDate to = from.plusDays(DAYS - 1);
+        source = storage.isIndexLoaded()
+                ? storage.streamNotes(from, to).iterator()
+                : Collections.emptyIterator();
+        pendingHolidays = new TreeMap<>(holidayService.getHolidaysBetween(from, to));
+        lastHeader = null;
+        exhausted = false;
+        items.clear();
+        loadPage();
+        list.scrollTo(0);
+    }
+
+    /**
+     * Дописывает в список следующую страницу заметок с заголовками дней
+     * и праздниками, которые приходятся на эти дни.
+     */
+    private void loadPage() {
+        pageScheduled = false;
+        long start = System.nanoTime();
+        int before = items.size();
+        while (!exhausted && items.size() == before) {
+            Map<LocalDate, List<Note>> page = new LinkedHashMap<>();
+            for (int i = 0; i < PAGE && source.hasNext(); i++) {
+                Note note = source.next();
+                page.computeIfAbsent(note.getDate(), d -> new ArrayList<>()).add(note);
+            }
+            exhausted = !source.hasNext();
+
+            List<Item> added = new ArrayList<>();
+            for (Map.Entry<LocalDate, List<Note>> day : filter.apply(page).entrySet()) {
+                addHolidaysBefore(day.getKey(), added);
+                if (!day.getKey().equals(lastHeader)) {
+                    added.add(new Item(day.getKey(), pendingHolidays.remove(day.getKey()), null));
+                    lastHeader = day.getKey();
+                }
+                for (Note note : day.getValue()) {
+                    added.add(new Item(day.getKey(), null, note));
+                }
+            }
+            if (exhausted) {
+                addHolidaysBefore(LocalDate.MAX, added);
+            }
+            items.addAll(added);
+        }
+        logger.debug("Повестка: {} строк за {} мкс", items.size() - before, (System.nanoTime() - start) / 1_000);
+    }
+
+    /**
+     * Добавляет заголовки праздников без заметок, наступающих раньше даты.
+     */
+    private void addHolidaysBefore(LocalDate date, List<Item> added) {
+        while (!pendingHolidays.isEmpty() && pendingHolidays.firstKey().isBefore(date)) {
+            Map.Entry<LocalDate, String> holiday = pendingHolidays.pollFirstEntry();
+            added.add(new Item(holiday.getKey(), holiday.getValue(), null));
+            lastHeader = holiday.getKey();
+        }
+    }
+
+    /**
+     * Ячейка повестки: заголовок дня с праздником или строка заметки.
+     */
+    private final class AgendaCell extends ListCell<Item> {
+
+        @Override
+        protected void updateItem(Item item, boolean empty) {
+            super.updateItem(item, empty);
+            getStyleClass().removeAll("agenda-day", "agenda-note");
+            setOnMouseClicked(null);
+            setText(null);
+            if (empty || item == null) {
+                setGraphic(null);
+                return;
+            }
+            if (!exhausted && !pageScheduled && getIndex() >= items.size() - PREFETCH_ROWS) {
+                pageScheduled = true;
+                Platform.runLater(AgendaView.this::loadPage);
+            }
+
+            if (item.note() == null) {
+                getStyleClass().add("agenda-day");
+                Label date = new Label(DATE_DF.format(item.date()));
+                date.getStyleClass().add("calendar-month");
+                HBox line = new HBox(8, date);
+                line.setAlignment(Pos.CENTER_LEFT);
+                if (item.holiday() != null) {
+                    ImageView crown = IconFactory.createHolidayCrownImage();
+                    Label name = new Label(item.holiday());
+                    name.getStyleClass().add("timeline-holiday");
+                    line.getChildren().addAll(crown, name);
+                }
+                setGraphic(line);
+                setOnMouseClicked(e -> onSelect.accept(item.date()));
+                return;
+            }
+
+            Note note = item.note();
+            getStyleClass().add("agenda-note");
+            Label time = new Label(note.getTime() != null ? TIME_DF.format(note.getTime()) : "весь день");
+            time.getStyleClass().add("timeline-hour");
+            time.setMinWidth(80);
+            Label title = new Label(note.getTitle());
+            title.getStyleClass().add("note-title");
+            HBox line = new HBox(12, time, title);
+            line.setAlignment(Pos.CENTER_LEFT);
+            for (String tag : note.getTags()) {
+                Label chip = new Label("#" + tag);
+                chip.getStyleClass().add("tag-chip");
+                line.getChildren().add(chip);
+            }
+            setGraphic(line);
+            setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2) {
+                    onOpen.accept(note);
+                } else {
+                    onSelect.accept(note.getDate());
+                }
+            });
+        }
+    }
+}
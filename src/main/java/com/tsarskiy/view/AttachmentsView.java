@@ -0,0 +1,215 @@
+package com.tsarskiy.view;
+
+import com.tsarskiy.model.Attachment;
+import com.tsarskiy.model.Note;
+import com.tsarskiy.storage.CalendarRepository;
+import javafx.application.HostServices;
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.FlowPane;
+import javafx.scene.layout.StackPane;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Отображение вложений заметки: миниатюры изображений и ярлыки остальных файлов.
+ * <p>
+ * Миниатюры декодируются сразу в уменьшенном размере в отдельном фоновом потоке
+ * из потока файла, без загрузки исходного изображения в память, и кэшируются
+ * по ключу содержимого. Кэш и очередь ожидающих обработчиков используются только
+ * из потока JavaFX. Вложение открывается во внешней программе по клику.
+ */
+public final class AttachmentsView {
+
+    private static final Logger logger = LogManager.getLogger(AttachmentsView.class);
+
+    /** Размер стороны миниатюры. */
+    static final double THUMBNAIL_SIZE = 72;
+
+    /** Максимальное число миниатюр в кэше. */
+    private static final int CACHE_SIZE = 200;
+
+    /** Миниатюры по ключу вложения в порядке последнего использования. */
+    private static final Map<String, Image> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /** Обработчики миниатюр, которые ещё строятся. */
+    private static final Map<String, List<Consumer<Image>>> PENDING = new HashMap<>();
+
+    /** Поток построения миниатюр. */
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "thumbnails");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Службы платформы для открытия файлов. */
+    private static HostServices hostServices;
+
+    /** Хранилище, из которого читаются файлы вложений. */
+    private static CalendarRepository repository;
+
+    private AttachmentsView() {
+    }
+
+    /**
+     * Передаёт службы платформы, через которые вложения открываются во внешних программах.
+     *
+     * @param services службы приложения
+     */
+    public static void setHostServices(HostServices services) {
+        hostServices = services;
+    }
+
+    /**
+     * Передаёт хранилище, из которого открываются вложения и строятся миниатюры.
+     *
+     * @param storage хранилище заметок
+     */
+    public static void setRepository(CalendarRepository storage) {
+        repository = storage;
+    }
+
+    /**
+     * Создаёт ряд вложений для карточки заметки.
+     *
+     * @param note заметка с вложениями
+     * @return контейнер с миниатюрами и ярлыками
+     */
+    static FlowPane createStrip(Note note) {
+        FlowPane strip = new FlowPane(8, 8);
+        for (Attachment attachment : note.getAttachments()) {
+            strip.getChildren().add(createItem(note, attachment));
+        }
+        return strip;
+    }
+
+    /**
+     * Создаёт миниатюру изображения или ярлык файла.
+     *
+     * @param note       заметка, в календаре которой лежит вложение
+     * @param attachment вложение
+     * @return элемент вложения
+     */
+    static Node createItem(Note note, Attachment attachment) {
+        Node item;
+        if (attachment.isImage()) {
+            ImageView view = new ImageView();
+            view.setFitWidth(THUMBNAIL_SIZE);
+            view.setFitHeight(THUMBNAIL_SIZE);
+            view.setPreserveRatio(true);
+            StackPane frame = new StackPane(view);
+            frame.setPrefSize(THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+            frame.getStyleClass().add("attachment-thumb");
+            thumbnail(note, attachment, view::setImage);
+            item = frame;
+        } else {
+            Label label = new Label(attachment.getName() + " · " + formatSize(attachment.getSize()));
+            label.getStyleClass().add("attachment-chip");
+            label.setAlignment(Pos.CENTER_LEFT);
+            item = label;
+        }
+        item.setOnMouseClicked(e -> {
+            e.consume();
+            open(note, attachment);
+        });
+        return item;
+    }
+
+    /**
+     * Открывает вложение во внешней программе. Файл передаётся программе
+     * по пути и в память приложения не читается.
+     *
+     * @param note       заметка, в календаре которой лежит вложение
+     * @param attachment вложение
+     */
+    static void open(Note note, Attachment attachment) {
+        if (hostServices == null || repository == null) {
+            return;
+        }
+        hostServices.showDocument(repository.getAttachmentFile(note, attachment).toUri().toString());
+    }
+
+    /**
+     * Передаёт обработчику миниатюру вложения: сразу из кэша
+     * или после построения в фоновом потоке.
+     *
+     * @param note       заметка, в календаре которой лежит вложение
+     * @param attachment вложение-изображение
+     * @param onReady    обработчик, вызываемый в потоке JavaFX
+     */
+    private static void thumbnail(Note note, Attachment attachment, Consumer<Image> onReady) {
+        Image cached = CACHE.get(attachment.getHash());
+        if (cached != null) {
+            onReady.accept(cached);
+            return;
+        }
+        List<Consumer<Image>> waiting = PENDING.get(attachment.getHash());
+        if (waiting != null) {
+            waiting.add(onReady);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(onReady);
+        PENDING.put(attachment.getHash(), waiting);
+
+        LOADER.execute(() -> {
+            Image image = null;
+            try (InputStream in = repository.openAttachment(note, attachment)) {
+                image = new Image(in, THUMBNAIL_SIZE * 2, THUMBNAIL_SIZE * 2, true, true);
+                if (image.isError()) {
+                    logger.warn("Не удалось прочитать изображение {}", attachment.getName(), image.getException());
+                    image = null;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Не удалось построить миниатюру {}", attachment.getName(), e);
+            }
+            Image result = image;
+            Platform.runLater(() -> {
+                List<Consumer<Image>> handlers = PENDING.remove(attachment.getHash());
+                if (result == null) {
+                    return;
+                }
+                CACHE.put(attachment.getHash(), result);
+                if (handlers != null) {
+                    handlers.forEach(h -> h.accept(result));
+                }
+            });
+        });
+    }
+
+    /**
+     * Форматирует размер файла для подписи.
+     *
+     * @param bytes размер в байтах
+     * @return размер в байтах, КБ или МБ
+     */
+    static String formatSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " Б";
+        }
+        if (bytes < 1024 * 1024) {
+            return (bytes / 1024) + " КБ";
+        }
+        return String.format("%.1f МБ", bytes / (1024.0 * 1024));
+    }
+}
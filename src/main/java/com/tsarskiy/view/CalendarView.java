@@ -1,21 +1,56 @@
 package com.tsarskiy.view;
 
+import com.tsarskiy.model.DayType;
 import com.tsarskiy.model.Note;
+import com.tsarskiy.service.ApiServer;
 import com.tsarskiy.service.HolidayService;
-import com.tsarskiy.storage.Storage;
+import com.tsarskiy.service.MonthSnapshotCache;
+import com.tsarskiy.service.WorkingDayCalculator;
+import com.tsarskiy.service.SyncService;
+import com.tsarskiy.service.UndoManager;
+import com.tsarskiy.storage.CalendarRepository;
+import com.tsarskiy.storage.NoteChange;
+import com.tsarskiy.storage.Workspace;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Label;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuButton;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.RadioMenuItem;
+import javafx.scene.control.SeparatorMenuItem;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.ToggleGroup;
+import javafx.scene.input.TransferMode;
 import javafx.scene.layout.*;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
 import javafx.scene.shape.SVGPath;
+import javafx.stage.DirectoryChooser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.io.File;
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.function.UnaryOperator;
 
 /**
  * Основное представление календаря приложения.
@@ -24,32 +59,59 @@ import java.util.Map;
  * <ul>
  *     <li>Отображение календарной сетки месяца</li>
  *     <li>Навигацию между месяцами</li>
+ *     <li>Непрерывную ленту недель через границы месяцев ({@link WeekScrollView})</li>
+ *     <li>Шкалы времени недели и дня ({@link TimelineView}) и повестку ({@link AgendaView})</li>
  *     <li>Отображение праздников</li>
  *     <li>Работу с заметками (просмотр, добавление, редактирование)</li>
+ *     <li>Перенос заметок на другой день перетаскиванием</li>
+ *     <li>Фильтр заметок по тегам (все выбранные теги или любой из них)</li>
  * </ul>
  * <p>
- * Использует {@link Storage} для хранения заметок и {@link HolidayService}
- * для получения государственных праздников.
+ * Использует {@link CalendarRepository} для хранения заметок и {@link HolidayService}
+ * для получения праздников и переносов производственного календаря.
+ * Заметки и праздники соседних месяцев заранее собираются в
+ * {@link MonthSnapshotCache}, поэтому листание не ждёт хранилища.
+ * Если подключено несколько календарей, сетка совмещает их заметки
+ * и отмечает день цветными точками календарей.
  */
 public class CalendarView {
 
+    /** Логгер для фиксации ошибок синхронизации календаря. */
+    private static final Logger logger = LogManager.getLogger(CalendarView.class);
+
     /** Размер одной ячейки дня календаря. */
-    private static final double CELL = 110;
+    static final double CELL = 110;
 
     /** Отступ между ячейками календаря. */
-    private static final double GAP = 10;
+    static final double GAP = 10;
 
     /** Масштаб всего календаря. */
     private static final double SCALE = 0.92;
 
+    /** Формат даты в уведомлении о переносе. */
+    private static final DateTimeFormatter MOVE_DF = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    /** Форматы заголовка шкал времени. */
+    private static final DateTimeFormatter LABEL_DF = DateTimeFormatter.ofPattern("d MMMM yyyy", new Locale("ru"));
+    private static final DateTimeFormatter RANGE_DF = DateTimeFormatter.ofPattern("d MMMM", new Locale("ru"));
+
     /** Корневой контейнер представления. */
     private final StackPane root;
 
     /** Хранилище заметок. */
-    private final Storage storage;
+    private final CalendarRepository storage;
+
+    /** Стек отмены операций над заметками. */
+    private final UndoManager undo;
 
     /** Сервис получения праздников. */
-    private final HolidayService holidayService = new HolidayService();
+    private final HolidayService holidayService;
+
+    /** Снимки текущего и соседних месяцев. */
+    private final MonthSnapshotCache months;
+
+    /** Расчёты в рабочих днях по производственному календарю. */
+    private final WorkingDayCalculator workingDays;
 
     /** Текущий отображаемый месяц. */
     private YearMonth currentMonth = YearMonth.now();
@@ -63,9 +125,86 @@ public class CalendarView {
     /** Карта праздников текущего месяца. */
     private Map<LocalDate, String> holidays;
 
+    /** Заметки текущего месяца по датам, включая повторения серий. */
+    private Map<LocalDate, List<Note>> allMonthNotes = Map.of();
+
+    /** Заметки текущего месяца, прошедшие фильтр по тегам. */
+    private Map<LocalDate, List<Note>> monthNotes = Map.of();
+
+    /** Выбранные теги фильтра. */
+    private final Set<String> tagFilter = new LinkedHashSet<>();
+
+    /** Нужны ли заметке все выбранные теги ({@code true}) или хотя бы один. */
+    private boolean matchAllTags;
+
+    /** Панель фильтра по тегам; скрыта, если тегов нет. */
+    private final FlowPane tagBar = new FlowPane(8, 8);
+
+    /** Цвета подключённых календарей по идентификатору. */
+    private final Map<String, Color> calendarColors = new HashMap<>();
+
+    /** Меню выбора календарей. */
+    private final MenuButton calendarsMenu = new MenuButton("Календари");
+
+    /** Служба синхронизации или {@code null}, если синхронизация недоступна. */
+    private SyncService sync;
+
+    /** Локальный API или {@code null}, если он недоступен. */
+    private ApiServer api;
+
+    /** Изменения заметок в потоке JavaFX. */
+    private final ChangeFeed changes;
+
+    /** Теги, показанные на панели фильтра. */
+    private SortedSet<String> shownTags = Collections.emptySortedSet();
+
     /** Сетка календаря. */
     private final GridPane calendarGrid = new GridPane();
 
+    /** Вид календаря. */
+    private enum ViewMode {
+        MONTH("Месяц"),
+        WEEKS("Лента"),
+        WEEK("Неделя"),
+        DAY("День"),
+        AGENDA("Повестка");
+
+        private final String title;
+
+        ViewMode(String title) {
+            this.title = title;
+        }
+    }
+
+    /** Контейнер сетки месяца или другого вида. */
+    private final HBox gridWrapper = new HBox();
+
+    /** Показанный вид. */
+    private ViewMode mode = ViewMode.MONTH;
+
+    /** Меню выбора вида. */
+    private final MenuButton viewMenu = new MenuButton(ViewMode.MONTH.title);
+
+    /** Лента недель; создаётся при первом переключении. */
+    private WeekScrollView weeks;
+
+    /** Шкалы времени недели и дня; создаются при первом переключении. */
+    private TimelineView weekTimeline;
+    private TimelineView dayTimeline;
+
+    /** Повестка; создаётся при первом переключении. */
+    private AgendaView agenda;
+
+    /** Первый день шкалы времени недели или дня. */
+    private LocalDate anchor = LocalDate.now();
+
+    /** Кнопки перехода назад и вперёд. */
+    private Button prevButton;
+    private Button nextButton;
+
+    /** Ячейки дней текущего месяца по дате. */
+    private final Map<LocalDate, Button> cells = new HashMap<>();
+
     /** Метка с названием месяца. */
     private final Label monthLabel = new Label();
 
@@ -80,15 +219,82 @@ public class CalendarView {
 
     /**
      * Создаёт представление календаря.
+     * <p>
+     * Сетка строится сразу, без обращения к файлу заметок; индикаторы заметок
+     * появляются после того, как хранилище загрузит индекс в фоновом потоке.
      *
      * @param storage хранилище заметок
      */
-    public CalendarView(Storage storage) {
+    public CalendarView(CalendarRepository storage) {
         this.storage = storage;
+        this.undo = new UndoManager(storage);
+        this.holidayService = new HolidayService(storage.getStorageDirectory().orElse(null));
+        this.months = new MonthSnapshotCache(storage, holidayService, MonthSnapshotCache.DEFAULT_RADIUS);
+        this.workingDays = new WorkingDayCalculator(holidayService);
+        this.changes = new ChangeFeed(storage);
         this.holidays = holidayService.getHolidaysForMonth(currentMonth);
         this.root = build();
         updateMonthLabel();
         updateGrid();
+
+        if (!storage.isIndexLoaded()) {
+            storage.loadIndexAsync()
+                    .thenRun(() -> Platform.runLater(this::updateGrid));
+        }
+        changes.subscribe(this::applyChanges);
+    }
+
+    /**
+     * Обновляет показанное по пачке изменений заметок — из окон заметок,
+     * отмены, перетаскивания, локального API или синхронизации.
+     * <p>
+     * В месяце перестраиваются только ячейки прежних и новых дат изменённых
+     * заметок. Месяц перечитывается целиком, только если изменилась серия
+     * или удалена заметка с неизвестной датой. Другие виды перечитывают
+     * показанный диапазон, если изменение его касается.
+     *
+     * @param batch изменения в порядке их выполнения
+     */
+    private void applyChanges(List<NoteChange> batch) {
+        if (!storage.isIndexLoaded()) {
+            return;
+        }
+        Set<LocalDate> days = new LinkedHashSet<>();
+        boolean range = false;
+        for (NoteChange change : batch) {
+            range |= change.affectsRange();
+            days.addAll(change.dates());
+        }
+        days.removeIf(date -> !isShown(date));
+
+        if (mode == ViewMode.MONTH && range) {
+            show(months.refresh(currentMonth));
+            return;
+        }
+        if (!storage.getTags().equals(shownTags)) {
+            rebuildTagBar();
+        }
+        if (mode == ViewMode.MONTH) {
+            refreshDays(days);
+        } else if (range || !days.isEmpty()) {
+            renderGrid();
+        }
+    }
+
+    /**
+     * Проверяет, попадает ли дата в показанный диапазон текущего вида.
+     * Лента недель и список событий перечитывают показанное при любом изменении.
+     *
+     * @param date дата
+     * @return {@code true}, если дату нужно обновить
+     */
+    private boolean isShown(LocalDate date) {
+        return switch (mode) {
+            case MONTH -> YearMonth.from(date).equals(currentMonth);
+            case WEEK -> !date.isBefore(anchor) && date.isBefore(anchor.plusDays(7));
+            case DAY -> date.equals(anchor);
+            case WEEKS, AGENDA -> true;
+        };
     }
 
     /**
@@ -132,7 +338,20 @@ public class CalendarView {
                 closeButton.getScene().getWindow().hide()
         );
 
-        header.getChildren().addAll(titleBox, spacer, closeButton);
+        calendarsMenu.getStyleClass().add("calendar-menu");
+        rebuildCalendarsMenu();
+
+        viewMenu.getStyleClass().add("calendar-menu");
+        ToggleGroup viewGroup = new ToggleGroup();
+        for (ViewMode viewMode : ViewMode.values()) {
+            RadioMenuItem item = new RadioMenuItem(viewMode.title);
+            item.setToggleGroup(viewGroup);
+            item.setSelected(viewMode == mode);
+            item.setOnAction(e -> setMode(viewMode));
+            viewMenu.getItems().add(item);
+        }
+
+        header.getChildren().addAll(titleBox, spacer, viewMenu, calendarsMenu, closeButton);
 
         /* ================= INFO ================= */
         infoLabel.getStyleClass().add("calendar-info");
@@ -144,8 +363,8 @@ public class CalendarView {
         infoWrapper.setMinHeight(26);
 
         /* ================= NAVIGATION ================= */
-        Button prev = navButton(IconFactory.createChevronLeft(), this::prevMonth);
-        Button next = navButton(IconFactory.createChevronRight(), this::nextMonth);
+        prevButton = navButton(IconFactory.createChevronLeft(), this::prevMonth);
+        nextButton = navButton(IconFactory.createChevronRight(), this::nextMonth);
 
         monthLabel.getStyleClass().add("calendar-month");
 
@@ -154,9 +373,14 @@ public class CalendarView {
         HBox.setHgrow(l, Priority.ALWAYS);
         HBox.setHgrow(r, Priority.ALWAYS);
 
-        HBox nav = new HBox(14, prev, l, monthLabel, r, next);
+        HBox nav = new HBox(14, prevButton, l, monthLabel, r, nextButton);
         nav.setAlignment(Pos.CENTER);
 
+        /* ================= TAGS ================= */
+        tagBar.getStyleClass().add("tag-bar");
+        tagBar.setAlignment(Pos.CENTER);
+        tagBar.managedProperty().bind(tagBar.visibleProperty());
+
         /* ================= WEEKDAYS ================= */
         GridPane weekdays = new GridPane();
         weekdays.setHgap(GAP);
@@ -185,7 +409,7 @@ public class CalendarView {
             calendarGrid.getRowConstraints().add(new RowConstraints(CELL));
         }
 
-        HBox gridWrapper = new HBox(calendarGrid);
+        gridWrapper.getChildren().setAll(calendarGrid);
         gridWrapper.setAlignment(Pos.CENTER);
 
         /* ================= ADD NOTE BUTTON ================= */
@@ -193,7 +417,7 @@ public class CalendarView {
         addNoteButton.setPrefWidth(300);
         addNoteButton.setDisable(true);
         addNoteButton.setOnAction(e ->
-                new NoteModal(selectedDate, null, storage, this::updateGrid)
+                new NoteModal(selectedDate, null, storage, undo, null)
                         .show(root.getScene().getWindow())
         );
 
@@ -201,6 +425,7 @@ public class CalendarView {
                 header,
                 infoWrapper,
                 nav,
+                tagBar,
                 weekdays,
                 gridWrapper,
                 addNoteButton
@@ -210,6 +435,236 @@ public class CalendarView {
         return screen;
     }
 
+    /**
+     * Перестраивает меню календарей: переключатели видимости
+     * и пункт подключения нового календаря.
+     */
+    private void rebuildCalendarsMenu() {
+        calendarsMenu.getItems().clear();
+        calendarColors.clear();
+
+        for (Workspace workspace : storage.getWorkspaces()) {
+            Color color = Color.web(workspace.getColor());
+            calendarColors.put(workspace.getId(), color);
+
+            CheckMenuItem item = new CheckMenuItem(workspace.getName(), new Circle(5, color));
+            item.setSelected(storage.isWorkspaceVisible(workspace.getId()));
+            item.setOnAction(e -> {
+                storage.setWorkspaceVisible(workspace.getId(), item.isSelected());
+                months.clear();
+                updateGrid();
+            });
+            calendarsMenu.getItems().add(item);
+        }
+
+        MenuItem add = new MenuItem("Подключить календарь…");
+        add.setOnAction(e -> addCalendar());
+        calendarsMenu.getItems().addAll(new SeparatorMenuItem(), add);
+
+        Menu countries = new Menu("Производственный календарь");
+        ToggleGroup countryGroup = new ToggleGroup();
+        for (String country : holidayService.getCountries()) {
+            RadioMenuItem item = new RadioMenuItem(country);
+            item.setToggleGroup(countryGroup);
+            item.setSelected(country.equals(holidayService.getCountry()));
+            item.setOnAction(e -> {
+                holidayService.setCountry(country);
+                months.clear();
+                updateGrid();
+            });
+            countries.getItems().add(item);
+        }
+        calendarsMenu.getItems().add(countries);
+
+        if (sync != null) {
+            CheckMenuItem accept = new CheckMenuItem("Принимать синхронизацию");
+            accept.setSelected(sync.isServerRunning());
+            CheckMenuItem lan = new CheckMenuItem("Принимать из локальной сети");
+            lan.setSelected(sync.isLanEnabled());
+            accept.setOnAction(e -> toggleSyncServer(accept, lan));
+            lan.setOnAction(e -> toggleSyncServer(accept, lan));
+
+            MenuItem code = new MenuItem("Код сопряжения…");
+            code.setOnAction(e -> showPairingCode());
+
+            MenuItem syncWith = new MenuItem("Синхронизировать с…");
+            syncWith.setOnAction(e -> syncWith());
+            calendarsMenu.getItems().addAll(new SeparatorMenuItem(), accept, lan, code, syncWith);
+        }
+
+        if (api != null) {
+            CheckMenuItem serve = new CheckMenuItem("Локальный API (порт " + ApiServer.DEFAULT_PORT + ")");
+            serve.setSelected(api.isRunning());
+            serve.setOnAction(e -> toggleApiServer(serve));
+            calendarsMenu.getItems().add(serve);
+        }
+    }
+
+    /**
+     * Подключает локальный API и добавляет его пункт в меню календарей.
+     *
+     * @param api локальный API
+     */
+    public void setApiServer(ApiServer api) {
+        this.api = api;
+        rebuildCalendarsMenu();
+    }
+
+    /**
+     * Включает или выключает локальный API.
+     *
+     * @param item пункт меню API
+     */
+    private void toggleApiServer(CheckMenuItem item) {
+        if (!item.isSelected()) {
+            api.stop();
+            return;
+        }
+        try {
+            api.start(ApiServer.DEFAULT_PORT);
+        } catch (RuntimeException ex) {
+            item.setSelected(false);
+            showAlert(Alert.AlertType.ERROR, "Локальный API", "Не удалось запустить API", ex.getMessage());
+        }
+    }
+
+    /**
+     * Подключает службу синхронизации и добавляет её пункты в меню календарей.
+     *
+     * @param sync служба синхронизации
+     */
+    public void setSyncService(SyncService sync) {
+        this.sync = sync;
+        rebuildCalendarsMenu();
+    }
+
+    /**
+     * Включает, выключает или перезапускает приём синхронизации.
+     * Без отметки «из локальной сети» сервер слушает только этот компьютер.
+     *
+     * @param accept пункт меню приёма
+     * @param lan    пункт меню приёма из локальной сети
+     */
+    private void toggleSyncServer(CheckMenuItem accept, CheckMenuItem lan) {
+        sync.stopServer();
+        if (!accept.isSelected()) {
+            return;
+        }
+        try {
+            sync.startServer(SyncService.DEFAULT_PORT, lan.isSelected());
+            showPairingCode();
+        } catch (RuntimeException ex) {
+            accept.setSelected(false);
+            showAlert(Alert.AlertType.ERROR, "Синхронизация", "Не удалось начать приём", ex.getMessage());
+        }
+    }
+
+    /**
+     * Показывает код сопряжения, который нужно ввести на другой установке.
+     */
+    private void showPairingCode() {
+        try {
+            showAlert(Alert.AlertType.INFORMATION, "Синхронизация", "Код сопряжения",
+                    "Введите этот код на установке, которая будет синхронизироваться с этой:\n\n"
+                            + sync.getPairingCode());
+        } catch (RuntimeException ex) {
+            showAlert(Alert.AlertType.ERROR, "Синхронизация", "Код сопряжения недоступен", ex.getMessage());
+        }
+    }
+
+    /**
+     * Синхронизирует основной календарь с установкой по адресу {@code хост[:порт]}
+     * после ввода её кода сопряжения. Обмен идёт в фоновом потоке, сетка обновляется по завершении.
+     */
+    private void syncWith() {
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Синхронизация");
+        dialog.setHeaderText("Адрес другой установки (хост:порт)");
+        dialog.showAndWait()
+                .map(String::trim)
+                .filter(address -> !address.isEmpty())
+                .ifPresent(address -> {
+                    int colon = address.lastIndexOf(':');
+                    String host = colon > 0 ? address.substring(0, colon) : address;
+                    int port;
+                    try {
+                        port = colon > 0
+                                ? Integer.parseInt(address.substring(colon + 1))
+                                : SyncService.DEFAULT_PORT;
+                    } catch (NumberFormatException ex) {
+                        showAlert(Alert.AlertType.WARNING, "Синхронизация", "Некорректный порт", address);
+                        return;
+                    }
+
+                    TextInputDialog codeDialog = new TextInputDialog();
+                    codeDialog.setTitle("Синхронизация");
+                    codeDialog.setHeaderText("Код сопряжения другой установки");
+                    String code = codeDialog.showAndWait().map(String::trim).orElse("");
+                    if (code.isEmpty()) {
+                        return;
+                    }
+
+                    Thread worker = new Thread(() -> {
+                        try {
+                            SyncService.Result result = sync.syncWith(host, port, code);
+                            Platform.runLater(() -> {
+                                showAlert(Alert.AlertType.INFORMATION, "Синхронизация", "Синхронизация завершена",
+                                        "Отправлено изменений: " + result.sent()
+                                                + "\nПолучено: " + result.received()
+                                                + ", применено: " + result.applied());
+                            });
+                        } catch (IOException | RuntimeException ex) {
+                            logger.warn("Синхронизация с {} не удалась", address, ex);
+                            Platform.runLater(() -> showAlert(Alert.AlertType.ERROR,
+                                    "Синхронизация", "Синхронизация не удалась", ex.getMessage()));
+                        }
+                    }, "sync-client");
+                    worker.setDaemon(true);
+                    worker.start();
+                });
+    }
+
+    /**
+     * Показывает простое уведомление.
+     *
+     * @param type   тип уведомления
+     * @param title  заголовок окна
+     * @param header заголовок
+     * @param text   текст
+     */
+    private void showAlert(Alert.AlertType type, String title, String header, String text) {
+        Alert alert = new Alert(type);
+        alert.setTitle(title);
+        alert.setHeaderText(header);
+        alert.setContentText(text);
+        alert.showAndWait();
+    }
+
+    /**
+     * Подключает дополнительный календарь из выбранной пользователем папки.
+     */
+    private void addCalendar() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Папка календаря");
+        File dir = chooser.showDialog(root.getScene().getWindow());
+        if (dir == null) return;
+
+        TextInputDialog dialog = new TextInputDialog(dir.getName());
+        dialog.setTitle("Новый календарь");
+        dialog.setHeaderText("Название календаря");
+        dialog.showAndWait()
+                .filter(name -> !name.isBlank())
+                .ifPresent(name -> {
+                    storage.addWorkspace(name.trim(), dir.toPath());
+                    rebuildCalendarsMenu();
+                    storage.loadIndexAsync()
+                            .thenRun(() -> Platform.runLater(() -> {
+                                months.clear();
+                                updateGrid();
+                            }));
+                });
+    }
+
     /**
      * Возвращает хедер календаря.
      *
@@ -237,9 +692,54 @@ public class CalendarView {
 
     /**
      * Обновляет сетку календаря в соответствии с текущим месяцем.
+     * Снимок месяца строится заново, поэтому сетка сразу отражает
+     * только что сделанные изменения. В других видах заново
+     * запрашиваются показанные дни.
      */
     private void updateGrid() {
+        if (mode == ViewMode.MONTH) {
+            show(months.refresh(currentMonth));
+        } else {
+            rebuildTagBar();
+            renderGrid();
+        }
+    }
+
+    /**
+     * Показывает снимок месяца и запускает подготовку соседних месяцев.
+     *
+     * @param snapshot снимок текущего месяца
+     */
+    private void show(MonthSnapshotCache.MonthSnapshot snapshot) {
+        allMonthNotes = snapshot.notes();
+        holidays = snapshot.holidays();
+        rebuildTagBar();
+        renderGrid();
+        months.prefetchAround(currentMonth);
+    }
+
+    /**
+     * Перестраивает ячейки по уже полученным заметкам месяца с учётом фильтра
+     * по тегам. Хранилище заново не опрашивается, поэтому переключение фильтра
+     * не зависит от размера архива.
+     */
+    private void renderGrid() {
+        switch (mode) {
+            case WEEKS -> weeks.refresh();
+            case WEEK -> weekTimeline.show(anchor, selectedDate);
+            case DAY -> dayTimeline.show(anchor, selectedDate);
+            case AGENDA -> agenda.reload();
+            case MONTH -> renderMonth();
+        }
+    }
+
+    /**
+     * Перестраивает сетку месяца.
+     */
+    private void renderMonth() {
         calendarGrid.getChildren().clear();
+        cells.clear();
+        monthNotes = storage.filterByTags(allMonthNotes, tagFilter, matchAllTags);
 
         LocalDate firstOfMonth = currentMonth.atDay(1);
         int startIndex = firstOfMonth.getDayOfWeek().getValue() - 1;
@@ -251,7 +751,10 @@ public class CalendarView {
             for (int col = 0; col < 7; col++) {
                 int dayNumber = cellIndex - startIndex + 1;
                 if (dayNumber >= 1 && dayNumber <= daysInMonth) {
-                    calendarGrid.add(dayCell(currentMonth.atDay(dayNumber)), col, row);
+                    LocalDate date = currentMonth.atDay(dayNumber);
+                    Button cell = dayCell(date);
+                    cells.put(date, cell);
+                    calendarGrid.add(cell, col, row);
                 }
                 cellIndex++;
             }
@@ -271,7 +774,7 @@ public class CalendarView {
         b.getStyleClass().add("calendar-day");
         b.setPrefSize(CELL, CELL);
 
-        List<Note> notes = storage.getNotesForDate(date);
+        List<Note> notes = notesFor(date);
         String holiday = holidays.get(date);
 
         VBox content = new VBox(6);
@@ -282,11 +785,7 @@ public class CalendarView {
         top.setMinHeight(20);
 
         if (holiday != null) {
-            SVGPath crown = IconFactory.createCrown();
-            crown.getStyleClass().add("calendar-holiday-icon");
-            crown.setScaleX(0.65);
-            crown.setScaleY(0.65);
-            top.getChildren().add(crown);
+            top.getChildren().add(IconFactory.createHolidayCrownImage());
         }
 
         Label num = new Label(String.valueOf(date.getDayOfMonth()));
@@ -299,57 +798,340 @@ public class CalendarView {
         bottom.setMinHeight(20);
 
         if (!notes.isEmpty()) {
-            SVGPath noteIcon = IconFactory.createSmallFileText();
-            noteIcon.getStyleClass().add("calendar-note-icon");
-            bottom.getChildren().add(noteIcon);
+            HBox marks = new HBox(4, IconFactory.createNoteImage());
+            marks.setAlignment(Pos.CENTER);
+            if (calendarColors.size() > 1) {
+                notes.stream()
+                        .map(Note::getCalendarId)
+                        .distinct()
+                        .forEach(id -> marks.getChildren().add(
+                                new Circle(3.5, calendarColors.getOrDefault(id, Color.GOLD))));
+            }
+            bottom.getChildren().add(marks);
         }
 
         content.getChildren().addAll(top, num, spacer, bottom);
         b.setGraphic(content);
 
+        boolean weekend = date.getDayOfWeek().getValue() >= 6;
+        DayType type = holidayService.getDayType(date);
+        if (!weekend && type == DayType.WEEKEND) b.getStyleClass().add("day-off");
+        if (weekend && type.isWorking()) b.getStyleClass().add("working-weekend");
         if (date.equals(today)) b.getStyleClass().add("today");
         if (date.equals(selectedDate)) b.getStyleClass().add("selected");
 
         b.setOnMouseEntered(e -> showInfo(date));
         b.setOnMouseExited(e -> infoLabel.setVisible(false));
 
+        if (notes.size() == 1) {
+            NoteDrag.install(b, notes.get(0), null);
+        }
+        installDropTarget(b, date);
+
         b.setOnMouseClicked(e -> {
             if (e.getClickCount() == 2 && !notes.isEmpty()) {
-                new NotesListModal(notes, noteToEdit -> {
-                    new NoteModal(
-                            noteToEdit.getDate(),
-                            noteToEdit,
-                            storage,
-                            this::updateGrid
-                    ).show(root.getScene().getWindow());
-                }).show(root.getScene().getWindow());
-                updateGrid();
+                openNotes(date, notes);
                 return;
             }
 
+            LocalDate previous = selectedDate;
             selectedDate = date;
             showInfo(date);
-            updateGrid();
+            addNoteButton.setDisable(false);
+            redrawDays(previous != null ? List.of(previous, date) : List.of(date));
         });
 
         return b;
     }
 
     /**
-     * Отображает информацию о дне (праздник и количество заметок).
+     * Открывает список заметок дня с переходом к редактированию.
+     *
+     * @param date  день
+     * @param notes заметки дня
+     */
+    private void openNotes(LocalDate date, List<Note> notes) {
+        new NotesListModal(date, notes, undo, changes, noteToEdit -> {
+            new NoteModal(
+                    noteToEdit.getDate(),
+                    noteToEdit,
+                    storage,
+                    undo,
+                    null
+            ).show(root.getScene().getWindow());
+        }, this::undo).show(root.getScene().getWindow());
+    }
+
+    /**
+     * Переключает вид календаря. Шкалы времени открываются на неделе
+     * (дне) выбранной даты, а если её нет — сегодняшней или первой недели месяца.
+     *
+     * @param target новый вид
+     */
+    private void setMode(ViewMode target) {
+        mode = target;
+        viewMenu.setText(target.title);
+        infoLabel.setVisible(false);
+        prevButton.setDisable(target == ViewMode.AGENDA);
+        nextButton.setDisable(target == ViewMode.AGENDA);
+
+        LocalDate focus = selectedDate != null ? selectedDate
+                : YearMonth.from(today).equals(currentMonth) ? today : currentMonth.atDay(1);
+        UnaryOperator<Map<LocalDate, List<Note>>> filter =
+                notes -> storage.filterByTags(notes, tagFilter, matchAllTags);
+        switch (target) {
+            case MONTH -> {
+                gridWrapper.getChildren().setAll(calendarGrid);
+                currentMonth = YearMonth.from(focus);
+                updateMonthLabel();
+                updateGrid();
+                return;
+            }
+            case WEEKS -> {
+                if (weeks == null) {
+                    weeks = new WeekScrollView(storage, holidayService, filter, calendarColors);
+                    weeks.setOnHover(this::showInfo);
+                    weeks.setOnOpen(this::openNotes);
+                    weeks.setOnSelect(date -> {
+                        selectedDate = date;
+                        weeks.select(date);
+                        addNoteButton.setDisable(false);
+                    });
+                    weeks.setOnMonth(month -> {
+                        currentMonth = month;
+                        updateMonthLabel();
+                    });
+                    weeks.getView().setOnMouseExited(e -> infoLabel.setVisible(false));
+                }
+                gridWrapper.getChildren().setAll(weeks.getView());
+                weeks.select(selectedDate);
+                weeks.scrollTo(currentMonth.atDay(1));
+            }
+            case WEEK -> {
+                if (weekTimeline == null) {
+                    weekTimeline = timeline(filter, 7);
+                }
+                anchor = focus.minusDays(focus.getDayOfWeek().getValue() - 1);
+                gridWrapper.getChildren().setAll(weekTimeline.getView());
+            }
+            case DAY -> {
+                if (dayTimeline == null) {
+                    dayTimeline = timeline(filter, 1);
+                }
+                anchor = focus;
+                gridWrapper.getChildren().setAll(dayTimeline.getView());
+            }
+            case AGENDA -> {
+                if (agenda == null) {
+                    agenda = new AgendaView(storage, holidayService, filter);
+                    agenda.setOnOpen(this::openNote);
+                    agenda.setOnSelect(this::selectInView);
+                }
+                gridWrapper.getChildren().setAll(agenda.getView());
+            }
+        }
+        updateMonthLabel();
+        renderGrid();
+    }
+
+    /**
+     * Создаёт шкалу времени с общими обработчиками выбора дня и открытия заметки.
+     */
+    private TimelineView timeline(UnaryOperator<Map<LocalDate, List<Note>>> filter, int days) {
+        TimelineView view = new TimelineView(storage, holidayService, filter, days);
+        view.setOnOpen(this::openNote);
+        view.setOnSelect(date -> {
+            selectInView(date);
+            renderGrid();
+        });
+        return view;
+    }
+
+    /**
+     * Выбирает дату в шкалах времени и повестке.
+     *
+     * @param date выбранная дата
+     */
+    private void selectInView(LocalDate date) {
+        selectedDate = date;
+        addNoteButton.setDisable(false);
+        showInfo(date, List.of());
+    }
+
+    /**
+     * Открывает заметку на редактирование.
+     *
+     * @param note заметка или экземпляр серии
+     */
+    private void openNote(Note note) {
+        new NoteModal(note.getDate(), note, storage, undo, null)
+                .show(root.getScene().getWindow());
+    }
+
+    /**
+     * Перестраивает панель фильтра по тегам заметок видимых календарей.
+     * Выбранные теги, которых больше нет, снимаются с фильтра.
+     */
+    private void rebuildTagBar() {
+        SortedSet<String> tags = storage.isIndexLoaded() ? storage.getTags() : Collections.emptySortedSet();
+        shownTags = tags;
+        tagFilter.retainAll(tags);
+        tagBar.getChildren().clear();
+        tagBar.setVisible(!tags.isEmpty());
+        if (tags.isEmpty()) {
+            return;
+        }
+
+        Label label = new Label("Теги:");
+        label.getStyleClass().add("calendar-info");
+        tagBar.getChildren().add(label);
+
+        for (String tag : tags) {
+            ToggleButton chip = new ToggleButton("#" + tag);
+            chip.getStyleClass().add("tag-filter");
+            chip.setSelected(tagFilter.contains(tag));
+            chip.setOnAction(e -> {
+                if (chip.isSelected()) {
+                    tagFilter.add(tag);
+                } else {
+                    tagFilter.remove(tag);
+                }
+                renderGrid();
+            });
+            tagBar.getChildren().add(chip);
+        }
+
+        Button mode = new Button(matchAllTags ? "Все теги" : "Любой тег");
+        mode.getStyleClass().add("tag-filter-mode");
+        mode.setOnAction(e -> {
+            matchAllTags = !matchAllTags;
+            mode.setText(matchAllTags ? "Все теги" : "Любой тег");
+            if (!tagFilter.isEmpty()) {
+                renderGrid();
+            }
+        });
+        tagBar.getChildren().add(mode);
+    }
+
+    /**
+     * Делает ячейку дня целью перетаскивания заметок.
+     *
+     * @param cell ячейка дня
+     * @param date дата ячейки
+     */
+    private void installDropTarget(Button cell, LocalDate date) {
+        cell.setOnDragOver(e -> {
+            Note dragged = NoteDrag.of(e);
+            if (dragged != null && !date.equals(dragged.getDate())) {
+                e.acceptTransferModes(TransferMode.MOVE);
+            }
+            e.consume();
+        });
+        cell.setOnDragEntered(e -> {
+            Note dragged = NoteDrag.of(e);
+            if (dragged != null && !date.equals(dragged.getDate())) {
+                cell.getStyleClass().add("drop-target");
+            }
+        });
+        cell.setOnDragExited(e -> cell.getStyleClass().remove("drop-target"));
+        cell.setOnDragDropped(e -> {
+            Note dragged = NoteDrag.of(e);
+            if (dragged == null) {
+                e.setDropCompleted(false);
+                return;
+            }
+            undo.moveNote(dragged, date);
+            e.setDropCompleted(true);
+            e.consume();
+
+            new UndoToast("Заметка перенесена на " + MOVE_DF.format(date), this::undo)
+                    .show(root.getScene().getWindow());
+        });
+    }
+
+    /**
+     * Перечитывает заметки указанных дней и перестраивает только их ячейки.
+     *
+     * @param dates изменившиеся даты
+     */
+    private void refreshDays(Collection<LocalDate> dates) {
+        Map<LocalDate, List<Note>> notes = new HashMap<>(allMonthNotes);
+        for (LocalDate date : dates) {
+            if (!YearMonth.from(date).equals(currentMonth)) {
+                continue;
+            }
+            List<Note> day = storage.getNotesForDate(date);
+            if (day.isEmpty()) {
+                notes.remove(date);
+            } else {
+                notes.put(date, day);
+            }
+        }
+        allMonthNotes = notes;
+        monthNotes = storage.filterByTags(allMonthNotes, tagFilter, matchAllTags);
+        redrawDays(dates);
+    }
+
+    /**
+     * Перестраивает ячейки указанных дней по уже полученным заметкам месяца.
+     *
+     * @param dates даты
+     */
+    private void redrawDays(Collection<LocalDate> dates) {
+        for (LocalDate date : dates) {
+            Button old = cells.get(date);
+            if (old == null) {
+                continue;
+            }
+            Button cell = dayCell(date);
+            GridPane.setConstraints(cell, GridPane.getColumnIndex(old), GridPane.getRowIndex(old));
+            calendarGrid.getChildren().set(calendarGrid.getChildren().indexOf(old), cell);
+            cells.put(date, cell);
+        }
+    }
+
+    /**
+     * Возвращает заметки за дату текущего месяца.
+     * Пока индекс заметок не загружен, список пуст.
+     *
+     * @param date дата
+     * @return заметки за дату
+     */
+    private List<Note> notesFor(LocalDate date) {
+        return monthNotes.getOrDefault(date, List.of());
+    }
+
+    /**
+     * Отображает информацию о дне (праздник, количество заметок и для
+     * выбранной будущей даты — рабочие дни до неё).
      *
      * @param date дата, для которой показывается информация
      */
     private void showInfo(LocalDate date) {
-        String holiday = holidays.get(date);
-        List<Note> notes = storage.getNotesForDate(date);
+        showInfo(date, notesFor(date));
+    }
+
+    /**
+     * Отображает информацию о дне по уже полученным заметкам дня.
+     *
+     * @param date  дата
+     * @param notes заметки дня
+     */
+    private void showInfo(LocalDate date, List<Note> notes) {
+        String dayName = holidayService.getDayName(date);
 
         StringBuilder sb = new StringBuilder();
-        if (holiday != null) sb.append(holiday);
+        if (dayName != null) sb.append(dayName);
         if (!notes.isEmpty()) {
             if (sb.length() > 0) sb.append(" | ");
             sb.append("Заметок: ").append(notes.size());
         }
+        LocalDate today = LocalDate.now();
+        if (date.equals(selectedDate) && date.isAfter(today)) {
+            if (sb.length() > 0) sb.append(" | ");
+            sb.append(workingDaysText(workingDays.workingDaysBetween(today, date)))
+                    .append(" до ").append(MOVE_DF.format(date));
+        }
 
         if (sb.length() > 0) {
             infoLabel.setText(sb.toString());
@@ -359,32 +1141,97 @@ public class CalendarView {
         }
     }
 
-    /** Переход к предыдущему месяцу. */
+    /**
+     * Возвращает число рабочих дней с согласованным существительным:
+     * «1 рабочий день», «3 рабочих дня», «12 рабочих дней».
+     */
+    private static String workingDaysText(int count) {
+        int mod100 = count % 100;
+        int mod10 = count % 10;
+        if (mod100 >= 11 && mod100 <= 14 || mod10 == 0 || mod10 >= 5) {
+            return count + " рабочих дней";
+        }
+        return mod10 == 1 ? count + " рабочий день" : count + " рабочих дня";
+    }
+
+    /**
+     * Отменяет последнюю операцию над заметками. Сетка обновляется
+     * по изменениям, которые отмена вносит в хранилище.
+     */
+    public void undo() {
+        undo.undo().ifPresent(title -> {
+            new UndoToast("Отменено: " + title, "Вернуть", this::redo)
+                    .show(root.getScene().getWindow());
+        });
+    }
+
+    /**
+     * Повторяет последнюю отменённую операцию.
+     */
+    public void redo() {
+        undo.redo();
+    }
+
+    /** Переход к предыдущему месяцу (в шкалах времени — к предыдущей неделе или дню). */
     private void prevMonth() {
-        currentMonth = currentMonth.minusMonths(1);
-        holidays = holidayService.getHolidaysForMonth(currentMonth);
-        selectedDate = null;
-        updateMonthLabel();
-        updateGrid();
+        switch (mode) {
+            case WEEKS -> weeks.scrollTo(currentMonth.minusMonths(1).atDay(1));
+            case WEEK, DAY -> shiftAnchor(-1);
+            case AGENDA -> { }
+            case MONTH -> showMonth(currentMonth.minusMonths(1));
+        }
     }
 
-    /** Переход к следующему месяцу. */
+    /** Переход к следующему месяцу (в шкалах времени — к следующей неделе или дню). */
     private void nextMonth() {
-        currentMonth = currentMonth.plusMonths(1);
-        holidays = holidayService.getHolidaysForMonth(currentMonth);
+        switch (mode) {
+            case WEEKS -> weeks.scrollTo(currentMonth.plusMonths(1).atDay(1));
+            case WEEK, DAY -> shiftAnchor(1);
+            case AGENDA -> { }
+            case MONTH -> showMonth(currentMonth.plusMonths(1));
+        }
+    }
+
+    /**
+     * Сдвигает шкалу времени на неделю или день.
+     *
+     * @param direction направление: -1 назад, 1 вперёд
+     */
+    private void shiftAnchor(int direction) {
+        anchor = anchor.plusDays(direction * (mode == ViewMode.WEEK ? 7L : 1L));
+        currentMonth = YearMonth.from(anchor);
+        updateMonthLabel();
+        renderGrid();
+    }
+
+    /**
+     * Показывает месяц сетки из кэша снимков.
+     *
+     * @param month месяц
+     */
+    private void showMonth(YearMonth month) {
+        currentMonth = month;
         selectedDate = null;
         updateMonthLabel();
-        updateGrid();
+        show(months.get(currentMonth));
     }
 
-    /** Обновляет текст заголовка текущего месяца. */
+    /** Обновляет текст заголовка: месяц, неделя, день или период повестки. */
     private void updateMonthLabel() {
-        String m = currentMonth.getMonth()
-                .getDisplayName(TextStyle.FULL_STANDALONE, new Locale("ru"));
-        monthLabel.setText(
-                m.substring(0, 1).toUpperCase() + m.substring(1)
-                        + " " + currentMonth.getYear()
-        );
+        switch (mode) {
+            case WEEK -> monthLabel.setText(
+                    RANGE_DF.format(anchor) + " — " + LABEL_DF.format(anchor.plusDays(6)));
+            case DAY -> monthLabel.setText(LABEL_DF.format(anchor));
+            case AGENDA -> monthLabel.setText("Ближайшие " + AgendaView.DAYS + " дней");
+            default -> {
+                String m = currentMonth.getMonth()
+                        .getDisplayName(TextStyle.FULL_STANDALONE, new Locale("ru"));
+                monthLabel.setText(
+                        m.substring(0, 1).toUpperCase() + m.substring(1)
+                                + " " + currentMonth.getYear()
+                );
+            }
+        }
     }
 
     /**
@@ -0,0 +1,95 @@
+package com.tsarskiy.view;
+
+import com.tsarskiy.storage.NoteChange;
+import com.tsarskiy.storage.NoteRepository;
+import javafx.application.Platform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Передаёт изменения заметок из потока оповещений хранилища
+ * в поток JavaFX.
+ * <p>
+ * Изменения копятся в очереди; на ближайшем проходе потока JavaFX
+ * подписчики получают их одной пачкой в порядке изменений. Пачка заметок
+ * из локального API или синхронизации поэтому даёт одно обновление
+ * представлений, а не по одному на заметку.
+ */
+final class ChangeFeed {
+
+    private static final Logger logger = LogManager.getLogger(ChangeFeed.class);
+
+    /** Изменения, ещё не переданные подписчикам. */
+    private final Queue<NoteChange> pending = new ConcurrentLinkedQueue<>();
+
+    /** Передача пачки уже запланирована в потоке JavaFX. */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /** Подписчики; окна подписываются на время показа. */
+    private final List<Consumer<List<NoteChange>>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Создаёт ленту и подписывает её на изменения хранилища.
+     *
+     * @param storage хранилище заметок
+     */
+    ChangeFeed(NoteRepository storage) {
+        storage.addChangeListener(this::offer);
+    }
+
+    /**
+     * Подписывает обработчик пачек изменений. Вызывается в потоке JavaFX.
+     *
+     * @param listener обработчик
+     */
+    void subscribe(Consumer<List<NoteChange>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Отписывает обработчик пачек изменений.
+     *
+     * @param listener обработчик
+     */
+    void unsubscribe(Consumer<List<NoteChange>> listener) {
+        listeners.remove(listener);
+    }
+
+    private void offer(NoteChange change) {
+        pending.add(change);
+        if (scheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::deliver);
+        }
+    }
+
+    /**
+     * Забирает накопленные изменения и передаёт их подписчикам.
+     * Флаг снимается до чтения очереди, поэтому изменение, пришедшее
+     * во время передачи, попадёт в следующую пачку.
+     */
+    private void deliver() {
+        scheduled.set(false);
+        List<NoteChange> batch = new ArrayList<>();
+        for (NoteChange change = pending.poll(); change != null; change = pending.poll()) {
+            batch.add(change);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (Consumer<List<NoteChange>> listener : listeners) {
+            try {
+                listener.accept(batch);
+            } catch (RuntimeException e) {
+                logger.error("Ошибка обработчика изменений заметок", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.tsarskiy.view;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.service.UndoManager;
+import com.tsarskiy.storage.NoteRevision;
+import com.tsarskiy.storage.NoteRepository;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.*;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.SVGPath;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.stage.Window;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Модальное окно истории изменений заметки.
+ * <p>
+ * Показывает сохранённые версии от новых к старым, текст выбранной версии
+ * и позволяет восстановить её. История читается из хранилища
+ * только при открытии окна.
+ */
+public class HistoryModal {
+
+    private static final DateTimeFormatter DF =
+            DateTimeFormatter.ofPattern("dd.MM.yyyy, HH:mm:ss");
+
+    private final Note note;
+    private final NoteRepository storage;
+    private final UndoManager undo;
+    private final Runnable onRestore;
+
+    private double dragOffsetX;
+    private double dragOffsetY;
+
+    /**
+     * Создаёт окно истории заметки.
+     *
+     * @param note      заметка
+     * @param storage   хранилище заметок
+     * @param undo      история отмены, через которую восстанавливается версия
+     * @param onRestore действие после восстановления версии
+     */
+    public HistoryModal(Note note, NoteRepository storage, UndoManager undo, Runnable onRestore) {
+        this.note = note;
+        this.storage = storage;
+        this.undo = undo;
+        this.onRestore = onRestore;
+    }
+
+    /**
+     * Отображает модальное окно.
+     *
+     * @param owner родительское окно
+     */
+    public void show(Window owner) {
+        Stage stage = new Stage();
+        stage.initOwner(owner);
+        stage.initModality(Modality.APPLICATION_MODAL);
+        stage.initStyle(StageStyle.TRANSPARENT);
+        stage.setResizable(false);
+
+        VBox root = new VBox(14);
+        root.getStyleClass().add("modal-card");
+        root.setPadding(new Insets(18));
+
+        HBox header = new HBox(10);
+        header.setAlignment(Pos.CENTER_LEFT);
+
+        Label title = new Label("История изменений");
+        title.getStyleClass().add("modal-title");
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        SVGPath closeIcon = IconFactory.createX();
+        closeIcon.getStyleClass().add("icon-gold");
+
+        StackPane close = new StackPane(closeIcon);
+        close.setPadding(new Insets(6));
+        close.setOnMouseClicked(e -> stage.close());
+
+        header.getChildren().addAll(title, spacer, close);
+        header.setOnMousePressed(e -> {
+            dragOffsetX = e.getScreenX() - stage.getX();
+            dragOffsetY = e.getScreenY() - stage.getY();
+        });
+        header.setOnMouseDragged(e -> {
+            stage.setX(e.getScreenX() - dragOffsetX);
+            stage.setY(e.getScreenY() - dragOffsetY);
+        });
+
+        List<NoteRevision> revisions = storage.getHistory(note);
+        Collections.reverse(revisions);
+
+        ListView<NoteRevision> list = new ListView<>();
+        list.getItems().setAll(revisions);
+        list.setPrefWidth(250);
+        list.setCellFactory(v -> new ListCell<>() {
+            @Override
+            protected void updateItem(NoteRevision item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null
+                        ? null
+                        : "Версия " + item.number() + "\n" + DF.format(item.savedAt()));
+            }
+        });
+
+        Label revisionTitle = new Label();
+        revisionTitle.getStyleClass().add("note-title");
+        revisionTitle.setWrapText(true);
+
+        Label revisionInfo = new Label();
+        revisionInfo.getStyleClass().add("note-content");
+        revisionInfo.setOpacity(0.7);
+
+        TextArea content = new TextArea();
+        content.getStyleClass().add("form-textarea");
+        content.setEditable(false);
+        content.setWrapText(true);
+        VBox.setVgrow(content, Priority.ALWAYS);
+
+        Button restore = new Button("Восстановить");
+        restore.getStyleClass().addAll("modal-button", "submit");
+        restore.setDisable(true);
+        restore.setOnAction(e -> {
+            NoteRevision selected = list.getSelectionModel().getSelectedItem();
+            if (selected != null) {
+                undo.restoreRevision(note, selected);
+                stage.close();
+                if (onRestore != null) {
+                    onRestore.run();
+                }
+            }
+        });
+
+        list.getSelectionModel().selectedItemProperty().addListener((obs, old, item) -> {
+            restore.setDisable(item == null || item.number() == revisions.size());
+            if (item == null) {
+                return;
+            }
+            revisionTitle.setText(item.title().isBlank() ? "Без заголовка" : item.title());
+            revisionInfo.setText("Дата: " + item.date()
+                    + (item.time() != null ? ", время: " + item.time() : ""));
+            content.setText(item.content());
+        });
+
+        VBox details = new VBox(8, revisionTitle, revisionInfo, content);
+        HBox.setHgrow(details, Priority.ALWAYS);
+
+        HBox bodyRow = new HBox(14, list, details);
+        VBox.setVgrow(bodyRow, Priority.ALWAYS);
+
+        if (revisions.isEmpty()) {
+            Label empty = new Label("У заметки ещё нет сохранённых версий");
+            empty.getStyleClass().add("modal-empty");
+            root.getChildren().addAll(header, empty);
+        } else {
+            HBox actions = new HBox(12, restore);
+            actions.setAlignment(Pos.CENTER_RIGHT);
+            root.getChildren().addAll(header, bodyRow, actions);
+            list.getSelectionModel().selectFirst();
+        }
+
+        Scene scene = new Scene(root, 760, 480);
+        scene.setFill(Color.TRANSPARENT);
+        Styles.apply(scene);
+
+        stage.setScene(scene);
+        stage.showAndWait();
+    }
+}
@@ -1,21 +1,110 @@
 package com.tsarskiy.view;
 
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.SVGPath;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.transform.Transform;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Фабрика иконок приложения.
+ * <p>
+ * Иконки, которые повторяются в каждой ячейке календаря (корона праздника,
+ * значок заметки), выдаются как {@link ImageView} над общим растровым
+ * изображением: SVG-путь разбирается и растеризуется один раз, а при
+ * перерисовке сетки создаются только лёгкие узлы {@link ImageView}.
+ * Остальные иконки создаются по одной на окно и остаются векторными.
+ */
 public class IconFactory {
     
     private static final Color ICON_COLOR = Color.web("#EAB308");
 
+    /** Цвет короны праздника в ячейке календаря (как {@code .calendar-holiday-icon}). */
+    private static final Color HOLIDAY_COLOR = Color.web("#FACC15");
+
+    /** Масштаб растеризации, чтобы иконки оставались чёткими на HiDPI-экранах. */
+    private static final double RASTER_SCALE = 2.0;
+
+    /** Масштаб короны праздника относительно исходного пути. */
+    private static final double HOLIDAY_CROWN_SCALE = 0.65;
+
+    private static final String CROWN_PATH =
+            "M11.562 3.266a.5.5 0 0 1 .876 0L15.39 8.87a1 1 0 0 0 1.516.294L21.183 5.5a.5.5 0 0 1 .798.519l-2.834 10.246a1 1 0 0 1-.956.734H5.81a1 1 0 0 1-.957-.734L2.02 6.02a.5.5 0 0 1 .798-.519l4.276 3.664a1 1 0 0 0 1.516-.294z M5 21h14";
+
+    private static final String SMALL_FILE_TEXT_PATH =
+            "M14 2H6a2 2 0 0 0-2 2v16a2 2 0 0 0 2 2h12a2 2 0 0 0 2-2V8z M14 2v6h6 M16 13H8 M16 17H8";
+
+    /**
+     * Растровые копии иконок по ключу. Доступ только из потока JavaFX,
+     * так как растеризация выполняется через {@link SVGPath#snapshot}.
+     */
+    private static final Map<String, Image> RASTER_CACHE = new HashMap<>();
+
     public static SVGPath createCrown() {
         SVGPath crown = new SVGPath();
-        crown.setContent(
-                "M11.562 3.266a.5.5 0 0 1 .876 0L15.39 8.87a1 1 0 0 0 1.516.294L21.183 5.5a.5.5 0 0 1 .798.519l-2.834 10.246a1 1 0 0 1-.956.734H5.81a1 1 0 0 1-.957-.734L2.02 6.02a.5.5 0 0 1 .798-.519l4.276 3.664a1 1 0 0 0 1.516-.294z M5 21h14"
-        );
+        crown.setContent(CROWN_PATH);
 
         crown.getStyleClass().add("crown-icon");
         return crown;
     }
+
+    /**
+     * Возвращает корону праздника для ячейки календаря.
+     *
+     * @return узел над общим растровым изображением короны
+     */
+    public static ImageView createHolidayCrownImage() {
+        return cachedImage("holiday-crown", () -> {
+            SVGPath crown = new SVGPath();
+            crown.setContent(CROWN_PATH);
+            crown.setFill(Color.TRANSPARENT);
+            crown.setStroke(HOLIDAY_COLOR);
+            crown.setStrokeWidth(2);
+            crown.setStrokeLineCap(StrokeLineCap.ROUND);
+            crown.setStrokeLineJoin(StrokeLineJoin.ROUND);
+            return crown;
+        }, HOLIDAY_CROWN_SCALE);
+    }
+
+    /**
+     * Возвращает значок заметки для ячейки календаря.
+     *
+     * @return узел над общим растровым изображением значка
+     */
+    public static ImageView createNoteImage() {
+        return cachedImage("note", IconFactory::createSmallFileText, 1.0);
+    }
+
+    /**
+     * Выдаёт {@link ImageView} над растровой копией иконки,
+     * растеризуя её при первом обращении.
+     *
+     * @param key       ключ иконки в кэше
+     * @param prototype фабрика векторного прототипа иконки
+     * @param scale     масштаб иконки относительно исходного пути
+     * @return узел с иконкой
+     */
+    private static ImageView cachedImage(String key, Supplier<SVGPath> prototype, double scale) {
+        Image image = RASTER_CACHE.computeIfAbsent(key, k -> {
+            SnapshotParameters params = new SnapshotParameters();
+            params.setFill(Color.TRANSPARENT);
+            params.setTransform(Transform.scale(scale * RASTER_SCALE, scale * RASTER_SCALE));
+            return prototype.get().snapshot(params, null);
+        });
+
+        ImageView view = new ImageView(image);
+        view.setFitWidth(image.getWidth() / RASTER_SCALE);
+        view.setFitHeight(image.getHeight() / RASTER_SCALE);
+        view.setSmooth(true);
+        return view;
+    }
     
     public static SVGPath createCalendar() {
         SVGPath path = new SVGPath();
@@ -109,7 +198,7 @@ public class IconFactory {
     
     public static SVGPath createSmallFileText() {
         SVGPath path = new SVGPath();
-        path.setContent("M14 2H6a2 2 0 0 0-2 2v16a2 2 0 0 0 2 2h12a2 2 0 0 0 2-2V8z M14 2v6h6 M16 13H8 M16 17H8");
+        path.setContent(SMALL_FILE_TEXT_PATH);
         path.setFill(Color.TRANSPARENT);
         path.setStroke(ICON_COLOR);
         path.setStrokeWidth(1.5);
@@ -0,0 +1,75 @@
+package com.tsarskiy.view;
+
+import com.tsarskiy.model.Note;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.DataFormat;
+import javafx.scene.input.DragEvent;
+import javafx.scene.input.Dragboard;
+import javafx.scene.input.TransferMode;
+import javafx.scene.paint.Color;
+
+/**
+ * Перетаскивание заметки на другой день.
+ * <p>
+ * В буфер перетаскивания кладётся только идентификатор заметки, а сама
+ * перетаскиваемая заметка (в том числе экземпляр серии с датой повторения)
+ * хранится здесь до окончания жеста. Используется из потока JavaFX.
+ */
+final class NoteDrag {
+
+    /** Формат данных перетаскиваемой заметки. */
+    static final DataFormat FORMAT = new DataFormat("application/x-tsar-note");
+
+    /** Заметка текущего жеста или {@code null}. */
+    private static Note dragged;
+
+    private NoteDrag() {
+    }
+
+    /**
+     * Делает узел источником перетаскивания заметки.
+     *
+     * @param source  узел, за который заметку можно взять
+     * @param note    заметка
+     * @param onMoved действие после успешного переноса или {@code null}
+     */
+    static void install(Node source, Note note, Runnable onMoved) {
+        source.setOnDragDetected(e -> {
+            Dragboard board = source.startDragAndDrop(TransferMode.MOVE);
+            ClipboardContent content = new ClipboardContent();
+            content.put(FORMAT, note.getId());
+            board.setContent(content);
+
+            SnapshotParameters params = new SnapshotParameters();
+            params.setFill(Color.TRANSPARENT);
+            board.setDragView(source.snapshot(params, null));
+
+            dragged = note;
+            e.consume();
+        });
+        source.setOnDragDone(e -> {
+            dragged = null;
+            if (e.getTransferMode() == TransferMode.MOVE && onMoved != null) {
+                onMoved.run();
+            }
+            e.consume();
+        });
+    }
+
+    /**
+     * Возвращает заметку, которую перетаскивают в событии.
+     *
+     * @param event событие перетаскивания
+     * @return заметка или {@code null}, если перетаскивается не заметка
+     */
+    static Note of(DragEvent event) {
+        Note note = dragged;
+        if (note == null || !event.getDragboard().hasContent(FORMAT)
+                || !note.getId().equals(event.getDragboard().getContent(FORMAT))) {
+            return null;
+        }
+        return note;
+    }
+}
@@ -1,50 +1,89 @@
 package com.tsarskiy.view;
 
+import com.tsarskiy.model.Attachment;
 import com.tsarskiy.model.Note;
-import com.tsarskiy.storage.Storage;
+import com.tsarskiy.model.Recurrence;
+import com.tsarskiy.service.UndoManager;
+import com.tsarskiy.storage.CalendarRepository;
+import com.tsarskiy.storage.Workspace;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.shape.SVGPath;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.Window;
 import javafx.stage.StageStyle;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * Модальное окно создания и редактирования заметки.
  * <p>
  * Используется для добавления новой заметки или изменения существующей.
- * Поддерживает ввод заголовка и текста заметки,
- * а также сохраняет изменения в {@link Storage}.
+ * Поддерживает ввод заголовка, текста, времени с напоминанием и правила повторения заметки,
+ * прикрепление файлов, а также сохраняет изменения в {@link CalendarRepository} через
+ * {@link UndoManager}, чтобы создание и правку можно было отменить.
+ * Файлы копируются в хранилище вложений в фоновом потоке сразу после выбора.
+ * Для существующей заметки доступна история изменений ({@link HistoryModal}).
  */
 public class NoteModal {
 
     private final LocalDate date;
     private final Note note;
-    private final Storage storage;
+    private final CalendarRepository storage;
+    private final UndoManager undo;
     private final Runnable onSave;
     private Stage stage;
 
+    /** Вложения редактируемой заметки. */
+    private final List<Attachment> attachments = new ArrayList<>();
+
+    /** Первый пункт списка повторов; остальные идут в порядке {@link Recurrence.Frequency}. */
+    private static final String NO_REPEAT = "Не повторять";
+
+    /** Варианты напоминания в списке. */
+    private static final String[] REMINDER_TITLES = {
+            "Без напоминания", "В момент события", "За 5 минут",
+            "За 15 минут", "За 1 час", "За 1 день"
+    };
+
+    /** Смещения напоминаний в минутах для {@link #REMINDER_TITLES}. */
+    private static final Integer[] REMINDER_MINUTES = {null, 0, 5, 15, 60, 24 * 60};
+
     /**
      * Создаёт модальное окно заметки.
      *
      * @param date    дата, к которой относится заметка
      * @param note    редактируемая заметка или {@code null} при создании новой
      * @param storage хранилище заметок
-     * @param onSave  действие, выполняемое после сохранения
+     * @param undo    стек отмены, через который сохраняется заметка
+     * @param onSave  действие, выполняемое после сохранения, или {@code null};
+     *                календарь обновляется по изменениям хранилища сам
      */
-    public NoteModal(LocalDate date, Note note, Storage storage, Runnable onSave) {
+    public NoteModal(LocalDate date, Note note, CalendarRepository storage, UndoManager undo, Runnable onSave) {
         this.date = date;
         this.note = note;
         this.storage = storage;
+        this.undo = undo;
         this.onSave = onSave;
+        if (note != null) {
+            attachments.addAll(note.getAttachments());
+        }
     }
 
     /**
@@ -60,7 +99,8 @@ public class NoteModal {
 
         VBox root = createContent();
 
-        Scene scene = new Scene(root, 600, 500);
+        boolean withCalendar = note == null && storage.getWorkspaces().size() > 1;
+        Scene scene = new Scene(root, 600, withCalendar ? 900 : 820);
         final double[] dragDelta = new double[2];
 
         root.setOnMousePressed(e -> {
@@ -74,9 +114,7 @@ public class NoteModal {
         });
 
         scene.setFill(javafx.scene.paint.Color.TRANSPARENT);
-        scene.getStylesheets().add(
-                getClass().getResource("/styles.css").toExternalForm()
-        );
+        Styles.apply(scene);
 
         stage.setScene(scene);
         stage.showAndWait();
@@ -156,6 +194,98 @@ public class NoteModal {
         VBox.setVgrow(contentArea, Priority.ALWAYS);
         VBox.setVgrow(contentGroup, Priority.ALWAYS);
 
+        Label timeLabel = new Label("Время и напоминание");
+        timeLabel.getStyleClass().add("form-label");
+
+        TextField timeField = new TextField();
+        timeField.getStyleClass().add("form-input");
+        timeField.setPromptText("ЧЧ:ММ");
+        timeField.setPrefColumnCount(6);
+        if (note != null && note.getTime() != null) {
+            timeField.setText(note.getTime().toString());
+        }
+
+        ComboBox<String> reminderBox = new ComboBox<>();
+        reminderBox.getStyleClass().add("form-input");
+        reminderBox.getItems().addAll(REMINDER_TITLES);
+        reminderBox.getSelectionModel().select(0);
+        if (note != null && note.getReminderMinutes() != null) {
+            for (int i = 1; i < REMINDER_MINUTES.length; i++) {
+                if (REMINDER_MINUTES[i].equals(note.getReminderMinutes())) {
+                    reminderBox.getSelectionModel().select(i);
+                }
+            }
+        }
+
+        HBox timeRow = new HBox(12, timeField, reminderBox);
+        timeRow.setAlignment(Pos.CENTER_LEFT);
+
+        VBox timeGroup = new VBox(8, timeLabel, timeRow);
+
+        Recurrence current = note != null ? note.getRecurrence() : null;
+
+        Label repeatLabel = new Label("Повтор");
+        repeatLabel.getStyleClass().add("form-label");
+
+        ComboBox<String> repeatBox = new ComboBox<>();
+        repeatBox.getStyleClass().add("form-input");
+        repeatBox.getItems().add(NO_REPEAT);
+        for (Recurrence.Frequency f : Recurrence.Frequency.values()) {
+            repeatBox.getItems().add(f.getTitle());
+        }
+        repeatBox.getSelectionModel().select(
+                current != null ? current.getFrequency().ordinal() + 1 : 0
+        );
+
+        TextField countField = new TextField();
+        countField.getStyleClass().add("form-input");
+        countField.setPromptText("Сколько раз");
+        countField.setPrefColumnCount(6);
+        if (current != null && current.getCount() > 0) {
+            countField.setText(String.valueOf(current.getCount()));
+        }
+
+        DatePicker untilPicker = new DatePicker(current != null ? current.getUntil() : null);
+        untilPicker.getStyleClass().add("form-input");
+        untilPicker.setPromptText("До даты");
+
+        countField.disableProperty().bind(
+                repeatBox.getSelectionModel().selectedIndexProperty().isEqualTo(0));
+        untilPicker.disableProperty().bind(countField.disableProperty());
+
+        HBox repeatRow = new HBox(12, repeatBox, countField, untilPicker);
+        repeatRow.setAlignment(Pos.CENTER_LEFT);
+
+        VBox repeatGroup = new VBox(8, repeatLabel, repeatRow);
+
+        Label tagsLabel = new Label("Теги");
+        tagsLabel.getStyleClass().add("form-label");
+
+        TextField tagsField = new TextField();
+        tagsField.getStyleClass().add("form-input");
+        tagsField.setPromptText("Через запятую: работа, семья");
+        if (note != null) {
+            tagsField.setText(String.join(", ", note.getTags()));
+        }
+
+        VBox tagsGroup = new VBox(8, tagsLabel, tagsField);
+
+        List<Workspace> workspaces = storage.getWorkspaces();
+        ComboBox<String> calendarBox = new ComboBox<>();
+        calendarBox.getStyleClass().add("form-input");
+        workspaces.forEach(w -> calendarBox.getItems().add(w.getName()));
+        calendarBox.getSelectionModel().select(0);
+        boolean chooseCalendar = note == null && workspaces.size() > 1;
+
+        Label calendarLabel = new Label("Календарь");
+        calendarLabel.getStyleClass().add("form-label");
+        VBox calendarGroup = new VBox(8, calendarLabel, calendarBox);
+
+        Supplier<String> targetCalendar = () -> note != null ? note.getCalendarId()
+                : chooseCalendar ? workspaces.get(calendarBox.getSelectionModel().getSelectedIndex()).getId()
+                : null;
+        VBox attachmentsGroup = createAttachmentsGroup(targetCalendar, calendarBox);
+
         Button cancelButton = new Button("Отмена");
         cancelButton.getStyleClass().addAll("modal-button", "cancel");
         cancelButton.setOnAction(e -> stage.close());
@@ -164,42 +294,221 @@ public class NoteModal {
         saveButton.getStyleClass().addAll("modal-button", "submit");
         saveButton.setDefaultButton(true);
         saveButton.setOnAction(e ->
-                saveNote(titleField.getText(), contentArea.getText())
+                saveNote(
+                        titleField.getText(),
+                        contentArea.getText(),
+                        timeField.getText(),
+                        REMINDER_MINUTES[reminderBox.getSelectionModel().getSelectedIndex()],
+                        repeatBox.getSelectionModel().getSelectedIndex(),
+                        countField.getText(),
+                        untilPicker.getValue(),
+                        tagsField.getText(),
+                        chooseCalendar
+                                ? workspaces.get(calendarBox.getSelectionModel().getSelectedIndex()).getId()
+                                : null
+                )
         );
 
         HBox actions = new HBox(12, cancelButton, saveButton);
         actions.setAlignment(Pos.CENTER_RIGHT);
+        if (note != null) {
+            Button historyButton = new Button("История");
+            historyButton.getStyleClass().addAll("modal-button", "cancel");
+            historyButton.setOnAction(e -> new HistoryModal(note, storage, undo, () -> {
+                stage.close();
+                if (onSave != null) {
+                    onSave.run();
+                }
+            }).show(stage));
+
+            Region actionsSpacer = new Region();
+            HBox.setHgrow(actionsSpacer, Priority.ALWAYS);
+            actions.getChildren().addAll(0, List.of(historyButton, actionsSpacer));
+        }
 
         titleGroup.getChildren().addAll(titleLabel, titleField);
         contentGroup.getChildren().addAll(contentLabel, contentArea);
 
-        form.getChildren().addAll(titleGroup, contentGroup, actions);
+        form.getChildren().addAll(titleGroup, contentGroup, timeGroup, repeatGroup, tagsGroup, attachmentsGroup);
+        Runnable toggleAttachments = () -> {
+            boolean supported = storage.supportsAttachments(targetCalendar.get());
+            attachmentsGroup.setVisible(supported);
+            attachmentsGroup.setManaged(supported);
+        };
+        toggleAttachments.run();
+        calendarBox.getSelectionModel().selectedIndexProperty().addListener((obs, old, index) -> toggleAttachments.run());
+        if (chooseCalendar) {
+            form.getChildren().add(calendarGroup);
+        }
+        form.getChildren().add(actions);
         return form;
     }
 
+    /**
+     * Создаёт блок вложений: список прикреплённых файлов и кнопку выбора файла.
+     * Файлы копируются в календарь заметки, поэтому после первого вложения
+     * календарь новой заметки больше не выбирается. Для зашифрованного
+     * календаря блок скрывается.
+     *
+     * @param calendarId  календарь, в который копируются файлы
+     * @param calendarBox выбор календаря новой заметки
+     * @return контейнер блока вложений
+     */
+    private VBox createAttachmentsGroup(Supplier<String> calendarId, ComboBox<String> calendarBox) {
+        Label label = new Label("Вложения");
+        label.getStyleClass().add("form-label");
+
+        FlowPane list = new FlowPane(8, 8);
+        Runnable refresh = () -> {
+            list.getChildren().clear();
+            for (Attachment attachment : attachments) {
+                Label chip = new Label(attachment.getName() + "  ✕");
+                chip.getStyleClass().add("attachment-chip");
+                chip.setOnMouseClicked(e -> {
+                    attachments.remove(attachment);
+                    list.getChildren().remove(chip);
+                });
+                list.getChildren().add(chip);
+            }
+        };
+        refresh.run();
+
+        Button attach = new Button("Прикрепить файл…");
+        attach.getStyleClass().addAll("modal-button", "cancel");
+        attach.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Прикрепить файл");
+            List<File> files = chooser.showOpenMultipleDialog(stage);
+            if (files == null || files.isEmpty()) {
+                return;
+            }
+            attach.setDisable(true);
+            calendarBox.setDisable(true);
+            String target = calendarId.get();
+            Thread worker = new Thread(() -> {
+                List<Attachment> imported = new ArrayList<>();
+                for (File file : files) {
+                    try {
+                        imported.add(storage.importAttachment(target, file.toPath()));
+                    } catch (IOException ex) {
+                        Platform.runLater(() -> warn("Не удалось прикрепить файл " + file.getName()));
+                    }
+                }
+                Platform.runLater(() -> {
+                    attachments.addAll(imported);
+                    refresh.run();
+                    attach.setDisable(false);
+                    calendarBox.setDisable(!attachments.isEmpty());
+                });
+            }, "attachment-import");
+            worker.setDaemon(true);
+            worker.start();
+        });
+
+        HBox row = new HBox(12, attach, list);
+        row.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(list, Priority.ALWAYS);
+        return new VBox(8, label, row);
+    }
+
+    /**
+     * Показывает предупреждение о некорректном вводе.
+     *
+     * @param header текст предупреждения
+     */
+    private void warn(String header) {
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Ошибка");
+        alert.setHeaderText(header);
+        alert.showAndWait();
+    }
+
     /**
      * Сохраняет заметку.
      * <p>
      * При редактировании обновляет существующую заметку,
      * при создании — добавляет новую.
      *
-     * @param title   заголовок заметки
-     * @param content текст заметки
+     * @param title       заголовок заметки
+     * @param content     текст заметки
+     * @param timeText    время события в формате ЧЧ:ММ или пустая строка
+     * @param reminder    смещение напоминания в минутах или {@code null}
+     * @param repeatIndex выбранный вариант повтора, {@code 0} — без повтора
+     * @param countText   число повторений или пустая строка
+     * @param until       дата окончания повторов или {@code null}
+     * @param tagsText    теги через запятую
+     * @param calendarId  календарь новой заметки или {@code null} для основного
      */
-    private void saveNote(String title, String content) {
+    private void saveNote(String title,
+                          String content,
+                          String timeText,
+                          Integer reminder,
+                          int repeatIndex,
+                          String countText,
+                          LocalDate until,
+                          String tagsText,
+                          String calendarId) {
         if (title == null || title.trim().isEmpty()) {
-            Alert alert = new Alert(Alert.AlertType.WARNING);
-            alert.setTitle("Ошибка");
-            alert.setHeaderText("Заголовок не может быть пустым");
-            alert.showAndWait();
+            warn("Заголовок не может быть пустым");
             return;
         }
 
+        LocalTime time = null;
+        if (timeText != null && !timeText.isBlank()) {
+            try {
+                time = LocalTime.parse(timeText.trim().length() == 4
+                        ? "0" + timeText.trim()
+                        : timeText.trim());
+            } catch (DateTimeParseException ex) {
+                warn("Время должно быть в формате ЧЧ:ММ");
+                return;
+            }
+        }
+        if (reminder != null && time == null) {
+            warn("Для напоминания укажите время");
+            return;
+        }
+
+        Recurrence recurrence = null;
+        if (repeatIndex > 0) {
+            int count;
+            try {
+                count = countText == null || countText.isBlank()
+                        ? 0
+                        : Integer.parseInt(countText.trim());
+            } catch (NumberFormatException ex) {
+                count = -1;
+            }
+            if (count < 0) {
+                warn("Число повторений должно быть целым положительным числом");
+                return;
+            }
+
+            Set<LocalDate> exceptions = note != null && note.getRecurrence() != null
+                    ? note.getRecurrence().getExceptions()
+                    : Set.of();
+            recurrence = new Recurrence(
+                    Recurrence.Frequency.values()[repeatIndex - 1],
+                    1,
+                    until,
+                    count,
+                    exceptions
+            );
+        }
+
+        List<String> tags = tagsText == null ? List.of() : List.of(tagsText.split(","));
+
         if (note != null) {
-            note.setTitle(title.trim());
-            note.setContent(content != null ? content.trim() : "");
-            note.setDate(date);
-            storage.updateNote(note);
+            Note edited = note.copy();
+            edited.setTitle(title.trim());
+            edited.setContent(content != null ? content.trim() : "");
+            edited.setDate(date);
+            edited.setTime(time);
+            edited.setReminderMinutes(reminder);
+            edited.setRecurrence(recurrence);
+            edited.setAttachments(attachments);
+            edited.setTags(tags);
+            undo.updateNote(edited);
         } else {
             Note newNote = new Note();
             newNote.setId("note-" + UUID.randomUUID());
@@ -207,7 +516,13 @@ public class NoteModal {
             newNote.setTitle(title.trim());
             newNote.setContent(content != null ? content.trim() : "");
             newNote.setCreatedAt(LocalDateTime.now());
-            storage.addNote(newNote);
+            newNote.setTime(time);
+            newNote.setReminderMinutes(reminder);
+            newNote.setRecurrence(recurrence);
+            newNote.setAttachments(attachments);
+            newNote.setTags(tags);
+            newNote.setCalendarId(calendarId);
+            undo.addNote(newNote);
         }
 
         if (onSave != null) {
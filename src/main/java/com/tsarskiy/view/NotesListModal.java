@@ -1,7 +1,8 @@
 package com.tsarskiy.view;
 
 import com.tsarskiy.model.Note;
-import com.tsarskiy.storage.Storage;
+import com.tsarskiy.service.UndoManager;
+import com.tsarskiy.storage.NoteChange;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -17,8 +18,11 @@ import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.stage.Window;
 
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -27,14 +31,31 @@ import java.util.function.Consumer;
  * Позволяет:
  * <ul>
  *     <li>просматривать список заметок</li>
- *     <li>удалять заметки</li>
+ *     <li>удалять заметки с возможностью отмены</li>
  *     <li>выбирать заметку для редактирования</li>
+ *     <li>перетаскивать заметку на другой день календаря</li>
+ *     <li>просматривать миниатюры вложений и открывать вложения</li>
  * </ul>
+ * Окно не блокирует календарь, чтобы заметку можно было бросить на ячейку дня.
+ * Пока окно открыто, оно следит за изменениями заметок: карточки удалённых
+ * и перенесённых на другой день заметок убираются, изменённых — перестраиваются,
+ * новые заметки дня добавляются.
  */
 public class NotesListModal {
 
+    private final LocalDate date;
     private final List<Note> notes;
+    private final UndoManager undo;
+    private final ChangeFeed changes;
     private final Consumer<Note> onSelect;
+    private final Runnable onUndo;
+
+    /** Карточки показанных заметок по идентификатору. */
+    private final Map<String, VBox> cards = new LinkedHashMap<>();
+
+    private Stage stage;
+    private VBox list;
+    private Label empty;
 
     private double dragOffsetX;
     private double dragOffsetY;
@@ -45,12 +66,21 @@ public class NotesListModal {
     /**
      * Создаёт модальное окно списка заметок.
      *
+     * @param date     день списка
      * @param notes    список заметок за день
+     * @param undo     стек отмены, через который удаляются заметки
+     * @param changes  лента изменений заметок
      * @param onSelect обработчик выбора заметки
+     * @param onUndo   действие кнопки «Отменить» после удаления
      */
-    public NotesListModal(List<Note> notes, Consumer<Note> onSelect) {
+    NotesListModal(LocalDate date, List<Note> notes, UndoManager undo, ChangeFeed changes,
+                   Consumer<Note> onSelect, Runnable onUndo) {
+        this.date = date;
         this.notes = notes;
+        this.undo = undo;
+        this.changes = changes;
         this.onSelect = onSelect;
+        this.onUndo = onUndo;
     }
 
     /**
@@ -59,9 +89,9 @@ public class NotesListModal {
      * @param owner родительское окно
      */
     public void show(Window owner) {
-        Stage stage = new Stage();
+        stage = new Stage();
         stage.initOwner(owner);
-        stage.initModality(Modality.APPLICATION_MODAL);
+        stage.initModality(Modality.NONE);
         stage.initStyle(StageStyle.TRANSPARENT);
         stage.setResizable(false);
 
@@ -96,17 +126,18 @@ public class NotesListModal {
             stage.setY(e.getScreenY() - dragOffsetY);
         });
 
-        VBox list = new VBox(14);
+        list = new VBox(14);
         list.setPadding(new Insets(4));
 
-        if (notes.isEmpty()) {
-            Label empty = new Label("Заметок за этот день нет");
-            empty.getStyleClass().add("modal-empty");
+        empty = new Label("Заметок за этот день нет");
+        empty.getStyleClass().add("modal-empty");
+        for (Note note : notes) {
+            VBox card = createCard(note);
+            cards.put(note.getId(), card);
+            list.getChildren().add(card);
+        }
+        if (cards.isEmpty()) {
             list.getChildren().add(empty);
-        } else {
-            for (Note note : notes) {
-                list.getChildren().add(createCard(note, stage, list));
-            }
         }
 
         ScrollPane scroll = new ScrollPane(list);
@@ -118,23 +149,73 @@ public class NotesListModal {
 
         Scene scene = new Scene(root, 620, 420);
         scene.setFill(Color.TRANSPARENT);
-        scene.getStylesheets().add(
-                getClass().getResource("/styles.css").toExternalForm()
-        );
+        Styles.apply(scene);
 
         stage.setScene(scene);
+        Consumer<List<NoteChange>> listener = this::apply;
+        changes.subscribe(listener);
+        stage.setOnHidden(e -> changes.unsubscribe(listener));
         stage.showAndWait();
     }
 
+    /**
+     * Обновляет карточки по пачке изменений заметок.
+     *
+     * @param batch изменения
+     */
+    private void apply(List<NoteChange> batch) {
+        for (NoteChange change : batch) {
+            Note note = change.note();
+            VBox card = cards.get(note.getId());
+            if (!change.affectsRange() && !change.dates().contains(date)) {
+                continue;
+            }
+            Note shown = shownOn(change);
+            if (shown == null) {
+                if (card != null) {
+                    list.getChildren().remove(card);
+                    cards.remove(note.getId());
+                }
+            } else {
+                VBox updated = createCard(shown);
+                if (card != null) {
+                    list.getChildren().set(list.getChildren().indexOf(card), updated);
+                } else {
+                    list.getChildren().remove(empty);
+                    list.getChildren().add(updated);
+                }
+                cards.put(note.getId(), updated);
+            }
+        }
+        if (cards.isEmpty() && !list.getChildren().contains(empty)) {
+            list.getChildren().add(empty);
+        }
+    }
+
+    /**
+     * Возвращает заметку изменения в том виде, в каком она показывается
+     * в этот день: саму заметку, экземпляр серии или {@code null}, если
+     * после изменения заметки в этом дне нет.
+     */
+    private Note shownOn(NoteChange change) {
+        Note note = change.note();
+        if (change.kind() == NoteChange.Kind.DELETED) {
+            return null;
+        }
+        if (note.isRecurring() && !note.isOccurrence()) {
+            boolean occurs = !note.getRecurrence().occurrencesBetween(note.getDate(), date, date).isEmpty();
+            return occurs ? note.occurrenceOn(date) : null;
+        }
+        return date.equals(note.getDate()) ? note : null;
+    }
+
     /**
      * Создаёт карточку отдельной заметки.
      *
-     * @param note  заметка
-     * @param stage окно списка
-     * @param list  контейнер списка заметок
+     * @param note заметка
      * @return карточка заметки
      */
-    private VBox createCard(Note note, Stage stage, VBox list) {
+    private VBox createCard(Note note) {
         VBox card = new VBox(6);
         card.getStyleClass().add("note-item");
         card.setPadding(new Insets(14));
@@ -160,15 +241,26 @@ public class NotesListModal {
         delete.setOnMouseClicked(e -> {
             e.consume();
 
+            if (!note.isOccurrence()) {
+                undo.deleteNote(note);
+                showUndo("Заметка удалена");
+                return;
+            }
+
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("Удаление заметки");
-            alert.setHeaderText("Удалить заметку?");
-            alert.setContentText("Это действие нельзя отменить");
+            alert.setHeaderText("Удалить повторяющуюся заметку?");
+            ButtonType onlyThis = new ButtonType("Только эту");
+            ButtonType series = new ButtonType("Всю серию");
+            alert.getButtonTypes().setAll(onlyThis, series, ButtonType.CANCEL);
 
             alert.showAndWait().ifPresent(btn -> {
-                if (btn == ButtonType.OK) {
-                    Storage.getInstance().deleteNote(note);
-                    list.getChildren().remove(card);
+                if (btn == onlyThis) {
+                    undo.deleteNote(note);
+                    showUndo("Повторение удалено");
+                } else if (btn == series) {
+                    undo.deleteSeries(note);
+                    showUndo("Серия удалена");
                 }
             });
         });
@@ -193,6 +285,39 @@ public class NotesListModal {
 
         card.getChildren().addAll(top, content, created);
 
+        if (note.getTime() != null) {
+            Label time = new Label("Время: " + note.getTime()
+                    + (note.getReminderMinutes() != null
+                    ? ", напоминание за " + note.getReminderMinutes() + " мин."
+                    : ""));
+            time.getStyleClass().add("note-content");
+            time.setOpacity(0.7);
+            card.getChildren().add(time);
+        }
+
+        if (note.isRecurring()) {
+            Label repeat = new Label("Повтор: " + note.getRecurrence().describe());
+            repeat.getStyleClass().add("note-content");
+            repeat.setOpacity(0.7);
+            card.getChildren().add(repeat);
+        }
+
+        if (!note.getTags().isEmpty()) {
+            FlowPane tags = new FlowPane(6, 6);
+            for (String tag : note.getTags()) {
+                Label chip = new Label("#" + tag);
+                chip.getStyleClass().add("tag-chip");
+                tags.getChildren().add(chip);
+            }
+            card.getChildren().add(tags);
+        }
+
+        if (!note.getAttachments().isEmpty()) {
+            card.getChildren().add(AttachmentsView.createStrip(note));
+        }
+
+        NoteDrag.install(card, note, null);
+
         card.setOnMouseClicked(e -> {
             e.consume();
             stage.close();
@@ -201,4 +326,20 @@ public class NotesListModal {
 
         return card;
     }
+
+    /**
+     * Показывает уведомление с отменой после удаления. Карточку убирает
+     * само изменение заметки, пришедшее из хранилища.
+     *
+     * @param message текст уведомления
+     */
+    private void showUndo(String message) {
+        Window window = stage;
+        new UndoToast(message, () -> {
+            if (window.isShowing()) {
+                ((Stage) window).close();
+            }
+            onUndo.run();
+        }).show(window);
+    }
 }
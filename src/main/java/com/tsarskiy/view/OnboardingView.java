@@ -1,16 +1,21 @@
 package com.tsarskiy.view;
 
 import com.tsarskiy.storage.Storage;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.PasswordField;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.SVGPath;
 import javafx.stage.DirectoryChooser;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 /**
  * Представление стартового экрана приложения (onboarding).
@@ -19,7 +24,11 @@ import java.io.File;
  * <ul>
  *     <li>ознакомить пользователя с возможностями приложения</li>
  *     <li>выбрать директорию для локального хранения данных</li>
+ *     <li>включить шифрование заметок паролем</li>
  * </ul>
+ * Для зашифрованной папки экран вместо выбора папки спрашивает пароль.
+ * Ключ из пароля выводится заметное время, поэтому это делается
+ * в фоновом потоке.
  */
 public class OnboardingView {
 
@@ -27,6 +36,14 @@ public class OnboardingView {
     private final Storage storage;
     private final Runnable onComplete;
 
+    /** Карточка экрана: её содержимое меняется при переходе к вводу пароля. */
+    private final VBox card = new VBox(28);
+
+    private final CheckBox encrypt = new CheckBox("Зашифровать заметки паролем");
+    private final PasswordField passphrase = new PasswordField();
+    private final PasswordField repeat = new PasswordField();
+    private final Label error = new Label();
+
     /**
      * Создаёт экран первоначальной настройки приложения.
      *
@@ -37,6 +54,9 @@ public class OnboardingView {
         this.storage = storage;
         this.onComplete = onComplete;
         this.root = createView();
+        if (storage.isOnboarded() && storage.hasStorageDirectory() && storage.isLocked()) {
+            showUnlock();
+        }
     }
 
     /**
@@ -49,7 +69,6 @@ public class OnboardingView {
         background.setAlignment(Pos.CENTER);
         background.setStyle("-fx-background-color: transparent;");
 
-        VBox card = new VBox(28);
         card.getStyleClass().add("onboarding-card");
         card.setAlignment(Pos.CENTER);
         card.setPrefWidth(680);
@@ -65,12 +84,13 @@ public class OnboardingView {
         VBox header = createHeader();
         HBox features = createFeatures();
         VBox storageInfo = createStorageInfo();
+        VBox encryption = createEncryption();
 
         Button start = new Button("Выбрать место для царских записей");
         start.getStyleClass().add("onboarding-button");
-        start.setOnAction(e -> chooseStorageDirectory());
+        start.setOnAction(e -> chooseStorageDirectory(start));
 
-        card.getChildren().addAll(top, header, features, storageInfo, start);
+        card.getChildren().addAll(top, header, features, storageInfo, encryption, start);
         background.getChildren().add(card);
 
         return background;
@@ -82,15 +102,137 @@ public class OnboardingView {
      * После выбора директории сохраняет путь,
      * отмечает onboarding как пройденный
      * и запускает дальнейшую инициализацию приложения.
+     * Если выбрана уже зашифрованная папка, экран переходит к вводу пароля.
+     *
+     * @param start кнопка выбора, недоступная на время создания ключа
      */
-    private void chooseStorageDirectory() {
+    private void chooseStorageDirectory(Button start) {
+        char[] secret = null;
+        if (encrypt.isSelected()) {
+            secret = passphrase.getText().toCharArray();
+            if (secret.length == 0) {
+                error.setText("Введите пароль");
+                return;
+            }
+            if (!passphrase.getText().equals(repeat.getText())) {
+                error.setText("Пароли не совпадают");
+                return;
+            }
+        }
+
         DirectoryChooser chooser = new DirectoryChooser();
         File dir = chooser.showDialog(root.getScene().getWindow());
         if (dir == null) return;
 
-        storage.setStorageDirectory(dir.toPath());
-        storage.setOnboarded();
-        onComplete.run();
+        if (secret == null) {
+            storage.setStorageDirectory(dir.toPath());
+            storage.setOnboarded();
+            if (storage.isLocked()) {
+                showUnlock();
+            } else {
+                onComplete.run();
+            }
+            return;
+        }
+
+        char[] key = secret;
+        Path path = dir.toPath();
+        runWithKey(start, () -> storage.setStorageDirectory(path, key), key);
+    }
+
+    /**
+     * Показывает ввод пароля зашифрованной папки вместо выбора папки.
+     */
+    private void showUnlock() {
+        Label title = new Label("Заметки зашифрованы");
+        title.getStyleClass().add("storage-info-title");
+
+        Label text = new Label("Введите пароль, заданный при выборе папки.");
+        text.getStyleClass().add("storage-info-text");
+
+        passphrase.disableProperty().unbind();
+        passphrase.setDisable(false);
+        passphrase.clear();
+        passphrase.setPromptText("Пароль");
+        passphrase.setMaxWidth(520);
+        error.setText("");
+
+        Button open = new Button("Открыть записи");
+        open.getStyleClass().add("onboarding-button");
+        open.setDefaultButton(true);
+        open.setOnAction(e -> {
+            char[] key = passphrase.getText().toCharArray();
+            runWithKey(open, () -> storage.unlock(key), key);
+        });
+
+        VBox box = new VBox(14, title, text, passphrase, error);
+        box.getStyleClass().add("storage-info-box");
+        box.setAlignment(Pos.CENTER);
+
+        card.getChildren().setAll(createHeader(), box, open);
+    }
+
+    /**
+     * Выполняет действие с паролем в фоновом потоке и после успеха
+     * завершает onboarding. Пароль затирается после использования.
+     *
+     * @param button кнопка, недоступная на время выполнения
+     * @param action создание или открытие ключа
+     * @param key    пароль
+     */
+    private void runWithKey(Button button, Runnable action, char[] key) {
+        button.setDisable(true);
+        error.setText("Проверка пароля…");
+        Thread worker = new Thread(() -> {
+            try {
+                action.run();
+                Platform.runLater(() -> {
+                    storage.setOnboarded();
+                    onComplete.run();
+                });
+            } catch (RuntimeException e) {
+                Platform.runLater(() -> {
+                    error.setText(e.getMessage());
+                    button.setDisable(false);
+                });
+            } finally {
+                Arrays.fill(key, '\0');
+            }
+        }, "vault-key");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Создаёт блок включения шифрования: флажок и поля пароля,
+     * доступные после включения флажка.
+     *
+     * @return контейнер настроек шифрования
+     */
+    private VBox createEncryption() {
+        encrypt.getStyleClass().add("form-label");
+
+        passphrase.setPromptText("Пароль");
+        passphrase.getStyleClass().add("form-input");
+        repeat.setPromptText("Повторите пароль");
+        repeat.getStyleClass().add("form-input");
+        passphrase.disableProperty().bind(encrypt.selectedProperty().not());
+        repeat.disableProperty().bind(encrypt.selectedProperty().not());
+
+        Label hint = new Label("Пароль не восстанавливается: без него заметки не прочитать.");
+        hint.getStyleClass().add("storage-info-subtext");
+
+        error.getStyleClass().add("onboarding-error");
+
+        HBox fields = new HBox(12, passphrase, repeat);
+        fields.setAlignment(Pos.CENTER);
+        HBox.setHgrow(passphrase, Priority.ALWAYS);
+        HBox.setHgrow(repeat, Priority.ALWAYS);
+
+        VBox box = new VBox(10, encrypt, fields, hint, error);
+        box.setAlignment(Pos.CENTER);
+        box.setMaxWidth(520);
+        return box;
     }
 
     /**
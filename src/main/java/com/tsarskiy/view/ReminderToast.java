@@ -0,0 +1,88 @@
+package com.tsarskiy.view;
+
+import com.tsarskiy.service.ReminderService;
+import javafx.animation.PauseTransition;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.stage.Screen;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.util.Duration;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Всплывающее уведомление о напоминании.
+ * <p>
+ * Показывается поверх всех окон в правом нижнем углу экрана
+ * и закрывается по щелчку или через {@link #DISPLAY_TIME}.
+ */
+public class ReminderToast {
+
+    /** Время показа уведомления. */
+    private static final Duration DISPLAY_TIME = Duration.seconds(10);
+
+    /** Отступ уведомления от края экрана. */
+    private static final double MARGIN = 24;
+
+    private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final ReminderService.Reminder reminder;
+
+    /**
+     * Создаёт уведомление.
+     *
+     * @param reminder сработавшее напоминание
+     */
+    public ReminderToast(ReminderService.Reminder reminder) {
+        this.reminder = reminder;
+    }
+
+    /**
+     * Показывает уведомление. Должен вызываться в потоке JavaFX.
+     */
+    public void show() {
+        Stage stage = new Stage();
+        stage.initStyle(StageStyle.TRANSPARENT);
+        stage.setAlwaysOnTop(true);
+
+        ImageView icon = IconFactory.createHolidayCrownImage();
+
+        Label title = new Label(reminder.title());
+        title.getStyleClass().add("toast-title");
+        title.setWrapText(true);
+
+        Label date = new Label("Напоминание на " + DF.format(reminder.date()));
+        date.getStyleClass().add("toast-text");
+
+        VBox text = new VBox(4, title, date);
+
+        HBox root = new HBox(12, icon, text);
+        root.getStyleClass().add("toast-card");
+        root.setAlignment(Pos.CENTER_LEFT);
+        root.setPadding(new Insets(16));
+        root.setPrefWidth(340);
+        root.setOnMouseClicked(e -> stage.close());
+
+        Scene scene = new Scene(root);
+        scene.setFill(Color.TRANSPARENT);
+        Styles.apply(scene);
+        stage.setScene(scene);
+        stage.show();
+
+        Rectangle2D bounds = Screen.getPrimary().getVisualBounds();
+        stage.setX(bounds.getMaxX() - stage.getWidth() - MARGIN);
+        stage.setY(bounds.getMaxY() - stage.getHeight() - MARGIN);
+
+        PauseTransition close = new PauseTransition(DISPLAY_TIME);
+        close.setOnFinished(e -> stage.close());
+        close.play();
+    }
+}
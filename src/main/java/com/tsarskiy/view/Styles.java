@@ -0,0 +1,42 @@
+package com.tsarskiy.view;
+
+import javafx.scene.Scene;
+
+import java.net.URL;
+
+/**
+ * Общая таблица стилей приложения.
+ * <p>
+ * Адрес {@code styles.css} вычисляется один раз и подключается ко всем сценам
+ * (главное окно и модальные окна). JavaFX кэширует разобранные таблицы стилей
+ * по адресу, поэтому файл разбирается только для первой сцены.
+ */
+public final class Styles {
+
+    /** Внешняя форма адреса {@code styles.css} или {@code null}, если ресурс не найден. */
+    private static final String STYLESHEET = resolve();
+
+    private Styles() {
+    }
+
+    /**
+     * Находит ресурс таблицы стилей.
+     *
+     * @return адрес таблицы стилей или {@code null}
+     */
+    private static String resolve() {
+        URL css = Styles.class.getResource("/styles.css");
+        return css != null ? css.toExternalForm() : null;
+    }
+
+    /**
+     * Подключает общую таблицу стилей к сцене.
+     *
+     * @param scene сцена, к которой применяются стили
+     */
+    public static void apply(Scene scene) {
+        if (STYLESHEET != null && !scene.getStylesheets().contains(STYLESHEET)) {
+            scene.getStylesheets().add(STYLESHEET);
+        }
+    }
+}
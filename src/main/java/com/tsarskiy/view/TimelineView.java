@@ -0,0 +1,263 @@
+package com.tsarskiy.view;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.service.HolidayService;
+import com.tsarskiy.storage.NoteRepository;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.scene.shape.Line;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Шкала времени одного дня или недели: столбцы дней с часами по вертикали.
+ * <p>
+ * Заметки со временем стоят на шкале в своём часе, заметки без времени —
+ * в полосе «весь день» над шкалой. Праздники из {@link HolidayService}
+ * показываются в заголовках дней. Заметки берутся одним запросом
+ * {@link NoteRepository#streamNotes(LocalDate, LocalDate)} на показанные дни.
+ * Используется из потока JavaFX.
+ */
+final class TimelineView {
+
+    /** Высота часа на шкале. */
+    private static final double HOUR = 40;
+
+    /** Ширина столбца с подписями часов. */
+    private static final double GUTTER = 52;
+
+    /** Ширина всей шкалы — как у сетки месяца. */
+    private static final double WIDTH = 7 * CalendarView.CELL + 6 * CalendarView.GAP;
+
+    /** Высота видимой части шкалы. */
+    private static final double VIEWPORT = 470;
+
+    /** Час, к которому шкала прокручивается при показе. */
+    private static final int FIRST_VISIBLE_HOUR = 8;
+
+    private static final Locale RU = new Locale("ru");
+    private static final DateTimeFormatter HEADER_DF = DateTimeFormatter.ofPattern("EE, d MMM", RU);
+    private static final DateTimeFormatter TIME_DF = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final NoteRepository storage;
+    private final HolidayService holidayService;
+    private final UnaryOperator<Map<LocalDate, List<Note>>> filter;
+
+    /** Число дней: 1 — день, 7 — неделя. */
+    private final int days;
+
+    private final VBox root = new VBox(6);
+    private final HBox headers = new HBox(CalendarView.GAP);
+    private final HBox allDay = new HBox(CalendarView.GAP);
+    private final Pane body = new Pane();
+    private final ScrollPane scroll = new ScrollPane(body);
+
+    private final LocalDate today = LocalDate.now();
+    private LocalDate selectedDate;
+
+    private Consumer<LocalDate> onSelect = date -> { };
+    private Consumer<Note> onOpen = note -> { };
+
+    /**
+     * Создаёт шкалу времени.
+     *
+     * @param storage        хранилище заметок
+     * @param holidayService сервис праздников
+     * @param filter         фильтр заметок по тегам
+     * @param days           число показанных дней
+     */
+    TimelineView(NoteRepository storage, HolidayService holidayService,
+                 UnaryOperator<Map<LocalDate, List<Note>>> filter, int days) {
+        this.storage = storage;
+        this.holidayService = holidayService;
+        this.filter = filter;
+        this.days = days;
+
+        headers.setPadding(new Insets(0, 0, 0, GUTTER));
+        allDay.setPadding(new Insets(0, 0, 0, GUTTER));
+        allDay.setMinHeight(28);
+
+        body.setPrefSize(WIDTH, 24 * HOUR);
+        body.getStyleClass().add("timeline-body");
+        scroll.getStyleClass().add("timeline-scroll");
+        scroll.setPrefViewportHeight(VIEWPORT);
+        scroll.setPrefViewportWidth(WIDTH);
+        scroll.setFitToWidth(true);
+        scroll.setHbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
+
+        root.getChildren().addAll(headers, allDay, scroll);
+        root.setPrefWidth(WIDTH);
+    }
+
+    /**
+     * Возвращает узел шкалы.
+     *
+     * @return шкала
+     */
+    VBox getView() {
+        return root;
+    }
+
+    /** Задаёт действие при выборе дня. */
+    void setOnSelect(Consumer<LocalDate> onSelect) {
+        this.onSelect = onSelect;
+    }
+
+    /** Задаёт действие при двойном щелчке по заметке. */
+    void setOnOpen(Consumer<Note> onOpen) {
+        this.onOpen = onOpen;
+    }
+
+    /**
+     * Возвращает число показанных дней.
+     *
+     * @return 1 или 7
+     */
+    int getDays() {
+        return days;
+    }
+
+    /**
+     * Показывает дни, начиная с указанного.
+     *
+     * @param first        первый день
+     * @param selectedDate выбранная дата или {@code null}
+     */
+    void show(LocalDate first, LocalDate selectedDate) {
+        this.selectedDate = selectedDate;
+        LocalDate last = first.plusDays(days - 1);
+        Map<LocalDate, List<Note>> notes = filter.apply(storage.streamNotes(first, last)
+                .collect(Collectors.groupingBy(Note::getDate, TreeMap::new, Collectors.toList())));
+        Map<LocalDate, String> holidays = holidayService.getHolidaysBetween(first, last);
+
+        double column = (WIDTH - GUTTER - (days - 1) * CalendarView.GAP) / days;
+        headers.getChildren().clear();
+        allDay.getChildren().clear();
+        body.getChildren().clear();
+
+        for (int h = 0; h <= 24; h++) {
+            Line line = new Line(GUTTER, h * HOUR, WIDTH, h * HOUR);
+            line.getStyleClass().add("timeline-hour-line");
+            body.getChildren().add(line);
+            if (h < 24) {
+                Label hour = new Label(String.format("%02d:00", h));
+                hour.getStyleClass().add("timeline-hour");
+                hour.relocate(4, h * HOUR - 8);
+                body.getChildren().add(hour);
+            }
+        }
+
+        for (int i = 0; i < days; i++) {
+            LocalDate date = first.plusDays(i);
+            List<Note> dayNotes = notes.getOrDefault(date, List.of());
+            double x = GUTTER + i * (column + CalendarView.GAP);
+
+            headers.getChildren().add(header(date, holidays.get(date), column));
+
+            VBox untimed = new VBox(4);
+            untimed.setPrefWidth(column);
+            for (Note note : dayNotes) {
+                if (note.getTime() == null) {
+                    untimed.getChildren().add(noteLabel(note, note.getTitle(), column));
+                }
+            }
+            allDay.getChildren().add(untimed);
+
+            Region background = new Region();
+            background.getStyleClass().add("timeline-day");
+            if (date.equals(today)) background.getStyleClass().add("today");
+            if (date.equals(selectedDate)) background.getStyleClass().add("selected");
+            background.setPrefSize(column, 24 * HOUR);
+            background.relocate(x, 0);
+            background.setOnMouseClicked(e -> onSelect.accept(date));
+            body.getChildren().add(0, background);
+
+            placeTimed(dayNotes, x, column);
+        }
+
+        scroll.setVvalue(Math.min(1, FIRST_VISIBLE_HOUR * HOUR / (24 * HOUR - VIEWPORT)));
+    }
+
+    /**
+     * Размещает заметки со временем; заметки одного часа делят ширину столбца.
+     */
+    private void placeTimed(List<Note> dayNotes, double x, double column) {
+        Map<Integer, List<Note>> byHour = new TreeMap<>();
+        for (Note note : dayNotes) {
+            if (note.getTime() != null) {
+                byHour.computeIfAbsent(note.getTime().getHour(), h -> new ArrayList<>()).add(note);
+            }
+        }
+        for (List<Note> hourNotes : byHour.values()) {
+            double width = (column - 4) / hourNotes.size();
+            for (int k = 0; k < hourNotes.size(); k++) {
+                Note note = hourNotes.get(k);
+                Label label = noteLabel(note, TIME_DF.format(note.getTime()) + " " + note.getTitle(), width - 2);
+                double y = (note.getTime().getHour() + note.getTime().getMinute() / 60.0) * HOUR;
+                label.setPrefHeight(HOUR - 4);
+                label.relocate(x + 2 + k * width, Math.min(y, 24 * HOUR - HOUR) + 2);
+                body.getChildren().add(label);
+            }
+        }
+    }
+
+    private VBox header(LocalDate date, String holiday, double column) {
+        Label title = new Label(HEADER_DF.format(date));
+        title.getStyleClass().add("calendar-weekday");
+        HBox line = new HBox(6, title);
+        line.setAlignment(Pos.CENTER);
+        if (holiday != null) {
+            line.getChildren().add(0, IconFactory.createHolidayCrownImage());
+        }
+
+        VBox box = new VBox(2, line);
+        box.setAlignment(Pos.CENTER);
+        box.setPrefWidth(column);
+        box.getStyleClass().add("timeline-header");
+        if (date.equals(today)) box.getStyleClass().add("today");
+        if (holiday != null) {
+            Label name = new Label(holiday);
+            name.getStyleClass().add("timeline-holiday");
+            box.getChildren().add(name);
+        }
+        box.setOnMouseClicked(e -> onSelect.accept(date));
+        return box;
+    }
+
+    private Label noteLabel(Note note, String text, double width) {
+        Label label = new Label(text);
+        label.getStyleClass().add("timeline-note");
+        label.setPrefWidth(width);
+        label.setMaxWidth(width);
+        label.setAlignment(Pos.TOP_LEFT);
+        String content = note.getContent();
+        if (content != null && !content.isBlank()) {
+            label.setTooltip(new Tooltip(content));
+        }
+        label.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) {
+                onOpen.accept(note);
+            } else {
+                onSelect.accept(note.getDate());
+            }
+            e.consume();
+        });
+        return label;
+    }
+}
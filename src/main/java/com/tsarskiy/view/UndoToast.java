@@ -0,0 +1,103 @@
+package com.tsarskiy.view;
+
+import javafx.animation.PauseTransition;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.stage.Window;
+import javafx.util.Duration;
+
+/**
+ * Всплывающее уведомление о выполненном действии с кнопкой «Отменить»
+ * (или другой кнопкой обратного действия).
+ * <p>
+ * Показывается внизу по центру окна-владельца вместо подтверждения
+ * перед действием и закрывается через {@link #DISPLAY_TIME}.
+ */
+public class UndoToast {
+
+    /** Время показа уведомления. */
+    private static final Duration DISPLAY_TIME = Duration.seconds(6);
+
+    /** Отступ уведомления от нижнего края окна. */
+    private static final double MARGIN = 24;
+
+    /** Показанное уведомление: новое заменяет предыдущее. */
+    private static Stage current;
+
+    private final String message;
+    private final String action;
+    private final Runnable onAction;
+
+    /**
+     * Создаёт уведомление с кнопкой «Отменить».
+     *
+     * @param message текст уведомления
+     * @param onUndo  действие по кнопке
+     */
+    public UndoToast(String message, Runnable onUndo) {
+        this(message, "Отменить", onUndo);
+    }
+
+    /**
+     * Создаёт уведомление с произвольной кнопкой.
+     *
+     * @param message  текст уведомления
+     * @param action   подпись кнопки
+     * @param onAction действие по кнопке
+     */
+    public UndoToast(String message, String action, Runnable onAction) {
+        this.message = message;
+        this.action = action;
+        this.onAction = onAction;
+    }
+
+    /**
+     * Показывает уведомление. Должен вызываться в потоке JavaFX.
+     *
+     * @param owner окно, над которым показывается уведомление
+     */
+    public void show(Window owner) {
+        if (current != null) {
+            current.close();
+        }
+        Stage stage = new Stage();
+        stage.initOwner(owner);
+        stage.initStyle(StageStyle.TRANSPARENT);
+        current = stage;
+
+        Label text = new Label(message);
+        text.getStyleClass().add("toast-text");
+
+        Button button = new Button(action);
+        button.getStyleClass().add("toast-action");
+        button.setOnAction(e -> {
+            stage.close();
+            onAction.run();
+        });
+
+        HBox root = new HBox(16, text, button);
+        root.getStyleClass().add("toast-card");
+        root.setAlignment(Pos.CENTER_LEFT);
+        root.setPadding(new Insets(12, 16, 12, 16));
+
+        Scene scene = new Scene(root);
+        scene.setFill(Color.TRANSPARENT);
+        Styles.apply(scene);
+        stage.setScene(scene);
+        stage.show();
+
+        stage.setX(owner.getX() + (owner.getWidth() - stage.getWidth()) / 2);
+        stage.setY(owner.getY() + owner.getHeight() - stage.getHeight() - MARGIN);
+
+        PauseTransition close = new PauseTransition(DISPLAY_TIME);
+        close.setOnFinished(e -> stage.close());
+        close.play();
+    }
+}
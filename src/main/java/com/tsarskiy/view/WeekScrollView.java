@@ -0,0 +1,384 @@
+package com.tsarskiy.view;
+
+import com.tsarskiy.model.DayType;
+import com.tsarskiy.model.Note;
+import com.tsarskiy.service.HolidayService;
+import com.tsarskiy.storage.NoteRepository;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Непрерывная лента недель: календарь прокручивается по неделям
+ * через границы месяцев.
+ * <p>
+ * Лента построена на {@link ListView}: узлы создаются только для видимых
+ * строк и небольшого запаса и переиспользуются при прокрутке, а список
+ * недель вычисляется по индексу и не хранится. Заметки и праздники
+ * запрашиваются одним диапазоном на видимые недели с запасом
+ * {@link #BUFFER_WEEKS} в обе стороны; новый диапазон запрашивается,
+ * только когда видимые недели выходят за загруженный. Поэтому прокрутка
+ * через годы не зависит от размера архива, а память не растёт.
+ * Используется из потока JavaFX.
+ */
+final class WeekScrollView {
+
+    private static final Logger logger = LogManager.getLogger(WeekScrollView.class);
+
+    /** Первая неделя ленты (понедельник). */
+    private static final LocalDate FIRST_WEEK = LocalDate.of(1900, 1, 1);
+
+    /** Число недель ленты — до 2100 года. */
+    private static final int WEEKS = (int) ChronoUnit.WEEKS.between(FIRST_WEEK, LocalDate.of(2100, 1, 4));
+
+    /** Число видимых строк. */
+    private static final int VISIBLE_ROWS = 6;
+
+    /** Запас загруженных недель сверх видимых с каждой стороны. */
+    private static final int BUFFER_WEEKS = 8;
+
+    private static final Locale RU = new Locale("ru");
+
+    private final NoteRepository storage;
+    private final HolidayService holidayService;
+
+    /** Фильтр заметок по тегам выбранного в календаре фильтра. */
+    private final UnaryOperator<Map<LocalDate, List<Note>>> filter;
+
+    /** Цвета календарей по идентификатору. */
+    private final Map<String, Color> calendarColors;
+
+    private final ListView<LocalDate> list = new ListView<>();
+
+    /** Созданные строки; их число ограничено видимыми строками и запасом. */
+    private final List<WeekCell> rows = new ArrayList<>();
+
+    /** Загруженный диапазон дат или {@code null}, пока ничего не загружено. */
+    private LocalDate loadedFrom;
+    private LocalDate loadedTo;
+
+    /** Заметки и праздники загруженного диапазона. */
+    private Map<LocalDate, List<Note>> notes = Map.of();
+    private Map<LocalDate, String> holidays = Map.of();
+
+    /** Запланирована ли проверка загруженного диапазона. */
+    private boolean checkScheduled;
+
+    private VirtualFlow<?> flow;
+    private LocalDate selectedDate;
+    private YearMonth shownMonth;
+    private final LocalDate today = LocalDate.now();
+
+    private BiConsumer<LocalDate, List<Note>> onHover = (date, dayNotes) -> { };
+    private Consumer<LocalDate> onSelect = date -> { };
+    private BiConsumer<LocalDate, List<Note>> onOpen = (date, dayNotes) -> { };
+    private Consumer<YearMonth> onMonth = month -> { };
+
+    /**
+     * Создаёт ленту недель.
+     *
+     * @param storage        хранилище заметок
+     * @param holidayService сервис праздников
+     * @param filter         фильтр заметок по тегам
+     * @param calendarColors цвета календарей по идентификатору
+     */
+    WeekScrollView(NoteRepository storage, HolidayService holidayService,
+                   UnaryOperator<Map<LocalDate, List<Note>>> filter, Map<String, Color> calendarColors) {
+        this.storage = storage;
+        this.holidayService = holidayService;
+        this.filter = filter;
+        this.calendarColors = calendarColors;
+
+        list.getStyleClass().add("week-scroll");
+        list.setItems(FXCollections.observableList(new AbstractList<>() {
+            @Override
+            public LocalDate get(int index) {
+                return FIRST_WEEK.plusWeeks(index);
+            }
+
+            @Override
+            public int size() {
+                return WEEKS;
+            }
+        }));
+        list.setFixedCellSize(CalendarView.CELL + CalendarView.GAP);
+        list.setPrefHeight(VISIBLE_ROWS * (CalendarView.CELL + CalendarView.GAP));
+        list.setPrefWidth(7 * CalendarView.CELL + 6 * CalendarView.GAP + 24);
+        list.setCellFactory(v -> {
+            WeekCell cell = new WeekCell();
+            rows.add(cell);
+            return cell;
+        });
+        list.skinProperty().addListener((obs, old, skin) -> Platform.runLater(() -> {
+            flow = (VirtualFlow<?>) list.lookup(".virtual-flow");
+            if (flow != null) {
+                flow.positionProperty().addListener((o, a, b) -> checkVisibleRange());
+            }
+            checkVisibleRange();
+        }));
+    }
+
+    /**
+     * Возвращает узел ленты.
+     *
+     * @return лента
+     */
+    ListView<LocalDate> getView() {
+        return list;
+    }
+
+    /** Задаёт действие при наведении на день. */
+    void setOnHover(BiConsumer<LocalDate, List<Note>> onHover) {
+        this.onHover = onHover;
+    }
+
+    /** Задаёт действие при выборе дня. */
+    void setOnSelect(Consumer<LocalDate> onSelect) {
+        this.onSelect = onSelect;
+    }
+
+    /** Задаёт действие при двойном щелчке по дню с заметками. */
+    void setOnOpen(BiConsumer<LocalDate, List<Note>> onOpen) {
+        this.onOpen = onOpen;
+    }
+
+    /** Задаёт действие при смене месяца в верхней видимой строке. */
+    void setOnMonth(Consumer<YearMonth> onMonth) {
+        this.onMonth = onMonth;
+    }
+
+    /**
+     * Прокручивает ленту к неделе с датой.
+     *
+     * @param date дата
+     */
+    void scrollTo(LocalDate date) {
+        list.scrollTo(weekIndex(date));
+        checkVisibleRange();
+    }
+
+    /**
+     * Отмечает выбранный день.
+     *
+     * @param date выбранная дата или {@code null}
+     */
+    void select(LocalDate date) {
+        selectedDate = date;
+        rows.forEach(WeekCell::render);
+    }
+
+    /**
+     * Заново запрашивает заметки и праздники видимых недель,
+     * например после изменения заметок или фильтра.
+     */
+    void refresh() {
+        loadedFrom = null;
+        checkVisibleRange();
+    }
+
+    /**
+     * Проверяет, покрыт ли загруженным диапазоном видимый, и при необходимости
+     * запрашивает новый диапазон с запасом.
+     */
+    private void checkVisibleRange() {
+        checkScheduled = false;
+        int first;
+        int last;
+        IndexedCell<?> top = flow != null ? flow.getFirstVisibleCell() : null;
+        IndexedCell<?> bottom = flow != null ? flow.getLastVisibleCell() : null;
+        if (top != null && bottom != null) {
+            first = top.getIndex();
+            last = bottom.getIndex();
+        } else {
+            first = weekIndex(LocalDate.now());
+            last = first + VISIBLE_ROWS;
+        }
+        LocalDate from = FIRST_WEEK.plusWeeks(first);
+        LocalDate to = FIRST_WEEK.plusWeeks(last).plusDays(6);
+
+        YearMonth month = YearMonth.from(from.plusDays(6));
+        if (!month.equals(shownMonth)) {
+            shownMonth = month;
+            onMonth.accept(month);
+        }
+
+        if (loadedFrom != null && !from.isBefore(loadedFrom) && !to.isAfter(loadedTo)) {
+            return;
+        }
+        load(from.minusWeeks(BUFFER_WEEKS), to.plusWeeks(BUFFER_WEEKS));
+    }
+
+    /**
+     * Запрашивает заметки и праздники диапазона и перерисовывает строки.
+     */
+    private void load(LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        notes = filter.apply(storage.isIndexLoaded() ? storage.getNotesBetween(from, to) : Map.of());
+        holidays = holidayService.getHolidaysBetween(from, to);
+        loadedFrom = from;
+        loadedTo = to;
+        rows.forEach(WeekCell::render);
+        logger.debug("Лента: загружены недели {} — {} за {} мкс",
+                from, to, (System.nanoTime() - start) / 1_000);
+    }
+
+    private static int weekIndex(LocalDate date) {
+        int index = (int) ChronoUnit.WEEKS.between(FIRST_WEEK, date);
+        return Math.max(0, Math.min(WEEKS - 1, index));
+    }
+
+    /**
+     * Строка ленты: неделя из семи дней. Узлы дней создаются один раз
+     * и переиспользуются для любой недели.
+     */
+    private final class WeekCell extends ListCell<LocalDate> {
+
+        private final HBox week = new HBox(CalendarView.GAP);
+        private final Day[] days = new Day[7];
+
+        WeekCell() {
+            getStyleClass().add("week-row");
+            week.setAlignment(Pos.CENTER);
+            for (int i = 0; i < 7; i++) {
+                days[i] = new Day();
+                week.getChildren().add(days[i].button);
+            }
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(LocalDate monday, boolean empty) {
+            super.updateItem(monday, empty);
+            if (empty || monday == null) {
+                setGraphic(null);
+                return;
+            }
+            setGraphic(week);
+            if (loadedFrom == null || monday.isBefore(loadedFrom) || monday.plusDays(6).isAfter(loadedTo)) {
+                if (!checkScheduled) {
+                    checkScheduled = true;
+                    Platform.runLater(WeekScrollView.this::checkVisibleRange);
+                }
+            }
+            render();
+        }
+
+        void render() {
+            LocalDate monday = getItem();
+            if (monday == null || isEmpty()) {
+                return;
+            }
+            for (int i = 0; i < 7; i++) {
+                days[i].show(monday.plusDays(i));
+            }
+        }
+    }
+
+    /**
+     * Узлы одного дня строки.
+     */
+    private final class Day {
+
+        private final Button button = new Button();
+        private final ImageView crown = IconFactory.createHolidayCrownImage();
+        private final Label number = new Label();
+        private final HBox marks = new HBox(4, IconFactory.createNoteImage());
+        private LocalDate date;
+        private List<Note> dayNotes = List.of();
+
+        Day() {
+            button.getStyleClass().add("calendar-day");
+            button.setPrefSize(CalendarView.CELL, CalendarView.CELL);
+            number.getStyleClass().add("calendar-day-number");
+            marks.setAlignment(Pos.CENTER);
+
+            StackPane top = new StackPane(crown);
+            top.setMinHeight(20);
+            Region spacer = new Region();
+            VBox.setVgrow(spacer, Priority.ALWAYS);
+            StackPane bottom = new StackPane(marks);
+            bottom.setMinHeight(20);
+
+            VBox content = new VBox(6, top, number, spacer, bottom);
+            content.setAlignment(Pos.TOP_CENTER);
+            content.setPadding(new Insets(8, 6, 8, 6));
+            button.setGraphic(content);
+
+            button.setOnMouseEntered(e -> onHover.accept(date, dayNotes));
+            button.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && !dayNotes.isEmpty()) {
+                    onOpen.accept(date, dayNotes);
+                    return;
+                }
+                onSelect.accept(date);
+            });
+        }
+
+        void show(LocalDate date) {
+            this.date = date;
+            dayNotes = notes.getOrDefault(date, List.of());
+
+            crown.setVisible(holidays.containsKey(date));
+            number.setText(date.getDayOfMonth() == 1
+                    ? "1 " + date.getMonth().getDisplayName(TextStyle.SHORT, RU)
+                    : String.valueOf(date.getDayOfMonth()));
+
+            marks.setVisible(!dayNotes.isEmpty());
+            marks.getChildren().remove(1, marks.getChildren().size());
+            if (calendarColors.size() > 1) {
+                dayNotes.stream()
+                        .map(Note::getCalendarId)
+                        .distinct()
+                        .forEach(id -> marks.getChildren().add(
+                                new Circle(3.5, calendarColors.getOrDefault(id, Color.GOLD))));
+            }
+
+            boolean weekend = date.getDayOfWeek().getValue() >= 6;
+            DayType type = holidayService.getDayType(date);
+            toggleStyle("day-off", !weekend && type == DayType.WEEKEND);
+            toggleStyle("working-weekend", weekend && type.isWorking());
+            toggleStyle("odd-month", date.getMonthValue() % 2 == 1);
+            toggleStyle("today", date.equals(today));
+            toggleStyle("selected", date.equals(selectedDate));
+        }
+
+        private void toggleStyle(String styleClass, boolean on) {
+            List<String> classes = button.getStyleClass();
+            if (on && !classes.contains(styleClass)) {
+                classes.add(styleClass);
+            } else if (!on) {
+                classes.remove(styleClass);
+            }
+        }
+    }
+}
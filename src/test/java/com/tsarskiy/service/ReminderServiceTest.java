@@ -0,0 +1,227 @@
+package com.tsarskiy.service;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.model.Recurrence;
+import com.tsarskiy.storage.Storage;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки планировщика напоминаний {@link ReminderService} с подставными часами.
+ * <p>
+ * Заметки хранит настоящий {@link Storage} во временной папке, время задают
+ * часы {@link MutableClock}, а напоминания срабатывают через
+ * {@link ReminderService#fireDue()} без фонового потока. Проверяются подгрузка
+ * следующего окна по отметке {@link ReminderService#HORIZON}, перепланирование
+ * после {@link Storage#updateNote(Note)}, отмена после {@link Storage#deleteNote(Note)}
+ * и напоминания повторений серии.
+ */
+class ReminderServiceTest {
+
+    /** Момент начала каждой проверки. */
+    private static final Instant START = LocalDateTime.of(2026, 3, 2, 8, 0).toInstant(ZoneOffset.UTC);
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+    @TempDir
+    static Path dir;
+
+    private static Storage storage;
+
+    private final MutableClock clock = new MutableClock(START);
+
+    /** Сработавшие напоминания в порядке срабатывания. */
+    private final List<ReminderService.Reminder> fired = new CopyOnWriteArrayList<>();
+
+    /** Разрешение на каждое изменение заметки, обработанное подписчиками хранилища. */
+    private final Semaphore handled = new Semaphore(0);
+
+    private ReminderService service;
+
+    @BeforeAll
+    static void openStorage() {
+        System.setProperty(Storage.STORAGE_DIR_PROPERTY, dir.toString());
+        storage = Storage.getInstance();
+        storage.loadIndexAsync().join();
+    }
+
+    @AfterAll
+    static void closeStorage() {
+        storage.flush();
+    }
+
+    @BeforeEach
+    void createService() {
+        service = new ReminderService(storage, clock, fired::add);
+    }
+
+    @AfterEach
+    void deleteNotes() {
+        for (Note note : storage.getNotes()) {
+            if (note.isRecurring()) {
+                storage.deleteSeries(note);
+            } else {
+                storage.deleteNote(note);
+            }
+        }
+    }
+
+    @Test
+    void nextWindowLoadsAtHorizon() {
+        storage.addNote(note("near", DAY, LocalTime.of(10, 0), 0));
+        LocalDate later = DAY.plusDays(3);
+        storage.addNote(note("later", later, LocalTime.of(9, 0), 0));
+        load();
+        assertEquals(1, service.pendingCount(), "в первом окне только ближняя заметка");
+
+        clock.set(at(DAY, LocalTime.of(10, 0)));
+        assertEquals(1, service.fireDue());
+
+        clock.set(START.plus(ReminderService.HORIZON));
+        assertEquals(0, service.fireDue(), "отметка конца окна — не напоминание");
+        assertEquals(1, service.pendingCount(), "следующее окно подгружено");
+
+        clock.set(at(later, LocalTime.of(9, 0)).minusSeconds(1));
+        assertEquals(0, service.fireDue());
+        clock.set(at(later, LocalTime.of(9, 0)));
+        assertEquals(1, service.fireDue());
+        assertEquals(List.of("near", "later"), fired.stream().map(ReminderService.Reminder::noteId).toList());
+    }
+
+    @Test
+    void updateReschedulesReminder() throws InterruptedException {
+        Note note = note("moved", DAY, LocalTime.of(12, 0), 30);
+        storage.addNote(note);
+        load();
+
+        Note updated = note.copy();
+        updated.setTime(LocalTime.of(15, 0));
+        storage.updateNote(updated);
+        awaitChange();
+        assertEquals(1, service.pendingCount());
+
+        clock.set(at(DAY, LocalTime.of(11, 30)));
+        assertEquals(0, service.fireDue(), "прежнее напоминание отменено");
+
+        clock.set(at(DAY, LocalTime.of(14, 30)));
+        assertEquals(1, service.fireDue());
+        assertEquals(at(DAY, LocalTime.of(14, 30)), fired.get(0).dueAt());
+        assertEquals(0, service.pendingCount());
+    }
+
+    @Test
+    void deleteCancelsReminder() throws InterruptedException {
+        Note note = note("deleted", DAY, LocalTime.of(12, 0), 0);
+        storage.addNote(note);
+        load();
+        assertEquals(1, service.pendingCount());
+
+        storage.deleteNote(note);
+        awaitChange();
+        assertEquals(0, service.pendingCount());
+
+        clock.set(at(DAY, LocalTime.of(12, 0)));
+        assertEquals(0, service.fireDue());
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    void seriesRemindsEveryOccurrence() {
+        Note series = note("daily", DAY.minusDays(1), LocalTime.of(9, 0), 15);
+        series.setRecurrence(Recurrence.of(Recurrence.Frequency.DAILY));
+        storage.addNote(series);
+        load();
+        assertEquals(2, service.pendingCount(), "повторения окна: сегодня и завтра, вчерашнее прошло");
+
+        clock.set(at(DAY, LocalTime.of(9, 0)));
+        assertEquals(1, service.fireDue());
+
+        clock.set(at(DAY.plusDays(2), LocalTime.of(9, 0)));
+        assertEquals(2, service.fireDue(), "повторение прошлого окна и первое повторение следующего");
+        assertEquals(List.of(DAY, DAY.plusDays(1), DAY.plusDays(2)),
+                fired.stream().map(ReminderService.Reminder::date).toList());
+        assertEquals(1, service.pendingCount());
+    }
+
+    /* ===== HELPERS ===== */
+
+    /**
+     * Загружает первое окно напоминаний и после подписки планировщика
+     * подписывается на изменения сам: изменения разбирает один поток
+     * хранилища, поэтому срабатывание этого подписчика означает, что
+     * планировщик изменение уже обработал.
+     */
+    private void load() {
+        service.load();
+        storage.addChangeListener(change -> handled.release());
+    }
+
+    /**
+     * Ждёт, пока подписчики хранилища обработают очередное изменение.
+     */
+    private void awaitChange() throws InterruptedException {
+        assertTrue(handled.tryAcquire(5, TimeUnit.SECONDS), "изменение заметки не обработано");
+    }
+
+    private static Note note(String id, LocalDate date, LocalTime time, int reminderMinutes) {
+        Note note = new Note(id, date, "Заметка " + id, "", LocalDateTime.of(2026, 1, 1, 9, 0));
+        note.setTime(time);
+        note.setReminderMinutes(reminderMinutes);
+        return note;
+    }
+
+    private static Instant at(LocalDate date, LocalTime time) {
+        return date.atTime(time).toInstant(ZoneOffset.UTC);
+    }
+
+    /**
+     * Часы в UTC, которые проверка переводит вручную.
+     */
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void set(Instant instant) {
+            now = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Проверки чтения зашифрованного календаря {@link Workspace} по месяцам.
+ * <p>
+ * Сегмент месяца расшифровывается, только когда выборка по датам заходит
+ * в этот месяц: повреждённый сегмент другого месяца не мешает ни открытию
+ * календаря, ни просмотру и сохранению соседнего месяца, а запись
+ * отклоняется лишь после попытки его прочитать. Правка до просмотра месяца
+ * не теряет его записанные заметки.
+ */
+class EncryptedWorkspaceTest {
+
+    private static final char[] PASSPHRASE = "workspace".toCharArray();
+
+    private static final YearMonth MARCH = YearMonth.of(2024, 3);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void monthIsDecryptedWhenViewed() throws IOException {
+        Workspace workspace = create();
+        workspace.addAll(List.of(note("march", MARCH.atDay(5), "отпуск"),
+                note("april", MARCH.plusMonths(1).atDay(10), "работа")));
+        workspace.close();
+        Files.write(dir.resolve(EncryptedStorageBackend.DIRECTORY_NAME).resolve(MARCH.plusMonths(1) + ".seg"),
+                "повреждён".getBytes(StandardCharsets.UTF_8));
+
+        Workspace reopened = open();
+        try {
+            assertEquals(Set.of("отпуск", "работа"), reopened.tags(), "теги непрочитанных месяцев из манифеста");
+            assertEquals(List.of("march"), between(reopened, MARCH));
+            reopened.add(note("added", MARCH.atDay(6), null));
+            reopened.write(reopened.drain());
+
+            assertEquals(List.of(), between(reopened, MARCH.plusMonths(1)), "повреждённый месяц не прочитан");
+            reopened.add(note("rejected", MARCH.atDay(7), null));
+            Workspace.Pending pending = reopened.drain();
+            assertThrows(IOException.class, () -> reopened.write(pending), "запись после повреждённого месяца");
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void editBeforeViewingMonthKeepsItsNotes() throws IOException {
+        Workspace workspace = create();
+        workspace.addAll(List.of(note("first", MARCH.atDay(1), null), note("second", MARCH.atDay(2), null)));
+        workspace.close();
+
+        Workspace edited = open();
+        edited.add(note("third", MARCH.atDay(3), null));
+        edited.close();
+
+        Workspace reopened = open();
+        try {
+            assertEquals(List.of("first", "second", "third"), between(reopened, MARCH));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /* ===== HELPERS ===== */
+
+    private Workspace create() throws IOException {
+        Workspace workspace = new Workspace("encrypted", "Зашифрованный", dir, "#336699");
+        workspace.encrypt(PASSPHRASE);
+        return workspace;
+    }
+
+    private Workspace open() throws IOException {
+        Workspace workspace = new Workspace("encrypted", "Зашифрованный", dir, "#336699");
+        workspace.unlock(PASSPHRASE);
+        return workspace;
+    }
+
+    /**
+     * Возвращает идентификаторы заметок месяца в порядке дат.
+     */
+    private static List<String> between(Workspace workspace, YearMonth month) {
+        Map<LocalDate, List<Note>> result = new TreeMap<>();
+        workspace.collectBetween(month.atDay(1), month.atEndOfMonth(), result);
+        return result.values().stream().flatMap(List::stream).map(Note::getId).toList();
+    }
+
+    private static Note note(String id, LocalDate date, String tag) {
+        Note note = new Note(id, date, "Заметка " + id, "Текст", LocalDateTime.of(2024, 1, 1, 9, 0));
+        if (tag != null) {
+            note.setTags(List.of(tag));
+        }
+        return note;
+    }
+}
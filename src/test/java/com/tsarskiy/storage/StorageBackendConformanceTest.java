@@ -0,0 +1,290 @@
+package com.tsarskiy.storage;
+
+import com.tsarskiy.model.Note;
+import com.tsarskiy.model.Recurrence;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Общие проверки бэкендов хранения {@link StorageBackend}.
+ * <p>
+ * Каждый вид бэкенда проходит одни и те же сценарии в отдельной временной
+ * папке: чтение пустой папки, полная запись и чтение всех полей заметок,
+ * запись только изменённых и удалённых заметок и полная замена. После
+ * каждой записи заметки читаются новым экземпляром бэкенда. Для
+ * зашифрованного бэкенда дополнительно проверяется отсутствие открытого
+ * текста в файлах, отказ чужому паролю, обнаружение подменённого старой
+ * копией или удалённого сегмента, чтение по одному месяцу и сохранение,
+ * которое не теряет заметки непрочитанных месяцев.
+ */
+class StorageBackendConformanceTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    /** Пароль зашифрованного бэкенда. */
+    private static final char[] PASSPHRASE = "conformance".toCharArray();
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(StorageBackend.Kind.class)
+    void emptyDirectoryHasNoNotes(StorageBackend.Kind kind) throws IOException {
+        StorageBackend backend = open(kind);
+        try {
+            assertNotes(List.of(), backend.load());
+        } finally {
+            backend.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageBackend.Kind.class)
+    void fullWriteKeepsAllFields(StorageBackend.Kind kind) throws IOException {
+        List<Note> notes = sample();
+        write(kind, notes, StorageBackend.Changes.all());
+        assertNotes(notes, reopen(kind));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageBackend.Kind.class)
+    void changedWriteStoresEditsAdditionsAndRemovals(StorageBackend.Kind kind) throws IOException {
+        List<Note> notes = sample();
+        write(kind, notes, StorageBackend.Changes.all());
+
+        List<Note> changed = edit(notes);
+        write(kind, changed, new StorageBackend.Changes(false,
+                Set.of(changed.get(0).getId(), "added"), Set.of(notes.get(1).getId())));
+        assertNotes(changed, reopen(kind));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageBackend.Kind.class)
+    void fullWriteReplacesPreviousNotes(StorageBackend.Kind kind) throws IOException {
+        List<Note> notes = sample();
+        write(kind, notes, StorageBackend.Changes.all());
+
+        List<Note> subset = new ArrayList<>(notes.subList(0, 2));
+        write(kind, subset, StorageBackend.Changes.all());
+        assertNotes(subset, reopen(kind));
+    }
+
+    @Test
+    void encryptedFilesHoldNoPlainText() throws IOException {
+        List<Note> notes = sample();
+        write(StorageBackend.Kind.ENCRYPTED, notes, StorageBackend.Changes.all());
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            String bytes = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+            for (Note note : notes) {
+                for (String text : new String[]{note.getTitle(), note.getContent()}) {
+                    if (text != null) {
+                        String encoded = new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+                        assertFalse(bytes.contains(encoded), "открытый текст «" + text + "» в " + file);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void encryptedRejectsForeignPassphrase() throws IOException {
+        write(StorageBackend.Kind.ENCRYPTED, sample(), StorageBackend.Changes.all());
+        assertThrows(IllegalArgumentException.class, () -> NoteCipher.unlock(dir, "другой".toCharArray()));
+    }
+
+    @Test
+    void encryptedDetectsStaleAndDeletedSegment() throws IOException {
+        List<Note> notes = sample();
+        write(StorageBackend.Kind.ENCRYPTED, notes, StorageBackend.Changes.all());
+        Path segment = dir.resolve(EncryptedStorageBackend.DIRECTORY_NAME)
+                .resolve(YearMonth.from(notes.get(0).getDate()) + ".seg");
+        byte[] stale = Files.readAllBytes(segment);
+
+        List<Note> changed = edit(notes);
+        write(StorageBackend.Kind.ENCRYPTED, changed, new StorageBackend.Changes(false,
+                Set.of(changed.get(0).getId(), "added"), Set.of(notes.get(1).getId())));
+        byte[] current = Files.readAllBytes(segment);
+
+        Files.write(segment, stale);
+        assertThrows(IOException.class, () -> reopen(StorageBackend.Kind.ENCRYPTED), "старая копия сегмента");
+        Files.delete(segment);
+        assertThrows(IOException.class, () -> reopen(StorageBackend.Kind.ENCRYPTED), "удалённый сегмент");
+        Files.write(segment, current);
+        assertNotes(changed, reopen(StorageBackend.Kind.ENCRYPTED));
+    }
+
+    @Test
+    void encryptedReadsOnlyRequestedMonth() throws IOException {
+        List<Note> notes = new ArrayList<>(sample());
+        Note february = new Note("february", START.plusMonths(1), "Февраль", "Текст",
+                LocalDateTime.of(2024, 1, 1, 9, 0));
+        february.setTags(List.of("отпуск"));
+        notes.add(february);
+        write(StorageBackend.Kind.ENCRYPTED, notes, StorageBackend.Changes.all());
+        YearMonth january = YearMonth.from(START);
+        Files.write(dir.resolve(EncryptedStorageBackend.DIRECTORY_NAME).resolve(january.plusMonths(1) + ".seg"),
+                "повреждён".getBytes(StandardCharsets.UTF_8));
+
+        StorageBackend backend = open(StorageBackend.Kind.ENCRYPTED);
+        try {
+            StorageBackend.Partial partial = backend.loadPartial();
+            assertNotes(notes.stream().filter(Note::isRecurring).toList(), partial.notes());
+            assertEquals(Map.of(january, Set.of("работа", "встречи"), january.plusMonths(1), Set.of("отпуск")),
+                    partial.months());
+            assertEquals(42, partial.highestVersion());
+
+            assertNotes(notes.stream().filter(n -> !n.isRecurring() && n != february).toList(),
+                    backend.loadMonth(january));
+            assertThrows(IOException.class, () -> backend.loadMonth(january.plusMonths(1)),
+                    "повреждённый сегмент месяца");
+            assertThrows(IOException.class, () -> backend.write(notes, StorageBackend.Changes.all()),
+                    "запись после непрочитанного месяца");
+        } finally {
+            backend.close();
+        }
+    }
+
+    @Test
+    void encryptedWriteKeepsUnreadMonths() throws IOException {
+        List<Note> notes = sample();
+        write(StorageBackend.Kind.ENCRYPTED, notes, StorageBackend.Changes.all());
+
+        List<Note> changed = edit(notes);
+        Note moved = changed.get(changed.size() - 2).copy();
+        moved.setDate(START.plusMonths(1));
+        changed.set(changed.size() - 2, moved);
+        StorageBackend backend = open(StorageBackend.Kind.ENCRYPTED);
+        try {
+            List<Note> opened = new ArrayList<>(backend.loadPartial().notes());
+            opened.add(changed.get(0));
+            opened.add(moved);
+            opened.add(changed.get(changed.size() - 1));
+            backend.write(opened, new StorageBackend.Changes(false,
+                    Set.of(changed.get(0).getId(), moved.getId(), "added"), Set.of(notes.get(1).getId())));
+        } finally {
+            backend.close();
+        }
+        assertNotes(changed, reopen(StorageBackend.Kind.ENCRYPTED));
+    }
+
+    /* ===== HELPERS ===== */
+
+    /**
+     * Открывает бэкенд указанного вида; зашифрованный — с ключом
+     * из {@link #PASSPHRASE}, создавая ключ в новой папке.
+     */
+    private StorageBackend open(StorageBackend.Kind kind) throws IOException {
+        if (kind != StorageBackend.Kind.ENCRYPTED) {
+            return StorageBackend.create(kind, dir);
+        }
+        NoteCipher cipher = NoteCipher.isEncrypted(dir)
+                ? NoteCipher.unlock(dir, PASSPHRASE)
+                : NoteCipher.create(dir, PASSPHRASE);
+        return new EncryptedStorageBackend(dir, cipher);
+    }
+
+    /**
+     * Записывает заметки новым экземпляром бэкенда. Как и {@link Storage},
+     * бэкенд сначала читает папку, поэтому запись изменений идёт
+     * по сведениям об уже записанных заметках.
+     */
+    private void write(StorageBackend.Kind kind, List<Note> notes, StorageBackend.Changes changes) throws IOException {
+        StorageBackend backend = open(kind);
+        try {
+            backend.load();
+            backend.write(notes, changes);
+        } finally {
+            backend.close();
+        }
+    }
+
+    /**
+     * Читает заметки новым экземпляром бэкенда.
+     */
+    private List<Note> reopen(StorageBackend.Kind kind) throws IOException {
+        StorageBackend backend = open(kind);
+        try {
+            return backend.load();
+        } finally {
+            backend.close();
+        }
+    }
+
+    /**
+     * Сравнивает заметки по всем хранимым полям без учёта порядка.
+     */
+    private static void assertNotes(List<Note> expected, List<Note> actual) {
+        Map<String, String> want = new TreeMap<>();
+        expected.forEach(n -> want.put(n.getId(), describe(n)));
+        Map<String, String> got = new TreeMap<>();
+        actual.forEach(n -> got.put(n.getId(), describe(n)));
+        assertEquals(want, got);
+    }
+
+    private static String describe(Note n) {
+        return String.join("|", String.valueOf(n.getDate()), n.getTitle(), String.valueOf(n.getContent()),
+                String.valueOf(n.getCreatedAt()), String.valueOf(n.getTime()), String.valueOf(n.getReminderMinutes()),
+                String.valueOf(n.getRecurrence()), String.valueOf(n.getTags()), String.valueOf(n.getAttachments()),
+                n.getVersion() + "@" + n.getVersionReplica());
+    }
+
+    /**
+     * Заметки со всеми видами полей: без текста, со временем, тегами, серией.
+     */
+    private static List<Note> sample() {
+        LocalDateTime created = LocalDateTime.of(2024, 1, 1, 9, 0);
+        Note plain = new Note("plain", START, "Обычная", "Текст заметки", created);
+        Note empty = new Note("empty", START.plusDays(1), "Без текста", null, created);
+        Note timed = new Note("timed", START.plusDays(2), "Со временем", "Встреча", created);
+        timed.setTime(LocalTime.of(14, 30));
+        timed.setReminderMinutes(15);
+        timed.setTags(List.of("работа", "встречи"));
+        timed.setVersion(42, "replica");
+        Note series = new Note("series", START.plusDays(3), "Серия", "Каждую неделю", created);
+        series.setRecurrence(Recurrence.of(Recurrence.Frequency.WEEKLY).withException(START.plusDays(10)));
+        Note same = new Note("same", START.plusDays(4), "Тот же текст", "Текст заметки", created);
+        return List.of(plain, empty, timed, series, same);
+    }
+
+    /**
+     * Меняет первую заметку, удаляет вторую и добавляет новую.
+     */
+    private static List<Note> edit(List<Note> notes) {
+        Note edited = notes.get(0).copy();
+        edited.setTitle("Изменённая");
+        edited.setContent("Новый текст");
+        Note added = new Note("added", START.plusDays(9), "Добавленная", "Текст",
+                LocalDateTime.of(2024, 1, 2, 10, 0));
+        List<Note> changed = new ArrayList<>(notes);
+        changed.set(0, edited);
+        changed.remove(1);
+        changed.add(added);
+        return changed;
+    }
+}